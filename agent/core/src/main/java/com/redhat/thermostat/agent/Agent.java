@@ -46,6 +46,7 @@ import com.redhat.thermostat.agent.dao.AgentInfoDAO;
 import com.redhat.thermostat.agent.dao.BackendInfoDAO;
 import com.redhat.thermostat.backend.Backend;
 import com.redhat.thermostat.backend.BackendRegistry;
+import com.redhat.thermostat.backend.PollingBackend;
 import com.redhat.thermostat.common.ActionEvent;
 import com.redhat.thermostat.common.ActionListener;
 import com.redhat.thermostat.common.LaunchException;
@@ -86,6 +87,9 @@ public class Agent {
 
                         logger.info("Adding backend: " + backend);
 
+                        if (backend instanceof PollingBackend) {
+                            configurePolling((PollingBackend) backend);
+                        }
                         backend.activate();
 
                         BackendInformation info = AgentHelper.createBackendInformation(backend, getId());
@@ -156,6 +160,14 @@ public class Agent {
         return agentInfo;
     }
 
+    private void configurePolling(PollingBackend backend) {
+        // Backends are configured by their simple class name, e.g. POLLING_INTERVAL_MS.HostCpuBackend
+        // intervals are validated as positive when the configuration is read
+        backend.setPollingInterval(config.getPollingIntervalMillis(backend.getClass().getSimpleName()));
+        backend.setMaxAdaptivePollingInterval(config.getAdaptivePollingMaxIntervalMillis());
+        backend.setPollingWorkerThreads(config.getPollingWorkerThreads());
+    }
+
 
     public synchronized void stop() {
         if (started) {
@@ -98,6 +98,61 @@ public class AgentConfigsUtils {
         }
         Boolean basicAuthEnabled = Boolean.valueOf(properties.getProperty(AgentProperties.BASIC_AUTH_ENABLED.name()));
         configuration.setBasicAuthEnabled(basicAuthEnabled);
+
+        configuration.setUploadFlushIntervalMillis(getPositiveLong(properties, AgentProperties.UPLOAD_FLUSH_INTERVAL_MS,
+                AgentStartupConfiguration.DEFAULT_UPLOAD_FLUSH_INTERVAL_MS));
+        configuration.setUploadMaxBatchSize((int) getPositiveLong(properties, AgentProperties.UPLOAD_MAX_BATCH_SIZE,
+                AgentStartupConfiguration.DEFAULT_UPLOAD_MAX_BATCH_SIZE));
+        configuration.setUploadQueueCapacity((int) getPositiveLong(properties, AgentProperties.UPLOAD_QUEUE_CAPACITY,
+                AgentStartupConfiguration.DEFAULT_UPLOAD_QUEUE_CAPACITY));
+
+        String spoolEnabled = properties.getProperty(AgentProperties.UPLOAD_SPOOL_ENABLED.name());
+        if (spoolEnabled != null) {
+            configuration.setUploadSpoolEnabled(Boolean.parseBoolean(spoolEnabled));
+        }
+        configuration.setUploadSpoolMaxSizeMegabytes((int) getPositiveLong(properties, AgentProperties.UPLOAD_SPOOL_MAX_SIZE_MB,
+                AgentStartupConfiguration.DEFAULT_UPLOAD_SPOOL_MAX_SIZE_MB));
+        configuration.setUploadSpoolReplayRate((int) getPositiveLong(properties, AgentProperties.UPLOAD_SPOOL_REPLAY_RATE,
+                AgentStartupConfiguration.DEFAULT_UPLOAD_SPOOL_REPLAY_RATE));
+        configuration.setUploadViaCommandChannel(Boolean.parseBoolean(
+                properties.getProperty(AgentProperties.UPLOAD_VIA_COMMAND_CHANNEL.name())));
+
+        configuration.setPollingIntervalMillis(getPositiveLong(properties, AgentProperties.POLLING_INTERVAL_MS,
+                AgentStartupConfiguration.DEFAULT_POLLING_INTERVAL_MS));
+        // Per backend overrides, such as POLLING_INTERVAL_MS.HostCpuBackend
+        String backendPrefix = AgentProperties.POLLING_INTERVAL_MS.name() + ".";
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(backendPrefix) && name.length() > backendPrefix.length()) {
+                configuration.setBackendPollingIntervalMillis(name.substring(backendPrefix.length()),
+                        getPositiveLong(properties, name, 0));
+            }
+        }
+        configuration.setAdaptivePollingMaxIntervalMillis(getPositiveLong(properties,
+                AgentProperties.ADAPTIVE_POLLING_MAX_INTERVAL_MS, 0));
+        configuration.setPollingWorkerThreads((int) getPositiveLong(properties,
+                AgentProperties.POLLING_WORKER_THREADS, 0));
+    }
+
+    private static long getPositiveLong(Properties properties, AgentProperties property, long defaultValue)
+            throws InvalidConfigurationException {
+        return getPositiveLong(properties, property.name(), defaultValue);
+    }
+
+    private static long getPositiveLong(Properties properties, String name, long defaultValue)
+            throws InvalidConfigurationException {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            long result = Long.parseLong(value.trim());
+            if (result <= 0 || result > Integer.MAX_VALUE) {
+                throw new InvalidConfigurationException(name + " must be a positive integer: " + value);
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new InvalidConfigurationException(name + " must be a positive integer: " + value);
+        }
     }
 }
 
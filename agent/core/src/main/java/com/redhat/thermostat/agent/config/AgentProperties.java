@@ -45,5 +45,19 @@ public enum AgentProperties {
     KEYCLOAK_REALM,
     KEYCLOAK_CLIENT,
     BASIC_AUTH_ENABLED,
+
+    UPLOAD_FLUSH_INTERVAL_MS,
+    UPLOAD_MAX_BATCH_SIZE,
+    UPLOAD_QUEUE_CAPACITY,
+
+    UPLOAD_SPOOL_ENABLED,
+    UPLOAD_SPOOL_MAX_SIZE_MB,
+    UPLOAD_SPOOL_REPLAY_RATE,
+
+    UPLOAD_VIA_COMMAND_CHANNEL,
+
+    POLLING_INTERVAL_MS,
+    ADAPTIVE_POLLING_MAX_INTERVAL_MS,
+    POLLING_WORKER_THREADS,
 }
 
@@ -36,8 +36,19 @@
 
 package com.redhat.thermostat.agent.config;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class AgentStartupConfiguration implements AuthenticationProviderConfig {
 
+    // Several polling intervals, so that each request carries a number of samples
+    public static final long DEFAULT_UPLOAD_FLUSH_INTERVAL_MS = 10000;
+    public static final int DEFAULT_UPLOAD_MAX_BATCH_SIZE = 500;
+    public static final int DEFAULT_UPLOAD_QUEUE_CAPACITY = 5000;
+    public static final int DEFAULT_UPLOAD_SPOOL_MAX_SIZE_MB = 64;
+    public static final int DEFAULT_UPLOAD_SPOOL_REPLAY_RATE = 100;
+    public static final long DEFAULT_POLLING_INTERVAL_MS = 1000;
+
     private boolean purge;
     private long startTime;
 
@@ -47,6 +58,19 @@ public class AgentStartupConfiguration implements AuthenticationProviderConfig {
     private String keycloakClient;
     private boolean basicAuthEnabled;
 
+    private long uploadFlushIntervalMillis = DEFAULT_UPLOAD_FLUSH_INTERVAL_MS;
+    private int uploadMaxBatchSize = DEFAULT_UPLOAD_MAX_BATCH_SIZE;
+    private int uploadQueueCapacity = DEFAULT_UPLOAD_QUEUE_CAPACITY;
+    private boolean uploadSpoolEnabled = true;
+    private int uploadSpoolMaxSizeMegabytes = DEFAULT_UPLOAD_SPOOL_MAX_SIZE_MB;
+    private int uploadSpoolReplayRate = DEFAULT_UPLOAD_SPOOL_REPLAY_RATE;
+    private boolean uploadViaCommandChannel;
+
+    private long pollingIntervalMillis = DEFAULT_POLLING_INTERVAL_MS;
+    private final Map<String, Long> backendPollingIntervals = new HashMap<>();
+    private long adaptivePollingMaxIntervalMillis;
+    private int pollingWorkerThreads;
+
     AgentStartupConfiguration() {
     }
 
@@ -108,5 +132,133 @@ public class AgentStartupConfiguration implements AuthenticationProviderConfig {
     public void setBasicAuthEnabled(boolean basicAuthEnabled) {
         this.basicAuthEnabled = basicAuthEnabled;
     }
-}
 
+    /**
+     * @return the maximum time, in milliseconds, a queued upload waits
+     *         before it is sent to the web gateway
+     */
+    public long getUploadFlushIntervalMillis() {
+        return uploadFlushIntervalMillis;
+    }
+
+    void setUploadFlushIntervalMillis(long uploadFlushIntervalMillis) {
+        this.uploadFlushIntervalMillis = uploadFlushIntervalMillis;
+    }
+
+    /**
+     * @return the number of queued records for a single plugin and URI that
+     *         triggers an immediate flush, and the most records sent in one
+     *         request
+     */
+    public int getUploadMaxBatchSize() {
+        return uploadMaxBatchSize;
+    }
+
+    void setUploadMaxBatchSize(int uploadMaxBatchSize) {
+        this.uploadMaxBatchSize = uploadMaxBatchSize;
+    }
+
+    /**
+     * @return the number of payloads held for a single plugin and URI before
+     *         the oldest ones are dropped
+     */
+    public int getUploadQueueCapacity() {
+        return uploadQueueCapacity;
+    }
+
+    void setUploadQueueCapacity(int uploadQueueCapacity) {
+        this.uploadQueueCapacity = uploadQueueCapacity;
+    }
+
+    /**
+     * @return whether uploads which fail because the web gateway is
+     *         unavailable are written to disk and retried later
+     */
+    public boolean isUploadSpoolEnabled() {
+        return uploadSpoolEnabled;
+    }
+
+    void setUploadSpoolEnabled(boolean uploadSpoolEnabled) {
+        this.uploadSpoolEnabled = uploadSpoolEnabled;
+    }
+
+    /**
+     * @return the most disk space, in megabytes, the upload spool may use
+     *         before its oldest entries are evicted
+     */
+    public int getUploadSpoolMaxSizeMegabytes() {
+        return uploadSpoolMaxSizeMegabytes;
+    }
+
+    void setUploadSpoolMaxSizeMegabytes(int uploadSpoolMaxSizeMegabytes) {
+        this.uploadSpoolMaxSizeMegabytes = uploadSpoolMaxSizeMegabytes;
+    }
+
+    /**
+     * @return the most spooled requests replayed per second once the web
+     *         gateway is available again
+     */
+    public int getUploadSpoolReplayRate() {
+        return uploadSpoolReplayRate;
+    }
+
+    void setUploadSpoolReplayRate(int uploadSpoolReplayRate) {
+        this.uploadSpoolReplayRate = uploadSpoolReplayRate;
+    }
+
+    /**
+     * @return whether batched uploads are sent over the command channel
+     *         WebSocket, when it is connected, rather than as HTTP requests
+     */
+    public boolean isUploadViaCommandChannel() {
+        return uploadViaCommandChannel;
+    }
+
+    void setUploadViaCommandChannel(boolean uploadViaCommandChannel) {
+        this.uploadViaCommandChannel = uploadViaCommandChannel;
+    }
+
+    /**
+     * @param backendId the simple class name of a polling backend
+     * @return the polling interval, in milliseconds, configured for the
+     *         backend, or the default polling interval if it has none
+     */
+    public long getPollingIntervalMillis(String backendId) {
+        Long interval = backendPollingIntervals.get(backendId);
+        return interval != null ? interval : pollingIntervalMillis;
+    }
+
+    void setPollingIntervalMillis(long pollingIntervalMillis) {
+        this.pollingIntervalMillis = pollingIntervalMillis;
+    }
+
+    void setBackendPollingIntervalMillis(String backendId, long pollingIntervalMillis) {
+        backendPollingIntervals.put(backendId, pollingIntervalMillis);
+    }
+
+    /**
+     * @return the longest time, in milliseconds, polling backends may wait
+     *         between samples of a target whose values do not change, or
+     *         {@code 0} if adaptive polling is disabled
+     */
+    public long getAdaptivePollingMaxIntervalMillis() {
+        return adaptivePollingMaxIntervalMillis;
+    }
+
+    void setAdaptivePollingMaxIntervalMillis(long adaptivePollingMaxIntervalMillis) {
+        this.adaptivePollingMaxIntervalMillis = adaptivePollingMaxIntervalMillis;
+    }
+
+    /**
+     * @return the number of worker threads each per-JVM polling backend
+     *         uses to poll JVMs in parallel, or {@code 0} to poll them one
+     *         after the other on the backend's own thread
+     */
+    public int getPollingWorkerThreads() {
+        return pollingWorkerThreads;
+    }
+
+    void setPollingWorkerThreads(int pollingWorkerThreads) {
+        this.pollingWorkerThreads = pollingWorkerThreads;
+    }
+}
@@ -38,9 +38,11 @@ package com.redhat.thermostat.agent.http;
 
 
 import java.net.URI;
+import java.util.List;
 
 import org.eclipse.jetty.http.HttpMethod;
 
+import com.google.gson.TypeAdapter;
 import com.redhat.thermostat.annotations.Service;
 
 @Service
@@ -54,6 +56,31 @@ public interface HttpRequestService {
      * @return The returned body for GET requests. {@code null} otherwise.
      */
     public String sendHttpRequest(String jsonPayload, URI uri, Method requestMethod) throws RequestFailedException;
+
+    /**
+     * Queue a payload to be POSTed in the background. Payloads queued for the
+     * same plugin and URI are coalesced into a single JSON array and sent
+     * once per flush interval, or sooner if enough of them accumulate. This
+     * method never blocks on the network; failures are logged rather than
+     * reported to the caller.
+     * @param pluginId The id of the plugin the payload belongs to
+     * @param jsonArrayPayload A JSON array of records to send
+     * @param uri The complete URI to send to
+     */
+    public void queueHttpPost(String pluginId, String jsonArrayPayload, URI uri);
+
+    /**
+     * Queue a single record to be POSTed in the background, in the same way
+     * as {@link #queueHttpPost(String, String, URI)}. The record is not
+     * serialized until its batch is sent, when it is written straight into
+     * the request body, so it must not be modified after being queued.
+     * @param pluginId The id of the plugin the record belongs to
+     * @param adapter The adapter which serializes lists of such records
+     *                as JSON arrays
+     * @param record The record to send
+     * @param uri The complete URI to send to
+     */
+    public <T> void queueHttpPost(String pluginId, TypeAdapter<List<T>> adapter, T record, URI uri);
     
     /**
      * HTTP methods for microservice requests.
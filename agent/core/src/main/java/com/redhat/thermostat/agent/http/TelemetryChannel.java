@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.redhat.thermostat.annotations.Service;
+
+/**
+ * A long-lived, already authenticated connection to the web gateway over
+ * which batches of records can be published instead of POSTing them in
+ * separate HTTP requests. Used by {@link HttpRequestService} for queued
+ * uploads when {@code UPLOAD_VIA_COMMAND_CHANNEL} is enabled.
+ */
+@Service
+public interface TelemetryChannel {
+
+    /**
+     * @return whether the channel can currently publish batches
+     */
+    boolean isConnected();
+
+    /**
+     * Publishes a batch of records. Blocks while the channel's send queue is
+     * full, up to an implementation-defined limit.
+     * @param pluginId The id of the plugin the records belong to
+     * @param path The path, including any query, of the gateway endpoint
+     *             the records would otherwise be POSTed to
+     * @param jsonArrayPayload The records, as a UTF-8 encoded JSON array.
+     *                         It may be reused once this method returns.
+     * @param listener Notified if the batch is accepted by this method but
+     *                 cannot be written later on
+     * @throws IOException if the channel is not connected or its send queue
+     *         stays full
+     */
+    void publish(String pluginId, String path, ByteBuffer jsonArrayPayload, FailureListener listener) throws IOException;
+
+    interface FailureListener {
+
+        /**
+         * Called, on an arbitrary thread, when a published batch could not
+         * be written.
+         * @param jsonArrayPayload A copy of the records that were published
+         * @param cause The reason the write failed
+         */
+        void publishFailed(ByteBuffer jsonArrayPayload, Throwable cause);
+    }
+
+}
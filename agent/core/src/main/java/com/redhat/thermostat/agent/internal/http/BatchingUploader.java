@@ -0,0 +1,507 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal.http;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jetty.http.HttpStatus;
+
+import com.google.gson.TypeAdapter;
+import com.redhat.thermostat.agent.http.RequestFailedException;
+import com.redhat.thermostat.agent.internal.http.UploadSpool.SpooledUpload;
+import com.redhat.thermostat.common.utils.LoggingUtils;
+
+/**
+ * Collects JSON array payloads per (plugin, URI) in bounded queues and
+ * periodically POSTs the contents of each queue as one merged JSON array.
+ * Queueing never blocks: when a queue is full the oldest payload is
+ * dropped and counted.
+ * <p>
+ * Records queued together with their type adapter are only serialized when
+ * their batch is sent, directly into a pooled buffer that becomes the
+ * request body.
+ * <p>
+ * If an {@link UploadSpool} is set, batches that could not be delivered
+ * because the gateway was unreachable are written to it, as are all new
+ * batches until a spooled batch has been replayed successfully. The spool
+ * is replayed in order, at most {@code replayRate} batches per flush
+ * interval, ahead of each periodic flush.
+ */
+class BatchingUploader {
+
+    private static final Logger logger = LoggingUtils.getLogger(BatchingUploader.class);
+    // Not defined by the jetty version in use
+    private static final int TOO_MANY_REQUESTS_429 = 429;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final int MAX_POOLED_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final ConcurrentMap<QueueKey, UploadQueue> queues = new ConcurrentHashMap<>();
+    private final PayloadSender sender;
+    private final ScheduledExecutorService executor;
+    private final int maxBatchSize;
+    private final int queueCapacity;
+    private final long flushIntervalMillis;
+    private final AtomicLong droppedPayloads = new AtomicLong();
+    private final AtomicLong sentRequests = new AtomicLong();
+    private final AtomicLong spooledBatches = new AtomicLong();
+    private final AtomicLong droppedSpooledBatches = new AtomicLong();
+    private final ByteBufferPool bufferPool = new ByteBufferPool(MAX_POOLED_BUFFERS, MAX_POOLED_BUFFER_SIZE);
+    private UploadSpool spool;
+    private int replayRate;
+    private volatile boolean started;
+    /** Set when the gateway was unreachable, until a spooled batch is replayed */
+    private volatile boolean gatewayUnavailable;
+
+    BatchingUploader(PayloadSender sender, ScheduledExecutorService executor, long flushIntervalMillis,
+            int maxBatchSize, int queueCapacity) {
+        this.sender = Objects.requireNonNull(sender);
+        this.executor = Objects.requireNonNull(executor);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Must be called before {@link #start()}.
+     */
+    synchronized void setSpool(UploadSpool spool, int replayRate) {
+        this.spool = spool;
+        this.replayRate = replayRate;
+    }
+
+    synchronized void start() {
+        if (started) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (spool != null) {
+                    replaySpool();
+                }
+                flushAll();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        started = true;
+    }
+
+    /**
+     * Stops periodic flushing and sends whatever is still queued on the
+     * calling thread. If flushes that are already running do not finish in
+     * time, they are interrupted and the remaining payloads are dropped, so
+     * that no two threads send or spool batches at the same time.
+     */
+    synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        executor.shutdown();
+        if (awaitTermination()) {
+            flushAll();
+        } else {
+            logger.warning("Uploads did not finish in time while stopping. Dropping queued payloads.");
+        }
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    private boolean awaitTermination() {
+        try {
+            if (executor.awaitTermination(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            executor.shutdownNow();
+            return executor.awaitTermination(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    void enqueue(String pluginId, URI uri, String jsonArrayPayload) {
+        enqueue(pluginId, uri, new JsonArrayPayload(jsonArrayPayload));
+    }
+
+    <T> void enqueue(String pluginId, URI uri, TypeAdapter<List<T>> adapter, T record) {
+        enqueue(pluginId, uri, new RecordPayload<>(adapter, record));
+    }
+
+    private void enqueue(String pluginId, URI uri, QueuedPayload payload) {
+        QueueKey key = new QueueKey(pluginId, uri.normalize());
+        UploadQueue queue = queues.get(key);
+        if (queue == null) {
+            UploadQueue newQueue = new UploadQueue(key, queueCapacity);
+            queue = queues.putIfAbsent(key, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        while (!queue.payloads.offer(payload)) {
+            if (queue.payloads.poll() != null) {
+                long dropped = droppedPayloads.incrementAndGet();
+                logger.log(Level.FINE, "Upload queue for " + key + " is full. Dropped oldest payload (" + dropped + " in total)");
+            }
+        }
+        if (queue.payloads.size() >= maxBatchSize) {
+            scheduleFlush(queue);
+        }
+    }
+
+    private void scheduleFlush(final UploadQueue queue) {
+        if (!started || !queue.flushPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    queue.flushPending.set(false);
+                    flush(queue);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down. stop() flushes the remaining payloads.
+            queue.flushPending.set(false);
+        }
+    }
+
+    void flushAll() {
+        for (UploadQueue queue : queues.values()) {
+            flush(queue);
+        }
+    }
+
+    private void flush(UploadQueue queue) {
+        // Serialize flushes of a single queue so batches go out in order
+        synchronized (queue) {
+            if (queue.payloads.isEmpty()) {
+                return;
+            }
+            List<QueuedPayload> batch = new ArrayList<>(Math.min(maxBatchSize, queue.payloads.size()));
+            ByteBufferOutputStream out = new ByteBufferOutputStream(bufferPool);
+            try {
+                while (queue.payloads.drainTo(batch, maxBatchSize) > 0) {
+                    out.reset();
+                    boolean hasContent;
+                    try {
+                        // A fresh writer, so nothing a failed batch left buffered leaks into this one
+                        hasContent = writeBatch(batch, new OutputStreamWriter(out, UTF_8));
+                    } catch (IOException | RuntimeException e) {
+                        logger.log(Level.WARNING, "Failed to serialize batch for " + queue.key + ". Dropping it.", e);
+                        continue;
+                    } finally {
+                        batch.clear();
+                    }
+                    if (hasContent) {
+                        sendOrSpool(queue.key, out);
+                    }
+                }
+            } finally {
+                out.release();
+            }
+        }
+    }
+
+    private void sendOrSpool(QueueKey key, ByteBufferOutputStream json) {
+        if (spool != null && gatewayUnavailable) {
+            // Spooled right away, rather than waiting for each batch to time out
+            writeToSpool(key, json.getContent());
+            return;
+        }
+        try {
+            sender.send(key.pluginId, json.getContent(), key.uri);
+            sentRequests.incrementAndGet();
+        } catch (RequestFailedException e) {
+            if (spool != null && isGatewayUnavailable(e)) {
+                gatewayUnavailable = true;
+                logger.log(Level.FINE, "Gateway unavailable. Spooling batch for " + key, e);
+                writeToSpool(key, json.getContent());
+            } else {
+                logger.log(Level.WARNING, "Failed to send batch for " + key + " to web gateway", e);
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Unexpected failure sending batch for " + key, e);
+        }
+    }
+
+    private void writeToSpool(QueueKey key, ByteBuffer json) {
+        try {
+            if (spool.append(key.uri, json)) {
+                spooledBatches.incrementAndGet();
+            } else {
+                logger.warning("Batch for " + key + " is too large to spool. Dropping it.");
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to spool batch for " + key + ". Dropping it.", e);
+        }
+    }
+
+    /**
+     * Sends up to {@code replayRate} spooled batches, oldest first. Stops at
+     * the first batch that fails because the gateway is still unavailable.
+     * Once a batch was delivered, new batches are sent directly again.
+     */
+    void replaySpool() {
+        for (int i = 0; i < replayRate; i++) {
+            SpooledUpload upload = spool.peek();
+            if (upload == null) {
+                return;
+            }
+            try {
+                // The spool does not record plugin ids
+                sender.send(null, upload.getPayload(), upload.getUri());
+                sentRequests.incrementAndGet();
+                gatewayUnavailable = false;
+            } catch (RequestFailedException e) {
+                if (isGatewayUnavailable(e)) {
+                    gatewayUnavailable = true;
+                    return;
+                }
+                dropSpooledBatch(upload, "Gateway rejected spooled batch for " + upload.getUri(), e);
+            } catch (RuntimeException e) {
+                dropSpooledBatch(upload, "Unexpected failure replaying spooled batch for " + upload.getUri(), e);
+            }
+            spool.remove();
+        }
+    }
+
+    private void dropSpooledBatch(SpooledUpload upload, String message, Exception cause) {
+        long dropped = droppedSpooledBatches.incrementAndGet();
+        logger.log(Level.WARNING, message + ". Dropping it (" + dropped + " dropped in total).", cause);
+    }
+
+    /**
+     * Failures that may succeed when retried later, as opposed to the
+     * gateway rejecting the payload itself.
+     */
+    static boolean isGatewayUnavailable(RequestFailedException e) {
+        int code = e.getResponseCode();
+        return code == RequestFailedException.UNKNOWN_RESPONSE_CODE
+                || code == HttpStatus.REQUEST_TIMEOUT_408
+                || code == TOO_MANY_REQUESTS_429
+                || code >= HttpStatus.INTERNAL_SERVER_ERROR_500;
+    }
+
+    /**
+     * Writes the elements of all payloads as a single JSON array.
+     *
+     * @return {@code false} if the array is empty
+     */
+    static boolean writeBatch(List<QueuedPayload> batch, Writer writer) throws IOException {
+        writer.write('[');
+        boolean empty = true;
+        for (QueuedPayload payload : batch) {
+            if (payload.writeElements(writer, empty)) {
+                empty = false;
+            }
+        }
+        writer.write(']');
+        writer.flush();
+        return !empty;
+    }
+
+    long getDroppedPayloadCount() {
+        return droppedPayloads.get();
+    }
+
+    long getSentRequestCount() {
+        return sentRequests.get();
+    }
+
+    long getSpooledBatchCount() {
+        return spooledBatches.get();
+    }
+
+    long getDroppedSpooledBatchCount() {
+        return droppedSpooledBatches.get();
+    }
+
+    interface PayloadSender {
+        /**
+         * @param pluginId the plugin the batch belongs to, or {@code null}
+         *        for batches replayed from the spool
+         */
+        void send(String pluginId, ByteBuffer jsonPayload, URI uri) throws RequestFailedException;
+    }
+
+    static abstract class QueuedPayload {
+
+        /**
+         * Writes the array elements this payload holds, preceded by a
+         * separator unless they are the first in the batch.
+         *
+         * @return whether anything was written
+         */
+        abstract boolean writeElements(Writer writer, boolean first) throws IOException;
+    }
+
+    /**
+     * A pre-serialized JSON array. Payloads which are not arrays are treated
+     * as a single element.
+     */
+    static class JsonArrayPayload extends QueuedPayload {
+
+        private final String json;
+
+        JsonArrayPayload(String json) {
+            this.json = json;
+        }
+
+        @Override
+        boolean writeElements(Writer writer, boolean first) throws IOException {
+            int start = 0;
+            int end = json.length();
+            while (start < end && Character.isWhitespace(json.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(json.charAt(end - 1))) {
+                end--;
+            }
+            if (end - start >= 2 && json.charAt(start) == '[' && json.charAt(end - 1) == ']') {
+                start++;
+                end--;
+                while (start < end && Character.isWhitespace(json.charAt(start))) {
+                    start++;
+                }
+                while (end > start && Character.isWhitespace(json.charAt(end - 1))) {
+                    end--;
+                }
+            }
+            if (start == end) {
+                return false;
+            }
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write(json, start, end - start);
+            return true;
+        }
+    }
+
+    /**
+     * A record serialized by the type adapter of its plugin once its batch
+     * is written.
+     */
+    static class RecordPayload<T> extends QueuedPayload {
+
+        private final TypeAdapter<List<T>> adapter;
+        private final T record;
+
+        RecordPayload(TypeAdapter<List<T>> adapter, T record) {
+            this.adapter = adapter;
+            this.record = record;
+        }
+
+        @Override
+        boolean writeElements(Writer writer, boolean first) throws IOException {
+            if (!first) {
+                writer.write(',');
+            }
+            adapter.write(new ArrayElementJsonWriter(writer), Collections.singletonList(record));
+            return true;
+        }
+    }
+
+    private static class UploadQueue {
+
+        private final QueueKey key;
+        private final BlockingQueue<QueuedPayload> payloads;
+        private final AtomicBoolean flushPending = new AtomicBoolean();
+
+        private UploadQueue(QueueKey key, int capacity) {
+            this.key = key;
+            this.payloads = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private static class QueueKey {
+
+        private final String pluginId;
+        private final URI uri;
+
+        private QueueKey(String pluginId, URI uri) {
+            this.pluginId = pluginId;
+            this.uri = Objects.requireNonNull(uri);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof QueueKey)) {
+                return false;
+            }
+            QueueKey other = (QueueKey) obj;
+            return Objects.equals(pluginId, other.pluginId) && uri.equals(other.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pluginId, uri);
+        }
+
+        @Override
+        public String toString() {
+            return pluginId + " " + uri;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal.http;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputStream} writing into a buffer borrowed from a
+ * {@link ByteBufferPool}, growing it as needed.
+ */
+class ByteBufferOutputStream extends OutputStream {
+
+    private final ByteBufferPool pool;
+    private ByteBuffer buffer;
+
+    ByteBufferOutputStream(ByteBufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire(ByteBufferPool.MIN_BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureRemaining(len);
+        buffer.put(b, off, len);
+    }
+
+    private void ensureRemaining(int needed) {
+        if (buffer.remaining() < needed) {
+            ByteBuffer larger = pool.acquire(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+            buffer.flip();
+            larger.put(buffer);
+            pool.release(buffer);
+            buffer = larger;
+        }
+    }
+
+    int size() {
+        return buffer.position();
+    }
+
+    /**
+     * Discards everything written so far, keeping the buffer.
+     */
+    void reset() {
+        buffer.clear();
+    }
+
+    /**
+     * @return a view of the bytes written so far. It is only valid until
+     *         the next write or {@link #release()}.
+     */
+    ByteBuffer getContent() {
+        ByteBuffer content = buffer.duplicate();
+        content.flip();
+        return content;
+    }
+
+    /**
+     * Returns the underlying buffer to the pool. This stream must not be
+     * used afterwards.
+     */
+    void release() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal.http;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of heap {@link ByteBuffer}s used to serialize request
+ * bodies, so that steady-state uploads do not allocate a new buffer for
+ * every request.
+ */
+class ByteBufferPool {
+
+    static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final int maxPooledBuffers;
+    private final int maxPooledBufferSize;
+
+    ByteBufferPool(int maxPooledBuffers, int maxPooledBufferSize) {
+        this.maxPooledBuffers = maxPooledBuffers;
+        this.maxPooledBufferSize = maxPooledBufferSize;
+    }
+
+    /**
+     * @return a cleared buffer with at least {@code minCapacity} bytes
+     */
+    ByteBuffer acquire(int minCapacity) {
+        Iterator<ByteBuffer> iter = buffers.iterator();
+        while (iter.hasNext()) {
+            ByteBuffer buffer = iter.next();
+            if (buffer.capacity() >= minCapacity && buffers.remove(buffer)) {
+                pooled.decrementAndGet();
+                buffer.clear();
+                return buffer;
+            }
+        }
+        int capacity = MIN_BUFFER_SIZE;
+        while (capacity < minCapacity && capacity > 0) {
+            capacity <<= 1;
+        }
+        return ByteBuffer.allocate(capacity > 0 ? capacity : minCapacity);
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use it afterwards.
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer.capacity() > maxPooledBufferSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooledBuffers) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+}
@@ -37,23 +37,41 @@
 package com.redhat.thermostat.agent.internal.http;
 
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.ContentProvider;
 import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.util.ByteBufferContentProvider;
 import org.eclipse.jetty.client.util.StringContentProvider;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
 
+import com.google.gson.TypeAdapter;
+import com.redhat.thermostat.agent.config.AgentStartupConfiguration;
 import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.agent.http.RequestFailedException;
+import com.redhat.thermostat.agent.http.TelemetryChannel;
 import com.redhat.thermostat.agent.keycloak.KeycloakAccessToken;
 import com.redhat.thermostat.agent.keycloak.KeycloakAccessTokenService;
 import com.redhat.thermostat.common.utils.LoggingUtils;
@@ -74,19 +92,43 @@ public class HttpRequestServiceImpl extends BasicHttpService implements HttpRequ
     private CommonPaths commonPaths;
     @Reference
     private KeycloakAccessTokenService tokenService;
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private volatile TelemetryChannel telemetryChannel;
+
+    private final UploaderCreator uploaderCreator;
+    private BatchingUploader uploader;
 
     public HttpRequestServiceImpl() {
-        this(new HttpClientCreator(), new ConfigCreator(), new CredentialsCreator());
+        this(new HttpClientCreator(), new ConfigCreator(), new CredentialsCreator(), new UploaderCreator());
     }
 
     // For testing purposes
     HttpRequestServiceImpl(HttpClientCreator clientCreator, ConfigCreator configCreator, CredentialsCreator credsCreator) {
+        this(clientCreator, configCreator, credsCreator, new UploaderCreator());
+    }
+
+    // For testing purposes
+    HttpRequestServiceImpl(HttpClientCreator clientCreator, ConfigCreator configCreator, CredentialsCreator credsCreator,
+            UploaderCreator uploaderCreator) {
         super(clientCreator, configCreator, credsCreator);
+        this.uploaderCreator = uploaderCreator;
     }
 
     @Activate
     public void activate() {
         super.doActivate(commonPaths, sslConfig, HttpRequestService.class.getSimpleName());
+        if (agentStartupConfiguration != null) {
+            uploader = uploaderCreator.create(this, agentStartupConfiguration, commonPaths);
+            uploader.start();
+        }
+    }
+
+    @Deactivate
+    public void deactivate() {
+        if (uploader != null) {
+            uploader.stop();
+            uploader = null;
+        }
     }
 
     /**
@@ -98,11 +140,49 @@ public class HttpRequestServiceImpl extends BasicHttpService implements HttpRequ
      */
     @Override
     public String sendHttpRequest(String jsonPayload, URI uri, Method requestMethod) throws RequestFailedException {
+        ContentProvider content = jsonPayload == null ? null : new StringContentProvider(jsonPayload);
+        return sendHttpRequest(content, uri, requestMethod);
+    }
+
+    /**
+     * Send a HTTP request whose payload is already encoded as UTF-8 JSON.
+     * The buffer's content is sent as is, without copying it.
+     */
+    String sendEncodedHttpRequest(ByteBuffer jsonPayload, URI uri, Method requestMethod) throws RequestFailedException {
+        ContentProvider content = jsonPayload == null ? null : new ByteBufferContentProvider(jsonPayload);
+        return sendHttpRequest(content, uri, requestMethod);
+    }
+
+    /**
+     * Publish an encoded batch over the telemetry channel, if one is
+     * connected.
+     * @return {@code false} if there is no connected channel
+     */
+    boolean publishOnTelemetryChannel(String pluginId, ByteBuffer jsonPayload, URI uri,
+            TelemetryChannel.FailureListener listener) throws RequestFailedException {
+        TelemetryChannel channel = telemetryChannel;
+        if (channel == null || !channel.isConnected()) {
+            return false;
+        }
+        URI normalized = uri.normalize();
+        String path = normalized.getRawPath();
+        if (normalized.getRawQuery() != null) {
+            path += "?" + normalized.getRawQuery();
+        }
+        try {
+            channel.publish(pluginId, path, jsonPayload, listener);
+        } catch (IOException e) {
+            throw new RequestFailedException(e);
+        }
+        return true;
+    }
+
+    private String sendHttpRequest(ContentProvider content, URI uri, Method requestMethod) throws RequestFailedException {
         // Normalize URI to ensure any duplicate slashes are removed
         uri = uri.normalize();
         Request request = client.newRequest(uri);
-        if (jsonPayload != null) {
-            request.content(new StringContentProvider(jsonPayload), "application/json");
+        if (content != null) {
+            request.content(content, "application/json");
         }
         request.method(requestMethod.getHttpMethod());
 
@@ -131,6 +211,26 @@ public class HttpRequestServiceImpl extends BasicHttpService implements HttpRequ
         }
     }
 
+    @Override
+    public void queueHttpPost(String pluginId, String jsonArrayPayload, URI uri) {
+        BatchingUploader current = uploader;
+        if (current == null) {
+            logger.warning("Upload queue is not active. Dropping payload for " + uri);
+            return;
+        }
+        current.enqueue(pluginId, uri, jsonArrayPayload);
+    }
+
+    @Override
+    public <T> void queueHttpPost(String pluginId, TypeAdapter<List<T>> adapter, T record, URI uri) {
+        BatchingUploader current = uploader;
+        if (current == null) {
+            logger.warning("Upload queue is not active. Dropping payload for " + uri);
+            return;
+        }
+        current.enqueue(pluginId, uri, adapter, record);
+    }
+
     private String getBasicAuthHeaderValue() {
         String username = creds.getUsername();
         char[] pwdChar = creds.getPassword();
@@ -154,4 +254,77 @@ public class HttpRequestServiceImpl extends BasicHttpService implements HttpRequ
     protected void bindTokenService(KeycloakAccessTokenService tokenService) {
         this.tokenService = tokenService;
     }
+
+    protected void bindTelemetryChannel(TelemetryChannel telemetryChannel) {
+        this.telemetryChannel = telemetryChannel;
+    }
+
+    protected void unbindTelemetryChannel(TelemetryChannel telemetryChannel) {
+        if (this.telemetryChannel == telemetryChannel) {
+            this.telemetryChannel = null;
+        }
+    }
+
+    // For testing purposes
+    static class UploaderCreator {
+
+        private static final String SPOOL_DIRECTORY = "gateway-spool";
+        private static final int MAX_SPOOL_SEGMENT_SIZE = 4 * 1024 * 1024;
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+        BatchingUploader create(final HttpRequestServiceImpl service, AgentStartupConfiguration config, CommonPaths paths) {
+            final boolean viaCommandChannel = config.isUploadViaCommandChannel();
+            // The sender queues batches the command channel fails to write again
+            final AtomicReference<BatchingUploader> uploaderRef = new AtomicReference<>();
+            BatchingUploader.PayloadSender sender = new BatchingUploader.PayloadSender() {
+                @Override
+                public void send(final String pluginId, ByteBuffer jsonPayload, final URI uri) throws RequestFailedException {
+                    // Spooled batches are replayed over HTTP
+                    if (viaCommandChannel && pluginId != null
+                            && service.publishOnTelemetryChannel(pluginId, jsonPayload, uri, new TelemetryChannel.FailureListener() {
+                                @Override
+                                public void publishFailed(ByteBuffer jsonArrayPayload, Throwable cause) {
+                                    logger.log(Level.FINE, "Queueing batch for " + uri + " again after command channel failure", cause);
+                                    uploaderRef.get().enqueue(pluginId, uri, UTF_8.decode(jsonArrayPayload).toString());
+                                }
+                            })) {
+                        return;
+                    }
+                    service.sendEncodedHttpRequest(jsonPayload, uri, Method.POST);
+                }
+            };
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "thermostat-gateway-uploader");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            BatchingUploader uploader = new BatchingUploader(sender, executor,
+                    positiveOrDefault(config.getUploadFlushIntervalMillis(), AgentStartupConfiguration.DEFAULT_UPLOAD_FLUSH_INTERVAL_MS),
+                    (int) positiveOrDefault(config.getUploadMaxBatchSize(), AgentStartupConfiguration.DEFAULT_UPLOAD_MAX_BATCH_SIZE),
+                    (int) positiveOrDefault(config.getUploadQueueCapacity(), AgentStartupConfiguration.DEFAULT_UPLOAD_QUEUE_CAPACITY));
+            uploaderRef.set(uploader);
+            if (config.isUploadSpoolEnabled()) {
+                long maxBytes = positiveOrDefault(config.getUploadSpoolMaxSizeMegabytes(),
+                        AgentStartupConfiguration.DEFAULT_UPLOAD_SPOOL_MAX_SIZE_MB) * 1024 * 1024;
+                int segmentSize = (int) Math.min(MAX_SPOOL_SEGMENT_SIZE, maxBytes / 2);
+                File directory = new File(paths.getUserPersistentDataDirectory(), SPOOL_DIRECTORY);
+                try {
+                    UploadSpool spool = new UploadSpool(directory, maxBytes, segmentSize);
+                    uploader.setSpool(spool, (int) positiveOrDefault(config.getUploadSpoolReplayRate(),
+                            AgentStartupConfiguration.DEFAULT_UPLOAD_SPOOL_REPLAY_RATE));
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Unable to open upload spool in " + directory
+                            + ". Uploads will be dropped while the web gateway is unavailable.", e);
+                }
+            }
+            return uploader;
+        }
+
+        private static long positiveOrDefault(long value, long defaultValue) {
+            return value > 0 ? value : defaultValue;
+        }
+    }
 }
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal.http;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+
+/**
+ * An append-only, on-disk queue of gateway uploads which could not be sent.
+ * <p>
+ * Records are written to fixed size, memory-mapped segment files named after
+ * a monotonically increasing sequence number. Each segment starts with the
+ * offset of its first unconsumed record, followed by records of the form
+ * {@code [int length][short uriLength][uri][payload]}. The length of a
+ * record is written after its contents, so a record that was only partially
+ * written before a crash reads as the end of the segment.
+ * <p>
+ * When the spool would grow beyond its size cap the oldest segments are
+ * evicted, losing the records they hold.
+ */
+class UploadSpool {
+
+    private static final Logger logger = LoggingUtils.getLogger(UploadSpool.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final int SEGMENT_HEADER_SIZE = 4;
+    private static final int RECORD_HEADER_SIZE = 4 + 2;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private long evictedRecords;
+    private boolean closed;
+
+    UploadSpool(File directory, long maxSizeBytes, int segmentSize) throws IOException {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(2, maxSizeBytes / segmentSize);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create spool directory " + directory);
+        }
+        openExistingSegments();
+    }
+
+    private void openExistingSegments() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null) {
+            throw new IOException("Unable to list spool directory " + directory);
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            long sequence;
+            try {
+                sequence = Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                logger.warning("Ignoring unexpected file in spool directory: " + file);
+                continue;
+            }
+            if (file.length() != segmentSize) {
+                logger.warning("Discarding spool segment with unexpected size: " + file);
+                deleteFile(file);
+                continue;
+            }
+            Segment segment = Segment.open(file, segmentSize);
+            if (segment.isFullyConsumed()) {
+                segment.delete();
+            } else {
+                segments.addLast(segment);
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+        }
+        if (!segments.isEmpty()) {
+            logger.info("Found " + segments.size() + " spooled segment(s) awaiting upload in " + directory);
+        }
+    }
+
+    /**
+     * @return {@code false} if the payload is too large to ever fit in a segment
+     * @throws IOException if writing fails or the spool has been closed
+     */
+    synchronized boolean append(URI uri, ByteBuffer payload) throws IOException {
+        if (closed) {
+            throw new IOException("Upload spool in " + directory + " is closed");
+        }
+        byte[] uriBytes = uri.toString().getBytes(UTF_8);
+        int recordSize = RECORD_HEADER_SIZE + uriBytes.length + payload.remaining();
+        if (uriBytes.length > Short.MAX_VALUE || recordSize > segmentSize - SEGMENT_HEADER_SIZE) {
+            return false;
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || !tail.hasRoomFor(recordSize)) {
+            tail = createSegment();
+        }
+        tail.write(uriBytes, payload.duplicate());
+        return true;
+    }
+
+    private Segment createSegment() throws IOException {
+        while (segments.size() >= maxSegments) {
+            Segment oldest = segments.removeFirst();
+            int lost = oldest.countRemaining();
+            evictedRecords += lost;
+            logger.warning("Upload spool is full. Evicting " + lost + " record(s) from " + oldest.file.getName());
+            oldest.delete();
+        }
+        File file = new File(directory, String.format("%020d%s", nextSequence, SEGMENT_SUFFIX));
+        Segment segment = Segment.create(file, segmentSize);
+        nextSequence++;
+        segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * @return the oldest record which has not been removed, or {@code null}
+     *         if the spool is empty. Its payload is a view of the spool
+     *         segment and must not be used after {@link #remove()}.
+     */
+    synchronized SpooledUpload peek() {
+        while (!segments.isEmpty()) {
+            Segment head = segments.peekFirst();
+            SpooledUpload upload = head.peek();
+            if (upload != null) {
+                return upload;
+            }
+            if (head == segments.peekLast()) {
+                return null;
+            }
+            // exhausted, and no longer written to
+            segments.removeFirst();
+            head.delete();
+        }
+        return null;
+    }
+
+    /**
+     * Removes the record last returned by {@link #peek()}.
+     */
+    synchronized void remove() {
+        Segment head = segments.peekFirst();
+        if (head != null) {
+            head.consume();
+            if (head.isFullyConsumed() && head != segments.peekLast()) {
+                segments.removeFirst();
+                head.delete();
+            }
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return peek() == null;
+    }
+
+    synchronized long getEvictedRecordCount() {
+        return evictedRecords;
+    }
+
+    /**
+     * Writes all segments to disk. Nothing can be appended afterwards.
+     */
+    synchronized void close() {
+        closed = true;
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        segments.clear();
+    }
+
+    private static void deleteFile(File file) {
+        if (!file.delete()) {
+            logger.warning("Unable to delete spool segment " + file);
+        }
+    }
+
+    static class SpooledUpload {
+
+        private final URI uri;
+        private final ByteBuffer payload;
+
+        SpooledUpload(URI uri, ByteBuffer payload) {
+            this.uri = uri;
+            this.payload = payload;
+        }
+
+        URI getUri() {
+            return uri;
+        }
+
+        ByteBuffer getPayload() {
+            return payload.duplicate();
+        }
+    }
+
+    private static class Segment {
+
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int readOffset;
+        private int writeOffset;
+
+        private Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment create(File file, int size) throws IOException {
+            Segment segment = new Segment(file, map(file, size));
+            segment.readOffset = SEGMENT_HEADER_SIZE;
+            segment.writeOffset = SEGMENT_HEADER_SIZE;
+            segment.buffer.putInt(0, SEGMENT_HEADER_SIZE);
+            return segment;
+        }
+
+        static Segment open(File file, int size) throws IOException {
+            Segment segment = new Segment(file, map(file, size));
+            int capacity = segment.buffer.capacity();
+            int read = segment.buffer.getInt(0);
+            if (read < SEGMENT_HEADER_SIZE || read > capacity) {
+                read = SEGMENT_HEADER_SIZE;
+            }
+            int write = SEGMENT_HEADER_SIZE;
+            while (write + RECORD_HEADER_SIZE <= capacity) {
+                int length = segment.buffer.getInt(write);
+                if (length <= 0 || write + 4 + length > capacity) {
+                    break;
+                }
+                write += 4 + length;
+            }
+            segment.readOffset = Math.min(read, write);
+            segment.writeOffset = write;
+            return segment;
+        }
+
+        private static MappedByteBuffer map(File file, int size) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size);
+                return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        boolean hasRoomFor(int recordSize) {
+            return writeOffset + recordSize <= buffer.capacity();
+        }
+
+        void write(byte[] uri, ByteBuffer payload) {
+            ByteBuffer record = buffer.duplicate();
+            record.position(writeOffset + 4);
+            record.putShort((short) uri.length);
+            record.put(uri);
+            int payloadLength = payload.remaining();
+            record.put(payload);
+            // Publish the record only once its contents are in place
+            buffer.putInt(writeOffset, 2 + uri.length + payloadLength);
+            writeOffset = record.position();
+        }
+
+        SpooledUpload peek() {
+            while (readOffset < writeOffset) {
+                ByteBuffer record = buffer.duplicate();
+                record.position(readOffset);
+                int length = record.getInt();
+                byte[] uri = new byte[record.getShort()];
+                record.get(uri);
+                record.limit(record.position() + length - 2 - uri.length);
+                try {
+                    return new SpooledUpload(new URI(new String(uri, UTF_8)), record.slice().asReadOnlyBuffer());
+                } catch (URISyntaxException e) {
+                    logger.log(Level.WARNING, "Skipping spooled upload with invalid URI", e);
+                    consume();
+                }
+            }
+            return null;
+        }
+
+        void consume() {
+            if (readOffset < writeOffset) {
+                readOffset += 4 + buffer.getInt(readOffset);
+                buffer.putInt(0, readOffset);
+            }
+        }
+
+        boolean isFullyConsumed() {
+            return readOffset >= writeOffset;
+        }
+
+        int countRemaining() {
+            int count = 0;
+            int offset = readOffset;
+            while (offset < writeOffset) {
+                offset += 4 + buffer.getInt(offset);
+                count++;
+            }
+            return count;
+        }
+
+        void delete() {
+            deleteFile(file);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+
+package com.redhat.thermostat.backend;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decides, for each polled target, whether a polling tick should actually
+ * sample it. Targets whose sampled values stop changing are sampled every
+ * 2nd, 4th, 8th... tick, up to a maximum interval. As soon as a sample
+ * differs from the previous one the target is sampled on every tick again.
+ *
+ * @param <K> the type identifying a polled target, such as a pid
+ */
+public class AdaptivePollingSchedule<K> {
+
+    private final ConcurrentMap<K, TargetState> targets = new ConcurrentHashMap<>();
+    private final int maxTicksPerSample;
+
+    /**
+     * @param intervalMillis the polling interval of the backend
+     * @param maxIntervalMillis the longest time an idle target may go
+     *        without being sampled
+     */
+    public AdaptivePollingSchedule(long intervalMillis, long maxIntervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Polling interval must be positive: " + intervalMillis);
+        }
+        this.maxTicksPerSample = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxIntervalMillis / intervalMillis));
+    }
+
+    /**
+     * Called once per polling tick for each target.
+     *
+     * @return whether the target should be sampled on this tick
+     */
+    public boolean isDue(K target) {
+        TargetState state = targets.get(target);
+        if (state == null) {
+            return true;
+        }
+        synchronized (state) {
+            if (state.ticksToSkip > 0) {
+                state.ticksToSkip--;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Records the outcome of sampling a target, adjusting how often it is
+     * sampled from now on.
+     *
+     * @param changed whether the sampled values differ from the previous
+     *        sample of this target
+     */
+    public void sampled(K target, boolean changed) {
+        TargetState state = targets.get(target);
+        if (state == null) {
+            TargetState newState = new TargetState();
+            state = targets.putIfAbsent(target, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        synchronized (state) {
+            if (changed) {
+                state.ticksPerSample = 1;
+            } else {
+                state.ticksPerSample = (int) Math.min(maxTicksPerSample, 2L * state.ticksPerSample);
+            }
+            state.ticksToSkip = state.ticksPerSample - 1;
+        }
+    }
+
+    /**
+     * @return the number of ticks between samples of the target, which is
+     *         {@code 1} for targets that are sampled on every tick
+     */
+    public int getTicksPerSample(K target) {
+        TargetState state = targets.get(target);
+        if (state == null) {
+            return 1;
+        }
+        synchronized (state) {
+            return state.ticksPerSample;
+        }
+    }
+
+    /**
+     * Discards what is known about a target that is no longer polled.
+     */
+    public void forget(K target) {
+        targets.remove(target);
+    }
+
+    private static class TargetState {
+        private int ticksPerSample = 1;
+        private int ticksToSkip;
+    }
+}
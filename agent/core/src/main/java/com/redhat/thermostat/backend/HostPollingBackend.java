@@ -59,6 +59,7 @@ public abstract class HostPollingBackend extends PollingBackend {
     private static final int EXCEPTIONS_THRESHOLD = 10;
     private final Set<HostPollingAction> actions;
     private final Map<String, Integer> badActions;
+    private volatile AdaptivePollingSchedule<HostPollingAction> adaptiveSchedule;
 
     public HostPollingBackend(String name, String description,
             String vendor, Version version, ScheduledExecutorService executor) {
@@ -68,15 +69,29 @@ public abstract class HostPollingBackend extends PollingBackend {
     }
 
     final public void doScheduledActions() {
+        AdaptivePollingSchedule<HostPollingAction> schedule = adaptiveSchedule;
         for (HostPollingAction action : actions) {
+            if (schedule != null && !schedule.isDue(action)) {
+                continue;
+            }
             try {
                 action.run();
+                if (schedule != null) {
+                    schedule.sampled(action, hasChanged(action));
+                }
             } catch (Throwable t) {
                 handleActionException(action);
             }
         }
     }
     
+    private boolean hasChanged(HostPollingAction action) {
+        if (action instanceof AdaptiveHostPollingAction) {
+            return ((AdaptiveHostPollingAction) action).hasChanged();
+        }
+        return true;
+    }
+
     private synchronized void handleActionException(HostPollingAction action) {
         final String actionName = action.getClass().getName();
         Integer count = badActions.remove(actionName);
@@ -110,6 +125,10 @@ public abstract class HostPollingBackend extends PollingBackend {
      */
     protected final void unregisterAction(HostPollingAction action) {
         actions.remove(action);
+        AdaptivePollingSchedule<HostPollingAction> schedule = adaptiveSchedule;
+        if (schedule != null) {
+            schedule.forget(action);
+        }
     }
 
     @Override
@@ -117,7 +136,10 @@ public abstract class HostPollingBackend extends PollingBackend {
         throw new NotImplementedException("This backend does not observe jvms!");
     }
 
+    final public void preActivate() {
+        adaptiveSchedule = createAdaptivePollingSchedule();
+    }
+
     // Intentionally final do-nothing.
-    final public void preActivate() {};
     final public void postDeactivate() {};
 }
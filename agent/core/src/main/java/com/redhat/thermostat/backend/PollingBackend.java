@@ -53,10 +53,13 @@ import com.redhat.thermostat.common.utils.LoggingUtils;
 public abstract class PollingBackend extends BaseBackend {
 
     private static final Logger logger = LoggingUtils.getLogger(PollingBackend.class);
-    static final long DEFAULT_INTERVAL = 1000; // TODO make this configurable.
+    static final long DEFAULT_INTERVAL = 1000;
 
     private ScheduledExecutorService executor;
     private boolean isActive;
+    private long interval = DEFAULT_INTERVAL;
+    private long maxAdaptiveInterval;
+    private int workerThreads;
 
     public PollingBackend(String name, String description, String vendor,
             Version version,
@@ -79,7 +82,7 @@ public abstract class PollingBackend extends BaseBackend {
                         logger.log(Level.WARNING, "Polling action threw exception");
                     }
                 }
-            }, 0, DEFAULT_INTERVAL, TimeUnit.MILLISECONDS);
+            }, 0, interval, TimeUnit.MILLISECONDS);
 
             isActive = true;
         }
@@ -106,6 +109,64 @@ public abstract class PollingBackend extends BaseBackend {
         isActive = active;
     }
 
+    /**
+     * Set how often, in milliseconds, {@link #doScheduledActions()} runs.
+     * Takes effect the next time this backend is activated.
+     */
+    public final synchronized void setPollingInterval(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Polling interval must be positive: " + intervalMillis);
+        }
+        this.interval = intervalMillis;
+    }
+
+    public final synchronized long getPollingInterval() {
+        return interval;
+    }
+
+    /**
+     * Enable adaptive polling, letting child classes poll targets whose
+     * values do not change less often, down to once every
+     * {@code maxIntervalMillis}. A value no greater than the polling
+     * interval disables adaptive polling. Takes effect the next time this
+     * backend is activated.
+     */
+    public final synchronized void setMaxAdaptivePollingInterval(long maxIntervalMillis) {
+        this.maxAdaptiveInterval = maxIntervalMillis;
+    }
+
+    public final synchronized boolean isAdaptivePollingEnabled() {
+        return maxAdaptiveInterval > interval;
+    }
+
+    /**
+     * Let child classes which support it spread the work of each polling
+     * interval over a pool of {@code threads} worker threads. {@code 0}
+     * keeps all work on the polling thread. Takes effect the next time this
+     * backend is activated.
+     */
+    public final synchronized void setPollingWorkerThreads(int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException("Number of polling threads must not be negative: " + threads);
+        }
+        this.workerThreads = threads;
+    }
+
+    public final synchronized int getPollingWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * @return a new schedule for adaptive polling as configured for this
+     *         backend, or {@code null} if adaptive polling is disabled
+     */
+    protected final synchronized <K> AdaptivePollingSchedule<K> createAdaptivePollingSchedule() {
+        if (!isAdaptivePollingEnabled()) {
+            return null;
+        }
+        return new AdaptivePollingSchedule<>(interval, maxAdaptiveInterval);
+    }
+
     // Give child classes a chance to specify what should happen at each polling interval.
     protected abstract void doScheduledActions();
 
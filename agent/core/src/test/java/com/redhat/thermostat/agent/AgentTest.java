@@ -40,6 +40,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -47,6 +48,8 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -57,9 +60,11 @@ import com.redhat.thermostat.agent.dao.AgentInfoDAO;
 import com.redhat.thermostat.agent.dao.BackendInfoDAO;
 import com.redhat.thermostat.backend.Backend;
 import com.redhat.thermostat.backend.BackendRegistry;
+import com.redhat.thermostat.backend.PollingBackend;
 import com.redhat.thermostat.common.ActionEvent;
 import com.redhat.thermostat.common.ActionListener;
 import com.redhat.thermostat.common.ThermostatExtensionRegistry;
+import com.redhat.thermostat.common.Version;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.storage.model.AgentInformation;
 import com.redhat.thermostat.storage.model.BackendInformation;
@@ -169,6 +174,29 @@ public class AgentTest {
         verify(backendInfoDao).removeBackendInformation(info);
     }
     
+    @Test
+    public void testPollingBackendIsConfiguredBeforeActivation() throws Exception {
+        when(config.getPollingIntervalMillis("ConfiguredPollingBackend")).thenReturn(5000L);
+        when(config.getAdaptivePollingMaxIntervalMillis()).thenReturn(60000L);
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        Version version = mock(Version.class);
+        when(version.getVersionNumber()).thenReturn("1.0");
+        PollingBackend pollingBackend = new ConfiguredPollingBackend(version, executor);
+
+        ArgumentCaptor<ActionListener> backendListener = ArgumentCaptor.forClass(ActionListener.class);
+        Agent agent = new Agent(backendRegistry, config, agentInfoDao, backendInfoDao, mock(WriterID.class));
+        verify(backendRegistry).addActionListener(backendListener.capture());
+        agent.start();
+
+        ActionEvent<ThermostatExtensionRegistry.Action> actionEvent =
+                new ActionEvent<>(this, ThermostatExtensionRegistry.Action.SERVICE_ADDED);
+        actionEvent.setPayload(pollingBackend);
+        backendListener.getValue().actionPerformed(actionEvent);
+
+        verify(executor).scheduleAtFixedRate(any(Runnable.class), eq(0L), eq(5000L), eq(TimeUnit.MILLISECONDS));
+        assertTrue(pollingBackend.isAdaptivePollingEnabled());
+    }
+
     @Test
     public void testStopAgentWithPurging() throws Exception {
                 
@@ -207,5 +235,15 @@ public class AgentTest {
         verify(agentInfoDao).updateAgentInformation(isA(AgentInformation.class));
         //verify(storage, times(0)).purge(anyString()); TODO
     }
-}
 
+    private static class ConfiguredPollingBackend extends PollingBackend {
+
+        ConfiguredPollingBackend(Version version, ScheduledExecutorService executor) {
+            super("polling", "polling backend", "vendor", version, executor);
+        }
+
+        @Override
+        protected void doScheduledActions() {
+        }
+    }
+}
@@ -36,6 +36,7 @@
 
 package com.redhat.thermostat.agent.config;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -97,6 +98,74 @@ public class AgentConfigsUtilsTest {
         assertFalse(config.isKeycloakEnabled());
     }
     
+    @Test
+    public void testUploadDefaults() throws InvalidConfigurationException, IOException {
+        setConfigs(createSystemProperties(), createUserProperties());
+        AgentStartupConfiguration config = AgentConfigsUtils.createAgentConfigs();
+        assertEquals(AgentStartupConfiguration.DEFAULT_UPLOAD_FLUSH_INTERVAL_MS, config.getUploadFlushIntervalMillis());
+        assertEquals(AgentStartupConfiguration.DEFAULT_UPLOAD_MAX_BATCH_SIZE, config.getUploadMaxBatchSize());
+        assertEquals(AgentStartupConfiguration.DEFAULT_UPLOAD_QUEUE_CAPACITY, config.getUploadQueueCapacity());
+        assertFalse(config.isUploadViaCommandChannel());
+    }
+
+    @Test
+    public void testUploadProperties() throws InvalidConfigurationException, IOException {
+        Properties userProps = createUserProperties();
+        userProps.setProperty("UPLOAD_FLUSH_INTERVAL_MS", "250");
+        userProps.setProperty("UPLOAD_MAX_BATCH_SIZE", "20");
+        userProps.setProperty("UPLOAD_QUEUE_CAPACITY", "100");
+        userProps.setProperty("UPLOAD_VIA_COMMAND_CHANNEL", "true");
+        setConfigs(createSystemProperties(), userProps);
+        AgentStartupConfiguration config = AgentConfigsUtils.createAgentConfigs();
+        assertEquals(250, config.getUploadFlushIntervalMillis());
+        assertEquals(20, config.getUploadMaxBatchSize());
+        assertEquals(100, config.getUploadQueueCapacity());
+        assertTrue(config.isUploadViaCommandChannel());
+    }
+
+    @Test(expected = InvalidConfigurationException.class)
+    public void testInvalidUploadProperty() throws InvalidConfigurationException, IOException {
+        Properties userProps = createUserProperties();
+        userProps.setProperty("UPLOAD_MAX_BATCH_SIZE", "-1");
+        setConfigs(createSystemProperties(), userProps);
+        AgentConfigsUtils.createAgentConfigs();
+    }
+
+    @Test
+    public void testPollingDefaults() throws InvalidConfigurationException, IOException {
+        setConfigs(createSystemProperties(), createUserProperties());
+        AgentStartupConfiguration config = AgentConfigsUtils.createAgentConfigs();
+        assertEquals(AgentStartupConfiguration.DEFAULT_POLLING_INTERVAL_MS, config.getPollingIntervalMillis("HostCpuBackend"));
+        assertEquals(0, config.getAdaptivePollingMaxIntervalMillis());
+        assertEquals(0, config.getPollingWorkerThreads());
+    }
+
+    @Test
+    public void testPollingProperties() throws InvalidConfigurationException, IOException {
+        Properties sysProps = createSystemProperties();
+        sysProps.setProperty("POLLING_INTERVAL_MS", "2000");
+        sysProps.setProperty("POLLING_INTERVAL_MS.HostNetworkBackend", "10000");
+        Properties userProps = createUserProperties();
+        userProps.setProperty("POLLING_INTERVAL_MS.HostCpuBackend", "500");
+        userProps.setProperty("ADAPTIVE_POLLING_MAX_INTERVAL_MS", "30000");
+        userProps.setProperty("POLLING_WORKER_THREADS", "4");
+        setConfigs(sysProps, userProps);
+        AgentStartupConfiguration config = AgentConfigsUtils.createAgentConfigs();
+        assertEquals(500, config.getPollingIntervalMillis("HostCpuBackend"));
+        assertEquals(10000, config.getPollingIntervalMillis("HostNetworkBackend"));
+        assertEquals(2000, config.getPollingIntervalMillis("HostMemoryBackend"));
+        assertEquals(30000, config.getAdaptivePollingMaxIntervalMillis());
+        assertEquals(4, config.getPollingWorkerThreads());
+    }
+
+    @Test(expected = InvalidConfigurationException.class)
+    public void testInvalidBackendPollingInterval() throws InvalidConfigurationException, IOException {
+        Properties userProps = createUserProperties();
+        userProps.setProperty("POLLING_INTERVAL_MS.HostCpuBackend", "often");
+        setConfigs(createSystemProperties(), userProps);
+        AgentConfigsUtils.createAgentConfigs();
+    }
+
     private Properties createSystemProperties(String configListenAddress) {
         return doCreateSystemProperties(configListenAddress);
     }
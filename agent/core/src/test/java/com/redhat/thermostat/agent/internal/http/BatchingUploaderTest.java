@@ -0,0 +1,471 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.redhat.thermostat.agent.config.AgentStartupConfiguration;
+import com.redhat.thermostat.agent.http.RequestFailedException;
+import com.redhat.thermostat.agent.internal.http.BatchingUploader.JsonArrayPayload;
+import com.redhat.thermostat.agent.internal.http.BatchingUploader.PayloadSender;
+import com.redhat.thermostat.agent.internal.http.BatchingUploader.QueuedPayload;
+import com.redhat.thermostat.agent.internal.http.BatchingUploader.RecordPayload;
+import com.redhat.thermostat.agent.internal.http.UploadSpool.SpooledUpload;
+
+public class BatchingUploaderTest {
+
+    private static final URI URI_A = URI.create("http://127.0.0.1:30000/a/");
+    private static final URI URI_B = URI.create("http://127.0.0.1:30000/b/");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private PayloadSender sender;
+    private ScheduledExecutorService executor;
+    // Sent buffers are reused once a flush completes, so record their content as they are sent
+    private List<String> sent;
+
+    @Before
+    public void setup() throws Exception {
+        sender = mock(PayloadSender.class);
+        executor = mock(ScheduledExecutorService.class);
+        sent = new ArrayList<>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Object[] args = invocation.getArguments();
+                sent.add(args[2] + " " + decode((ByteBuffer) args[1]));
+                return null;
+            }
+        }).when(sender).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+    }
+
+    @Test
+    public void testPayloadsForSameUriAreCoalesced() throws Exception {
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.enqueue("foo", URI_A, "[{\"a\":1}]");
+        uploader.enqueue("foo", URI_A, "[{\"a\":2},{\"a\":3}]");
+        uploader.enqueue("foo", URI_B, "[{\"b\":1}]");
+        verify(sender, never()).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+
+        uploader.flushAll();
+
+        assertSent("[{\"a\":1},{\"a\":2},{\"a\":3}]", URI_A);
+        assertSent("[{\"b\":1}]", URI_B);
+        assertEquals(2, uploader.getSentRequestCount());
+    }
+
+    @Test
+    public void testRequestCountDoesNotGrowWithSamples() throws Exception {
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 500, 5000);
+        long requests = 0;
+        for (int samples : new int[] { 1, 10, 100 }) {
+            for (int i = 0; i < samples; i++) {
+                uploader.enqueue("foo", URI_A, "[" + i + "]");
+            }
+            uploader.flushAll();
+            assertEquals(++requests, uploader.getSentRequestCount());
+        }
+    }
+
+    @Test
+    public void testDefaultFlushIntervalBatchesSamplesOfEachJvm() throws Exception {
+        long samplesPerFlush = AgentStartupConfiguration.DEFAULT_UPLOAD_FLUSH_INTERVAL_MS
+                / AgentStartupConfiguration.DEFAULT_POLLING_INTERVAL_MS;
+        assertTrue(samplesPerFlush >= 5);
+
+        // One URI per JVM, as the VM stat DAOs post
+        int jvms = 20;
+        BatchingUploader uploader = new BatchingUploader(sender, executor,
+                AgentStartupConfiguration.DEFAULT_UPLOAD_FLUSH_INTERVAL_MS, 500, 5000);
+        for (int sample = 0; sample < samplesPerFlush; sample++) {
+            for (int jvm = 0; jvm < jvms; jvm++) {
+                uploader.enqueue("foo", URI_A.resolve("jvms/" + jvm), "[" + sample + "]");
+            }
+        }
+        uploader.flushAll();
+
+        assertEquals(jvms, uploader.getSentRequestCount());
+    }
+
+    @Test
+    public void testDifferentPluginsUseSeparateBatches() throws Exception {
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.enqueue("foo", URI_A, "[1]");
+        uploader.enqueue("bar", URI_A, "[2]");
+
+        uploader.flushAll();
+
+        assertSent("[1]", URI_A);
+        assertSent("[2]", URI_A);
+    }
+
+    @Test
+    public void testBatchesAreLimitedToMaxBatchSize() throws Exception {
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 2, 10);
+        for (int i = 0; i < 5; i++) {
+            uploader.enqueue("foo", URI_A, "[" + i + "]");
+        }
+
+        uploader.flushAll();
+
+        assertSent("[0,1]", URI_A);
+        assertSent("[2,3]", URI_A);
+        assertSent("[4]", URI_A);
+    }
+
+    @Test
+    public void testReachingBatchSizeSchedulesFlush() throws Exception {
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 2, 10);
+        uploader.start();
+        uploader.enqueue("foo", URI_A, "[1]");
+        verify(executor, never()).execute(any(Runnable.class));
+
+        uploader.enqueue("foo", URI_A, "[2]");
+        // a second flush must not be scheduled while one is pending
+        uploader.enqueue("foo", URI_A, "[3]");
+
+        ArgumentCaptor<Runnable> flushCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor, times(1)).execute(flushCaptor.capture());
+        flushCaptor.getValue().run();
+
+        assertSent("[1,2]", URI_A);
+        assertSent("[3]", URI_A);
+    }
+
+    @Test
+    public void testFullQueueDropsOldestPayload() throws Exception {
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 2);
+        uploader.enqueue("foo", URI_A, "[1]");
+        uploader.enqueue("foo", URI_A, "[2]");
+        uploader.enqueue("foo", URI_A, "[3]");
+
+        assertEquals(1, uploader.getDroppedPayloadCount());
+        uploader.flushAll();
+        assertSent("[2,3]", URI_A);
+    }
+
+    @Test
+    public void testFailedSendDoesNotAffectOtherQueues() throws Exception {
+        doThrow(new RequestFailedException("down")).when(sender).send(any(String.class), any(ByteBuffer.class), eq(URI_A));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.enqueue("foo", URI_A, "[1]");
+        uploader.enqueue("foo", URI_B, "[2]");
+
+        uploader.flushAll();
+
+        assertSent("[2]", URI_B);
+        assertEquals(1, uploader.getSentRequestCount());
+    }
+
+    @Test
+    public void testStopFlushesRemainingPayloads() throws Exception {
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.start();
+        uploader.enqueue("foo", URI_A, "[1]");
+        when(executor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        uploader.stop();
+
+        verify(executor).shutdown();
+        verify(executor, never()).shutdownNow();
+        assertSent("[1]", URI_A);
+    }
+
+    @Test
+    public void testStopDoesNotFlushWhileUploadsAreRunning() throws Exception {
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.start();
+        uploader.enqueue("foo", URI_A, "[1]");
+        when(executor.awaitTermination(anyLong(), any(TimeUnit.class))).thenReturn(false);
+
+        uploader.stop();
+
+        verify(executor).shutdownNow();
+        verify(sender, never()).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+    }
+
+    @Test
+    public void testUnreachableGatewaySpoolsBatch() throws Exception {
+        UploadSpool spool = mock(UploadSpool.class);
+        when(spool.isEmpty()).thenReturn(true);
+        when(spool.append(any(URI.class), any(ByteBuffer.class))).thenReturn(true);
+        doThrow(new RequestFailedException("connection refused")).when(sender).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.setSpool(spool, 5);
+        uploader.enqueue("foo", URI_A, "[1]");
+
+        uploader.flushAll();
+
+        verify(spool).append(eq(URI_A), argThat(hasContent("[1]")));
+        assertEquals(1, uploader.getSpooledBatchCount());
+    }
+
+    @Test
+    public void testRejectedBatchIsNotSpooled() throws Exception {
+        UploadSpool spool = mock(UploadSpool.class);
+        when(spool.isEmpty()).thenReturn(true);
+        doThrow(new RequestFailedException(400, "bad request")).when(sender).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.setSpool(spool, 5);
+        uploader.enqueue("foo", URI_A, "[1]");
+
+        uploader.flushAll();
+
+        verify(spool, never()).append(any(URI.class), any(ByteBuffer.class));
+    }
+
+    @Test
+    public void testNewBatchesAreSpooledWhileGatewayIsUnavailable() throws Exception {
+        UploadSpool spool = mock(UploadSpool.class);
+        when(spool.append(any(URI.class), any(ByteBuffer.class))).thenReturn(true);
+        doThrow(new RequestFailedException("connection refused")).when(sender).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.setSpool(spool, 5);
+        uploader.enqueue("foo", URI_A, "[1]");
+        uploader.flushAll();
+
+        uploader.enqueue("foo", URI_A, "[2]");
+        uploader.flushAll();
+
+        // Only the first batch was tried
+        verify(sender, times(1)).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+        verify(spool, times(2)).append(eq(URI_A), any(ByteBuffer.class));
+        assertEquals(2, uploader.getSpooledBatchCount());
+    }
+
+    @Test
+    public void testNewBatchesAreSentOnceReplaySucceeds() throws Exception {
+        UploadSpool spool = mock(UploadSpool.class);
+        when(spool.append(any(URI.class), any(ByteBuffer.class))).thenReturn(true);
+        when(spool.peek()).thenReturn(new SpooledUpload(URI_A, encode("[1]")), (SpooledUpload) null);
+        doThrow(new RequestFailedException("connection refused"))
+                .doAnswer(new Answer<Void>() {
+                    @Override
+                    public Void answer(InvocationOnMock invocation) throws Throwable {
+                        Object[] args = invocation.getArguments();
+                        sent.add(args[2] + " " + decode((ByteBuffer) args[1]));
+                        return null;
+                    }
+                }).when(sender).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.setSpool(spool, 5);
+        uploader.enqueue("foo", URI_A, "[1]");
+        uploader.flushAll();
+
+        uploader.replaySpool();
+        uploader.enqueue("foo", URI_A, "[2]");
+        uploader.flushAll();
+
+        assertSent("[1]", URI_A);
+        assertSent("[2]", URI_A);
+        verify(spool, times(1)).append(any(URI.class), any(ByteBuffer.class));
+    }
+
+    @Test
+    public void testReplayIsRateLimited() throws Exception {
+        UploadSpool spool = mock(UploadSpool.class);
+        when(spool.peek()).thenReturn(new SpooledUpload(URI_A, encode("[1]")));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.setSpool(spool, 3);
+
+        uploader.replaySpool();
+
+        assertSent("[1]", URI_A, 3);
+        verify(spool, times(3)).remove();
+    }
+
+    @Test
+    public void testReplayDropsBatchOnUnexpectedFailure() throws Exception {
+        UploadSpool spool = mock(UploadSpool.class);
+        when(spool.peek()).thenReturn(new SpooledUpload(URI_A, encode("[1]")),
+                new SpooledUpload(URI_B, encode("[2]")), null);
+        doThrow(new IllegalStateException()).when(sender).send(any(String.class), any(ByteBuffer.class), eq(URI_A));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.setSpool(spool, 3);
+
+        uploader.replaySpool();
+
+        assertSent("[2]", URI_B);
+        verify(spool, times(2)).remove();
+        assertEquals(1, uploader.getDroppedSpooledBatchCount());
+    }
+
+    @Test
+    public void testReplayStopsWhileGatewayIsUnavailable() throws Exception {
+        UploadSpool spool = mock(UploadSpool.class);
+        when(spool.peek()).thenReturn(new SpooledUpload(URI_A, encode("[1]")));
+        doThrow(new RequestFailedException(503, "unavailable")).when(sender).send(any(String.class), any(ByteBuffer.class), any(URI.class));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.setSpool(spool, 3);
+
+        uploader.replaySpool();
+
+        verify(sender, times(1)).send(any(String.class), any(ByteBuffer.class), eq(URI_A));
+        verify(spool, never()).remove();
+    }
+
+    @Test
+    public void testRecordsAreSerializedWithTheirAdapter() throws Exception {
+        TypeAdapter<List<Record>> adapter = new Gson().getAdapter(new TypeToken<List<Record>>(){});
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 10, 10);
+        uploader.enqueue("foo", URI_A, adapter, new Record("x", 1));
+        uploader.enqueue("foo", URI_A, "[{\"name\":\"y\",\"value\":2}]");
+        uploader.enqueue("foo", URI_A, adapter, new Record("z", 3));
+
+        uploader.flushAll();
+
+        assertSent("[{\"name\":\"x\",\"value\":1},{\"name\":\"y\",\"value\":2},{\"name\":\"z\",\"value\":3}]", URI_A);
+    }
+
+    @Test
+    public void testFailingAdapterDropsOnlyItsBatch() throws Exception {
+        @SuppressWarnings("unchecked")
+        TypeAdapter<List<Record>> adapter = mock(TypeAdapter.class);
+        doThrow(new IOException("broken")).when(adapter).write(any(com.google.gson.stream.JsonWriter.class), any(List.class));
+        BatchingUploader uploader = new BatchingUploader(sender, executor, 1000, 1, 10);
+        uploader.enqueue("foo", URI_A, adapter, new Record("x", 1));
+        uploader.enqueue("foo", URI_A, "[2]");
+
+        uploader.flushAll();
+
+        assertEquals(Arrays.asList(URI_A + " [2]"), sent);
+    }
+
+    @Test
+    public void testWriteBatch() throws Exception {
+        assertEquals("[1,2,{\"x\":[3]}]", writeBatch(" [1] ", "[ 2 ]", "[{\"x\":[3]}]"));
+        assertEquals("[{\"single\":true}]", writeBatch("{\"single\":true}"));
+        assertEquals("[1]", writeBatch("[]", " [ ] ", "[1]"));
+
+        StringWriter writer = new StringWriter();
+        assertFalse(BatchingUploader.writeBatch(Arrays.<QueuedPayload>asList(new JsonArrayPayload("[]")), writer));
+        assertFalse(BatchingUploader.writeBatch(Collections.<QueuedPayload>emptyList(), writer));
+    }
+
+    @Test
+    public void testWriteBatchWithNestedRecords() throws Exception {
+        TypeAdapter<List<List<Integer>>> adapter = new Gson().getAdapter(new TypeToken<List<List<Integer>>>(){});
+        StringWriter writer = new StringWriter();
+        List<QueuedPayload> batch = new ArrayList<>();
+        batch.add(new RecordPayload<>(adapter, Arrays.asList(1, 2)));
+        batch.add(new RecordPayload<>(adapter, Collections.<Integer>emptyList()));
+
+        assertTrue(BatchingUploader.writeBatch(batch, writer));
+        assertEquals("[[1,2],[]]", writer.toString());
+    }
+
+    private void assertSent(String json, URI uri) {
+        assertSent(json, uri, 1);
+    }
+
+    private void assertSent(String json, URI uri, int times) {
+        assertEquals(sent.toString(), times, Collections.frequency(sent, uri + " " + json));
+    }
+
+    private static String writeBatch(String... payloads) throws IOException {
+        List<QueuedPayload> batch = new ArrayList<>();
+        for (String payload : payloads) {
+            batch.add(new JsonArrayPayload(payload));
+        }
+        StringWriter writer = new StringWriter();
+        assertTrue(BatchingUploader.writeBatch(batch, writer));
+        return writer.toString();
+    }
+
+    private static ByteBuffer encode(String json) {
+        return ByteBuffer.wrap(json.getBytes(UTF_8));
+    }
+
+    private static String decode(ByteBuffer buffer) {
+        return UTF_8.decode(buffer.duplicate()).toString();
+    }
+
+    private static ArgumentMatcher<ByteBuffer> hasContent(final String json) {
+        return new ArgumentMatcher<ByteBuffer>() {
+            @Override
+            public boolean matches(Object argument) {
+                return argument instanceof ByteBuffer && json.equals(decode((ByteBuffer) argument));
+            }
+        };
+    }
+
+    private static class Record {
+        @SuppressWarnings("unused")
+        private final String name;
+        @SuppressWarnings("unused")
+        private final int value;
+
+        Record(String name, int value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+
+package com.redhat.thermostat.agent.internal.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ByteBufferOutputStreamTest {
+
+    @Test
+    public void testStreamGrowsToFitContent() {
+        ByteBufferPool pool = new ByteBufferPool(2, 1024 * 1024);
+        ByteBufferOutputStream out = new ByteBufferOutputStream(pool);
+        byte[] data = new byte[3 * ByteBufferPool.MIN_BUFFER_SIZE];
+        Arrays.fill(data, (byte) 'x');
+
+        out.write('[');
+        out.write(data, 0, data.length);
+        out.write(']');
+
+        ByteBuffer content = out.getContent();
+        assertEquals(data.length + 2, out.size());
+        assertEquals(data.length + 2, content.remaining());
+        assertEquals('[', content.get(0));
+        assertEquals('x', content.get(data.length));
+        assertEquals(']', content.get(data.length + 1));
+    }
+
+    @Test
+    public void testResetDiscardsContent() {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(new ByteBufferPool(2, 1024 * 1024));
+        out.write('a');
+        out.reset();
+        out.write('b');
+
+        ByteBuffer content = out.getContent();
+        assertEquals(1, content.remaining());
+        assertEquals('b', content.get());
+    }
+
+    @Test
+    public void testReleasedBufferIsReused() {
+        ByteBufferPool pool = new ByteBufferPool(2, 1024 * 1024);
+        ByteBuffer buffer = pool.acquire(100);
+        assertTrue(buffer.capacity() >= ByteBufferPool.MIN_BUFFER_SIZE);
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        ByteBuffer reused = pool.acquire(100);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+    }
+
+    @Test
+    public void testOversizedBufferIsNotPooled() {
+        ByteBufferPool pool = new ByteBufferPool(2, ByteBufferPool.MIN_BUFFER_SIZE);
+        ByteBuffer large = pool.acquire(2 * ByteBufferPool.MIN_BUFFER_SIZE);
+        pool.release(large);
+
+        assertTrue(large != pool.acquire(2 * ByteBufferPool.MIN_BUFFER_SIZE));
+    }
+}
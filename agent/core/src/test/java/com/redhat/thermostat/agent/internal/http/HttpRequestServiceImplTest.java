@@ -37,8 +37,10 @@
 package com.redhat.thermostat.agent.internal.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
@@ -50,6 +52,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
@@ -66,9 +69,11 @@ import org.mockito.ArgumentCaptor;
 import com.redhat.thermostat.agent.config.AgentStartupConfiguration;
 import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.agent.http.RequestFailedException;
+import com.redhat.thermostat.agent.http.TelemetryChannel;
 import com.redhat.thermostat.agent.internal.http.BasicHttpService.ConfigCreator;
 import com.redhat.thermostat.agent.internal.http.BasicHttpService.CredentialsCreator;
 import com.redhat.thermostat.agent.internal.http.BasicHttpService.HttpClientCreator;
+import com.redhat.thermostat.agent.internal.http.HttpRequestServiceImpl.UploaderCreator;
 import com.redhat.thermostat.agent.keycloak.KeycloakAccessToken;
 import com.redhat.thermostat.agent.keycloak.KeycloakAccessTokenService;
 import com.redhat.thermostat.shared.config.CommonPaths;
@@ -204,6 +209,85 @@ public class HttpRequestServiceImplTest {
         verify(httpRequest).send();
     }
     
+    @Test
+    public void testQueuedPostIsHandedToUploader() throws Exception {
+        AgentStartupConfiguration configuration = createBasicAuthConfig();
+        when(configCreator.create(any(CommonPaths.class))).thenReturn(configuration);
+        UploaderCreator uploaderCreator = mock(UploaderCreator.class);
+        BatchingUploader uploader = mock(BatchingUploader.class);
+        when(uploaderCreator.create(any(HttpRequestServiceImpl.class), eq(configuration), any(CommonPaths.class))).thenReturn(uploader);
+        HttpRequestServiceImpl service = new HttpRequestServiceImpl(clientCreator, configCreator, credsCreator, uploaderCreator);
+        service.activate();
+        verify(uploader).start();
+
+        service.queueHttpPost("foo", payload, GATEWAY_URI);
+        verify(uploader).enqueue("foo", GATEWAY_URI, payload);
+        verify(httpRequest, times(0)).send();
+
+        service.deactivate();
+        verify(uploader).stop();
+    }
+
+    @Test
+    public void testPublishOnTelemetryChannel() throws Exception {
+        HttpRequestServiceImpl service = new HttpRequestServiceImpl(clientCreator, configCreator, credsCreator);
+        TelemetryChannel.FailureListener listener = mock(TelemetryChannel.FailureListener.class);
+        ByteBuffer json = ByteBuffer.wrap("[{}]".getBytes("UTF-8"));
+        assertFalse(service.publishOnTelemetryChannel("foo", json, GET_URI, listener));
+
+        TelemetryChannel channel = mock(TelemetryChannel.class);
+        service.bindTelemetryChannel(channel);
+        assertFalse(service.publishOnTelemetryChannel("foo", json, GET_URI, listener));
+
+        when(channel.isConnected()).thenReturn(true);
+        assertTrue(service.publishOnTelemetryChannel("foo", json, GET_URI, listener));
+        verify(channel).publish("foo", "/test/?q=foo&l=3", json, listener);
+        verify(client, times(0)).newRequest(any(URI.class));
+
+        service.unbindTelemetryChannel(channel);
+        assertFalse(service.publishOnTelemetryChannel("foo", json, GET_URI, listener));
+    }
+
+    @Test
+    public void testTelemetryChannelFailureIsRequestFailure() throws Exception {
+        HttpRequestServiceImpl service = new HttpRequestServiceImpl(clientCreator, configCreator, credsCreator);
+        TelemetryChannel.FailureListener listener = mock(TelemetryChannel.FailureListener.class);
+        TelemetryChannel channel = mock(TelemetryChannel.class);
+        when(channel.isConnected()).thenReturn(true);
+        ByteBuffer json = ByteBuffer.wrap("[{}]".getBytes("UTF-8"));
+        doThrow(new IOException("send queue full")).when(channel).publish("foo", "/test/", json, listener);
+        service.bindTelemetryChannel(channel);
+
+        try {
+            service.publishOnTelemetryChannel("foo", json, GATEWAY_URI, listener);
+            fail("expected RequestFailedException");
+        } catch (RequestFailedException e) {
+            // The uploader spools batches failing like this
+            assertTrue(BatchingUploader.isGatewayUnavailable(e));
+        }
+    }
+
+    @Test
+    public void testBatchFailingOnTelemetryChannelIsQueuedAgain() throws Exception {
+        HttpRequestServiceImpl service = new HttpRequestServiceImpl(clientCreator, configCreator, credsCreator);
+        TelemetryChannel channel = mock(TelemetryChannel.class);
+        when(channel.isConnected()).thenReturn(true);
+        service.bindTelemetryChannel(channel);
+        AgentStartupConfiguration configuration = mock(AgentStartupConfiguration.class);
+        when(configuration.isUploadViaCommandChannel()).thenReturn(true);
+        BatchingUploader uploader = new UploaderCreator().create(service, configuration, mock(CommonPaths.class));
+
+        uploader.enqueue("foo", GATEWAY_URI, "[1]");
+        uploader.flushAll();
+        ArgumentCaptor<TelemetryChannel.FailureListener> listenerCaptor = ArgumentCaptor.forClass(TelemetryChannel.FailureListener.class);
+        verify(channel).publish(eq("foo"), eq("/test/"), any(ByteBuffer.class), listenerCaptor.capture());
+
+        listenerCaptor.getValue().publishFailed(ByteBuffer.wrap("[1]".getBytes("UTF-8")), new IOException("closed"));
+        uploader.flushAll();
+
+        verify(channel, times(2)).publish(eq("foo"), eq("/test/"), any(ByteBuffer.class), any(TelemetryChannel.FailureListener.class));
+    }
+
     private String getDecodedUserPass(String userPassEncoded) throws IOException {
         @SuppressWarnings("restriction")
         byte[] decodedBytes = new sun.misc.BASE64Decoder().decodeBuffer(userPassEncoded);
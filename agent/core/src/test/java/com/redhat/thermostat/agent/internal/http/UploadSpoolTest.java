@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.internal.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.agent.internal.http.UploadSpool.SpooledUpload;
+import com.redhat.thermostat.testutils.TestUtils;
+
+public class UploadSpoolTest {
+
+    private static final URI URI_A = URI.create("http://127.0.0.1:30000/a/");
+    private static final URI URI_B = URI.create("http://127.0.0.1:30000/b/");
+    private static final int SEGMENT_SIZE = 64;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private File spoolDir;
+
+    @Before
+    public void setup() throws IOException {
+        spoolDir = Files.createTempDirectory(UploadSpoolTest.class.getSimpleName()).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TestUtils.deleteRecursively(spoolDir);
+    }
+
+    @Test
+    public void testRecordsAreReturnedInOrder() throws IOException {
+        UploadSpool spool = new UploadSpool(spoolDir, 1024, SEGMENT_SIZE);
+        assertTrue(spool.isEmpty());
+        assertTrue(spool.append(URI_A, encode("[1]")));
+        assertTrue(spool.append(URI_B, encode("[2]")));
+
+        assertUpload(URI_A, "[1]", spool.peek());
+        // peeking does not consume
+        assertUpload(URI_A, "[1]", spool.peek());
+        spool.remove();
+        assertUpload(URI_B, "[2]", spool.peek());
+        spool.remove();
+        assertNull(spool.peek());
+        assertTrue(spool.isEmpty());
+    }
+
+    @Test
+    public void testRecordsSpanSegments() throws IOException {
+        UploadSpool spool = new UploadSpool(spoolDir, 1024, SEGMENT_SIZE);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spool.append(URI_A, encode("[" + i + "]")));
+        }
+        assertTrue(countSegments() > 1);
+        for (int i = 0; i < 10; i++) {
+            assertUpload(URI_A, "[" + i + "]", spool.peek());
+            spool.remove();
+        }
+        assertTrue(spool.isEmpty());
+        assertEquals(1, countSegments());
+    }
+
+    @Test
+    public void testRecordsSurviveReopening() throws IOException {
+        UploadSpool spool = new UploadSpool(spoolDir, 1024, SEGMENT_SIZE);
+        for (int i = 0; i < 5; i++) {
+            spool.append(URI_A, encode("[" + i + "]"));
+        }
+        spool.peek();
+        spool.remove();
+        spool.close();
+
+        UploadSpool reopened = new UploadSpool(spoolDir, 1024, SEGMENT_SIZE);
+        for (int i = 1; i < 5; i++) {
+            assertUpload(URI_A, "[" + i + "]", reopened.peek());
+            reopened.remove();
+        }
+        assertTrue(reopened.isEmpty());
+        reopened.append(URI_B, encode("[5]"));
+        assertUpload(URI_B, "[5]", reopened.peek());
+    }
+
+    @Test(expected = IOException.class)
+    public void testAppendAfterCloseFails() throws IOException {
+        UploadSpool spool = new UploadSpool(spoolDir, 1024, SEGMENT_SIZE);
+        spool.close();
+
+        spool.append(URI_A, encode("[1]"));
+    }
+
+    @Test
+    public void testOldestSegmentsAreEvicted() throws IOException {
+        UploadSpool spool = new UploadSpool(spoolDir, 2 * SEGMENT_SIZE, SEGMENT_SIZE);
+        for (int i = 0; i < 20; i++) {
+            spool.append(URI_A, encode("[" + i + "]"));
+        }
+        assertEquals(2, countSegments());
+        assertTrue(spool.getEvictedRecordCount() > 0);
+        SpooledUpload oldest = spool.peek();
+        assertFalse("[0]".equals(decode(oldest.getPayload())));
+        assertEquals("[" + spool.getEvictedRecordCount() + "]", decode(oldest.getPayload()));
+    }
+
+    @Test
+    public void testOversizedRecordIsRejected() throws IOException {
+        UploadSpool spool = new UploadSpool(spoolDir, 1024, SEGMENT_SIZE);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < SEGMENT_SIZE; i++) {
+            payload.append('x');
+        }
+        assertFalse(spool.append(URI_A, encode(payload.toString())));
+        assertTrue(spool.isEmpty());
+    }
+
+    private int countSegments() {
+        return spoolDir.list().length;
+    }
+
+    private static void assertUpload(URI uri, String payload, SpooledUpload upload) {
+        assertEquals(uri, upload.getUri());
+        assertEquals(payload, decode(upload.getPayload()));
+    }
+
+    private static ByteBuffer encode(String payload) {
+        return ByteBuffer.wrap(payload.getBytes(UTF_8));
+    }
+
+    private static String decode(ByteBuffer payload) {
+        return UTF_8.decode(payload).toString();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+
+package com.redhat.thermostat.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptivePollingScheduleTest {
+
+    @Test
+    public void testUnknownTargetIsDue() {
+        AdaptivePollingSchedule<Integer> schedule = new AdaptivePollingSchedule<>(1000, 8000);
+        assertTrue(schedule.isDue(1));
+        assertEquals(1, schedule.getTicksPerSample(1));
+    }
+
+    @Test
+    public void testUnchangedTargetBacksOffUpToMaxInterval() {
+        AdaptivePollingSchedule<Integer> schedule = new AdaptivePollingSchedule<>(1000, 8000);
+        int[] expected = { 2, 4, 8, 8 };
+        for (int ticksPerSample : expected) {
+            schedule.sampled(1, false);
+            assertEquals(ticksPerSample, schedule.getTicksPerSample(1));
+            for (int i = 1; i < ticksPerSample; i++) {
+                assertFalse(schedule.isDue(1));
+            }
+            assertTrue(schedule.isDue(1));
+        }
+    }
+
+    @Test
+    public void testChangeRestoresFullRate() {
+        AdaptivePollingSchedule<Integer> schedule = new AdaptivePollingSchedule<>(1000, 8000);
+        schedule.sampled(1, false);
+        schedule.sampled(1, false);
+        schedule.sampled(1, true);
+        assertEquals(1, schedule.getTicksPerSample(1));
+        assertTrue(schedule.isDue(1));
+    }
+
+    @Test
+    public void testTargetsAreIndependent() {
+        AdaptivePollingSchedule<Integer> schedule = new AdaptivePollingSchedule<>(1000, 8000);
+        schedule.sampled(1, false);
+        schedule.sampled(2, true);
+        assertFalse(schedule.isDue(1));
+        assertTrue(schedule.isDue(2));
+    }
+
+    @Test
+    public void testForgottenTargetIsDue() {
+        AdaptivePollingSchedule<Integer> schedule = new AdaptivePollingSchedule<>(1000, 8000);
+        schedule.sampled(1, false);
+        schedule.forget(1);
+        assertTrue(schedule.isDue(1));
+    }
+}
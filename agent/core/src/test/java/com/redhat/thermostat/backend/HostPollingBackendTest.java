@@ -49,6 +49,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -130,6 +131,40 @@ public class HostPollingBackendTest {
         verify(action, never()).run();
     }
 
+    @Test
+    public void verifyUnchangedAdaptiveActionIsPerformedLessOften() {
+        backend.setMaxAdaptivePollingInterval(4 * backend.getPollingInterval());
+        backend.preActivate();
+        AdaptiveHostPollingAction idle = mock(AdaptiveHostPollingAction.class);
+        when(idle.hasChanged()).thenReturn(false);
+        HostPollingAction plain = mock(HostPollingAction.class);
+        backend.registerAction(idle);
+        backend.registerAction(plain);
+
+        // runs on ticks 0, 2 and 6
+        for (int i = 0; i < 8; i++) {
+            backend.doScheduledActions();
+        }
+
+        verify(idle, times(3)).run();
+        verify(plain, times(8)).run();
+    }
+
+    @Test
+    public void verifyChangedAdaptiveActionIsPerformedEveryTime() {
+        backend.setMaxAdaptivePollingInterval(4 * backend.getPollingInterval());
+        backend.preActivate();
+        AdaptiveHostPollingAction busy = mock(AdaptiveHostPollingAction.class);
+        when(busy.hasChanged()).thenReturn(true);
+        backend.registerAction(busy);
+
+        for (int i = 0; i < 5; i++) {
+            backend.doScheduledActions();
+        }
+
+        verify(busy, times(5)).run();
+    }
+
     private static class BadHostPollingAction implements HostPollingAction {
 
         private int callCount;
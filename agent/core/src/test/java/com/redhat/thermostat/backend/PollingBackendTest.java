@@ -44,6 +44,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -97,6 +101,35 @@ public class PollingBackendTest {
         verify(mockActivate).activate();
     }
 
+    @Test
+    public void verifyActivateUsesConfiguredInterval() {
+        backend.setPollingInterval(5000);
+        backend.activate();
+        verify(mockExecutor).scheduleAtFixedRate(any(Runnable.class), eq( (long) 0),
+                                                 eq( (long) 5000), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void verifyNonPositiveIntervalIsRejected() {
+        backend.setPollingInterval(0);
+    }
+
+    @Test
+    public void verifyAdaptivePollingRequiresLongerMaxInterval() {
+        backend.setPollingInterval(2000);
+        backend.setMaxAdaptivePollingInterval(2000);
+        assertFalse(backend.isAdaptivePollingEnabled());
+        assertNull(backend.createAdaptivePollingSchedule());
+
+        backend.setMaxAdaptivePollingInterval(8000);
+        assertTrue(backend.isAdaptivePollingEnabled());
+        AdaptivePollingSchedule<String> schedule = backend.createAdaptivePollingSchedule();
+        schedule.sampled("idle", false);
+        schedule.sampled("idle", false);
+        schedule.sampled("idle", false);
+        assertEquals(4, schedule.getTicksPerSample("idle"));
+    }
+
     @Test
     public void verifyNoopActivateWhenAlreadyActive() {
         backend.setActive(true);
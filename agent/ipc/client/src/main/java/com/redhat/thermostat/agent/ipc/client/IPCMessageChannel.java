@@ -61,5 +61,16 @@ public interface IPCMessageChannel extends Channel {
      * @throws IOException if writing to the IPC server fails
      */
     void writeMessage(ByteBuffer message) throws IOException;
+    
+    /**
+     * Opens a stream to write a single message to the connected IPC server
+     * in chunks. Unlike {@link #writeMessage(ByteBuffer)}, the size of the
+     * message is not limited, since it never needs to be held in memory as a
+     * whole. IPC servers should receive such messages with
+     * {@code ThermostatIPCStreamCallbacks}.
+     * @return a stream for the message, which must be closed to complete it
+     * @throws IOException if the stream cannot be opened
+     */
+    IPCMessageStream openMessageStream() throws IOException;
 
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.ipc.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A single message of arbitrary size, written to an IPC server in chunks as
+ * its data becomes available. The message is complete once this stream is
+ * closed. No other messages may be written to the originating
+ * {@link IPCMessageChannel} while this stream is open.
+ */
+public interface IPCMessageStream extends WritableByteChannel {
+    
+    /**
+     * Appends data to this message. This method blocks until all remaining
+     * bytes of the buffer have been buffered or written.
+     * @param src - buffer containing the data to append
+     * @return the number of bytes appended, which is all remaining bytes
+     * @throws IOException if writing to the IPC server fails
+     */
+    @Override
+    int write(ByteBuffer src) throws IOException;
+    
+    /**
+     * Writes the remaining data and marks the message as complete. Closing
+     * a stream no data was written to sends nothing.
+     * @throws IOException if writing to the IPC server fails
+     */
+    @Override
+    void close() throws IOException;
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.ipc.common.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BufferPoolTest {
+    
+    @Test
+    public void testAcquireAllocatesWhenEmpty() {
+        BufferPool pool = new BufferPool(16, 2, true);
+        ByteBuffer buf = pool.acquire();
+        assertEquals(16, buf.capacity());
+        assertEquals(16, buf.remaining());
+        assertTrue(buf.isDirect());
+        assertFalse(new BufferPool(16, 2, false).acquire().isDirect());
+    }
+    
+    @Test
+    public void testReleasedBufferIsReusedCleared() {
+        BufferPool pool = new BufferPool(16, 2, false);
+        ByteBuffer buf = pool.acquire();
+        buf.putInt(5);
+        buf.flip();
+        pool.release(buf);
+        assertEquals(1, pool.getPooledCount());
+        
+        ByteBuffer reused = pool.acquire();
+        assertSame(buf, reused);
+        assertEquals(0, reused.position());
+        assertEquals(16, reused.limit());
+        assertEquals(0, pool.getPooledCount());
+    }
+    
+    @Test
+    public void testPoolIsBounded() {
+        BufferPool pool = new BufferPool(16, 1, false);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.getPooledCount());
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire());
+    }
+    
+    @Test
+    public void testForeignBuffersAreNotPooled() {
+        BufferPool pool = new BufferPool(16, 2, false);
+        pool.release(ByteBuffer.allocate(8));
+        pool.release(ByteBuffer.allocateDirect(16));
+        pool.release(null);
+        assertEquals(0, pool.getPooledCount());
+    }
+
+}
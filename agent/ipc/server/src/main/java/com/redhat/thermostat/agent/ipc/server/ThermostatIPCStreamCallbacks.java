@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.ipc.server;
+
+/**
+ * Callbacks for IPC servers that receive messages too large to be held in
+ * memory as a whole, such as those written by clients through
+ * {@code IPCMessageChannel.openMessageStream()}.
+ * <p>
+ * An IPC server created with an instance of this interface does not join the
+ * parts of a multi-part message. Instead, each part is passed to
+ * {@link #messagePartReceived(IPCMessage, boolean)} as soon as it has been
+ * read, and {@link #messageReceived(IPCMessage)} is not called. Parts from
+ * the same client are delivered one at a time, in the order they were sent.
+ * Messages of a single part are delivered as one part, which is also the
+ * last part.
+ * <p>
+ * Transports that do not support streaming, such as Windows named pipes,
+ * join the parts and call {@link #messageReceived(IPCMessage)} as usual.
+ */
+public interface ThermostatIPCStreamCallbacks extends ThermostatIPCCallbacks {
+    
+    /**
+     * Method to be called when an IPC server created with this object receives
+     * a part of a message from a client.
+     * <p>
+     * The buffer returned by {@link IPCMessage#get()} is reused by the IPC
+     * server once this method returns. Its contents must be consumed or
+     * copied before then.
+     * @param part - a part of a message received by the IPC server, will not be null
+     * @param lastPart - whether this is the final part of the message
+     */
+    void messagePartReceived(IPCMessage part, boolean lastPart);
+
+}
@@ -49,9 +49,22 @@ public class AsyncMessageReader extends MessageReader {
         this(channel, listener, new MessageLimits());
     }
     
+    /**
+     * @param streaming - if true, each message part is passed to
+     *                  {@link MessageListener#messagePartRead(ByteBuffer, boolean)}
+     *                  instead of joining the parts of a message
+     */
+    public AsyncMessageReader(ThermostatSocketChannelImpl channel, MessageListener listener, boolean streaming) {
+        this(channel, listener, new MessageLimits(), streaming);
+    }
+    
     public AsyncMessageReader(ThermostatSocketChannelImpl channel, MessageListener listener, MessageLimits limits) {
-        super(limits);
-        this.readBuffer = ByteBuffer.allocate(limits.getBufferSize());
+        this(channel, listener, limits, false);
+    }
+    
+    AsyncMessageReader(ThermostatSocketChannelImpl channel, MessageListener listener, MessageLimits limits, boolean streaming) {
+        super(limits, streaming);
+        this.readBuffer = ByteBuffer.allocateDirect(limits.getBufferSize());
         this.channel = channel;
         this.listener = listener;
     }
@@ -73,5 +86,29 @@ public class AsyncMessageReader extends MessageReader {
     protected void readFullMessage(ByteBuffer fullMessage) {
         listener.messageRead(fullMessage);
     }
+    
+    @Override
+    protected void readMessagePart(ByteBuffer part, boolean lastPart) {
+        listener.messagePartRead(part, lastPart);
+    }
+    
+    /**
+     * Returns a part passed to {@link MessageListener#messagePartRead(ByteBuffer, boolean)}
+     * for reuse. The part must not be accessed afterwards.
+     */
+    @Override
+    public void releasePart(ByteBuffer part) {
+        super.releasePart(part);
+    }
+    
+    /**
+     * @return whether reading should pause until parts passed to
+     *         {@link MessageListener#messagePartRead(ByteBuffer, boolean)}
+     *         have been released
+     */
+    @Override
+    public boolean isPartLimitReached() {
+        return super.isPartLimitReached();
+    }
 
 }
@@ -73,12 +73,20 @@ class MessageHeader {
     
     byte[] toByteArray() {
         ByteBuffer buf = ByteBuffer.allocate(getHeaderSize());
+        writeTo(buf);
+        return buf.array();
+    }
+    
+    /*
+     * Writes this header at the buffer's position, which must have at least
+     * getHeaderSize() bytes remaining. Lets writers reuse header buffers.
+     */
+    void writeTo(ByteBuffer buf) {
         buf.put(MAGIC);
         buf.putInt(protocolVersion);
         buf.putInt(headerSize);
         buf.putInt(messageSize);
         putBoolean(buf, moreData);
-        return buf.array();
     }
     
     static MessageHeader fromByteBuffer(ByteBuffer buf) throws IOException {
@@ -43,6 +43,9 @@ public interface MessageListener {
     
     void messageRead(ByteBuffer buf);
     
+    // Only called by readers in streaming mode, instead of messageRead
+    void messagePartRead(ByteBuffer part, boolean lastPart);
+    
     void writeMessage(ByteBuffer buf) throws IOException;
 
 }
@@ -52,8 +52,10 @@ public class TcpSocketIPCProperties extends IPCProperties {
     
     private static final String PROP_TCP_PREFIX = "";
     private static final String PROP_TCP_SUFFIX = ".tcpsocket.port";
+    static final String PROP_TCP_SOCKET_SELECTOR_THREADS = "tcpsocket.selector.threads";
 
     private final Properties props;
+    private final int selectorThreads;
     
     TcpSocketIPCProperties(Properties props, File propFile) throws IOException {
         this(props, propFile, new PathUtils());
@@ -62,6 +64,17 @@ public class TcpSocketIPCProperties extends IPCProperties {
     TcpSocketIPCProperties(Properties props, File propFile, PathUtils pathUtils) throws IOException {
         super(IPCType.TCP_SOCKET, propFile);
         this.props = props;
+        this.selectorThreads = parseSelectorThreads(props.getProperty(PROP_TCP_SOCKET_SELECTOR_THREADS));
+    }
+    
+    /**
+     * @return the number of threads selecting on client connections. If
+     * greater than one, clients are spread across this many selectors,
+     * and a separate thread accepts connections. Defaults to one, where a
+     * single thread both accepts and handles clients.
+     */
+    public int getSelectorThreads() {
+        return selectorThreads;
     }
     
     public SocketAddress getSocketAddr(final String serverName) throws IOException {
@@ -87,6 +100,23 @@ public class TcpSocketIPCProperties extends IPCProperties {
                 : PROP_TCP_PREFIX + serverName + PROP_TCP_SUFFIX;
     }
     
+    private int parseSelectorThreads(String value) throws IOException {
+        if (value == null) {
+            return 1;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid value '" + value + "' specified for property '" 
+                    + PROP_TCP_SOCKET_SELECTOR_THREADS + "'.");
+        }
+        if (result < 1) {
+            throw new IOException("Property '" + PROP_TCP_SOCKET_SELECTOR_THREADS + "' must be at least 1.");
+        }
+        return result;
+    }
+    
     // Helper class for testing purposes
     static class PathUtils {
         String getSystemProperty(String name) {
@@ -40,6 +40,7 @@ import static com.redhat.thermostat.agent.ipc.tcpsocket.common.internal.ChannelT
 import static com.redhat.thermostat.agent.ipc.tcpsocket.common.internal.ChannelTestUtils.joinByteArrays;
 import static com.redhat.thermostat.agent.ipc.tcpsocket.common.internal.ChannelTestUtils.splitByteArray;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -317,6 +318,60 @@ public class MessageReaderTest {
         }
     }
 
+    @Test
+    public void testStreamingPartsPassedOnIndividually() throws Exception {
+        final String message1 = "hello";
+        final String message2 = "world!";
+        byte[] message1Bytes = message1.getBytes(Charset.forName("UTF-8"));
+        byte[] message2Bytes = message2.getBytes(Charset.forName("UTF-8"));
+        byte[] header1Bytes = createHeader(message1Bytes.length, true);
+        byte[] header2Bytes = createHeader(message2Bytes.length, false);
+        byte[] data = joinByteArrays(header1Bytes, message1Bytes, header2Bytes, message2Bytes);
+        
+        // Combined size exceeds the maximum message size, which should not apply when streaming
+        when(limits.getMaxMessagePartSize()).thenReturn(16);
+        when(limits.getMaxMessageSize()).thenReturn(8);
+        when(limits.getMaxPooledBuffers()).thenReturn(2);
+        StreamingTestMessageReader streamReader = new StreamingTestMessageReader(limits);
+        streamReader.readData(data);
+        
+        assertEquals(ReadState.NEW_MESSAGE, streamReader.getState());
+        assertEquals(2, streamReader.getParts().size());
+        assertEquals(message1, streamReader.getParts().get(0));
+        assertEquals(message2, streamReader.getParts().get(1));
+        assertEquals(2, streamReader.getLastParts().size());
+        assertEquals(false, streamReader.getLastParts().get(0));
+        assertEquals(true, streamReader.getLastParts().get(1));
+    }
+    
+    @Test
+    public void testStreamingPartLimit() throws Exception {
+        byte[] message = "hello".getBytes(Charset.forName("UTF-8"));
+        byte[] data = joinByteArrays(createHeader(message.length, true), message,
+                createHeader(message.length, false), message);
+        when(limits.getMaxMessagePartSize()).thenReturn(16);
+        when(limits.getMaxPooledBuffers()).thenReturn(2);
+        StreamingTestMessageReader streamReader = new StreamingTestMessageReader(limits, false);
+        assertFalse(streamReader.isPartLimitReached());
+        
+        // Reached once as many parts are outstanding as the pool keeps
+        streamReader.readData(data);
+        assertTrue(streamReader.isPartLimitReached());
+        
+        streamReader.releasePart(streamReader.getHeldParts().get(0));
+        assertFalse(streamReader.isPartLimitReached());
+    }
+    
+    @Test
+    public void testNotStreamingPartLimit() throws Exception {
+        assertFalse(reader.isPartLimitReached());
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testNotStreamingReadMessagePart() throws Exception {
+        reader.readMessagePart(ByteBuffer.allocate(0), true);
+    }
+    
     private byte[] createMinHeader() {
         MessageHeader header = new MessageHeader();
         return header.toByteArray();
@@ -351,4 +406,66 @@ public class MessageReaderTest {
         }
         
     }
+    
+    static class StreamingTestMessageReader extends MessageReader {
+        
+        private static final int BUFFER_SIZE = 1024;
+        private final ByteBuffer readBuffer;
+        private final List<String> parts;
+        private final List<Boolean> lastParts;
+        private final boolean releaseParts;
+        private final List<ByteBuffer> heldParts;
+        
+        StreamingTestMessageReader(MessageLimits limits) {
+            this(limits, true);
+        }
+        
+        StreamingTestMessageReader(MessageLimits limits, boolean releaseParts) {
+            super(limits, true);
+            this.readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.parts = new ArrayList<String>();
+            this.lastParts = new ArrayList<Boolean>();
+            this.releaseParts = releaseParts;
+            this.heldParts = new ArrayList<ByteBuffer>();
+        }
+
+        @Override
+        protected void readFullMessage(ByteBuffer fullMessage) {
+            fail("Full message should not be read when streaming");
+        }
+        
+        @Override
+        protected void readMessagePart(ByteBuffer part, boolean lastPart) {
+            byte[] bytes = new byte[part.remaining()];
+            part.get(bytes);
+            parts.add(new String(bytes, Charset.forName("UTF-8")));
+            lastParts.add(lastPart);
+            // Part buffers are pooled, and so must be released once read
+            if (releaseParts) {
+                releasePart(part);
+            } else {
+                heldParts.add(part);
+            }
+        }
+        
+        void readData(byte[] buf) throws IOException {
+            readBuffer.clear();
+            readBuffer.put(buf);
+            readBuffer.flip();
+            processData(readBuffer);
+        }
+        
+        List<String> getParts() {
+            return parts;
+        }
+        
+        List<Boolean> getLastParts() {
+            return lastParts;
+        }
+        
+        List<ByteBuffer> getHeldParts() {
+            return heldParts;
+        }
+        
+    }
 }
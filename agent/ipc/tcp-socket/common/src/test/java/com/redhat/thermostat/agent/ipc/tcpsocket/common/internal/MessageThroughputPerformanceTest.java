@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.ipc.tcpsocket.common.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.PerformanceTest;
+
+/**
+ * Measures the throughput of 128 KiB messages sent over a local TCP
+ * connection, comparing the previous 2 KiB message parts against the
+ * current limits, and whole messages against streamed ones. Run with
+ * {@code mvn test -Pperf-tests}.
+ */
+@Category(PerformanceTest.class)
+public class MessageThroughputPerformanceTest {
+    
+    private static final int MESSAGE_SIZE = 0x20000; // 128 KiB
+    private static final int CHUNK_SIZE = 0x2000; // 8 KiB
+    private static final int WARMUP_MESSAGES = 2000;
+    private static final int MESSAGES = 10000;
+    
+    private ServerSocketChannel server;
+    private ThermostatSocketChannelImpl clientChannel;
+    private ThermostatSocketChannelImpl serverChannel;
+    private ExecutorService readerExec;
+    
+    @Before
+    public void setUp() throws Exception {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        clientChannel = ThermostatSocketChannelImpl.open("client", server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+        serverChannel = new ThermostatSocketChannelImpl("server", accepted);
+        readerExec = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        readerExec.shutdownNow();
+        clientChannel.close();
+        serverChannel.close();
+        server.close();
+    }
+    
+    @Test
+    public void compareThroughput() throws Exception {
+        MessageLimits legacyLimits = new MessageLimits(0x800, MESSAGE_SIZE, 0x80, 0x800);
+        MessageLimits limits = new MessageLimits();
+        
+        // Warm up all paths before measuring
+        run(legacyLimits, false, WARMUP_MESSAGES);
+        run(limits, false, WARMUP_MESSAGES);
+        run(limits, true, WARMUP_MESSAGES);
+        
+        Result legacy = run(legacyLimits, false, MESSAGES);
+        Result whole = run(limits, false, MESSAGES);
+        Result streamed = run(limits, true, MESSAGES);
+        
+        System.out.println("128 KiB messages over TCP: 2 KiB parts " + legacy
+                + "; 64 KiB parts " + whole + "; streamed " + streamed);
+        if (whole.allocatedPerMessage >= 0) {
+            // Streamed parts are read into pooled buffers
+            assertTrue(streamed.allocatedPerMessage < whole.allocatedPerMessage);
+        }
+    }
+    
+    private Result run(MessageLimits limits, final boolean streaming, final int numMessages) throws Exception {
+        final CountingListener listener = new CountingListener();
+        final AsyncMessageReader reader = new AsyncMessageReader(serverChannel, listener, limits, streaming);
+        listener.reader = reader;
+        Future<Long> readResult = readerExec.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                long allocatedBefore = allocatedBytes();
+                while (listener.messages < numMessages) {
+                    reader.readData();
+                }
+                long allocatedAfter = allocatedBytes();
+                return allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / numMessages;
+            }
+        });
+        
+        SyncMessageWriter writer = new SyncMessageWriter(clientChannel, limits);
+        ByteBuffer message = ByteBuffer.allocate(MESSAGE_SIZE);
+        long start = System.nanoTime();
+        for (int i = 0; i < numMessages; i++) {
+            message.clear();
+            if (streaming) {
+                WritableByteChannel stream = writer.openStream();
+                while (message.position() < MESSAGE_SIZE) {
+                    message.limit(Math.min(message.position() + CHUNK_SIZE, MESSAGE_SIZE));
+                    stream.write(message);
+                }
+                stream.close();
+            } else {
+                writer.writeData(message);
+            }
+        }
+        long bytesPerMessage = readResult.get();
+        long elapsed = System.nanoTime() - start;
+        
+        assertEquals(numMessages, listener.messages);
+        assertEquals((long) numMessages * MESSAGE_SIZE, listener.bytes);
+        return new Result((long) numMessages * MESSAGE_SIZE * 1000L / elapsed, bytesPerMessage);
+    }
+    
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+    
+    private static class Result {
+        private final long megabytesPerSecond;
+        private final long allocatedPerMessage;
+        
+        Result(long megabytesPerSecond, long allocatedPerMessage) {
+            this.megabytesPerSecond = megabytesPerSecond;
+            this.allocatedPerMessage = allocatedPerMessage;
+        }
+        
+        @Override
+        public String toString() {
+            return megabytesPerSecond + " MB/s, " + allocatedPerMessage + " B/msg read";
+        }
+    }
+    
+    // Only accessed by the reader thread
+    private static class CountingListener implements MessageListener {
+        private int messages;
+        private long bytes;
+        private AsyncMessageReader reader;
+
+        @Override
+        public void messageRead(ByteBuffer buf) {
+            bytes += buf.remaining();
+            messages++;
+        }
+
+        @Override
+        public void messagePartRead(ByteBuffer part, boolean lastPart) {
+            bytes += part.remaining();
+            if (lastPart) {
+                messages++;
+            }
+            // Return the pooled buffer, as a consumer would
+            reader.releasePart(part);
+        }
+
+        @Override
+        public void writeMessage(ByteBuffer buf) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
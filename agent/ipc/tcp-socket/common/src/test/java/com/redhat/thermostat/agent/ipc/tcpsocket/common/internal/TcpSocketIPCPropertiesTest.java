@@ -93,4 +93,29 @@ public class TcpSocketIPCPropertiesTest {
       new TcpSocketIPCProperties(jProps, propFile, pathUtils).getSocketAddr(UNKNOWN_SERVER_NAME);
     }
     
+    @Test
+    public void testDefaultSelectorThreads() throws Exception {
+        TcpSocketIPCProperties props = new TcpSocketIPCProperties(jProps, propFile, pathUtils);
+        assertEquals(1, props.getSelectorThreads());
+    }
+    
+    @Test
+    public void testSelectorThreads() throws Exception {
+        when(jProps.getProperty(TcpSocketIPCProperties.PROP_TCP_SOCKET_SELECTOR_THREADS)).thenReturn("4");
+        TcpSocketIPCProperties props = new TcpSocketIPCProperties(jProps, propFile, pathUtils);
+        assertEquals(4, props.getSelectorThreads());
+    }
+    
+    @Test(expected=IOException.class)
+    public void testSelectorThreadsInvalid() throws Exception {
+        when(jProps.getProperty(TcpSocketIPCProperties.PROP_TCP_SOCKET_SELECTOR_THREADS)).thenReturn("many");
+        new TcpSocketIPCProperties(jProps, propFile, pathUtils);
+    }
+    
+    @Test(expected=IOException.class)
+    public void testSelectorThreadsZero() throws Exception {
+        when(jProps.getProperty(TcpSocketIPCProperties.PROP_TCP_SOCKET_SELECTOR_THREADS)).thenReturn("0");
+        new TcpSocketIPCProperties(jProps, propFile, pathUtils);
+    }
+    
 }
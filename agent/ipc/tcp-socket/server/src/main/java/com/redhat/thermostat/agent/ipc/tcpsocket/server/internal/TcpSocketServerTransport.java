@@ -71,6 +71,9 @@ class TcpSocketServerTransport implements ServerTransport {
     private TcpSocketIPCProperties props;
     private AcceptThread acceptThread;
     private Selector selector;
+    // Used to handle clients, if more than one selector thread is configured
+    private ClientSelectorThread[] clientThreads;
+    private Selector[] clientSelectors;
     
     TcpSocketServerTransport(SelectorProvider selectorProvider) {
         this(selectorProvider, Executors.newFixedThreadPool(determineDefaultThreadPoolSize(), new CountingThreadFactory()), 
@@ -84,6 +87,8 @@ class TcpSocketServerTransport implements ServerTransport {
         this.execService = execService;
         this.channelUtils = channelCreator;
         this.threadCreator = threadCreator;
+        this.clientThreads = new ClientSelectorThread[0];
+        this.clientSelectors = new Selector[0];
     }
     
     @Override
@@ -97,7 +102,20 @@ class TcpSocketServerTransport implements ServerTransport {
         
         // Open the Selector and start accepting connections
         this.selector = selectorProvider.openSelector();
-        this.acceptThread = threadCreator.createAcceptThread(selector, execService);
+        int numSelectorThreads = this.props.getSelectorThreads();
+        if (numSelectorThreads > 1) {
+            // Spread clients across their own selector threads, leaving the accept thread to accept connections
+            this.clientThreads = new ClientSelectorThread[numSelectorThreads];
+            this.clientSelectors = new Selector[numSelectorThreads];
+            for (int i = 0; i < numSelectorThreads; i++) {
+                clientSelectors[i] = selectorProvider.openSelector();
+                clientThreads[i] = threadCreator.createClientSelectorThread(clientSelectors[i], execService);
+                clientThreads[i].start();
+            }
+            this.acceptThread = threadCreator.createAcceptThread(selector, execService, clientThreads);
+        } else {
+            this.acceptThread = threadCreator.createAcceptThread(selector, execService);
+        }
         //acceptThread.start();
         logger.info("Agent IPC service started");
     }
@@ -164,6 +182,11 @@ class TcpSocketServerTransport implements ServerTransport {
 
     @Override
     public void shutdown() throws IOException {
+        // Stop client selector threads before the accept thread, which shuts down the executor
+        for (int i = 0; i < clientThreads.length; i++) {
+            clientThreads[i].shutdown();
+            channelUtils.closeSelector(clientSelectors[i]);
+        }
         // Stop accepting connections and close selector afterward
         acceptThread.shutdown();
         channelUtils.closeSelector(selector);
@@ -207,6 +230,15 @@ class TcpSocketServerTransport implements ServerTransport {
         AcceptThread createAcceptThread(Selector selector, ExecutorService execService) {
             return new AcceptThread(selector, execService);
         }
+        
+        AcceptThread createAcceptThread(Selector selector, ExecutorService execService, 
+                ClientSelectorThread[] clientThreads) {
+            return new AcceptThread(selector, execService, clientThreads);
+        }
+        
+        ClientSelectorThread createClientSelectorThread(Selector selector, ExecutorService execService) {
+            return new ClientSelectorThread(selector, execService);
+        }
     }
     
     /* For testing purposes */
@@ -105,14 +105,33 @@ class ThermostatServerSocketChannelImpl implements Channel {
     }
     
     AcceptedSocketChannelImpl accept() throws IOException {
+        SocketChannel clientImpl = acceptChannel();
+        return registerClient(clientImpl, acceptThread);
+    }
+    
+    /*
+     * Accepts a client connection without registering it for selection,
+     * so that it may be registered with a different selector thread.
+     */
+    SocketChannel acceptChannel() throws IOException {
         if (!isOpen()) {
             throw new IOException("Socket is closed");
         }
         SocketChannel clientImpl = impl.accept();
         // Set non-blocking
         channelHelper.configureBlocking(clientImpl, false);
-        // Register for selection
-        SelectionKey key = channelHelper.register(acceptThread, clientImpl, SelectionKey.OP_READ);
+        return clientImpl;
+    }
+    
+    AcceptedSocketChannelImpl registerClient(SocketChannel clientImpl, SelectorThread selectorThread) throws IOException {
+        SelectionKey key;
+        try {
+            // Register for selection
+            key = channelHelper.register(selectorThread, clientImpl, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channelHelper.close(clientImpl);
+            throw e;
+        }
         return new AcceptedSocketChannelImpl(name, clientImpl, key);
     }
 
@@ -145,8 +164,8 @@ class ThermostatServerSocketChannelImpl implements Channel {
             channel.socket().bind(addr);
         }
 
-        SelectionKey register(AcceptThread acceptThread, SelectableChannel channel, int ops) throws IOException {
-            return acceptThread.register(channel, ops);
+        SelectionKey register(SelectorThread selectorThread, SelectableChannel channel, int ops) throws IOException {
+            return selectorThread.register(channel, ops);
         }
         
         SelectableChannel configureBlocking(AbstractSelectableChannel channel, boolean block) throws IOException {
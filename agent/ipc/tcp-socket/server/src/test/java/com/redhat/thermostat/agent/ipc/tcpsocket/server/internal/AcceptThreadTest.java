@@ -47,6 +47,7 @@ import static org.mockito.Mockito.when;
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -57,7 +58,7 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
 import com.redhat.thermostat.agent.ipc.server.ThermostatIPCCallbacks;
-import com.redhat.thermostat.agent.ipc.tcpsocket.server.internal.AcceptThread.ClientHandlerCreator;
+import com.redhat.thermostat.agent.ipc.tcpsocket.server.internal.SelectorThread.ClientHandlerCreator;
 
 public class AcceptThreadTest {
     
@@ -116,6 +117,46 @@ public class AcceptThreadTest {
         verify(handler, never()).handleWrite();
     }
 
+    @Test
+    public void testSelectAcceptWithClientThreads() throws IOException {
+        ClientSelectorThread clientThread1 = mock(ClientSelectorThread.class);
+        ClientSelectorThread clientThread2 = mock(ClientSelectorThread.class);
+        SocketChannel clientImpl = mock(SocketChannel.class);
+        when(serverSock.acceptChannel()).thenReturn(clientImpl);
+        thread = new AcceptThread(selector, execService, 
+                new ClientSelectorThread[] { clientThread1, clientThread2 }, handlerCreator);
+        
+        // Accept three clients, one per selection
+        when(selector.selectedKeys()).thenAnswer(new Answer<Set<SelectionKey>>() {
+            @Override
+            public Set<SelectionKey> answer(InvocationOnMock invocation) throws Throwable {
+                Set<SelectionKey> keys = new HashSet<>();
+                keys.add(acceptKey);
+                return keys;
+            }
+        });
+        selectAndShutdown(thread, 3, new int[] { 1, 1, 1 });
+        thread.run();
+        
+        // Clients should be handed to each client thread in turn
+        verify(serverSock, times(3)).acceptChannel();
+        verify(clientThread1, times(2)).addClient(serverSock, clientImpl);
+        verify(clientThread2).addClient(serverSock, clientImpl);
+        
+        // Clients should not be handled by the accept thread
+        verify(serverSock, never()).accept();
+        verify(handlerCreator, never()).createHandler(clientSock, execService, callbacks);
+    }
+    
+    @Test
+    public void testShutdownStopsExecutor() throws IOException {
+        mockSelectionKeys();
+        selectAndShutdown(thread, 0);
+        thread.run();
+        
+        verify(execService).shutdown();
+    }
+    
     @Test
     public void testSelectOneAcceptInvalid() throws IOException {
         when(acceptKey.isValid()).thenReturn(false);
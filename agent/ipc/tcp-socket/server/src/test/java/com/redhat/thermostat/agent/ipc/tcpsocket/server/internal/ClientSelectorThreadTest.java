@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.ipc.tcpsocket.server.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.redhat.thermostat.agent.ipc.server.ThermostatIPCCallbacks;
+import com.redhat.thermostat.agent.ipc.tcpsocket.server.internal.SelectorThread.ClientHandlerCreator;
+
+public class ClientSelectorThreadTest {
+    
+    private Selector selector;
+    private ExecutorService execService;
+    private ClientHandlerCreator handlerCreator;
+    private ThermostatServerSocketChannelImpl serverSock;
+    private SocketChannel clientImpl;
+    private AcceptedSocketChannelImpl clientSock;
+    private ThermostatIPCCallbacks callbacks;
+    private ClientHandler handler;
+    private SelectionKey clientKey;
+    private ClientSelectorThread thread;
+
+    @Before
+    public void setUp() throws IOException {
+        selector = mock(Selector.class);
+        when(selector.selectedKeys()).thenReturn(new HashSet<SelectionKey>());
+        
+        serverSock = mock(ThermostatServerSocketChannelImpl.class);
+        clientImpl = mock(SocketChannel.class);
+        clientSock = mock(AcceptedSocketChannelImpl.class);
+        callbacks = mock(ThermostatIPCCallbacks.class);
+        when(serverSock.getCallbacks()).thenReturn(callbacks);
+        
+        clientKey = mock(SelectionKey.class);
+        when(clientKey.readyOps()).thenReturn(SelectionKey.OP_READ);
+        when(clientKey.isValid()).thenReturn(true);
+        when(clientSock.getSelectionKey()).thenReturn(clientKey);
+        
+        execService = mock(ExecutorService.class);
+        handlerCreator = mock(ClientHandlerCreator.class);
+        handler = mock(ClientHandler.class);
+        when(handlerCreator.createHandler(clientSock, execService, callbacks)).thenReturn(handler);
+        thread = new ClientSelectorThread(selector, execService, handlerCreator);
+        when(serverSock.registerClient(clientImpl, thread)).thenReturn(clientSock);
+    }
+    
+    @Test
+    public void testAddClient() throws IOException {
+        thread.addClient(serverSock, clientImpl);
+        // Registration must wait for the selecting thread
+        verify(selector).wakeup();
+        verify(serverSock, never()).registerClient(clientImpl, thread);
+        
+        selectAndShutdown(0);
+        thread.run();
+        
+        verify(serverSock).registerClient(clientImpl, thread);
+        verify(handlerCreator).createHandler(clientSock, execService, callbacks);
+        assertEquals(handler, clientKey.attachment());
+    }
+    
+    @Test
+    public void testAddClientRegisterFails() throws IOException {
+        when(serverSock.registerClient(clientImpl, thread)).thenThrow(new IOException("TEST"));
+        thread.addClient(serverSock, clientImpl);
+        selectAndShutdown(0);
+        thread.run();
+        
+        verify(handlerCreator, never()).createHandler(clientSock, execService, callbacks);
+    }
+    
+    @Test
+    public void testSelectRead() throws IOException {
+        clientKey.attach(handler);
+        Set<SelectionKey> keys = new HashSet<>();
+        keys.add(clientKey);
+        when(selector.selectedKeys()).thenReturn(keys);
+        selectAndShutdown(1);
+        thread.run();
+        
+        verify(handler).handleRead();
+        assertEquals(0, keys.size());
+    }
+    
+    @Test
+    public void testShutdownLeavesExecutor() throws IOException {
+        selectAndShutdown(0);
+        thread.run();
+        
+        // Shared with other selector threads
+        verify(execService, never()).shutdown();
+    }
+    
+    private void selectAndShutdown(final int returnValue) throws IOException {
+        when(selector.select()).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Throwable {
+                // End select loop after this iteration
+                thread.shutdown();
+                return returnValue;
+            }
+        });
+    }
+
+}
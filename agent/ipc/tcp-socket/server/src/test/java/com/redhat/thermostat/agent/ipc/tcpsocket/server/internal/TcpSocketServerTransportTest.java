@@ -43,8 +43,10 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -59,6 +61,7 @@ import java.util.concurrent.ExecutorService;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 import com.redhat.thermostat.agent.ipc.common.internal.IPCProperties;
 import com.redhat.thermostat.agent.ipc.common.internal.IPCType;
@@ -154,6 +157,37 @@ public class TcpSocketServerTransportTest {
         verify(channelUtils).closeSelector(selector);
     }
     
+    @Test
+    public void testStartSelectorThreads() throws Exception {
+        AbstractSelector clientSelector1 = mock(AbstractSelector.class);
+        AbstractSelector clientSelector2 = mock(AbstractSelector.class);
+        when(provider.openSelector()).thenReturn(selector, clientSelector1, clientSelector2);
+        when(props.getSelectorThreads()).thenReturn(2);
+        ClientSelectorThread clientThread1 = mock(ClientSelectorThread.class);
+        ClientSelectorThread clientThread2 = mock(ClientSelectorThread.class);
+        when(threadCreator.createClientSelectorThread(clientSelector1, execService)).thenReturn(clientThread1);
+        when(threadCreator.createClientSelectorThread(clientSelector2, execService)).thenReturn(clientThread2);
+        when(threadCreator.createAcceptThread(selector, execService, 
+                new ClientSelectorThread[] { clientThread1, clientThread2 })).thenReturn(acceptThread);
+        
+        transport.start(props);
+        verify(provider, times(3)).openSelector();
+        verify(clientThread1).start();
+        verify(clientThread2).start();
+        verify(threadCreator, never()).createAcceptThread(selector, execService);
+        assertEquals(acceptThread, transport.getAcceptThread());
+        
+        transport.shutdown();
+        // Client threads should stop before the accept thread shuts down the executor
+        InOrder order = inOrder(clientThread1, clientThread2, acceptThread);
+        order.verify(clientThread1).shutdown();
+        order.verify(clientThread2).shutdown();
+        order.verify(acceptThread).shutdown();
+        verify(channelUtils).closeSelector(clientSelector1);
+        verify(channelUtils).closeSelector(clientSelector2);
+        verify(channelUtils).closeSelector(selector);
+    }
+    
     //@Test
     @Test(expected=IOException.class)
     public void testShutdownFailure() throws Exception {
@@ -156,6 +156,44 @@ public class ThermostatServerSocketChannelImplTest {
         verify(channelHelper).register(acceptThread, clientImpl, SelectionKey.OP_READ);
     }
     
+    @Test
+    public void testAcceptChannel() throws IOException {
+        ThermostatServerSocketChannelImpl channel = createChannel();
+        SocketChannel clientImpl = mock(SocketChannel.class);
+        when(impl.accept()).thenReturn(clientImpl);
+        SocketChannel result = channel.acceptChannel();
+        assertEquals(clientImpl, result);
+        verify(channelHelper).configureBlocking(clientImpl, false);
+        // Left for the caller to register
+        verify(channelHelper, never()).register(acceptThread, clientImpl, SelectionKey.OP_READ);
+    }
+    
+    @Test
+    public void testRegisterClient() throws IOException {
+        ThermostatServerSocketChannelImpl channel = createChannel();
+        SocketChannel clientImpl = mock(SocketChannel.class);
+        ClientSelectorThread clientThread = mock(ClientSelectorThread.class);
+        SelectionKey clientKey = mock(SelectionKey.class);
+        when(channelHelper.register(clientThread, clientImpl, SelectionKey.OP_READ)).thenReturn(clientKey);
+        AcceptedSocketChannelImpl client = channel.registerClient(clientImpl, clientThread);
+        assertEquals(clientKey, client.getSelectionKey());
+        assertEquals(SERVER_NAME, client.getName());
+    }
+    
+    @Test
+    public void testRegisterClientFails() throws IOException {
+        ThermostatServerSocketChannelImpl channel = createChannel();
+        SocketChannel clientImpl = mock(SocketChannel.class);
+        ClientSelectorThread clientThread = mock(ClientSelectorThread.class);
+        when(channelHelper.register(clientThread, clientImpl, SelectionKey.OP_READ)).thenThrow(new IOException("TEST"));
+        try {
+            channel.registerClient(clientImpl, clientThread);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            verify(channelHelper).close(clientImpl);
+        }
+    }
+    
     @Test
     public void testAcceptClosed() throws IOException {
         when(channelHelper.isOpen(impl)).thenReturn(false);
@@ -38,8 +38,10 @@ package com.redhat.thermostat.agent.ipc.unixsocket.client.internal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import com.redhat.thermostat.agent.ipc.client.IPCMessageChannel;
+import com.redhat.thermostat.agent.ipc.client.IPCMessageStream;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.SyncMessageReader;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.SyncMessageWriter;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.ThermostatLocalSocketChannelImpl;
@@ -81,4 +83,25 @@ public class UnixSocketMessageChannel implements IPCMessageChannel {
         writer.writeData(message);
     }
 
+    @Override
+    public IPCMessageStream openMessageStream() throws IOException {
+        final WritableByteChannel stream = writer.openStream();
+        return new IPCMessageStream() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                return stream.write(src);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return stream.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+            }
+        };
+    }
+
 }
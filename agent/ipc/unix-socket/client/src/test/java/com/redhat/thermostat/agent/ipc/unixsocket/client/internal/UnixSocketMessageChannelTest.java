@@ -37,16 +37,20 @@
 package com.redhat.thermostat.agent.ipc.unixsocket.client.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.redhat.thermostat.agent.ipc.client.IPCMessageStream;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.SyncMessageReader;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.SyncMessageWriter;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.ThermostatLocalSocketChannelImpl;
@@ -81,6 +85,28 @@ public class UnixSocketMessageChannelTest {
         verify(writer).writeData(buf);
     }
     
+    @Test
+    public void testOpenMessageStream() throws Exception {
+        WritableByteChannel stream = mock(WritableByteChannel.class);
+        when(writer.openStream()).thenReturn(stream);
+        IPCMessageStream result = channel.openMessageStream();
+        verify(writer).openStream();
+        
+        ByteBuffer buf = mock(ByteBuffer.class);
+        when(stream.write(buf)).thenReturn(5);
+        assertEquals(5, result.write(buf));
+        verify(stream).write(buf);
+        
+        when(stream.isOpen()).thenReturn(true);
+        assertTrue(result.isOpen());
+        when(stream.isOpen()).thenReturn(false);
+        assertFalse(result.isOpen());
+        verify(stream, times(2)).isOpen();
+        
+        result.close();
+        verify(stream).close();
+    }
+    
     @Test
     public void testIsOpen() throws Exception {
         when(sock.isOpen()).thenReturn(true);
@@ -71,7 +71,7 @@ public class AsyncMessageWriter extends MessageWriter {
             // Reset state for next message
             headerSent = false;
             // Remove header and message from the queue
-            messages.remove();
+            releaseMessage(messages.remove());
         }
     }
     
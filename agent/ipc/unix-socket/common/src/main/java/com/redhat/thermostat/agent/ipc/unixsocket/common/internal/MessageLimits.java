@@ -38,10 +38,17 @@ package com.redhat.thermostat.agent.ipc.unixsocket.common.internal;
 
 class MessageLimits {
     
-    private static final int DEFAULT_MAX_MESSAGE_PART_SIZE = 0x800; // 2 KiB
+    // System properties to override the defaults below
+    static final String MAX_MESSAGE_PART_SIZE_PROPERTY = "thermostat.ipc.maxMessagePartSize";
+    static final String MAX_MESSAGE_SIZE_PROPERTY = "thermostat.ipc.maxMessageSize";
+    static final String BUFFER_SIZE_PROPERTY = "thermostat.ipc.bufferSize";
+    
+    private static final int DEFAULT_MAX_MESSAGE_PART_SIZE = 0x10000; // 64 KiB
     private static final int DEFAULT_MAX_MESSAGE_SIZE = 0x20000; // 128 KiB
     private static final int DEFAULT_MAX_HEADER_SIZE = 0x80; // 128 B
     private static final int DEFAULT_BUFFER_SIZE = DEFAULT_MAX_MESSAGE_PART_SIZE;
+    // Number of released buffers kept for reuse, per pool
+    private static final int DEFAULT_MAX_POOLED_BUFFERS = 4;
     
     /* 
      * Values below should adhere to the following:
@@ -49,7 +56,8 @@ class MessageLimits {
      */
     // Maximum value for a single part of a message
     private final int maxMessagePartSize;
-    // Maximum value for the combined payload of a multi-part message
+    // Maximum value for the combined payload of a multi-part message.
+    // Does not apply to messages received as a stream of parts.
     private final int maxMessageSize;
     // Maximum value for a message header
     private final int maxHeaderSize;
@@ -57,10 +65,22 @@ class MessageLimits {
     private final int bufferSize;
     
     MessageLimits() {
-        this.maxMessagePartSize = DEFAULT_MAX_MESSAGE_PART_SIZE;
-        this.maxMessageSize = DEFAULT_MAX_MESSAGE_SIZE;
-        this.maxHeaderSize = DEFAULT_MAX_HEADER_SIZE;
-        this.bufferSize = DEFAULT_BUFFER_SIZE;
+        this(Integer.getInteger(MAX_MESSAGE_PART_SIZE_PROPERTY, DEFAULT_MAX_MESSAGE_PART_SIZE),
+                Integer.getInteger(MAX_MESSAGE_SIZE_PROPERTY, DEFAULT_MAX_MESSAGE_SIZE),
+                DEFAULT_MAX_HEADER_SIZE,
+                Integer.getInteger(BUFFER_SIZE_PROPERTY, DEFAULT_BUFFER_SIZE));
+    }
+    
+    MessageLimits(int maxMessagePartSize, int maxMessageSize, int maxHeaderSize, int bufferSize) {
+        if (maxHeaderSize < MessageHeader.getMinimumHeaderSize() || maxMessagePartSize < maxHeaderSize
+                || bufferSize < maxMessagePartSize || maxMessageSize < bufferSize) {
+            throw new IllegalArgumentException("Message limits must satisfy MinHdr <= MaxHdr <= MaxMsgPart <= Buffer <= MaxMsg, but were: "
+                    + maxHeaderSize + ", " + maxMessagePartSize + ", " + bufferSize + ", " + maxMessageSize);
+        }
+        this.maxMessagePartSize = maxMessagePartSize;
+        this.maxMessageSize = maxMessageSize;
+        this.maxHeaderSize = maxHeaderSize;
+        this.bufferSize = bufferSize;
     }
     
     int getMaxMessagePartSize() {
@@ -78,5 +98,9 @@ class MessageLimits {
     int getBufferSize() {
         return bufferSize;
     }
+    
+    int getMaxPooledBuffers() {
+        return DEFAULT_MAX_POOLED_BUFFERS;
+    }
 
 }
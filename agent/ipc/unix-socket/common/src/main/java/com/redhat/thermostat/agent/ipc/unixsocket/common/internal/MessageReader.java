@@ -40,6 +40,9 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.redhat.thermostat.agent.ipc.common.internal.BufferPool;
 
 abstract class MessageReader {
     
@@ -67,8 +70,20 @@ abstract class MessageReader {
     // Messages that have finished being processed, but are part of a multi-part message
     // that has not been fully processed yet.
     private List<ByteBuffer> messages;
+    // If non-null, message parts are read into pooled buffers and passed on
+    // one at a time, rather than joined into a full message
+    private final BufferPool streamPartPool;
+    // Streamed parts passed on and not released yet
+    private final AtomicInteger outstandingParts;
     
     protected MessageReader(MessageLimits limits) {
+        this(limits, false);
+    }
+    
+    protected MessageReader(MessageLimits limits, boolean streaming) {
+        this.streamPartPool = streaming
+                ? new BufferPool(limits.getMaxMessagePartSize(), limits.getMaxPooledBuffers(), true)
+                : null;
         this.state = ReadState.NEW_MESSAGE;
         this.currentHeader = null;
         this.minHeaderBuf = ByteBuffer.allocate(MIN_HEADER_SIZE);
@@ -76,6 +91,7 @@ abstract class MessageReader {
         this.headerBuf = null;
         this.messageBuf = null;
         this.messages = new ArrayList<ByteBuffer>();
+        this.outstandingParts = new AtomicInteger();
     }
     
     protected void processData(ByteBuffer readBuffer) throws IOException {
@@ -131,7 +147,13 @@ abstract class MessageReader {
                             throw new IOException("Message part size larger than maximum of "
                                     + limits.getMaxMessagePartSize() + " bytes");
                         }
-                        messageBuf = ByteBuffer.allocate(messageSize);
+                        if (streamPartPool != null) {
+                            messageBuf = streamPartPool.acquire();
+                            outstandingParts.incrementAndGet();
+                            messageBuf.limit(messageSize);
+                        } else {
+                            messageBuf = ByteBuffer.allocate(messageSize);
+                        }
                         headerBuf = null;
                         state = ReadState.FULL_HEADER_READ;
 
@@ -152,15 +174,20 @@ abstract class MessageReader {
                     if (messageBuf.remaining() == 0) {
                         messageBuf.position(0);
 
-                        // Store this message until we received all parts
-                        messages.add(messageBuf);
-                        // Did we receive all parts of this message?
-                        if (!currentHeader.isMoreData()) {
-                            // Notify listener
-                            ByteBuffer fullMessage = joinMessages();
-                            readFullMessage(fullMessage);
-                            // Start new list of message parts
-                            messages = new ArrayList<ByteBuffer>();
+                        if (streamPartPool != null) {
+                            // Pass on each part as it is read
+                            readMessagePart(messageBuf, !currentHeader.isMoreData());
+                        } else {
+                            // Store this message until we received all parts
+                            messages.add(messageBuf);
+                            // Did we receive all parts of this message?
+                            if (!currentHeader.isMoreData()) {
+                                // Notify listener
+                                ByteBuffer fullMessage = joinMessages();
+                                readFullMessage(fullMessage);
+                                // Start new list of message parts
+                                messages = new ArrayList<ByteBuffer>();
+                            }
                         }
 
                         // Reset reader state
@@ -188,6 +215,32 @@ abstract class MessageReader {
     
     protected abstract void readFullMessage(ByteBuffer fullMessage);
     
+    /*
+     * Called in streaming mode for each part of a message. The part is
+     * read into a pooled buffer, which should be returned with releasePart
+     * once it has been consumed.
+     */
+    protected void readMessagePart(ByteBuffer part, boolean lastPart) {
+        throw new UnsupportedOperationException("Reader is not in streaming mode");
+    }
+    
+    protected void releasePart(ByteBuffer part) {
+        if (streamPartPool != null) {
+            outstandingParts.decrementAndGet();
+            streamPartPool.release(part);
+        }
+    }
+    
+    /*
+     * Whether as many streamed parts are waiting to be released as the part
+     * pool keeps. Callers should stop reading until some are released, so
+     * that parts are not allocated beyond the pool. Data already read is
+     * still processed, so the parts it completes may exceed this limit.
+     */
+    protected boolean isPartLimitReached() {
+        return streamPartPool != null && outstandingParts.get() >= limits.getMaxPooledBuffers();
+    }
+    
     private ByteBuffer joinMessages() throws IOException {
         // Single part shortcut
         if (messages.size() == 1) {
@@ -213,10 +266,7 @@ abstract class MessageReader {
     }
 
     private void putMinRemaining(ByteBuffer dst, ByteBuffer src) {
-        int minRemaining = Math.min(dst.remaining(), src.remaining());
-        for (int i = 0; i < minRemaining; i++) {
-            dst.put(src.get());
-        }
+        MessageWriter.putMinRemaining(dst, src);
     }
     
     // For testing purposes
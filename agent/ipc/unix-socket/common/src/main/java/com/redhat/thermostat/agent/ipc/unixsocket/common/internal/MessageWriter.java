@@ -38,6 +38,8 @@ package com.redhat.thermostat.agent.ipc.unixsocket.common.internal;
 
 import java.nio.ByteBuffer;
 
+import com.redhat.thermostat.agent.ipc.common.internal.BufferPool;
+
 abstract class MessageWriter {
     
     // If true, dumps header information for each header read/written
@@ -45,19 +47,42 @@ abstract class MessageWriter {
     
     // Various message-related limits
     private final MessageLimits limits;
+    // Buffers for message headers and parts queued for writing
+    private final BufferPool headerPool;
+    private final BufferPool partPool;
     
     protected MessageWriter(MessageLimits limits) {
         this.limits = limits;
+        this.headerPool = new BufferPool(MessageHeader.getDefaultHeaderSize(), limits.getMaxPooledBuffers(), false);
+        this.partPool = new BufferPool(limits.getMaxMessagePartSize(), limits.getMaxPooledBuffers(), false);
     }
     
+    /*
+     * Copies the next part of the message into a pooled buffer. Callers
+     * should return the buffers with releaseMessage once they are written.
+     */
     protected MessageToWrite getNextMessage(ByteBuffer fullMessage) {
-        ByteBuffer message = ByteBuffer.allocate(limits.getMaxMessagePartSize());
+        ByteBuffer message = partPool.acquire();
         putMinRemaining(message, fullMessage);
         message.flip();
         
         // Create a message header for this part
         int messageSize = message.limit();
         boolean moreData = fullMessage.hasRemaining();
+        MessageHeader header = createHeader(messageSize, moreData);
+        
+        ByteBuffer headerBuf = headerPool.acquire();
+        header.writeTo(headerBuf);
+        headerBuf.flip();
+        return new MessageToWrite(headerBuf, message);
+    }
+    
+    protected void releaseMessage(MessageToWrite message) {
+        headerPool.release(message.getHeader());
+        partPool.release(message.getMessage());
+    }
+    
+    protected MessageHeader createHeader(int messageSize, boolean moreData) {
         MessageHeader header = new MessageHeader();
         header.setMessageSize(messageSize);
         header.setMoreData(moreData);
@@ -66,16 +91,20 @@ abstract class MessageWriter {
         if (DEBUG_HEADER) {
             header.dumpHeader("[Write] ");
         }
-        
-        ByteBuffer headerBuf = ByteBuffer.wrap(header.toByteArray());
-        return new MessageToWrite(headerBuf, message);
+        return header;
     }
     
-    private void putMinRemaining(ByteBuffer dst, ByteBuffer src) {
+    protected MessageLimits getLimits() {
+        return limits;
+    }
+    
+    static void putMinRemaining(ByteBuffer dst, ByteBuffer src) {
         int minRemaining = Math.min(dst.remaining(), src.remaining());
-        for (int i = 0; i < minRemaining; i++) {
-            dst.put(src.get());
-        }
+        // Bulk copy through a view limited to the bytes that fit
+        ByteBuffer view = src.duplicate();
+        view.limit(view.position() + minRemaining);
+        dst.put(view);
+        src.position(src.position() + minRemaining);
     }
     
     // Container class to hold a single header and message
@@ -51,7 +51,7 @@ public class SyncMessageReader extends MessageReader {
     
     public SyncMessageReader(ThermostatLocalSocketChannelImpl channel, MessageLimits limits) {
         super(limits);
-        this.readBuffer = ByteBuffer.allocate(limits.getBufferSize());
+        this.readBuffer = ByteBuffer.allocateDirect(limits.getBufferSize());
         this.channel = channel;
         this.fullMessage = null;
     }
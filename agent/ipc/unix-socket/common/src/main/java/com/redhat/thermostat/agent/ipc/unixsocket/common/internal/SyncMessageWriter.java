@@ -38,11 +38,14 @@ package com.redhat.thermostat.agent.ipc.unixsocket.common.internal;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 public class SyncMessageWriter extends MessageWriter {
 
     private final ThermostatLocalSocketChannelImpl channel;
     private final MessageLimits limits;
+    // Reused for the header of each message part
+    private final ByteBuffer headerBuf;
     
     public SyncMessageWriter(ThermostatLocalSocketChannelImpl channel) {
         this(channel, new MessageLimits());
@@ -52,6 +55,7 @@ public class SyncMessageWriter extends MessageWriter {
         super(limits);
         this.channel = channel;
         this.limits = limits;
+        this.headerBuf = ByteBuffer.allocate(MessageHeader.getDefaultHeaderSize());
     }
     
     public void writeData(ByteBuffer data) throws IOException {
@@ -59,19 +63,87 @@ public class SyncMessageWriter extends MessageWriter {
             throw new IOException("Total message size is larger than maximum of " 
                     + limits.getMaxMessageSize() + " bytes");
         }
-        // Split into messages and add headers
+        // Split into messages and add headers. Each part is written
+        // straight from the caller's buffer, without copying.
         ByteBuffer fullMessage = data.duplicate();
+        int end = fullMessage.limit();
         while (fullMessage.hasRemaining()) {
-            MessageToWrite message = getNextMessage(fullMessage);
-            writeFully(message.getHeader());
-            writeFully(message.getMessage());
+            int partSize = Math.min(fullMessage.remaining(), limits.getMaxMessagePartSize());
+            fullMessage.limit(fullMessage.position() + partSize);
+            writePart(fullMessage, fullMessage.limit() < end);
+            fullMessage.limit(end);
         }
     }
+    
+    /**
+     * Opens a stream for writing a single message of unlimited size. Data
+     * is buffered until a full message part is available, and the final
+     * part is written when the stream is closed.
+     */
+    public WritableByteChannel openStream() {
+        return new MessageStream();
+    }
+    
+    private void writePart(ByteBuffer part, boolean moreData) throws IOException {
+        MessageHeader header = createHeader(part.remaining(), moreData);
+        headerBuf.clear();
+        header.writeTo(headerBuf);
+        headerBuf.flip();
+        writeFully(headerBuf);
+        writeFully(part);
+    }
 
     private void writeFully(ByteBuffer buf) throws IOException {
         while (buf.hasRemaining()) {
             channel.write(buf);
         }
     }
+    
+    private class MessageStream implements WritableByteChannel {
+        
+        private final ByteBuffer part;
+        private boolean open;
+        
+        private MessageStream() {
+            this.part = ByteBuffer.allocateDirect(limits.getMaxMessagePartSize());
+            this.open = true;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!open) {
+                throw new IOException("Message stream is closed");
+            }
+            int written = src.remaining();
+            while (src.hasRemaining()) {
+                // Only send a full part once more data follows it,
+                // so that the last part is always sent on close
+                if (!part.hasRemaining()) {
+                    part.flip();
+                    writePart(part, true);
+                    part.clear();
+                }
+                putMinRemaining(part, src);
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!open) {
+                return;
+            }
+            open = false;
+            part.flip();
+            if (part.hasRemaining()) {
+                writePart(part, false);
+            }
+        }
+    }
 
 }
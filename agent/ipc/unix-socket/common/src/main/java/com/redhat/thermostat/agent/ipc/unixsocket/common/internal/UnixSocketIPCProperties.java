@@ -48,9 +48,11 @@ public class UnixSocketIPCProperties extends IPCProperties {
     // Filename prefix for socket file
     static final String SOCKET_PREFIX = "sock-";
     static final String PROP_UNIX_SOCKET_DIR = "unixsocket.dir";
+    static final String PROP_UNIX_SOCKET_SELECTOR_THREADS = "unixsocket.selector.threads";
     private static final String SOCKET_DIR_NAME = "thermostat-socks";
     
     private final File sockDir;
+    private final int selectorThreads;
     private final PathUtils pathUtils;
     
     UnixSocketIPCProperties(Properties props, File propFile) throws IOException {
@@ -68,12 +70,24 @@ public class UnixSocketIPCProperties extends IPCProperties {
         } else {
             this.sockDir = getDefaultSocketDir();
         }
+        
+        this.selectorThreads = parseSelectorThreads(props.getProperty(PROP_UNIX_SOCKET_SELECTOR_THREADS));
     }
     
     public File getSocketDirectory() {
         return sockDir;
     }
     
+    /**
+     * @return the number of threads selecting on client connections. If
+     * greater than one, clients are spread across this many selectors,
+     * and a separate thread accepts connections. Defaults to one, where a
+     * single thread both accepts and handles clients.
+     */
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+    
     public File getSocketFile(String serverName, String ownerName) {
         File ownerDir = new File(sockDir, ownerName);
         String socketFilename = SOCKET_PREFIX.concat(serverName);
@@ -96,6 +110,23 @@ public class UnixSocketIPCProperties extends IPCProperties {
         return result;
     }
 
+    private int parseSelectorThreads(String value) throws IOException {
+        if (value == null) {
+            return 1;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid value '" + value + "' specified for property '" 
+                    + PROP_UNIX_SOCKET_SELECTOR_THREADS + "'.");
+        }
+        if (result < 1) {
+            throw new IOException("Property '" + PROP_UNIX_SOCKET_SELECTOR_THREADS + "' must be at least 1.");
+        }
+        return result;
+    }
+
     // Helper class for testing purposes
     static class PathUtils {
         String getSystemProperty(String name) {
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.ipc.unixsocket.common.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class MessageLimitsTest {
+    
+    @After
+    public void tearDown() {
+        System.clearProperty(MessageLimits.MAX_MESSAGE_PART_SIZE_PROPERTY);
+        System.clearProperty(MessageLimits.MAX_MESSAGE_SIZE_PROPERTY);
+        System.clearProperty(MessageLimits.BUFFER_SIZE_PROPERTY);
+    }
+    
+    @Test
+    public void testDefaults() {
+        MessageLimits limits = new MessageLimits();
+        assertEquals(0x10000, limits.getMaxMessagePartSize());
+        assertEquals(0x20000, limits.getMaxMessageSize());
+        assertEquals(0x80, limits.getMaxHeaderSize());
+        assertEquals(0x10000, limits.getBufferSize());
+    }
+    
+    @Test
+    public void testSystemProperties() {
+        System.setProperty(MessageLimits.MAX_MESSAGE_PART_SIZE_PROPERTY, "4096");
+        System.setProperty(MessageLimits.MAX_MESSAGE_SIZE_PROPERTY, "1048576");
+        System.setProperty(MessageLimits.BUFFER_SIZE_PROPERTY, "8192");
+        MessageLimits limits = new MessageLimits();
+        assertEquals(4096, limits.getMaxMessagePartSize());
+        assertEquals(1048576, limits.getMaxMessageSize());
+        assertEquals(8192, limits.getBufferSize());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testPartLargerThanBuffer() {
+        new MessageLimits(0x2000, 0x20000, 0x80, 0x1000);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testBufferLargerThanMessage() {
+        new MessageLimits(0x1000, 0x1000, 0x80, 0x2000);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testHeaderSmallerThanMinimum() {
+        new MessageLimits(0x1000, 0x20000, 4, 0x1000);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidSystemProperty() {
+        System.setProperty(MessageLimits.MAX_MESSAGE_PART_SIZE_PROPERTY, "1");
+        new MessageLimits();
+    }
+
+}
+
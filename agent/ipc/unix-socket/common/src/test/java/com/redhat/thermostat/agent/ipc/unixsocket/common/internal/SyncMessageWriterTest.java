@@ -42,12 +42,14 @@ import static com.redhat.thermostat.agent.ipc.unixsocket.common.internal.Channel
 import static org.junit.Assert.assertArrayEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 
@@ -158,4 +160,84 @@ public class SyncMessageWriterTest {
         writer.writeData(buf);
     }
 
+    @Test
+    public void testStreamMulti() throws Exception {
+        final String message = "hello world";
+        final byte[] fullMessageBytes = message.getBytes(Charset.forName("UTF-8"));
+        final byte[] message1Bytes = Arrays.copyOfRange(fullMessageBytes, 0, 5);
+        final byte[] message2Bytes = Arrays.copyOfRange(fullMessageBytes, 5, 10);
+        final byte[] message3Bytes = Arrays.copyOfRange(fullMessageBytes, 10, fullMessageBytes.length);
+        final byte[] header1Bytes = createHeader(message1Bytes.length, true);
+        final byte[] header2Bytes = createHeader(message2Bytes.length, true);
+        final byte[] header3Bytes = createHeader(message3Bytes.length, false);
+        
+        final byte[][] results = createByteArrays(header1Bytes.length, message1Bytes.length, header2Bytes.length, message2Bytes.length, header3Bytes.length, message3Bytes.length);
+        WriteAnswer answer = new WriteAnswer(results);
+        when(channel.write(any(ByteBuffer.class))).thenAnswer(answer);
+        
+        // Write in uneven chunks, unrelated to the part size
+        WritableByteChannel stream = writer.openStream();
+        stream.write(ByteBuffer.wrap(fullMessageBytes, 0, 3));
+        stream.write(ByteBuffer.wrap(fullMessageBytes, 3, 7));
+        // Second part is full, but should not be sent until more data follows
+        verify(channel, times(2)).write(any(ByteBuffer.class));
+        stream.write(ByteBuffer.wrap(fullMessageBytes, 10, 1));
+        stream.close();
+        
+        assertArrayEquals(header1Bytes, results[0]);
+        assertArrayEquals(message1Bytes, results[1]);
+        assertArrayEquals(header2Bytes, results[2]);
+        assertArrayEquals(message2Bytes, results[3]);
+        assertArrayEquals(header3Bytes, results[4]);
+        assertArrayEquals(message3Bytes, results[5]);
+        verify(channel, times(6)).write(any(ByteBuffer.class));
+    }
+    
+    @Test
+    public void testStreamExactPartSize() throws Exception {
+        final byte[] messageBytes = "hello".getBytes(Charset.forName("UTF-8"));
+        final byte[] headerBytes = createHeader(messageBytes.length, false);
+        final byte[][] results = createByteArrays(headerBytes.length, messageBytes.length);
+        WriteAnswer answer = new WriteAnswer(results);
+        when(channel.write(any(ByteBuffer.class))).thenAnswer(answer);
+        
+        WritableByteChannel stream = writer.openStream();
+        stream.write(ByteBuffer.wrap(messageBytes));
+        stream.close();
+        
+        // Single part, marked as the last one
+        assertArrayEquals(headerBytes, results[0]);
+        assertArrayEquals(messageBytes, results[1]);
+        verify(channel, times(2)).write(any(ByteBuffer.class));
+    }
+    
+    @Test
+    public void testStreamEmpty() throws Exception {
+        WritableByteChannel stream = writer.openStream();
+        stream.close();
+        verify(channel, never()).write(any(ByteBuffer.class));
+    }
+    
+    @Test(expected=IOException.class)
+    public void testStreamWriteAfterClose() throws Exception {
+        WritableByteChannel stream = writer.openStream();
+        stream.close();
+        stream.write(ByteBuffer.wrap(new byte[] { 1 }));
+    }
+    
+    @Test
+    public void testStreamIgnoresMaxMessageSize() throws Exception {
+        when(limits.getMaxMessageSize()).thenReturn(0);
+        final byte[] messageBytes = "hello".getBytes(Charset.forName("UTF-8"));
+        final byte[][] results = createByteArrays(MessageHeader.getDefaultHeaderSize(), messageBytes.length);
+        WriteAnswer answer = new WriteAnswer(results);
+        when(channel.write(any(ByteBuffer.class))).thenAnswer(answer);
+        
+        WritableByteChannel stream = writer.openStream();
+        stream.write(ByteBuffer.wrap(messageBytes));
+        stream.close();
+        
+        assertArrayEquals(messageBytes, results[1]);
+    }
+
 }
@@ -93,4 +93,29 @@ public class UnixSocketIPCPropertiesTest {
         new UnixSocketIPCProperties(jProps, propFile, pathUtils);
     }
     
+    @Test
+    public void testDefaultSelectorThreads() throws Exception {
+        UnixSocketIPCProperties props = new UnixSocketIPCProperties(jProps, propFile, pathUtils);
+        assertEquals(1, props.getSelectorThreads());
+    }
+    
+    @Test
+    public void testSelectorThreads() throws Exception {
+        when(jProps.getProperty(UnixSocketIPCProperties.PROP_UNIX_SOCKET_SELECTOR_THREADS)).thenReturn("4");
+        UnixSocketIPCProperties props = new UnixSocketIPCProperties(jProps, propFile, pathUtils);
+        assertEquals(4, props.getSelectorThreads());
+    }
+    
+    @Test(expected=IOException.class)
+    public void testSelectorThreadsInvalid() throws Exception {
+        when(jProps.getProperty(UnixSocketIPCProperties.PROP_UNIX_SOCKET_SELECTOR_THREADS)).thenReturn("many");
+        new UnixSocketIPCProperties(jProps, propFile, pathUtils);
+    }
+    
+    @Test(expected=IOException.class)
+    public void testSelectorThreadsZero() throws Exception {
+        when(jProps.getProperty(UnixSocketIPCProperties.PROP_UNIX_SOCKET_SELECTOR_THREADS)).thenReturn("0");
+        new UnixSocketIPCProperties(jProps, propFile, pathUtils);
+    }
+    
 }
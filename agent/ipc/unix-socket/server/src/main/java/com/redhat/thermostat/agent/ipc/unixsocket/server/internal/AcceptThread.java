@@ -39,132 +39,56 @@ package com.redhat.thermostat.agent.ipc.unixsocket.server.internal;
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.util.HashSet;
-import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
-import com.redhat.thermostat.agent.ipc.server.ThermostatIPCCallbacks;
-import com.redhat.thermostat.common.utils.LoggingUtils;
+import jnr.unixsocket.UnixSocketChannel;
 
-class AcceptThread extends Thread {
+class AcceptThread extends SelectorThread {
     
-    private static final Logger logger = LoggingUtils.getLogger(AcceptThread.class);
-    private final ExecutorService execService;
-    private final Selector selector;
-    private final ClientHandlerCreator handlerCreator;
-    
-    private boolean shutdown;
+    // If empty, clients are handled by this thread
+    private final ClientSelectorThread[] clientThreads;
+    private int nextClientThread;
     
     AcceptThread(Selector selector, ExecutorService execService) {
-        this(selector, execService, new ClientHandlerCreator());
-    }
-    
-    AcceptThread(Selector selector, ExecutorService execService, ClientHandlerCreator handlerCreator) {
-        this.selector = selector;
-        this.execService = execService;
-        this.handlerCreator = handlerCreator;
-        this.shutdown = false;
+        this(selector, execService, new ClientSelectorThread[0]);
     }
     
-    @Override
-    public void run() {
-        logger.info("Ready to accept client connections");
-        try {
-            while (!shutdown) {
-                int selected = selector.select();
-                if (selected < 0) {
-                    // Something bad happened
-                    throw new IOException("Error occurred while selecting channel");
-                } else if (selected > 0) {
-                    Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                    // Use a copy to prevent concurrent modification
-                    Set<SelectionKey> selectedCopy = new HashSet<>(selectedKeys);
-                    for (SelectionKey key : selectedCopy) {
-                        // Remove this key from selected set to indicate we've processed it
-                        selectedKeys.remove(key);
-                        processKey(key);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error occurred during selection", e);
-            shutdown = true;
-        } finally {
-            logger.info("Shutting down");
-            execService.shutdown();
-        }
-    }
-
-    private void processKey(SelectionKey key) {
-        // Ensure this key is still valid and hasn't been cancelled (e.g. by closing the socket)
-        if (key.readyOps() > 0 && key.isValid()) {
-            logger.finest("Got selection operation: " + key.readyOps());
-            try {
-                if (key.isAcceptable()) {
-                    // We stored our wrapper socket as the attachment
-                    ThermostatLocalServerSocketChannelImpl channel = 
-                            safeGetAttachment(key, ThermostatLocalServerSocketChannelImpl.class);
-                    // Accept client connection
-                    AcceptedLocalSocketChannelImpl client = channel.accept();
-                    // Create handler for accepted client with provided callbacks
-                    ThermostatIPCCallbacks callbacks = channel.getCallbacks();
-                    ClientHandler handler = handlerCreator.createHandler(client, execService, callbacks);
-                    // Store handler as attachment
-                    SelectionKey clientKey = client.getSelectionKey();
-                    clientKey.attach(handler);
-                    logger.fine("Accepted client for \"" + channel.getName() + "\"");
-                } else { 
-                    if (key.isReadable()) {
-                        // Call handler for client to perform read
-                        ClientHandler handler = safeGetAttachment(key, ClientHandler.class);
-                        handler.handleRead();
-                    }
-                    // Check key hasn't been cancelled by a prior read operation
-                    if (key.isWritable() && key.isValid()) {
-                        // Call handler for client to perform write
-                        ClientHandler handler = safeGetAttachment(key, ClientHandler.class);
-                        handler.handleWrite();
-                    }
-                }
-            } catch (IOException e) {
-                logger.log(Level.WARNING, "Failed to process socket event", e);
-            }
-        }
+    AcceptThread(Selector selector, ExecutorService execService, ClientSelectorThread[] clientThreads) {
+        this(selector, execService, clientThreads, new ClientHandlerCreator());
     }
     
-    void shutdown() throws IOException {
-        this.shutdown = true;
-        // Interrupt accept thread
-        this.interrupt();
-        
-        try {
-            this.join();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+    AcceptThread(Selector selector, ExecutorService execService, ClientHandlerCreator handlerCreator) {
+        this(selector, execService, new ClientSelectorThread[0], handlerCreator);
     }
     
-    boolean isShutdown() {
-        return shutdown;
+    AcceptThread(Selector selector, ExecutorService execService, ClientSelectorThread[] clientThreads, 
+            ClientHandlerCreator handlerCreator) {
+        super("accept client connections", selector, execService, handlerCreator);
+        this.clientThreads = clientThreads;
+        this.nextClientThread = 0;
     }
     
-    private <T> T safeGetAttachment(SelectionKey key, Class<T> clazz) throws IOException {
-        Object attachment = key.attachment();
-        Objects.requireNonNull(attachment, "Expected attachment in SelectionKey");
-        if (!clazz.isAssignableFrom(attachment.getClass())) {
-            throw new IOException("Invalid SelectionKey");
+    @Override
+    protected void acceptClient(SelectionKey key) throws IOException {
+        // We stored our wrapper socket as the attachment
+        ThermostatLocalServerSocketChannelImpl channel = 
+                safeGetAttachment(key, ThermostatLocalServerSocketChannelImpl.class);
+        if (clientThreads.length == 0) {
+            // Accept client connection, and handle it with this thread's selector
+            AcceptedLocalSocketChannelImpl client = channel.accept();
+            attachHandler(channel, client);
+        } else {
+            // Hand off client connections to each client selector thread in turn
+            UnixSocketChannel clientImpl = channel.acceptChannel();
+            ClientSelectorThread clientThread = clientThreads[nextClientThread];
+            nextClientThread = (nextClientThread + 1) % clientThreads.length;
+            clientThread.addClient(channel, clientImpl);
         }
-        return (T) clazz.cast(attachment);
     }
     
-    static class ClientHandlerCreator {
-        ClientHandler createHandler(AcceptedLocalSocketChannelImpl client, ExecutorService execService, 
-                ThermostatIPCCallbacks callbacks) {
-            return new ClientHandler(client, execService, callbacks);
-        }
+    @Override
+    protected void stopped() {
+        execService.shutdown();
     }
     
-}
\ No newline at end of file
+}
@@ -39,11 +39,16 @@ package com.redhat.thermostat.agent.ipc.unixsocket.server.internal;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.redhat.thermostat.agent.ipc.server.ThermostatIPCCallbacks;
+import com.redhat.thermostat.agent.ipc.server.ThermostatIPCStreamCallbacks;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.AsyncMessageReader;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.AsyncMessageWriter;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.MessageListener;
@@ -56,6 +61,12 @@ class ClientHandler implements MessageListener {
     // Increments for each instance made. Only for debugging purposes.
     private static final AtomicInteger handlerCount = new AtomicInteger();
     
+    // Reading from a client is paused once this many of its callbacks are waiting to run,
+    // and resumed once they drop back down to the lower value. Reading is also paused while
+    // the reader has as many streamed parts outstanding as it pools.
+    static final int MAX_PENDING_CALLBACKS = 64;
+    static final int RESUME_PENDING_CALLBACKS = MAX_PENDING_CALLBACKS / 2;
+    
     private final AcceptedLocalSocketChannelImpl client;
     private final ExecutorService execService;
     private final ThermostatIPCCallbacks callbacks;
@@ -63,15 +74,27 @@ class ClientHandler implements MessageListener {
     private final AsyncMessageWriter writer;
     private final MessageCreator messageCreator;
     private final int handlerNum;
+    // Callbacks for messages from this client run one at a time, in the order they were read
+    private final Queue<Runnable> pendingCallbacks;
+    private final AtomicInteger numPendingCallbacks;
+    private final AtomicBoolean runningCallbacks;
+    // Guards changes to the client's interest set, which are made from multiple threads
+    private final Object interestOpsLock;
+    private volatile boolean readPaused;
     
     ClientHandler(AcceptedLocalSocketChannelImpl client, ExecutorService execService, ThermostatIPCCallbacks callbacks) {
         this.client = client;
         this.execService = execService;
         this.callbacks = callbacks;
-        this.reader = new AsyncMessageReader(client, this);
+        this.reader = new AsyncMessageReader(client, this, callbacks instanceof ThermostatIPCStreamCallbacks);
         this.writer = new AsyncMessageWriter(client);
         this.messageCreator = new MessageCreator();
         this.handlerNum = handlerCount.getAndIncrement();
+        this.pendingCallbacks = new ConcurrentLinkedQueue<Runnable>();
+        this.numPendingCallbacks = new AtomicInteger();
+        this.runningCallbacks = new AtomicBoolean();
+        this.interestOpsLock = new Object();
+        this.readPaused = false;
     }
     
     ClientHandler(AcceptedLocalSocketChannelImpl client, ExecutorService execService, ThermostatIPCCallbacks callbacks, 
@@ -83,6 +106,11 @@ class ClientHandler implements MessageListener {
         this.writer = writer;
         this.messageCreator = messageCreator;
         this.handlerNum = handlerCount.getAndIncrement();
+        this.pendingCallbacks = new ConcurrentLinkedQueue<Runnable>();
+        this.numPendingCallbacks = new AtomicInteger();
+        this.runningCallbacks = new AtomicBoolean();
+        this.interestOpsLock = new Object();
+        this.readPaused = false;
     }
     
     void handleRead() throws IOException {
@@ -104,9 +132,11 @@ class ClientHandler implements MessageListener {
             
             // If no more messages, remove write from interestOps
             if (!writer.hasMoreMessages()) {
-                SelectionKey key = client.getSelectionKey();
-                int ops = key.interestOps();
-                key.interestOps(ops & ~SelectionKey.OP_WRITE);
+                synchronized (interestOpsLock) {
+                    SelectionKey key = client.getSelectionKey();
+                    int ops = key.interestOps();
+                    key.interestOps(ops & ~SelectionKey.OP_WRITE);
+                }
             }
         } catch (IOException e) {
             client.close();
@@ -118,8 +148,7 @@ class ClientHandler implements MessageListener {
     public void messageRead(ByteBuffer buf) {
         // Create new message and notify caller
         final MessageImpl message = messageCreator.createMessage(buf, this);
-        // Execute callback in a separate thread to ensure we don't block
-        execService.submit(new Runnable() {
+        enqueueCallback(new Runnable() {
             @Override
             public void run() {
                 callbacks.messageReceived(message);
@@ -127,12 +156,108 @@ class ClientHandler implements MessageListener {
         });
     }
 
+    @Override
+    public void messagePartRead(ByteBuffer part, boolean lastPart) {
+        final MessageImpl message = messageCreator.createMessagePart(part, lastPart, this);
+        enqueueCallback(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ((ThermostatIPCStreamCallbacks) callbacks).messagePartReceived(message, message.isLastPart());
+                } finally {
+                    // The part's buffer is reused for later parts
+                    reader.releasePart(message.get());
+                }
+            }
+        });
+        if (reader.isPartLimitReached()) {
+            // Do not read into more part buffers than the pool keeps
+            updateReadPaused();
+        }
+    }
+    
+    private void enqueueCallback(Runnable callback) {
+        pendingCallbacks.add(callback);
+        if (numPendingCallbacks.incrementAndGet() >= MAX_PENDING_CALLBACKS) {
+            // Callbacks are falling behind, stop reading until they catch up
+            updateReadPaused();
+        }
+        scheduleCallbacks();
+    }
+    
+    /*
+     * At most one task runs the callbacks of this client at any time. 
+     * Different clients' callbacks may still run concurrently.
+     */
+    private void scheduleCallbacks() {
+        if (!pendingCallbacks.isEmpty() && runningCallbacks.compareAndSet(false, true)) {
+            // Execute callbacks in a separate thread to ensure we don't block
+            execService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runCallbacks();
+                }
+            });
+        }
+    }
+    
+    private void runCallbacks() {
+        try {
+            Runnable callback;
+            while ((callback = pendingCallbacks.poll()) != null) {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Callback failed for \"" + client.getName() + "\" [" + handlerNum + "]", e);
+                }
+                if (numPendingCallbacks.decrementAndGet() <= RESUME_PENDING_CALLBACKS && readPaused) {
+                    updateReadPaused();
+                }
+            }
+        } finally {
+            runningCallbacks.set(false);
+        }
+        // A callback may have been added after the queue was found empty
+        scheduleCallbacks();
+    }
+    
+    /*
+     * Pauses or resumes reading based on the current number of pending
+     * callbacks and outstanding streamed parts. These are checked again
+     * while holding the lock, so that a pause and a resume racing each
+     * other cannot leave reading paused.
+     */
+    private void updateReadPaused() {
+        synchronized (interestOpsLock) {
+            SelectionKey key = client.getSelectionKey();
+            if (key == null || !key.isValid()) {
+                // Client has been closed
+                return;
+            }
+            int pending = numPendingCallbacks.get();
+            boolean partLimitReached = reader.isPartLimitReached();
+            if (!readPaused && (pending >= MAX_PENDING_CALLBACKS || partLimitReached)) {
+                logger.fine("Pausing reads from client for \"" + client.getName() + "\" [" + handlerNum + "]");
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                readPaused = true;
+            } else if (readPaused && pending <= RESUME_PENDING_CALLBACKS && !partLimitReached) {
+                logger.fine("Resuming reads from client for \"" + client.getName() + "\" [" + handlerNum + "]");
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                readPaused = false;
+                // Wakeup selector since we may have changed this key's interest set from another thread
+                key.selector().wakeup();
+            }
+        }
+    }
+
     @Override
     public void writeMessage(ByteBuffer buf) throws IOException {
         // Request write with selector
         SelectionKey key = client.getSelectionKey();
-        int ops = key.interestOps();
-        key.interestOps(ops | SelectionKey.OP_WRITE);
+        synchronized (interestOpsLock) {
+            int ops = key.interestOps();
+            key.interestOps(ops | SelectionKey.OP_WRITE);
+        }
         
         // Enqueue this message for writing when selected
         writer.enqueueForWriting(buf);
@@ -145,5 +270,9 @@ class ClientHandler implements MessageListener {
         MessageImpl createMessage(ByteBuffer data, MessageListener listener) {
             return new MessageImpl(data, listener);
         }
+        
+        MessageImpl createMessagePart(ByteBuffer data, boolean lastPart, MessageListener listener) {
+            return new MessageImpl(data, lastPart, listener);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.agent.ipc.unixsocket.server.internal;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+
+import jnr.unixsocket.UnixSocketChannel;
+
+/*
+ * Reads from and writes to a share of the clients accepted by the
+ * AcceptThread, using its own selector.
+ */
+class ClientSelectorThread extends SelectorThread {
+    
+    private static final Logger logger = LoggingUtils.getLogger(ClientSelectorThread.class);
+    
+    ClientSelectorThread(Selector selector, ExecutorService execService) {
+        this(selector, execService, new ClientHandlerCreator());
+    }
+    
+    ClientSelectorThread(Selector selector, ExecutorService execService, ClientHandlerCreator handlerCreator) {
+        super("handle client connections", selector, execService, handlerCreator);
+    }
+    
+    void addClient(final ThermostatLocalServerSocketChannelImpl channel, final UnixSocketChannel clientImpl) {
+        // Registering with a selector blocks while it is selecting, so do so from this thread
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    AcceptedLocalSocketChannelImpl client = channel.registerClient(clientImpl, selector);
+                    attachHandler(channel, client);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Failed to register client for \"" + channel.getName() + "\"", e);
+                }
+            }
+        });
+    }
+    
+}
@@ -45,10 +45,16 @@ import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.MessageListene
 public class MessageImpl implements IPCMessage {
     
     private final ByteBuffer data;
+    private final boolean lastPart;
     private final MessageListener listener;
     
     MessageImpl(ByteBuffer data, MessageListener listener) {
+        this(data, true, listener);
+    }
+    
+    MessageImpl(ByteBuffer data, boolean lastPart, MessageListener listener) {
         this.data = data;
+        this.lastPart = lastPart;
         this.listener = listener;
     }
 
@@ -61,5 +67,9 @@ public class MessageImpl implements IPCMessage {
     public void reply(ByteBuffer buf) throws IOException {
         listener.writeMessage(buf);
     }
+    
+    boolean isLastPart() {
+        return lastPart;
+    }
 
 }
@@ -115,14 +115,37 @@ class ThermostatLocalServerSocketChannelImpl implements Channel {
     }
     
     AcceptedLocalSocketChannelImpl accept() throws IOException {
+        UnixSocketChannel clientImpl = acceptChannel();
+        return registerClient(clientImpl, selector);
+    }
+    
+    /*
+     * Accepts a client connection without registering it for selection,
+     * so that it may be registered with a different selector.
+     */
+    UnixSocketChannel acceptChannel() throws IOException {
         if (!isOpen()) {
             throw new IOException("Socket is closed");
         }
         UnixSocketChannel clientImpl = impl.accept();
         // Set non-blocking
         channelHelper.configureBlocking(clientImpl, false);
-        // Register for selection
-        SelectionKey key = channelHelper.register(clientImpl, selector, SelectionKey.OP_READ);
+        return clientImpl;
+    }
+    
+    /*
+     * Must be called by the thread selecting on clientSelector, since
+     * registration blocks while a selection is in progress.
+     */
+    AcceptedLocalSocketChannelImpl registerClient(UnixSocketChannel clientImpl, Selector clientSelector) throws IOException {
+        SelectionKey key;
+        try {
+            // Register for selection
+            key = channelHelper.register(clientImpl, clientSelector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channelHelper.close(clientImpl);
+            throw e;
+        }
         return new AcceptedLocalSocketChannelImpl(name, clientImpl, key);
     }
 
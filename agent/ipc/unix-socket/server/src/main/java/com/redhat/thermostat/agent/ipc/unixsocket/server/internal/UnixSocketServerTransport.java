@@ -112,6 +112,9 @@ class UnixSocketServerTransport implements ServerTransport {
     private UnixSocketIPCProperties props;
     private AcceptThread acceptThread;
     private Selector selector;
+    // Used to handle clients, if more than one selector thread is configured
+    private ClientSelectorThread[] clientThreads;
+    private Selector[] clientSelectors;
     private Path socketDir;
     private UserPrincipal currentUser;
     
@@ -130,6 +133,8 @@ class UnixSocketServerTransport implements ServerTransport {
         this.channelUtils = channelCreator;
         this.threadCreator = threadCreator;
         this.userUtils = userUtils;
+        this.clientThreads = new ClientSelectorThread[0];
+        this.clientSelectors = new Selector[0];
     }
     
     @Override
@@ -150,7 +155,20 @@ class UnixSocketServerTransport implements ServerTransport {
         
         // Open the Selector and start accepting connections
         this.selector = selectorProvider.openSelector();
-        this.acceptThread = threadCreator.createAcceptThread(selector, execService);
+        int numSelectorThreads = this.props.getSelectorThreads();
+        if (numSelectorThreads > 1) {
+            // Spread clients across their own selector threads, leaving the accept thread to accept connections
+            this.clientThreads = new ClientSelectorThread[numSelectorThreads];
+            this.clientSelectors = new Selector[numSelectorThreads];
+            for (int i = 0; i < numSelectorThreads; i++) {
+                clientSelectors[i] = selectorProvider.openSelector();
+                clientThreads[i] = threadCreator.createClientSelectorThread(clientSelectors[i], execService);
+                clientThreads[i].start();
+            }
+            this.acceptThread = threadCreator.createAcceptThread(selector, execService, clientThreads);
+        } else {
+            this.acceptThread = threadCreator.createAcceptThread(selector, execService);
+        }
         acceptThread.start();
         logger.info("Agent IPC service started");
     }
@@ -333,6 +351,11 @@ class UnixSocketServerTransport implements ServerTransport {
     @Override
     public void shutdown() throws IOException {
         try {
+            // Stop client selector threads before the accept thread, which shuts down the executor
+            for (int i = 0; i < clientThreads.length; i++) {
+                clientThreads[i].shutdown();
+                channelUtils.closeSelector(clientSelectors[i]);
+            }
             // Stop accepting connections and close selector afterward
             acceptThread.shutdown();
             channelUtils.closeSelector(selector);
@@ -425,6 +448,15 @@ class UnixSocketServerTransport implements ServerTransport {
         AcceptThread createAcceptThread(Selector selector, ExecutorService execService) {
             return new AcceptThread(selector, execService);
         }
+        
+        AcceptThread createAcceptThread(Selector selector, ExecutorService execService, 
+                ClientSelectorThread[] clientThreads) {
+            return new AcceptThread(selector, execService, clientThreads);
+        }
+        
+        ClientSelectorThread createClientSelectorThread(Selector selector, ExecutorService execService) {
+            return new ClientSelectorThread(selector, execService);
+        }
     }
     
     /* For testing purposes */
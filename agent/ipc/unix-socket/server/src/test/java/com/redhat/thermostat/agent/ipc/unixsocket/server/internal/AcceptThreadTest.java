@@ -61,7 +61,9 @@ import com.redhat.thermostat.agent.ipc.unixsocket.server.internal.AcceptThread;
 import com.redhat.thermostat.agent.ipc.unixsocket.server.internal.AcceptedLocalSocketChannelImpl;
 import com.redhat.thermostat.agent.ipc.unixsocket.server.internal.ClientHandler;
 import com.redhat.thermostat.agent.ipc.unixsocket.server.internal.ThermostatLocalServerSocketChannelImpl;
-import com.redhat.thermostat.agent.ipc.unixsocket.server.internal.AcceptThread.ClientHandlerCreator;
+import com.redhat.thermostat.agent.ipc.unixsocket.server.internal.SelectorThread.ClientHandlerCreator;
+
+import jnr.unixsocket.UnixSocketChannel;
 
 public class AcceptThreadTest {
     
@@ -120,6 +122,46 @@ public class AcceptThreadTest {
         verify(handler, never()).handleWrite();
     }
     
+    @Test
+    public void testSelectAcceptWithClientThreads() throws IOException {
+        ClientSelectorThread clientThread1 = mock(ClientSelectorThread.class);
+        ClientSelectorThread clientThread2 = mock(ClientSelectorThread.class);
+        UnixSocketChannel clientImpl = mock(UnixSocketChannel.class);
+        when(serverSock.acceptChannel()).thenReturn(clientImpl);
+        thread = new AcceptThread(selector, execService, 
+                new ClientSelectorThread[] { clientThread1, clientThread2 }, handlerCreator);
+        
+        // Accept three clients, one per selection
+        when(selector.selectedKeys()).thenAnswer(new Answer<Set<SelectionKey>>() {
+            @Override
+            public Set<SelectionKey> answer(InvocationOnMock invocation) throws Throwable {
+                Set<SelectionKey> keys = new HashSet<>();
+                keys.add(acceptKey);
+                return keys;
+            }
+        });
+        selectAndShutdown(thread, 3, new int[] { 1, 1, 1 });
+        thread.run();
+        
+        // Clients should be handed to each client thread in turn
+        verify(serverSock, times(3)).acceptChannel();
+        verify(clientThread1, times(2)).addClient(serverSock, clientImpl);
+        verify(clientThread2).addClient(serverSock, clientImpl);
+        
+        // Clients should not be handled by the accept thread
+        verify(serverSock, never()).accept();
+        verify(handlerCreator, never()).createHandler(clientSock, execService, callbacks);
+    }
+    
+    @Test
+    public void testShutdownStopsExecutor() throws IOException {
+        mockSelectionKeys();
+        selectAndShutdown(thread, 0);
+        thread.run();
+        
+        verify(execService).shutdown();
+    }
+    
     @Test
     public void testSelectOneAcceptInvalid() throws IOException {
         when(acceptKey.isValid()).thenReturn(false);
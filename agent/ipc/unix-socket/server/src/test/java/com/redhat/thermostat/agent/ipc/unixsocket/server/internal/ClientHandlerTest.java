@@ -39,9 +39,12 @@ package com.redhat.thermostat.agent.ipc.unixsocket.server.internal;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -54,8 +57,12 @@ import java.util.concurrent.ExecutorService;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.redhat.thermostat.agent.ipc.server.ThermostatIPCCallbacks;
+import com.redhat.thermostat.agent.ipc.server.ThermostatIPCStreamCallbacks;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.AsyncMessageReader;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.AsyncMessageWriter;
 import com.redhat.thermostat.agent.ipc.unixsocket.common.internal.MessageListener;
@@ -171,6 +178,175 @@ public class ClientHandlerTest {
         verify(callbacks).messageReceived(message);
     }
     
+    @Test
+    public void testMessagesRunInOrder() throws Exception {
+        ByteBuffer buf1 = mock(ByteBuffer.class);
+        ByteBuffer buf2 = mock(ByteBuffer.class);
+        MessageImpl message1 = mock(MessageImpl.class);
+        MessageImpl message2 = mock(MessageImpl.class);
+        when(messageCreator.createMessage(buf1, handler)).thenReturn(message1);
+        when(messageCreator.createMessage(buf2, handler)).thenReturn(message2);
+        
+        handler.messageRead(buf1);
+        handler.messageRead(buf2);
+        
+        // Only one task runs this client's callbacks at a time
+        ArgumentCaptor<Runnable> runCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(execService).submit(runCaptor.capture());
+        runCaptor.getValue().run();
+        
+        InOrder order = inOrder(callbacks);
+        order.verify(callbacks).messageReceived(message1);
+        order.verify(callbacks).messageReceived(message2);
+        verify(execService, times(1)).submit(any(Runnable.class));
+        
+        // Another task is needed for later messages
+        handler.messageRead(buf1);
+        verify(execService, times(2)).submit(any(Runnable.class));
+    }
+    
+    @Test
+    public void testMessageCallbackException() throws Exception {
+        ByteBuffer buf1 = mock(ByteBuffer.class);
+        ByteBuffer buf2 = mock(ByteBuffer.class);
+        MessageImpl message1 = mock(MessageImpl.class);
+        MessageImpl message2 = mock(MessageImpl.class);
+        when(messageCreator.createMessage(buf1, handler)).thenReturn(message1);
+        when(messageCreator.createMessage(buf2, handler)).thenReturn(message2);
+        doThrow(new RuntimeException("TEST")).when(callbacks).messageReceived(message1);
+        
+        handler.messageRead(buf1);
+        handler.messageRead(buf2);
+        ArgumentCaptor<Runnable> runCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(execService).submit(runCaptor.capture());
+        runCaptor.getValue().run();
+        
+        // Later callbacks should still run
+        verify(callbacks).messageReceived(message2);
+    }
+    
+    @Test
+    public void testReadPausedWhenCallbacksFallBehind() throws Exception {
+        when(key.isValid()).thenReturn(true);
+        when(key.interestOps()).thenReturn(SelectionKey.OP_READ);
+        ByteBuffer buf = mock(ByteBuffer.class);
+        for (int i = 0; i < ClientHandler.MAX_PENDING_CALLBACKS - 1; i++) {
+            handler.messageRead(buf);
+        }
+        verify(key, never()).interestOps(anyInt());
+        
+        // Stop reading once too many callbacks are waiting
+        handler.messageRead(buf);
+        verify(key).interestOps(0);
+        
+        // Resume once enough have run
+        when(key.interestOps()).thenReturn(0);
+        ArgumentCaptor<Runnable> runCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(execService).submit(runCaptor.capture());
+        runCaptor.getValue().run();
+        verify(callbacks, times(ClientHandler.MAX_PENDING_CALLBACKS)).messageReceived(message);
+        verify(key).interestOps(SelectionKey.OP_READ);
+        verify(selector).wakeup();
+    }
+    
+    @Test
+    public void testReadNotPausedWhenClosed() throws Exception {
+        when(key.isValid()).thenReturn(false);
+        ByteBuffer buf = mock(ByteBuffer.class);
+        for (int i = 0; i < ClientHandler.MAX_PENDING_CALLBACKS; i++) {
+            handler.messageRead(buf);
+        }
+        verify(key, never()).interestOps(anyInt());
+    }
+    
+    @Test
+    public void testMessagePartRead() throws Exception {
+        ThermostatIPCStreamCallbacks streamCallbacks = mock(ThermostatIPCStreamCallbacks.class);
+        handler = new ClientHandler(client, execService, streamCallbacks, reader, writer, messageCreator);
+        
+        ByteBuffer buf1 = mock(ByteBuffer.class);
+        ByteBuffer buf2 = mock(ByteBuffer.class);
+        MessageImpl part1 = mock(MessageImpl.class);
+        MessageImpl part2 = mock(MessageImpl.class);
+        when(part1.get()).thenReturn(buf1);
+        when(part2.get()).thenReturn(buf2);
+        when(part2.isLastPart()).thenReturn(true);
+        when(messageCreator.createMessagePart(buf1, false, handler)).thenReturn(part1);
+        when(messageCreator.createMessagePart(buf2, true, handler)).thenReturn(part2);
+        
+        handler.messagePartRead(buf1, false);
+        handler.messagePartRead(buf2, true);
+        
+        // Only one delivery task at a time
+        ArgumentCaptor<Runnable> runCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(execService).submit(runCaptor.capture());
+        Runnable runnable = runCaptor.getValue();
+        runnable.run();
+        
+        // Check parts delivered in order, and released after each callback
+        InOrder order = inOrder(streamCallbacks, reader);
+        order.verify(streamCallbacks).messagePartReceived(part1, false);
+        order.verify(reader).releasePart(buf1);
+        order.verify(streamCallbacks).messagePartReceived(part2, true);
+        order.verify(reader).releasePart(buf2);
+        
+        // Nothing left to deliver
+        verify(execService, times(1)).submit(any(Runnable.class));
+    }
+    
+    @Test
+    public void testReadPausedWhilePartLimitReached() throws Exception {
+        ThermostatIPCStreamCallbacks streamCallbacks = mock(ThermostatIPCStreamCallbacks.class);
+        handler = new ClientHandler(client, execService, streamCallbacks, reader, writer, messageCreator);
+        when(key.isValid()).thenReturn(true);
+        when(key.interestOps()).thenReturn(SelectionKey.OP_READ);
+        
+        ByteBuffer buf = mock(ByteBuffer.class);
+        MessageImpl part = mock(MessageImpl.class);
+        when(part.get()).thenReturn(buf);
+        when(messageCreator.createMessagePart(buf, false, handler)).thenReturn(part);
+        
+        // Stop reading while the reader has no free part buffers
+        when(reader.isPartLimitReached()).thenReturn(true);
+        handler.messagePartRead(buf, false);
+        verify(key).interestOps(0);
+        
+        // Resume once the part has been released
+        when(key.interestOps()).thenReturn(0);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                when(reader.isPartLimitReached()).thenReturn(false);
+                return null;
+            }
+        }).when(reader).releasePart(buf);
+        ArgumentCaptor<Runnable> runCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(execService).submit(runCaptor.capture());
+        runCaptor.getValue().run();
+        verify(key).interestOps(SelectionKey.OP_READ);
+        verify(selector).wakeup();
+    }
+    
+    @Test
+    public void testMessagePartCallbackException() throws Exception {
+        ThermostatIPCStreamCallbacks streamCallbacks = mock(ThermostatIPCStreamCallbacks.class);
+        handler = new ClientHandler(client, execService, streamCallbacks, reader, writer, messageCreator);
+        
+        ByteBuffer buf = mock(ByteBuffer.class);
+        MessageImpl part = mock(MessageImpl.class);
+        when(part.get()).thenReturn(buf);
+        when(messageCreator.createMessagePart(buf, false, handler)).thenReturn(part);
+        doThrow(new RuntimeException("TEST")).when(streamCallbacks).messagePartReceived(part, false);
+        
+        handler.messagePartRead(buf, false);
+        ArgumentCaptor<Runnable> runCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(execService).submit(runCaptor.capture());
+        runCaptor.getValue().run();
+        
+        // Part must still be released
+        verify(reader).releasePart(buf);
+    }
+    
     @Test
     public void testWriteMessage() throws Exception {
         final int ops = 8000;
@@ -178,6 +178,44 @@ public class ThermostatLocalServerSocketChannelImplTest {
         verify(channelHelper).register(clientImpl, selector, SelectionKey.OP_READ);
     }
     
+    @Test
+    public void testAcceptChannel() throws IOException {
+        ThermostatLocalServerSocketChannelImpl channel = createChannel();
+        UnixSocketChannel clientImpl = mock(UnixSocketChannel.class);
+        when(impl.accept()).thenReturn(clientImpl);
+        UnixSocketChannel result = channel.acceptChannel();
+        assertEquals(clientImpl, result);
+        verify(channelHelper).configureBlocking(clientImpl, false);
+        // Left for the caller to register
+        verify(channelHelper, never()).register(clientImpl, selector, SelectionKey.OP_READ);
+    }
+    
+    @Test
+    public void testRegisterClient() throws IOException {
+        ThermostatLocalServerSocketChannelImpl channel = createChannel();
+        UnixSocketChannel clientImpl = mock(UnixSocketChannel.class);
+        Selector clientSelector = mock(Selector.class);
+        SelectionKey clientKey = mock(SelectionKey.class);
+        when(channelHelper.register(clientImpl, clientSelector, SelectionKey.OP_READ)).thenReturn(clientKey);
+        AcceptedLocalSocketChannelImpl client = channel.registerClient(clientImpl, clientSelector);
+        assertEquals(clientKey, client.getSelectionKey());
+        assertEquals(SERVER_NAME, client.getName());
+    }
+    
+    @Test
+    public void testRegisterClientFails() throws IOException {
+        ThermostatLocalServerSocketChannelImpl channel = createChannel();
+        UnixSocketChannel clientImpl = mock(UnixSocketChannel.class);
+        Selector clientSelector = mock(Selector.class);
+        when(channelHelper.register(clientImpl, clientSelector, SelectionKey.OP_READ)).thenThrow(new IOException("TEST"));
+        try {
+            channel.registerClient(clientImpl, clientSelector);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            verify(channelHelper).close(clientImpl);
+        }
+    }
+    
     @Test
     public void testAcceptClosed() throws IOException {
         when(channelHelper.isOpen(impl)).thenReturn(false);
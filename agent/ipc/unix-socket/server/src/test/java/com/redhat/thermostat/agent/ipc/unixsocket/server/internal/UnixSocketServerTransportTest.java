@@ -44,6 +44,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -68,6 +69,7 @@ import java.util.concurrent.ExecutorService;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -306,6 +308,38 @@ public class UnixSocketServerTransportTest {
         verify(fileUtils).delete(socketDirPath);
     }
     
+    @Test
+    public void testStartSelectorThreads() throws Exception {
+        AbstractSelector clientSelector1 = mock(AbstractSelector.class);
+        AbstractSelector clientSelector2 = mock(AbstractSelector.class);
+        when(provider.openSelector()).thenReturn(selector, clientSelector1, clientSelector2);
+        when(props.getSelectorThreads()).thenReturn(2);
+        ClientSelectorThread clientThread1 = mock(ClientSelectorThread.class);
+        ClientSelectorThread clientThread2 = mock(ClientSelectorThread.class);
+        when(threadCreator.createClientSelectorThread(clientSelector1, execService)).thenReturn(clientThread1);
+        when(threadCreator.createClientSelectorThread(clientSelector2, execService)).thenReturn(clientThread2);
+        when(threadCreator.createAcceptThread(selector, execService, 
+                new ClientSelectorThread[] { clientThread1, clientThread2 })).thenReturn(acceptThread);
+        
+        transport.start(props);
+        verify(provider, times(3)).openSelector();
+        verify(clientThread1).start();
+        verify(clientThread2).start();
+        verify(acceptThread).start();
+        verify(threadCreator, never()).createAcceptThread(selector, execService);
+        
+        mockSocketDirOnShutdown();
+        transport.shutdown();
+        // Client threads should stop before the accept thread shuts down the executor
+        InOrder order = inOrder(clientThread1, clientThread2, acceptThread);
+        order.verify(clientThread1).shutdown();
+        order.verify(clientThread2).shutdown();
+        order.verify(acceptThread).shutdown();
+        verify(channelUtils).closeSelector(clientSelector1);
+        verify(channelUtils).closeSelector(clientSelector2);
+        verify(channelUtils).closeSelector(selector);
+    }
+    
     @Test
     public void testShutdownFailure() throws Exception {
         transport.start(props);
@@ -36,10 +36,12 @@
 
 package com.redhat.thermostat.agent.ipc.winpipes.client.internal;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import com.redhat.thermostat.agent.ipc.client.IPCMessageChannel;
+import com.redhat.thermostat.agent.ipc.client.IPCMessageStream;
 import com.redhat.thermostat.agent.ipc.winpipes.common.internal.SyncMessageReader;
 import com.redhat.thermostat.agent.ipc.winpipes.common.internal.SyncMessageWriter;
 import com.redhat.thermostat.agent.ipc.winpipes.common.internal.WinPipesChannelImpl;
@@ -85,4 +87,43 @@ public class WinPipesMessageChannel implements IPCMessageChannel {
     public void writeMessage(ByteBuffer message) throws IOException {
         writer.writeData(message);
     }
+
+    /*
+     * Named pipes do not support streamed messages yet. The stream collects
+     * the message and writes it on close, within the usual size limits.
+     */
+    @Override
+    public IPCMessageStream openMessageStream() throws IOException {
+        return new IPCMessageStream() {
+            private final ByteArrayOutputStream message = new ByteArrayOutputStream();
+            private boolean open = true;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (!open) {
+                    throw new IOException("Message stream is closed");
+                }
+                int written = src.remaining();
+                byte[] bytes = new byte[written];
+                src.get(bytes);
+                message.write(bytes);
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (open) {
+                    open = false;
+                    if (message.size() > 0) {
+                        writeMessage(ByteBuffer.wrap(message.toByteArray()));
+                    }
+                }
+            }
+        };
+    }
 }
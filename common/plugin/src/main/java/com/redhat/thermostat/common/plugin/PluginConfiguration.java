@@ -51,12 +51,18 @@ public class PluginConfiguration {
 
     private final ConfigurationInfoSource source;
     private final String pluginId;
+    // Last resolved URL, reused while the source keeps returning the same configuration
+    private volatile ResolvedURL resolvedURL;
 
     public PluginConfiguration(ConfigurationInfoSource source, final String pluginId) {
         this.source = source;
         this.pluginId = pluginId;
     }
 
+    public String getPluginId() {
+        return pluginId;
+    }
+
     /**
      * Returns the microservice URL defined by the "gatewayURL" property in the gateway.properties file
      * for this plugin, expressed as a {@link URI}. If the provided URL does not end in a '/' character, 
@@ -69,6 +75,10 @@ public class PluginConfiguration {
      */
     public URI getGatewayURL() throws IOException {
         Map<String, String> props = source.getConfiguration(pluginId, CONFIG_FILE);
+        ResolvedURL resolved = resolvedURL;
+        if (resolved != null && resolved.props == props) {
+            return resolved.uri;
+        }
         String url = props.get(URL_PROP);
         if (url == null) {
             throw new IOException("No gateway URL found for " + pluginId + " in " + getConfigFilePath());
@@ -79,6 +89,7 @@ public class PluginConfiguration {
                 url = url.concat("/");
             }
             URI gatewayURI = new URI(url);
+            resolvedURL = new ResolvedURL(props, gatewayURI);
             return gatewayURI;
         } catch (URISyntaxException e) {
             throw new IOException("Invalid URL found for " + pluginId + ": " + url, e);
@@ -92,4 +103,15 @@ public class PluginConfiguration {
                 .append(CONFIG_FILE);
         return builder.toString();
     }
-}
\ No newline at end of file
+
+    private static class ResolvedURL {
+
+        private final Map<String, String> props;
+        private final URI uri;
+
+        private ResolvedURL(Map<String, String> props, URI uri) {
+            this.props = props;
+            this.uri = uri;
+        }
+    }
+}
@@ -38,11 +38,12 @@ package com.redhat.thermostat.common.plugin;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.gson.TypeAdapter;
 import com.redhat.thermostat.agent.http.HttpRequestService;
-import com.redhat.thermostat.agent.http.RequestFailedException;
 
 abstract public class PluginDAOBase<Tobj> {
 
@@ -52,14 +53,29 @@ abstract public class PluginDAOBase<Tobj> {
     protected abstract URI getPostURI(final URI basepath, final Tobj obj);
     protected abstract Logger getLogger();
 
+    /**
+     * @return an adapter which serializes lists of records, or {@code null}
+     *         to serialize each record with {@link #toJsonString(Object)}
+     *         when it is put. With an adapter, records are only serialized
+     *         when they are sent, straight into the request body.
+     */
+    protected TypeAdapter<List<Tobj>> getTypeAdapter() {
+        return null;
+    }
+
     public void put(final Tobj obj) {
         try {
             HttpRequestService httpRequestService = getHttpRequestService();
-            String json = toJsonString(obj);
-            final URI gatewayURI = getConfig().getGatewayURL();
-            final URI postURI = getPostURI(gatewayURI, obj);
-            httpRequestService.sendHttpRequest(json, postURI, HttpRequestService.Method.POST);
-        } catch (IOException | RequestFailedException e) {
+            final PluginConfiguration config = getConfig();
+            final URI postURI = getPostURI(config.getGatewayURL(), obj);
+            TypeAdapter<List<Tobj>> typeAdapter = getTypeAdapter();
+            if (typeAdapter != null) {
+                httpRequestService.queueHttpPost(config.getPluginId(), typeAdapter, obj, postURI);
+            } else {
+                String json = toJsonString(obj);
+                httpRequestService.queueHttpPost(config.getPluginId(), json, postURI);
+            }
+        } catch (IOException e) {
             getLogger().log(Level.WARNING, "Failed to send " + obj.getClass().getName() + " to web gateway", e);
         }
     }
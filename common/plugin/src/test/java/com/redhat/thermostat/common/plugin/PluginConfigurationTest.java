@@ -37,6 +37,7 @@
 package com.redhat.thermostat.common.plugin;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -77,6 +78,23 @@ public class PluginConfigurationTest {
         assertEquals(URI.create("urlToGateway/"), config.getGatewayURL());
     }
 
+    @Test
+    public void testGetGatewayURLReusesResultForSameConfiguration() throws Exception {
+        ConfigurationInfoSource source = mock(ConfigurationInfoSource.class);
+        Map<String, String> props = new HashMap<>();
+        props.put(URL_PROP, "urlToGateway/");
+        when(source.getConfiguration(PLUGIN_ID, CONFIG_FILE)).thenReturn(props);
+        PluginConfiguration config = new PluginConfiguration(source, PLUGIN_ID);
+
+        URI first = config.getGatewayURL();
+        assertSame(first, config.getGatewayURL());
+
+        Map<String, String> changedProps = new HashMap<>();
+        changedProps.put(URL_PROP, "otherGateway/");
+        when(source.getConfiguration(PLUGIN_ID, CONFIG_FILE)).thenReturn(changedProps);
+        assertEquals(URI.create("otherGateway/"), config.getGatewayURL());
+    }
+
     @Test(expected=IOException.class)
     public void testGetGatewayURLMissing() throws Exception {
         ConfigurationInfoSource source = mock(ConfigurationInfoSource.class);
@@ -61,14 +61,14 @@ public class LinuxNativeLibsExtractor {
     }
 
     private static String[] getNativeLibsFromReader(File nativeLibFile) {
-        final String soGrep = ".+\\.so.*";
         Set<String> result = new HashSet<>();
         try (BufferedReader br
                      = new BufferedReader(new FileReader(nativeLibFile))) {
             String next = br.readLine();
             while (next != null) {
                 next = next.trim();
-                if (next.matches(soGrep)) {
+                // same as matching ".+\\.so.*", without a regex per line
+                if (next.indexOf(".so", 1) > 0) {
                     String candidate = next.substring(next.lastIndexOf(' ') + 1);
                     result.add(candidate);
                 }
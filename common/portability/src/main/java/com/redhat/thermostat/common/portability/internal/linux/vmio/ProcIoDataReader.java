@@ -36,11 +36,12 @@
 
 package com.redhat.thermostat.common.portability.internal.linux.vmio;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.redhat.thermostat.common.portability.linux.ProcBuffer;
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 
@@ -51,15 +52,42 @@ public class ProcIoDataReader {
 
     private static final Logger logger = LoggingUtils.getLogger(ProcIoDataReader.class);
 
+    private static final int RCHAR = 0;
+    private static final int WCHAR = 1;
+    private static final int SYSCR = 2;
+    private static final int SYSCW = 3;
+    private static final int READ_BYTES = 4;
+    private static final int WRITE_BYTES = 5;
+    private static final int CANCELLED_WRITE_BYTES = 6;
+    // indexed by the constants above
+    private static final byte[][] KEYS = {
+        ProcBuffer.ascii("rchar"),
+        ProcBuffer.ascii("wchar"),
+        ProcBuffer.ascii("syscr"),
+        ProcBuffer.ascii("syscw"),
+        ProcBuffer.ascii("read_bytes"),
+        ProcBuffer.ascii("write_bytes"),
+        ProcBuffer.ascii("cancelled_write_bytes"),
+    };
+
     private final ProcDataSource dataSource;
+    // Processes may be polled from several threads at once
+    private final ThreadLocal<ProcBuffer> buffers = new ThreadLocal<ProcBuffer>() {
+        @Override
+        protected ProcBuffer initialValue() {
+            return new ProcBuffer(256);
+        }
+    };
 
     public ProcIoDataReader(ProcDataSource dataSource) {
         this.dataSource = dataSource;
     }
 
     public ProcIoData read(int pid) {
-        try (BufferedReader reader = new BufferedReader(dataSource.getIoReader(pid))) {
-            return read(reader);
+        ProcBuffer buffer = buffers.get();
+        try (ReadableByteChannel channel = dataSource.getIoChannel(pid)) {
+            buffer.fill(channel);
+            return read(buffer);
         } catch (IOException e) {
             logger.log(Level.FINE, "Unable to read io info for: " + pid);
         }
@@ -67,7 +95,7 @@ public class ProcIoDataReader {
         return null;
     }
 
-    private ProcIoData read(BufferedReader r) throws IOException {
+    private ProcIoData read(ProcBuffer buffer) {
         // The file format is described at:
         // http://git.kernel.org/cgit/linux/kernel/git/torvalds/linux.git/tree/Documentation/filesystems/proc.txt
 
@@ -80,38 +108,34 @@ public class ProcIoDataReader {
         long write_bytes = UNKNOWN_VALUE;
         long cancelled_write_bytes = UNKNOWN_VALUE;
 
-        String line;
-        while ((line = r.readLine()) != null) {
-            String[] parts = line.split(":");
-            String key = parts[0].trim();
-            String value = parts[1].trim();
-            switch (key) {
-                case "rchar":
-                    rchar = Long.valueOf(value);
+        while (buffer.hasRemaining()) {
+            switch (buffer.nextKey(KEYS, ':')) {
+                case RCHAR:
+                    rchar = buffer.nextLong();
                     break;
-                case "wchar":
-                    wchar = Long.valueOf(value);
+                case WCHAR:
+                    wchar = buffer.nextLong();
                     break;
-                case "syscr":
-                    syscr = Long.valueOf(value);
+                case SYSCR:
+                    syscr = buffer.nextLong();
                     break;
-                case "syscw":
-                    syscw = Long.valueOf(value);
+                case SYSCW:
+                    syscw = buffer.nextLong();
                     break;
-                case "read_bytes":
-                    read_bytes = Long.valueOf(value);
+                case READ_BYTES:
+                    read_bytes = buffer.nextLong();
                     break;
-                case "write_bytes":
-                    write_bytes = Long.valueOf(value);
+                case WRITE_BYTES:
+                    write_bytes = buffer.nextLong();
                     break;
-                case "cancelled_write_bytes":
-                    cancelled_write_bytes = Long.valueOf(value);
+                case CANCELLED_WRITE_BYTES:
+                    cancelled_write_bytes = buffer.nextLong();
                     break;
             }
+            buffer.nextLine();
         }
 
         return new ProcIoData(rchar, wchar, syscr, syscw, read_bytes, write_bytes, cancelled_write_bytes);
     }
 
 }
-
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.common.portability.linux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable buffer for the contents of a file under {@code /proc/}, with
+ * methods that parse the contents in place. Files are small and change on
+ * every read, so a polling reader should keep one of these around and
+ * {@link #fill(ReadableByteChannel)} it each time: apart from growing the
+ * buffer on the first reads, parsing allocates nothing.
+ * <p>
+ * The parsing methods work on a cursor that starts at the beginning of the
+ * contents. They only understand ASCII, which is all procfs produces for the
+ * files read this way.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class ProcBuffer {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private ByteBuffer buffer;
+    private byte[] data;
+    private int limit;
+    private int position;
+
+    public ProcBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ProcBuffer(int initialCapacity) {
+        buffer = ByteBuffer.allocate(initialCapacity);
+        data = buffer.array();
+    }
+
+    /**
+     * Replaces the contents of this buffer with everything left to read from
+     * the channel, and moves the cursor to the beginning. The size reported
+     * by procfs files is meaningless, so this reads until the end of the
+     * channel, growing the buffer as needed.
+     */
+    public void fill(ReadableByteChannel channel) throws IOException {
+        buffer.clear();
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+                data = buffer.array();
+            }
+        }
+        limit = buffer.position();
+        position = 0;
+    }
+
+    /**
+     * @return whether the cursor is before the end of the contents
+     */
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public void position(int newPosition) {
+        if (newPosition < 0 || newPosition > limit) {
+            throw new IllegalArgumentException("position " + newPosition + " is outside of [0," + limit + "]");
+        }
+        position = newPosition;
+    }
+
+    /**
+     * @return the index of the last occurrence of the character in the whole
+     *         contents, or -1 if there is none
+     */
+    public int lastIndexOf(char c) {
+        for (int i = limit - 1; i >= 0; i--) {
+            if (data[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the cursor past any spaces and tabs. Does not move past the end
+     * of the line.
+     */
+    public void skipSpaces() {
+        while (position < limit && isSpace(data[position])) {
+            position++;
+        }
+    }
+
+    /**
+     * Moves the cursor past any spaces and the whitespace-delimited token
+     * that follows them.
+     */
+    public void skipToken() {
+        skipSpaces();
+        while (position < limit && !isWhitespace(data[position])) {
+            position++;
+        }
+    }
+
+    /**
+     * Moves the cursor to the beginning of the next line, or the end of the
+     * contents if this is the last line.
+     */
+    public void nextLine() {
+        while (position < limit && data[position++] != '\n') {
+            // keep going
+        }
+    }
+
+    /**
+     * @return whether the cursor is at the end of the line, ignoring spaces.
+     */
+    public boolean isAtEndOfLine() {
+        skipSpaces();
+        return position == limit || data[position] == '\n';
+    }
+
+    /**
+     * @return whether the character under the cursor is a decimal digit
+     */
+    public boolean isAtDigit() {
+        return position < limit && isDigit(data[position]);
+    }
+
+    /**
+     * Moves the cursor past the prefix if the contents under the cursor
+     * start with it.
+     *
+     * @param prefix an ASCII prefix, see {@link #ascii(String)}
+     * @return whether the contents matched the prefix
+     */
+    public boolean skipIfStartsWith(byte[] prefix) {
+        if (limit - position < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[position + i] != prefix[i]) {
+                return false;
+            }
+        }
+        position += prefix.length;
+        return true;
+    }
+
+    /**
+     * Reads a "key: value" style key. Leading and trailing spaces around the
+     * key are ignored. If the current line contains the separator, the cursor
+     * is moved past it, otherwise it is moved to the end of the line.
+     *
+     * @param keys the ASCII keys to look for, see {@link #ascii(String)}
+     * @return the index of the matching key in {@code keys}, or -1 if the key
+     *         is not one of them or the line has no separator
+     */
+    public int nextKey(byte[][] keys, char separator) {
+        skipSpaces();
+        int start = position;
+        int end = start;
+        while (end < limit && data[end] != separator) {
+            if (data[end] == '\n') {
+                position = end;
+                return -1;
+            }
+            end++;
+        }
+        if (end == limit) {
+            position = limit;
+            return -1;
+        }
+        position = end + 1;
+        while (end > start && isSpace(data[end - 1])) {
+            end--;
+        }
+        for (int k = 0; k < keys.length; k++) {
+            if (regionEquals(start, end, keys[k])) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a decimal number, optionally negative, after skipping any
+     * spaces.
+     *
+     * @throws NumberFormatException if there is no number under the cursor
+     */
+    public long nextLong() {
+        skipSpaces();
+        int start = position;
+        boolean negative = false;
+        if (position < limit && data[position] == '-') {
+            negative = true;
+            position++;
+        }
+        long result = 0;
+        int digitsStart = position;
+        while (position < limit && isDigit(data[position])) {
+            // accumulate negatively, like Long.parseLong, so Long.MIN_VALUE fits
+            result = result * 10 - (data[position] - '0');
+            position++;
+        }
+        if (position == digitsStart || (position < limit && !isWhitespace(data[position]))) {
+            position = start;
+            throw new NumberFormatException("not a number: \"" + nextToken() + "\"");
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Returns the whitespace-delimited token under the cursor as a string.
+     * This allocates, so it is meant for error messages and rarely seen
+     * values.
+     */
+    public String nextToken() {
+        skipSpaces();
+        int start = position;
+        skipToken();
+        return new String(data, start, position - start, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Converts a string constant into the form the parsing methods expect.
+     * Callers should do this once, not on every parse.
+     */
+    public static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private boolean regionEquals(int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (data[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return isSpace(b) || b == '\n' || b == '\r' || b == 0;
+    }
+
+}
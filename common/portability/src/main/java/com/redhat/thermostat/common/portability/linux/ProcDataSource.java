@@ -40,6 +40,10 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Wrapper for files under {@code /proc/}. See proc(5) for details about this.
@@ -49,6 +53,9 @@ import java.io.Reader;
  *
  * Note that different Unix-like OSs may or may not have a /proc (and the format may be different)
  * for example Darwin/OSX doesn't have /proc
+ *
+ * Frequently polled files are also available as channels, to be read into a
+ * reused {@link ProcBuffer} and parsed without allocating.
  */
 public class ProcDataSource {
 
@@ -136,6 +143,34 @@ public class ProcDataSource {
         return readerCreator.createFileReader(getPidFile(PID_NUMA_MAPS_FILE, pid));
     }
 
+    /**
+     * Returns a channel for /proc/stat. Kernel/System statistics.
+     */
+    public ReadableByteChannel getStatChannel() throws IOException {
+        return readerCreator.createFileChannel(STAT_FILE);
+    }
+
+    /**
+     * Returns a channel for /proc/meminfo
+     */
+    public ReadableByteChannel getMemInfoChannel() throws IOException {
+        return readerCreator.createFileChannel(MEMINFO_FILE);
+    }
+
+    /**
+     * Returns a channel for /proc/$PID/io
+     */
+    public ReadableByteChannel getIoChannel(int pid) throws IOException {
+        return readerCreator.createFileChannel(getPidFile(PID_IO_FILE, pid));
+    }
+
+    /**
+     * Returns a channel for /proc/$PID/stat
+     */
+    public ReadableByteChannel getStatChannel(int pid) throws IOException {
+        return readerCreator.createFileChannel(getPidFile(PID_STAT_FILE, pid));
+    }
+
     private String getPidFile(String fileName, int pid) {
         return fileName.replace("${pid}", Integer.toString(pid));
     }
@@ -145,6 +180,10 @@ public class ProcDataSource {
         FileReader createFileReader(String fileName) throws FileNotFoundException {
             return new FileReader(fileName);
         }
+
+        FileChannel createFileChannel(String fileName) throws IOException {
+            return FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        }
     }
 
 }
@@ -46,8 +46,10 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 
 import com.redhat.thermostat.common.portability.PortableProcessStat;
 import com.redhat.thermostat.shared.config.OS;
@@ -98,11 +100,12 @@ public class LinuxPortableProcessStatBuilderImplTest {
                 KERNEL_TIME_CHILDREN + " " + PRIORITY;
 
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getStatReader(any(Integer.class))).thenReturn(new StringReader(statString));
+        when(dataSource.getStatChannel(any(Integer.class))).thenReturn(
+                Channels.newChannel(new ByteArrayInputStream(statString.getBytes(StandardCharsets.US_ASCII))));
         LinuxPortableProcessStatBuilderImpl builder = new LinuxPortableProcessStatBuilderImpl(dataSource);
         PortableProcessStat stat = builder.build(PID);
 
-        verify(dataSource).getStatReader(PID);
+        verify(dataSource).getStatChannel(PID);
         assertNotNull(stat);
         assertEquals(PID, stat.getPid());
         assertEquals(USER_TIME_TICKS, stat.getUserTime());
@@ -139,11 +142,12 @@ public class LinuxPortableProcessStatBuilderImplTest {
                 KERNEL_TIME_CHILDREN + " " + PRIORITY;
 
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getStatReader(any(Integer.class))).thenReturn(new StringReader(statString));
+        when(dataSource.getStatChannel(any(Integer.class))).thenReturn(
+                Channels.newChannel(new ByteArrayInputStream(statString.getBytes(StandardCharsets.US_ASCII))));
         LinuxPortableProcessStatBuilderImpl builder = new LinuxPortableProcessStatBuilderImpl(dataSource);
         PortableProcessStat stat = builder.build(PID);
 
-        verify(dataSource).getStatReader(PID);
+        verify(dataSource).getStatChannel(PID);
         assertNotNull(stat);
         assertEquals(PID, stat.getPid());
         assertEquals(USER_TIME_TICKS, stat.getUserTime());
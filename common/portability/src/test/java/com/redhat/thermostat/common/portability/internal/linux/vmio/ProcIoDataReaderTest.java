@@ -36,7 +36,9 @@
 
 package com.redhat.thermostat.common.portability.internal.linux.vmio;
 
-import java.io.StringReader;
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 
@@ -60,7 +62,8 @@ public class ProcIoDataReaderTest {
                 "write_bytes: 811008\n" +
                 "cancelled_write_bytes: 16384\n";
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getIoReader(SOME_PID)).thenReturn(new StringReader(fileContents));
+        when(dataSource.getIoChannel(SOME_PID)).thenReturn(
+                Channels.newChannel(new ByteArrayInputStream(fileContents.getBytes(StandardCharsets.US_ASCII))));
 
         ProcIoData parsedData = new ProcIoDataReader(dataSource).read(SOME_PID);
 
@@ -73,4 +76,24 @@ public class ProcIoDataReaderTest {
         assertEquals(16384, parsedData.cancelled_write_bytes);
 
     }
+
+    @Test
+    public void verifyMissingAndUnknownKeysAreTolerated() throws Exception {
+        final int SOME_PID = 0;
+        String fileContents = "" +
+                "rchar: 19961133\n" +
+                "not a key value line\n" +
+                "some_new_counter: 42\n" +
+                "cancelled_write_bytes: 16384";
+        ProcDataSource dataSource = mock(ProcDataSource.class);
+        when(dataSource.getIoChannel(SOME_PID)).thenReturn(
+                Channels.newChannel(new ByteArrayInputStream(fileContents.getBytes(StandardCharsets.US_ASCII))));
+
+        ProcIoData parsedData = new ProcIoDataReader(dataSource).read(SOME_PID);
+
+        assertEquals(19961133, parsedData.rchar);
+        assertEquals(-1, parsedData.wchar);
+        assertEquals(-1, parsedData.write_bytes);
+        assertEquals(16384, parsedData.cancelled_write_bytes);
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.common.portability.linux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class ProcBufferTest {
+
+    private static final byte[][] KEYS = { ProcBuffer.ascii("MemTotal"), ProcBuffer.ascii("MemFree") };
+
+    @Test
+    public void testFillGrowsBuffer() throws IOException {
+        StringBuilder contents = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            contents.append(i).append('\n');
+        }
+        ProcBuffer buffer = new ProcBuffer(8);
+        fill(buffer, contents.toString());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, buffer.nextLong());
+            buffer.nextLine();
+        }
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testFillReplacesContents() throws IOException {
+        ProcBuffer buffer = new ProcBuffer(8);
+        fill(buffer, "1234567890 1");
+        fill(buffer, "42");
+        assertEquals(42, buffer.nextLong());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testNextLong() throws IOException {
+        ProcBuffer buffer = new ProcBuffer();
+        fill(buffer, "  12\t-3 0 9223372036854775807 -9223372036854775808\n7");
+        assertEquals(12, buffer.nextLong());
+        assertEquals(-3, buffer.nextLong());
+        assertEquals(0, buffer.nextLong());
+        assertEquals(Long.MAX_VALUE, buffer.nextLong());
+        assertEquals(Long.MIN_VALUE, buffer.nextLong());
+        assertTrue(buffer.isAtEndOfLine());
+        buffer.nextLine();
+        assertEquals(7, buffer.nextLong());
+    }
+
+    @Test
+    public void testNextLongRejectsNonNumbers() throws IOException {
+        ProcBuffer buffer = new ProcBuffer();
+        fill(buffer, "12abc");
+        try {
+            buffer.nextLong();
+            fail("should have thrown");
+        } catch (NumberFormatException e) {
+            assertEquals("not a number: \"12abc\"", e.getMessage());
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testNextLongAtEnd() throws IOException {
+        ProcBuffer buffer = new ProcBuffer();
+        fill(buffer, "  ");
+        buffer.nextLong();
+    }
+
+    @Test
+    public void testTokens() throws IOException {
+        ProcBuffer buffer = new ProcBuffer();
+        fill(buffer, "1 (a b) S 5 kB");
+        buffer.position(buffer.lastIndexOf(')') + 1);
+        buffer.skipToken();
+        assertEquals(5, buffer.nextLong());
+        assertEquals("kB", buffer.nextToken());
+        assertTrue(buffer.isAtEndOfLine());
+    }
+
+    @Test
+    public void testSkipIfStartsWith() throws IOException {
+        ProcBuffer buffer = new ProcBuffer();
+        fill(buffer, "cpu12 3");
+        assertFalse(buffer.skipIfStartsWith(ProcBuffer.ascii("cpus")));
+        assertTrue(buffer.skipIfStartsWith(ProcBuffer.ascii("cpu")));
+        assertTrue(buffer.isAtDigit());
+        assertEquals(12, buffer.nextLong());
+        assertFalse(buffer.skipIfStartsWith(ProcBuffer.ascii(" 3 and more")));
+    }
+
+    @Test
+    public void testNextKey() throws IOException {
+        ProcBuffer buffer = new ProcBuffer();
+        fill(buffer, "MemTotal:  100 kB\nno separator\nMemFree :5\nOther: 6\nMemTot");
+        assertEquals(0, buffer.nextKey(KEYS, ':'));
+        assertEquals(100, buffer.nextLong());
+        buffer.nextLine();
+        assertEquals(-1, buffer.nextKey(KEYS, ':'));
+        buffer.nextLine();
+        assertEquals(1, buffer.nextKey(KEYS, ':'));
+        assertEquals(5, buffer.nextLong());
+        buffer.nextLine();
+        assertEquals(-1, buffer.nextKey(KEYS, ':'));
+        assertEquals(6, buffer.nextLong());
+        buffer.nextLine();
+        assertEquals(-1, buffer.nextKey(KEYS, ':'));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPositionOutOfBounds() throws IOException {
+        ProcBuffer buffer = new ProcBuffer();
+        fill(buffer, "1");
+        buffer.position(2);
+    }
+
+    private static void fill(ProcBuffer buffer, String contents) throws IOException {
+        buffer.fill(Channels.newChannel(new ByteArrayInputStream(contents.getBytes(StandardCharsets.US_ASCII))));
+    }
+}
@@ -45,6 +45,8 @@ import static org.mockito.Mockito.when;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 
 import org.junit.Assume;
 import org.junit.Before;
@@ -63,6 +65,8 @@ public class ProcDataSourceTest {
         readerCreator = mock(ReaderCreator.class);
         FileReader reader = mock(FileReader.class);
         when(readerCreator.createFileReader(anyString())).thenReturn(reader);
+        FileChannel channel = mock(FileChannel.class);
+        when(readerCreator.createFileChannel(anyString())).thenReturn(channel);
         source = new ProcDataSource(readerCreator);
     }
 
@@ -137,5 +141,36 @@ public class ProcDataSourceTest {
         assertNotNull(r);
         verify(readerCreator).createFileReader("/proc/1234/numa_maps");
     }
-}
 
+    @Test
+    public void testGetStatChannel() throws IOException {
+        Assume.assumeTrue(OS.IS_LINUX);
+        ReadableByteChannel c = source.getStatChannel();
+        assertNotNull(c);
+        verify(readerCreator).createFileChannel("/proc/stat");
+    }
+
+    @Test
+    public void testGetMemInfoChannel() throws IOException {
+        Assume.assumeTrue(OS.IS_LINUX);
+        ReadableByteChannel c = source.getMemInfoChannel();
+        assertNotNull(c);
+        verify(readerCreator).createFileChannel("/proc/meminfo");
+    }
+
+    @Test
+    public void testIoChannel() throws IOException {
+        Assume.assumeTrue(OS.IS_LINUX);
+        ReadableByteChannel c = source.getIoChannel(1234);
+        assertNotNull(c);
+        verify(readerCreator).createFileChannel("/proc/1234/io");
+    }
+
+    @Test
+    public void testStatChannel() throws IOException {
+        Assume.assumeTrue(OS.IS_LINUX);
+        ReadableByteChannel c = source.getStatChannel(1234);
+        assertNotNull(c);
+        verify(readerCreator).createFileChannel("/proc/1234/stat");
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.common.portability.linux;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.PerformanceTest;
+
+/**
+ * Compares parsing {@code /proc/$PID/stat} and {@code /proc/meminfo} the way
+ * the builders used to (Scanner, String.split) against parsing a reused
+ * {@link ProcBuffer}. Uses fixed file contents so that only the parsing is
+ * measured. Run with {@code mvn test -Pperf-tests}.
+ */
+@Category(PerformanceTest.class)
+public class ProcParsingPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 100000;
+
+    private static final String STAT = "10363 (java) S 1737 10363 10363 34817 11404 4202496 8093 607263 1 251 "
+            + "21 7 10 1000 20 0 25 0 1234567 4096000000 50000 18446744073709551615 1 1 0 0 0 0 0 4096 0 0 0 0 17 3 0 0 0 0 0\n";
+    private static final String MEMINFO = ""
+            + "MemTotal:       16314700 kB\n"
+            + "MemFree:         1181276 kB\n"
+            + "MemAvailable:    9618032 kB\n"
+            + "Buffers:          691412 kB\n"
+            + "Cached:          7583240 kB\n"
+            + "SwapCached:         1040 kB\n"
+            + "Active:          8542568 kB\n"
+            + "Inactive:        5330476 kB\n"
+            + "SwapTotal:       8388604 kB\n"
+            + "SwapFree:        8370940 kB\n"
+            + "Dirty:               548 kB\n"
+            + "CommitLimit:    16545952 kB\n"
+            + "Committed_AS:   19331952 kB\n"
+            + "HugePages_Total:       0\n";
+
+    private static final byte[][] MEMINFO_KEYS = { ProcBuffer.ascii("MemTotal"), ProcBuffer.ascii("MemFree"),
+            ProcBuffer.ascii("Buffers"), ProcBuffer.ascii("Cached"), ProcBuffer.ascii("SwapTotal"),
+            ProcBuffer.ascii("SwapFree"), ProcBuffer.ascii("CommitLimit") };
+    private static final String[] MEMINFO_KEY_STRINGS = { "MemTotal", "MemFree", "Buffers", "Cached",
+            "SwapTotal", "SwapFree", "CommitLimit" };
+
+    private final ProcBuffer buffer = new ProcBuffer();
+
+    @Test
+    public void compareStatParsing() throws IOException {
+        final byte[] contents = STAT.getBytes(StandardCharsets.US_ASCII);
+        assertEquals(legacyParseStat(STAT), bufferParseStat(channel(contents)));
+        compare("/proc/$PID/stat", new Parse() {
+            @Override
+            public long legacy() throws IOException {
+                return legacyParseStat(STAT);
+            }
+            @Override
+            public long buffer() throws IOException {
+                return bufferParseStat(channel(contents));
+            }
+        });
+    }
+
+    @Test
+    public void compareMemInfoParsing() throws IOException {
+        final byte[] contents = MEMINFO.getBytes(StandardCharsets.US_ASCII);
+        assertEquals(legacyParseMemInfo(MEMINFO), bufferParseMemInfo(channel(contents)));
+        compare("/proc/meminfo", new Parse() {
+            @Override
+            public long legacy() throws IOException {
+                return legacyParseMemInfo(MEMINFO);
+            }
+            @Override
+            public long buffer() throws IOException {
+                return bufferParseMemInfo(channel(contents));
+            }
+        });
+    }
+
+    private interface Parse {
+        long legacy() throws IOException;
+        long buffer() throws IOException;
+    }
+
+    private static void compare(String file, Parse parse) throws IOException {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += parse.legacy();
+            sink += parse.buffer();
+        }
+
+        long[] legacy = new long[2];
+        long[] buffer = new long[2];
+        sink += measure(parse, true, legacy);
+        sink += measure(parse, false, buffer);
+
+        System.out.println(file + ": legacy " + legacy[0] + " ns/op, " + legacy[1] + " B/op; "
+                + "ProcBuffer " + buffer[0] + " ns/op, " + buffer[1] + " B/op (" + sink + ")");
+        if (legacy[1] >= 0) {
+            assertTrue(buffer[1] < legacy[1]);
+        }
+    }
+
+    /**
+     * @param result filled with nanoseconds and bytes allocated per
+     *        operation; bytes are -1 if the JVM cannot measure them
+     */
+    private static long measure(Parse parse, boolean legacy, long[] result) throws IOException {
+        long sink = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += legacy ? parse.legacy() : parse.buffer();
+        }
+        result[0] = (System.nanoTime() - start) / ITERATIONS;
+        long allocatedAfter = allocatedBytes();
+        result[1] = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / ITERATIONS;
+        return sink;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static ReadableByteChannel channel(byte[] contents) {
+        return Channels.newChannel(new ByteArrayInputStream(contents));
+    }
+
+    private static long legacyParseStat(String contents) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new StringReader(contents))) {
+            String statusLine = reader.readLine();
+            Scanner scanner = new Scanner(statusLine.substring(statusLine.lastIndexOf(')') + 1));
+            scanner.next();
+            for (int i = 0; i < 10; i++) {
+                scanner.nextLong();
+            }
+            long utime = scanner.nextLong();
+            long stime = scanner.nextLong();
+            scanner.close();
+            return utime + stime;
+        }
+    }
+
+    private long bufferParseStat(ReadableByteChannel channel) throws IOException {
+        buffer.fill(channel);
+        buffer.position(buffer.lastIndexOf(')') + 1);
+        for (int i = 0; i < 11; i++) {
+            buffer.skipToken();
+        }
+        return buffer.nextLong() + buffer.nextLong();
+    }
+
+    private static long legacyParseMemInfo(String contents) throws IOException {
+        long sum = 0;
+        try (BufferedReader reader = new BufferedReader(new StringReader(contents))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(":");
+                if (parts.length == 2) {
+                    String key = parts[0].trim();
+                    for (String known : MEMINFO_KEY_STRINGS) {
+                        if (key.equals(known)) {
+                            sum += Long.parseLong(parts[1].trim().split(" +")[0]);
+                        }
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    private long bufferParseMemInfo(ReadableByteChannel channel) throws IOException {
+        long sum = 0;
+        buffer.fill(channel);
+        for (; buffer.hasRemaining(); buffer.nextLine()) {
+            if (buffer.nextKey(MEMINFO_KEYS, ':') >= 0) {
+                sum += buffer.nextLong();
+            }
+        }
+        return sum;
+    }
+}
@@ -69,6 +69,7 @@ public class Activator implements BundleActivator {
         private ServiceRegistration pluginConfReg;
         private ServiceRegistration commandGroupMetaReg;
         private BundleContext context;
+        private PluginInfoSource pluginSource;
 
         RegisterLauncherAction(BundleContext context) {
             this.context = context;
@@ -81,7 +82,7 @@ public class Activator implements BundleActivator {
             String commandsDir = new File(paths.getSystemConfigurationDirectory(), "commands").toString();
             CommandInfoSource builtInCommandSource =
                     new BuiltInCommandInfoSource(commandsDir, paths.getSystemLibRoot().toString());
-            PluginInfoSource pluginSource = new PluginInfoSource(
+            pluginSource = new PluginInfoSource(
                             paths.getSystemLibRoot().toString(),
                             paths.getSystemPluginRoot().toString(),
                             paths.getUserPluginRoot().toString(),
@@ -121,6 +122,7 @@ public class Activator implements BundleActivator {
             exitStatusReg.unregister();
             pluginConfReg.unregister();
             commandGroupMetaReg.unregister();
+            pluginSource.close();
         }
 
     }
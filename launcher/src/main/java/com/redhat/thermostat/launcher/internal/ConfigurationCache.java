@@ -0,0 +1,297 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.launcher.internal;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+
+/**
+ * Caches parsed plugin configuration files keyed by plugin ID and file name.
+ * <p>
+ * The directories containing the files an entry was loaded from are watched
+ * with a {@link WatchService}; any change in one of them evicts the entries
+ * depending on it. If a configuration directory does not exist yet, its
+ * closest existing parent below the configuration root is watched instead so
+ * that creating it evicts the entry as well. Entries for which no directory
+ * can be watched are not cached.
+ */
+class ConfigurationCache {
+
+    private static final Logger logger = LoggingUtils.getLogger(ConfigurationCache.class);
+
+    /* Invalidation counts are never negative, so this token never matches */
+    private static final long NOT_CACHEABLE = -1;
+
+    private final ConcurrentMap<CacheKey, Map<String, String>> entries = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Map<Path, Set<CacheKey>> dependents = new HashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final List<Path> configRoots = new ArrayList<>();
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    /**
+     * @param configRoots the directories configuration files are kept in.
+     *        Watching a missing directory never climbs above these.
+     */
+    ConfigurationCache(WatchService watchService, Collection<File> configRoots) {
+        this.watchService = Objects.requireNonNull(watchService);
+        for (File root : configRoots) {
+            this.configRoots.add(toPath(root));
+        }
+        this.watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processEvents();
+            }
+        }, "thermostat-plugin-config-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * @return the cached, unmodifiable configuration, or {@code null} if it needs to be
+     *         loaded. In the latter case, the caller should call
+     *         {@link #beginLoad(CacheKey, Collection)} before reading the
+     *         files and {@link #put(CacheKey, Map, long)} afterwards.
+     */
+    Map<String, String> get(CacheKey key) {
+        Map<String, String> result = entries.get(key);
+        if (result != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Starts watching the given files for changes before they are read.
+     *
+     * @return a token to pass to {@link #put(CacheKey, Map, long)}
+     */
+    long beginLoad(CacheKey key, Collection<File> files) {
+        long token = invalidations.get();
+        for (File file : files) {
+            if (!watch(key, toPath(file).getParent())) {
+                return NOT_CACHEABLE;
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Caches a copy of a loaded configuration, unless a change to any watched
+     * file was seen since {@link #beginLoad(CacheKey, Collection)} returned
+     * {@code token}.
+     *
+     * @return an unmodifiable copy of {@code configuration}
+     */
+    Map<String, String> put(CacheKey key, Map<String, String> configuration, long token) {
+        Map<String, String> copy = Collections.unmodifiableMap(new HashMap<>(configuration));
+        if (token == NOT_CACHEABLE) {
+            return copy;
+        }
+        entries.put(key, copy);
+        if (invalidations.get() != token) {
+            // The files may have changed while they were read
+            entries.remove(key);
+        }
+        return copy;
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Failed to close configuration watch service", e);
+        }
+        entries.clear();
+    }
+
+    /**
+     * @return whether a directory is now watched on behalf of {@code key}
+     */
+    private synchronized boolean watch(CacheKey key, Path directory) {
+        Path root = getConfigRoot(directory);
+        while (!Files.isDirectory(directory)) {
+            if (directory.equals(root)) {
+                return false;
+            }
+            directory = directory.getParent();
+        }
+        Set<CacheKey> keys = dependents.get(directory);
+        if (keys == null) {
+            try {
+                directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            } catch (IOException | ClosedWatchServiceException e) {
+                logger.log(Level.FINE, "Unable to watch " + directory + " for configuration changes", e);
+                return false;
+            }
+            keys = new HashSet<>();
+            dependents.put(directory, keys);
+        }
+        keys.add(key);
+        return true;
+    }
+
+    /*
+     * Directories outside all configuration roots (such as those of files
+     * named in a plugin's thermostat-plugin.xml) are their own root.
+     */
+    private Path getConfigRoot(Path directory) {
+        for (Path root : configRoots) {
+            if (directory.startsWith(root)) {
+                return root;
+            }
+        }
+        return directory;
+    }
+
+    private static Path toPath(File file) {
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            boolean overflow = false;
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                overflow |= event.kind() == OVERFLOW;
+            }
+            if (overflow) {
+                invalidateAll();
+            } else {
+                invalidate((Path) watchKey.watchable());
+            }
+            if (!watchKey.reset()) {
+                synchronized (this) {
+                    dependents.remove(watchKey.watchable());
+                }
+            }
+        }
+    }
+
+    private synchronized void invalidate(Path directory) {
+        invalidations.incrementAndGet();
+        Set<CacheKey> keys = dependents.get(directory);
+        if (keys != null) {
+            for (CacheKey key : keys) {
+                entries.remove(key);
+            }
+            keys.clear();
+        }
+    }
+
+    private synchronized void invalidateAll() {
+        invalidations.incrementAndGet();
+        entries.clear();
+        for (Set<CacheKey> keys : dependents.values()) {
+            keys.clear();
+        }
+    }
+
+    static class CacheKey {
+
+        private final String pluginId;
+        private final String fileName;
+
+        CacheKey(String pluginId, String fileName) {
+            this.pluginId = pluginId;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return Objects.equals(pluginId, other.pluginId) && Objects.equals(fileName, other.fileName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pluginId, fileName);
+        }
+    }
+}
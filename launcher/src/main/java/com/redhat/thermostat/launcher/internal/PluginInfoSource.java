@@ -40,6 +40,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -59,6 +60,7 @@ import java.util.logging.Logger;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.launcher.BundleInformation;
+import com.redhat.thermostat.launcher.internal.ConfigurationCache.CacheKey;
 import com.redhat.thermostat.launcher.internal.PluginConfiguration.CommandExtensions;
 import com.redhat.thermostat.launcher.internal.PluginConfiguration.CommandGroupMetadata;
 import com.redhat.thermostat.launcher.internal.PluginConfiguration.Configurations;
@@ -93,6 +95,7 @@ public class PluginInfoSource implements CommandInfoSource, ConfigurationInfoSou
 
     private final File userConfRootdir;
     private final File sysConfRootDir;
+    private final ConfigurationCache configCache;
 
     public PluginInfoSource(String internalJarRoot, String systemPluginRootDir, String userPluginRootDir, String sysConfRootDir, String userConfRootDir) {
         this(new File(internalJarRoot), new File(systemPluginRootDir), new File(userPluginRootDir),
@@ -106,6 +109,7 @@ public class PluginInfoSource implements CommandInfoSource, ConfigurationInfoSou
         this.usageBuilder = usageBuilder;
         this.userConfRootdir = userConfRootDir;
         this.sysConfRootDir = sysConfRootDir;
+        this.configCache = createConfigurationCache(sysConfRootDir, userConfRootDir);
 
         List<File> pluginDirectories = new ArrayList<>();
 
@@ -140,6 +144,16 @@ public class PluginInfoSource implements CommandInfoSource, ConfigurationInfoSou
         validateCommandGroupMetadataSources();
     }
 
+    private static ConfigurationCache createConfigurationCache(File sysConfRootDir, File userConfRootDir) {
+        try {
+            return new ConfigurationCache(FileSystems.getDefault().newWatchService(),
+                    Arrays.asList(sysConfRootDir, userConfRootDir));
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.log(Level.INFO, "Unable to watch plugin configuration files. Configurations will not be cached.", e);
+            return null;
+        }
+    }
+
     private void addPluginDirectory(List<File> allPluginDirectories, File aPluginRoot) {
         File[] pluginDirs = aPluginRoot.listFiles();
 
@@ -276,6 +290,62 @@ public class PluginInfoSource implements CommandInfoSource, ConfigurationInfoSou
     }
 
     public Map<String, String> getConfiguration(String pluginID, String fileName) throws IOException {
+        if (configCache == null) {
+            return loadConfiguration(pluginID, fileName);
+        }
+        CacheKey key = new CacheKey(pluginID, fileName);
+        Map<String, String> result = configCache.get(key);
+        if (result == null) {
+            long token = configCache.beginLoad(key, getConfigurationFiles(pluginID, fileName));
+            result = loadConfiguration(pluginID, fileName);
+            result = configCache.put(key, result, token);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of {@link #getConfiguration(String, String)} calls
+     *         answered without reading any files
+     */
+    public long getConfigurationCacheHits() {
+        return configCache == null ? 0 : configCache.getHitCount();
+    }
+
+    /**
+     * @return the number of {@link #getConfiguration(String, String)} calls
+     *         which had to read configuration files
+     */
+    public long getConfigurationCacheMisses() {
+        return configCache == null ? 0 : configCache.getMissCount();
+    }
+
+    /**
+     * Stops watching configuration files for changes.
+     */
+    public void close() {
+        if (configCache != null) {
+            configCache.close();
+        }
+    }
+
+    private List<File> getConfigurationFiles(String pluginID, String fileName) {
+        Configurations config = this.allConfigs.get(new PluginID(pluginID));
+        if (config != null && config.containsFile(fileName)) {
+            return Arrays.asList(new File(config.getFullFilePath(fileName)));
+        } else {
+            return Arrays.asList(getSystemConfigurationFile(pluginID, fileName), getUserConfigurationFile(pluginID, fileName));
+        }
+    }
+
+    private File getSystemConfigurationFile(String pluginID, String fileName) {
+        return new File(this.sysConfRootDir + "/" + pluginID + "/" + fileName);
+    }
+
+    private File getUserConfigurationFile(String pluginID, String fileName) {
+        return new File(this.userConfRootdir + "/" + pluginID + "/" + fileName);
+    }
+
+    private Map<String, String> loadConfiguration(String pluginID, String fileName) {
         Configurations config = this.allConfigs.get(new PluginID(pluginID));
         if (config != null && config.containsFile(fileName)) {
             String filePath = config.getFullFilePath(fileName);
@@ -286,11 +356,8 @@ public class PluginInfoSource implements CommandInfoSource, ConfigurationInfoSou
             Map<String, String> sysMap = new HashMap<>();
             Map<String, String> userMap = new HashMap<>();
 
-            String sysPath = this.sysConfRootDir + "/" + pluginID + "/" + fileName;
-            String userPath = this.userConfRootdir + "/" + pluginID + "/" + fileName;
-
-            File sysFile = new File(sysPath);
-            File userFile = new File(userPath);
+            File sysFile = getSystemConfigurationFile(pluginID, fileName);
+            File userFile = getUserConfigurationFile(pluginID, fileName);
 
             if (sysFile.exists()) {
                 sysMap = loadConfMap(sysFile);
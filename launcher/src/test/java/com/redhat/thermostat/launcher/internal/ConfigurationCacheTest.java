@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.launcher.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.thermostat.launcher.internal.ConfigurationCache.CacheKey;
+
+public class ConfigurationCacheTest {
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private File configRoot;
+    private ConfigurationCache cache;
+    private CacheKey key;
+
+    @Before
+    public void setUp() throws IOException {
+        configRoot = tmpDir.newFolder("conf");
+        cache = new ConfigurationCache(FileSystems.getDefault().newWatchService(), Arrays.asList(configRoot));
+        key = new CacheKey("com.redhat.thermostat.test", "config.conf");
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    public void testCachedConfigurationIsUnmodifiableCopy() {
+        Map<String, String> loaded = new HashMap<>();
+        loaded.put("key1", "value1");
+
+        long token = cache.beginLoad(key, Arrays.asList(new File(configRoot, "config.conf")));
+        cache.put(key, loaded, token);
+        loaded.put("key1", "value2");
+
+        Map<String, String> cached = cache.get(key);
+        assertEquals("value1", cached.get("key1"));
+        try {
+            cached.put("key1", "value3");
+            fail("cached configuration should not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+            // pass
+        }
+        assertEquals("value1", cache.get(key).get("key1"));
+    }
+
+    @Test
+    public void testMissingDirectoryBelowRootIsCached() {
+        File file = new File(configRoot, "com.redhat.thermostat.test/config.conf");
+
+        long token = cache.beginLoad(key, Arrays.asList(file));
+        cache.put(key, new HashMap<String, String>(), token);
+
+        assertNotNull(cache.get(key));
+    }
+
+    @Test
+    public void testWatchDoesNotClimbAboveMissingRoot() {
+        configRoot.delete();
+        File file = new File(configRoot, "com.redhat.thermostat.test/config.conf");
+
+        long token = cache.beginLoad(key, Arrays.asList(file));
+        cache.put(key, new HashMap<String, String>(), token);
+
+        assertNull(cache.get(key));
+    }
+}
@@ -39,6 +39,7 @@ package com.redhat.thermostat.launcher.internal;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.isA;
@@ -281,6 +282,68 @@ public class PluginInfoSourceTest {
         assertTrue(confMap.containsValue("value1"));
     }
 
+    @Test
+    public void testConfigurationIsCached() throws IOException {
+        String pluginID = "com.redhat.thermostat.cached";
+        String configName = "config.conf";
+
+        Path pluginDir = sysPluginRootDir.resolve(pluginID);
+        Files.createDirectory(pluginDir);
+
+        when(parserResult.getPluginID()).thenReturn(new PluginID(pluginID));
+        when(parserResult.hasValidID()).thenReturn(true);
+
+        createTempDirAndFile(sysConfRootDir, pluginID, configName, "key1=value1");
+
+        PluginInfoSource source = new PluginInfoSource(jarRootDir.toFile(), sysPluginRootDir.toFile(),
+                userPluginRootDir.toFile(), sysConfRootDir.toFile(), userConfRootDir.toFile(),
+                parser, usageBuilder);
+        try {
+            Map<String, String> first = source.getConfiguration(pluginID, configName);
+            Map<String, String> second = source.getConfiguration(pluginID, configName);
+
+            assertSame(first, second);
+            assertEquals(1, source.getConfigurationCacheMisses());
+            assertEquals(1, source.getConfigurationCacheHits());
+        } finally {
+            source.close();
+        }
+    }
+
+    @Test
+    public void testCachedConfigurationIsReloadedOnChange() throws Exception {
+        String pluginID = "com.redhat.thermostat.changed";
+        String configName = "config.conf";
+
+        Path pluginDir = sysPluginRootDir.resolve(pluginID);
+        Files.createDirectory(pluginDir);
+
+        when(parserResult.getPluginID()).thenReturn(new PluginID(pluginID));
+        when(parserResult.hasValidID()).thenReturn(true);
+
+        createTempDirAndFile(sysConfRootDir, pluginID, configName, "key1=value1");
+
+        PluginInfoSource source = new PluginInfoSource(jarRootDir.toFile(), sysPluginRootDir.toFile(),
+                userPluginRootDir.toFile(), sysConfRootDir.toFile(), userConfRootDir.toFile(),
+                parser, usageBuilder);
+        try {
+            assertEquals("value1", source.getConfiguration(pluginID, configName).get("key1"));
+
+            // The user configuration directory for this plugin does not exist yet
+            createTempDirAndFile(userConfRootDir, pluginID, configName, "key1=value2");
+
+            long deadline = System.currentTimeMillis() + 30000;
+            String value = source.getConfiguration(pluginID, configName).get("key1");
+            while (!"value2".equals(value) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+                value = source.getConfiguration(pluginID, configName).get("key1");
+            }
+            assertEquals("value2", value);
+        } finally {
+            source.close();
+        }
+    }
+
     @Test
     public void testConfigurationUserConfig() throws IOException {
         String pluginID = "com.redhat.thermostat.user";
@@ -38,6 +38,8 @@ package com.redhat.thermostat.commands.agent.internal;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -51,15 +53,19 @@ import org.apache.felix.scr.annotations.Service;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 
 import com.redhat.thermostat.agent.config.AuthenticationProviderConfig;
 import com.redhat.thermostat.agent.http.RequestFailedException;
+import com.redhat.thermostat.agent.http.TelemetryChannel;
 import com.redhat.thermostat.agent.keycloak.KeycloakAccessToken;
 import com.redhat.thermostat.agent.keycloak.KeycloakAccessTokenService;
 import com.redhat.thermostat.backend.Backend;
 import com.redhat.thermostat.backend.BaseBackend;
 import com.redhat.thermostat.commands.agent.internal.socket.AgentSocketOnMessageCallback;
 import com.redhat.thermostat.commands.agent.internal.socket.CmdChannelAgentSocket;
+import com.redhat.thermostat.commands.agent.internal.socket.RequestHandlerPool;
+import com.redhat.thermostat.commands.agent.internal.socket.TelemetryChannelImpl;
 import com.redhat.thermostat.commands.agent.receiver.ReceiverRegistry;
 import com.redhat.thermostat.common.Version;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
@@ -93,6 +99,10 @@ public class CommandsBackend extends BaseBackend {
     private StorageCredentials creds;
     private PluginConfiguration config;
     private ReceiverRegistry receiverReg;
+    private RequestHandlerPool handlerPool;
+    private BundleContext context;
+    private CmdChannelAgentSocket agentSocket;
+    private ServiceRegistration telemetryChannelReg;
 
     @Reference
     private SystemID systemId;
@@ -136,6 +146,12 @@ public class CommandsBackend extends BaseBackend {
         if (!isActive) {
             // sets wsSocket and socket instance variables
             isActive = connectWsClient();
+            if (isActive) {
+                registerTelemetryChannel();
+            } else if (handlerPool != null) {
+                handlerPool.shutdown();
+                handlerPool = null;
+            }
         }
         return isActive;
     }
@@ -146,9 +162,17 @@ public class CommandsBackend extends BaseBackend {
             // nothing to do
             return true;
         }
+        if (telemetryChannelReg != null) {
+            telemetryChannelReg.unregister();
+            telemetryChannelReg = null;
+        }
         if (wsClient != null) {
             wsClient.stop();
         }
+        if (handlerPool != null) {
+            handlerPool.shutdown();
+            handlerPool = null;
+        }
         isActive = false;
         return true;
     }
@@ -160,6 +184,7 @@ public class CommandsBackend extends BaseBackend {
     
     @Activate
     protected void componentActivated(BundleContext ctx) {
+        context = ctx;
         Version version = new Version(ctx.getBundle());
         super.setVersion(version.getVersionInfo());
         creds = credsCreator.create(paths);
@@ -196,8 +221,9 @@ public class CommandsBackend extends BaseBackend {
             String sysId = systemId.getSystemID();
             String cmdUriPath = String.format(ENDPOINT_FORMAT, sysId, agent);
             URI agentUri = microserviceURI.resolve(cmdUriPath);
-            AgentSocketOnMessageCallback onMsgCallback = new AgentSocketOnMessageCallback(receiverReg);
-            CmdChannelAgentSocket agentSocket = new CmdChannelAgentSocket(
+            handlerPool = RequestHandlerPool.fromConfiguration(configCreator.getRequestHandlerConfig(commandInfo));
+            AgentSocketOnMessageCallback onMsgCallback = new AgentSocketOnMessageCallback(receiverReg, handlerPool);
+            agentSocket = new CmdChannelAgentSocket(
                     onMsgCallback, socketConnectLatch, agent);
             ClientUpgradeRequest agentRequest = new ClientUpgradeRequest();
             if (authConfig.isKeycloakEnabled()) {
@@ -226,6 +252,15 @@ public class CommandsBackend extends BaseBackend {
         }
     }
 
+    /**
+     * Offers the connected socket for uploading data, which is used instead
+     * of HTTP requests if UPLOAD_VIA_COMMAND_CHANNEL is enabled.
+     */
+    private void registerTelemetryChannel() {
+        TelemetryChannel channel = new TelemetryChannelImpl(agentSocket);
+        telemetryChannelReg = context.registerService(TelemetryChannel.class.getName(), channel, null);
+    }
+
     private String getKeycloakAuthHeaderValue() {
         String bearerToken = UNKNOWN_CREDS;
         try {
@@ -291,5 +326,14 @@ public class CommandsBackend extends BaseBackend {
         PluginConfiguration createConfig(ConfigurationInfoSource source) {
             return new PluginConfiguration(source, PLUGIN_ID);
         }
+
+        Map<String, String> getRequestHandlerConfig(ConfigurationInfoSource source) {
+            try {
+                return source.getConfiguration(PLUGIN_ID, RequestHandlerPool.CONFIG_FILE);
+            } catch (IOException e) {
+                logger.log(Level.FINE, "No " + RequestHandlerPool.CONFIG_FILE + " found. Using defaults.", e);
+                return Collections.emptyMap();
+            }
+        }
     }
 }
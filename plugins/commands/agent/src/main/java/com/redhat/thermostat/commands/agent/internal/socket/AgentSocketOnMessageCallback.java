@@ -58,9 +58,11 @@ import com.redhat.thermostat.shared.config.InvalidConfigurationException;
 public class AgentSocketOnMessageCallback implements OnMessageCallBack {
 
     private final ReceiverRegistry receivers;
+    private final RequestHandlerPool handlerPool;
 
-    public AgentSocketOnMessageCallback(ReceiverRegistry receivers) {
+    public AgentSocketOnMessageCallback(ReceiverRegistry receivers, RequestHandlerPool handlerPool) {
         this.receivers = receivers;
+        this.handlerPool = handlerPool;
     }
 
     @Override
@@ -68,8 +70,7 @@ public class AgentSocketOnMessageCallback implements OnMessageCallBack {
         switch (msg.getMessageType()) {
         case AGENT_REQUEST:
             AgentRequest request = (AgentRequest) msg;
-            Thread handler = new CmdChannelRequestHandler(session, request, receivers, gson);
-            handler.start();
+            handlerPool.submit(new CmdChannelRequestHandler(session, request, receivers, gson));
             break;
         case RESPONSE:
             // Auth-failed
@@ -83,7 +84,7 @@ public class AgentSocketOnMessageCallback implements OnMessageCallBack {
         }
     }
 
-    static class CmdChannelRequestHandler extends Thread {
+    static class CmdChannelRequestHandler implements Runnable {
 
         private static final Logger logger = LoggingUtils.getLogger(CmdChannelRequestHandler.class);
         private final Session session;
@@ -97,7 +98,6 @@ public class AgentSocketOnMessageCallback implements OnMessageCallBack {
         }
         
         CmdChannelRequestHandler(Session session, AgentRequest request, ReceiverRegistry receivers, Gson gson, CountDownLatch sentLatch) {
-            super("Thermostat-WS-CMD-CH-Handler");
             this.session = session;
             this.request = request;
             this.receivers = receivers;
@@ -105,6 +105,23 @@ public class AgentSocketOnMessageCallback implements OnMessageCallBack {
             this.sentLatch = sentLatch;
         }
 
+        String getAction() {
+            return request.getAction();
+        }
+
+        boolean hasReceiver() {
+            return receivers.getReceiver(request.getAction()) != null;
+        }
+
+        long getSequenceId() {
+            return request.getSequenceId();
+        }
+
+        void sendBusy() {
+            sendResponse(new WebSocketResponse(request.getSequenceId(),
+                    ResponseType.BUSY));
+        }
+
         @Override
         public void run() {
             String receiverName = request.getAction();
@@ -46,6 +46,7 @@ import java.util.logging.Logger;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
@@ -73,7 +74,7 @@ public class CmdChannelAgentSocket {
     private final CountDownLatch connectLatch;
     private final OnMessageCallBack onMessage;
     private final String agentId;
-    private Session session;
+    private volatile Session session;
 
     public CmdChannelAgentSocket(OnMessageCallBack onMessage, CountDownLatch connect, String agentId) {
         this(onMessage, connect, agentId,
@@ -163,18 +164,41 @@ public class CmdChannelAgentSocket {
     }
 
     public void closeSession() {
-        if (session != null) {
-            this.session.close();
+        Session current = session;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    public boolean isConnected() {
+        Session current = session;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * Queues a binary message for sending. The callback is notified once it
+     * has been written or failed.
+     */
+    public void sendBinary(ByteBuffer message, WriteCallback callback) {
+        // Read once: the session is cleared concurrently on disconnect
+        Session current = session;
+        if (current == null) {
+            throw new NullPointerException(
+                    "Session null. Agent not connected?");
+        }
+        synchronized (current) {
+            current.getRemote().sendBytes(message, callback);
         }
     }
 
     public void sendPingToServer(String msgPayload) throws IOException {
-        if (this.session == null) {
+        Session current = session;
+        if (current == null) {
             throw new NullPointerException(
                     "Session null. Agent not connected?");
         }
-        synchronized (session) {
-            RemoteEndpoint endpoint = session.getRemote();
+        synchronized (current) {
+            RemoteEndpoint endpoint = current.getRemote();
             ByteBuffer pingPayload = ByteBuffer.wrap(msgPayload.getBytes());
             endpoint.sendPing(pingPayload);
         }
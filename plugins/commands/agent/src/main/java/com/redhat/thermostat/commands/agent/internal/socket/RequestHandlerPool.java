@@ -0,0 +1,264 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.commands.agent.internal.socket;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.backend.LatencyHistogram;
+import com.redhat.thermostat.commands.agent.internal.socket.AgentSocketOnMessageCallback.CmdChannelRequestHandler;
+import com.redhat.thermostat.common.utils.LoggingUtils;
+
+/**
+ * Runs cmd-channel requests on a fixed number of worker threads.
+ * <p>
+ * Requests wait for a worker in a bounded queue. Each receiver action may
+ * only have a limited number of requests queued or running at a time, so
+ * that slow receivers, such as heap dumps, cannot take up all workers.
+ * Requests which exceed either limit are answered with a
+ * {@link com.redhat.thermostat.commands.model.WebSocketResponse.ResponseType#BUSY BUSY}
+ * response right away. Requests for actions without a registered receiver
+ * share a single limit, so that arbitrary action names cannot make the pool
+ * track an unbounded number of actions.
+ * <p>
+ * The time requests spend queued and executing is recorded per action.
+ */
+public class RequestHandlerPool {
+
+    public static final String CONFIG_FILE = "requests.properties";
+    static final String WORKER_THREADS_PROP = "workerThreads";
+    static final String QUEUE_CAPACITY_PROP = "queueCapacity";
+    static final String MAX_CONCURRENT_REQUESTS_PROP = "maxConcurrentRequests";
+
+    static final int DEFAULT_WORKER_THREADS = 4;
+    static final int DEFAULT_QUEUE_CAPACITY = 32;
+    static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 2;
+
+    /** The action that requests without a registered receiver are accounted to */
+    static final String UNKNOWN_ACTION = "<unknown>";
+
+    private static final Logger logger = LoggingUtils.getLogger(RequestHandlerPool.class);
+
+    private final ExecutorService executor;
+    private final int defaultMaxConcurrentRequests;
+    private final Map<String, Integer> maxConcurrentRequests;
+    private final ConcurrentHashMap<String, Semaphore> actionLimits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> queueWaitLatencies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> executionLatencies = new ConcurrentHashMap<>();
+    private final AtomicLong busyResponses = new AtomicLong();
+
+    public RequestHandlerPool(int workerThreads, int queueCapacity, int defaultMaxConcurrentRequests,
+            Map<String, Integer> maxConcurrentRequests) {
+        this(createExecutor(workerThreads, queueCapacity), defaultMaxConcurrentRequests, maxConcurrentRequests);
+    }
+
+    // For testing purposes
+    RequestHandlerPool(ExecutorService executor, int defaultMaxConcurrentRequests,
+            Map<String, Integer> maxConcurrentRequests) {
+        this.executor = executor;
+        this.defaultMaxConcurrentRequests = defaultMaxConcurrentRequests;
+        this.maxConcurrentRequests = new HashMap<>(maxConcurrentRequests);
+    }
+
+    /**
+     * Creates a pool configured by the given properties:
+     * {@code workerThreads}, {@code queueCapacity},
+     * {@code maxConcurrentRequests} and, for single receiver actions,
+     * {@code maxConcurrentRequests.<action>}. Missing or invalid values
+     * fall back to the defaults.
+     */
+    public static RequestHandlerPool fromConfiguration(Map<String, String> config) {
+        Map<String, Integer> perAction = new HashMap<>();
+        String actionPrefix = MAX_CONCURRENT_REQUESTS_PROP + ".";
+        for (Map.Entry<String, String> entry : config.entrySet()) {
+            String name = entry.getKey();
+            if (name.startsWith(actionPrefix) && name.length() > actionPrefix.length()) {
+                int limit = getPositiveInt(config, name, 0);
+                if (limit > 0) {
+                    perAction.put(name.substring(actionPrefix.length()), limit);
+                }
+            }
+        }
+        return new RequestHandlerPool(
+                getPositiveInt(config, WORKER_THREADS_PROP, DEFAULT_WORKER_THREADS),
+                getPositiveInt(config, QUEUE_CAPACITY_PROP, DEFAULT_QUEUE_CAPACITY),
+                getPositiveInt(config, MAX_CONCURRENT_REQUESTS_PROP, DEFAULT_MAX_CONCURRENT_REQUESTS),
+                perAction);
+    }
+
+    private static int getPositiveInt(Map<String, String> config, String name, int defaultValue) {
+        String value = config.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value.trim());
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        logger.warning("Invalid value for " + name + " in " + CONFIG_FILE + ": '" + value
+                + "'. Using " + defaultValue + " instead.");
+        return defaultValue;
+    }
+
+    private static ExecutorService createExecutor(int workerThreads, int queueCapacity) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "Thermostat-WS-CMD-CH-Handler-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Queues a request, or answers it with a BUSY response if too many
+     * requests are pending.
+     *
+     * @return whether the request was queued
+     */
+    public boolean submit(final CmdChannelRequestHandler handler) {
+        final String action = handler.hasReceiver() ? handler.getAction() : UNKNOWN_ACTION;
+        final Semaphore limit = getActionLimit(action);
+        if (!limit.tryAcquire()) {
+            rejectBusy(handler, "too many pending requests for receiver");
+            return false;
+        }
+        final long queuedAt = System.nanoTime();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    getHistogram(queueWaitLatencies, action).record(start - queuedAt);
+                    try {
+                        handler.run();
+                    } finally {
+                        getHistogram(executionLatencies, action).record(System.nanoTime() - start);
+                        limit.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            limit.release();
+            rejectBusy(handler, "request queue is full");
+            return false;
+        }
+        return true;
+    }
+
+    private void rejectBusy(CmdChannelRequestHandler handler, String reason) {
+        long busy = busyResponses.incrementAndGet();
+        logger.warning("Rejecting cmd-channel request (sequence=" + handler.getSequenceId() + ", receiver="
+                + handler.getAction() + "): " + reason + " (" + busy + " rejected in total)");
+        handler.sendBusy();
+    }
+
+    private Semaphore getActionLimit(String action) {
+        Semaphore limit = actionLimits.get(action);
+        if (limit == null) {
+            Integer max = maxConcurrentRequests.get(action);
+            Semaphore newLimit = new Semaphore(max != null ? max : defaultMaxConcurrentRequests);
+            limit = actionLimits.putIfAbsent(action, newLimit);
+            if (limit == null) {
+                limit = newLimit;
+            }
+        }
+        return limit;
+    }
+
+    private static LatencyHistogram getHistogram(ConcurrentHashMap<String, LatencyHistogram> histograms, String action) {
+        LatencyHistogram histogram = histograms.get(action);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = histograms.putIfAbsent(action, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Stops accepting requests. Requests already running are not interrupted.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return the time requests waited for a worker, keyed by receiver action
+     *         or {@value #UNKNOWN_ACTION}
+     */
+    public Map<String, LatencyHistogram> getQueueWaitLatencies() {
+        return Collections.<String, LatencyHistogram>unmodifiableMap(queueWaitLatencies);
+    }
+
+    /**
+     * @return the time receivers took to handle requests, keyed by receiver
+     *         action or {@value #UNKNOWN_ACTION}
+     */
+    public Map<String, LatencyHistogram> getExecutionLatencies() {
+        return Collections.<String, LatencyHistogram>unmodifiableMap(executionLatencies);
+    }
+
+    /**
+     * @return the number of requests answered with a BUSY response
+     */
+    public long getBusyResponseCount() {
+        return busyResponses.get();
+    }
+
+}
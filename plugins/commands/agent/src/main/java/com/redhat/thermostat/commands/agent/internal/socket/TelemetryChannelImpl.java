@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.commands.agent.internal.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import com.redhat.thermostat.agent.http.TelemetryChannel;
+import com.redhat.thermostat.common.utils.LoggingUtils;
+
+/**
+ * Publishes batches of records as binary messages over the agent's command
+ * channel WebSocket. Each message is one frame:
+ *
+ * <pre>
+ * byte    version (1)
+ * short   length of the plugin id, followed by its UTF-8 bytes
+ * short   length of the endpoint path, followed by its UTF-8 bytes
+ * int     length of the payload, followed by the JSON array payload
+ * </pre>
+ *
+ * All numbers are big endian. At most {@code maxPendingFrames} frames are
+ * queued on the socket at a time; publishers wait for earlier frames to be
+ * written before queueing more, which is what throttles uploads when the
+ * gateway or the network falls behind. Batches whose frame fails to be
+ * written are handed back to the publisher's
+ * {@link TelemetryChannel.FailureListener}.
+ */
+public class TelemetryChannelImpl implements TelemetryChannel {
+
+    public static final byte FRAME_VERSION = 1;
+    static final int DEFAULT_MAX_PENDING_FRAMES = 16;
+    static final long DEFAULT_SEND_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final Logger logger = LoggingUtils.getLogger(TelemetryChannelImpl.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CmdChannelAgentSocket socket;
+    private final Semaphore pendingFrames;
+    private final long sendTimeoutMillis;
+
+    public TelemetryChannelImpl(CmdChannelAgentSocket socket) {
+        this(socket, DEFAULT_MAX_PENDING_FRAMES, DEFAULT_SEND_TIMEOUT_MILLIS);
+    }
+
+    // For testing purposes
+    TelemetryChannelImpl(CmdChannelAgentSocket socket, int maxPendingFrames, long sendTimeoutMillis) {
+        this.socket = socket;
+        this.pendingFrames = new Semaphore(maxPendingFrames);
+        this.sendTimeoutMillis = sendTimeoutMillis;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket.isConnected();
+    }
+
+    @Override
+    public void publish(String pluginId, String path, ByteBuffer jsonArrayPayload,
+            final FailureListener listener) throws IOException {
+        if (!socket.isConnected()) {
+            throw new IOException("Command channel is not connected");
+        }
+        ByteBuffer frame = encodeFrame(pluginId, path, jsonArrayPayload);
+        // The payload is at the end of the frame
+        final ByteBuffer payloadCopy = frame.duplicate();
+        payloadCopy.position(frame.limit() - jsonArrayPayload.remaining());
+        try {
+            if (!pendingFrames.tryAcquire(sendTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Command channel send queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for command channel send queue", e);
+        }
+        try {
+            socket.sendBinary(frame, new WriteCallback() {
+                @Override
+                public void writeSuccess() {
+                    pendingFrames.release();
+                }
+
+                @Override
+                public void writeFailed(Throwable cause) {
+                    pendingFrames.release();
+                    logger.log(Level.WARNING, "Failed to publish batch over command channel", cause);
+                    listener.publishFailed(payloadCopy.slice(), cause);
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingFrames.release();
+            throw new IOException("Failed to publish batch over command channel", e);
+        }
+    }
+
+    /**
+     * Encodes a frame. The payload is copied, so the caller's buffer may be
+     * reused once this returns; its position is not changed.
+     */
+    static ByteBuffer encodeFrame(String pluginId, String path, ByteBuffer jsonArrayPayload) {
+        byte[] pluginIdBytes = pluginId.getBytes(UTF_8);
+        byte[] pathBytes = path.getBytes(UTF_8);
+        if (pluginIdBytes.length > 0xffff || pathBytes.length > 0xffff) {
+            throw new IllegalArgumentException("Plugin id or path too long: " + pluginId + " " + path);
+        }
+        ByteBuffer payload = jsonArrayPayload.duplicate();
+        ByteBuffer frame = ByteBuffer.allocate(1 + 2 + pluginIdBytes.length + 2 + pathBytes.length
+                + 4 + payload.remaining());
+        frame.put(FRAME_VERSION);
+        frame.putShort((short) pluginIdBytes.length);
+        frame.put(pluginIdBytes);
+        frame.putShort((short) pathBytes.length);
+        frame.put(pathBytes);
+        frame.putInt(payload.remaining());
+        frame.put(payload);
+        frame.flip();
+        return frame;
+    }
+
+}
@@ -88,7 +88,12 @@ public class WebSocketResponse implements Sequential, Message {
     public enum ResponseType {
         OK,
         ERROR,
-        AUTH_FAIL
+        AUTH_FAIL,
+        /**
+         * The agent is handling too many requests to accept this one. The
+         * request may be retried later.
+         */
+        BUSY
     }
 
 
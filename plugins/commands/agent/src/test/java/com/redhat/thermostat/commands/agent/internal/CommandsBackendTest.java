@@ -40,6 +40,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -47,6 +50,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Dictionary;
 import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.jetty.http.HttpHeader;
@@ -56,13 +60,16 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.framework.Version;
 
 import com.redhat.thermostat.agent.config.AuthenticationProviderConfig;
+import com.redhat.thermostat.agent.http.TelemetryChannel;
 import com.redhat.thermostat.commands.agent.internal.CommandsBackend.ConfigCreator;
 import com.redhat.thermostat.commands.agent.internal.CommandsBackend.CredentialsCreator;
 import com.redhat.thermostat.commands.agent.internal.CommandsBackend.WsClientCreator;
 import com.redhat.thermostat.commands.agent.internal.socket.CmdChannelAgentSocket;
+import com.redhat.thermostat.commands.agent.internal.socket.TelemetryChannelImpl;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
 import com.redhat.thermostat.common.plugin.SystemID;
@@ -167,6 +174,8 @@ public class CommandsBackendTest {
         String actualHeader = req.getHeader(HttpHeader.AUTHORIZATION.asString());
         assertEquals(expectedHeader, actualHeader);
         assertTrue("Expected backend to be active", backend.isActive());
+        verify(bundleContext).registerService(eq(TelemetryChannel.class.getName()), isA(TelemetryChannelImpl.class),
+                (Dictionary<String, ?>) isNull());
     }
 
     @Test
@@ -181,12 +190,16 @@ public class CommandsBackendTest {
 
     @Test
     public void testDeactivate() throws IOException {
+        ServiceRegistration registration = mock(ServiceRegistration.class);
+        when(bundleContext.registerService(eq(TelemetryChannel.class.getName()), isA(TelemetryChannelImpl.class),
+                (Dictionary<String, ?>) isNull())).thenReturn(registration);
         // release connect latch
         socketConnect.countDown();
         boolean success = backend.activate();
         assertTrue(success);
         success = backend.deactivate();
         verify(client).stop();
+        verify(registration).unregister();
         assertTrue(success);
         assertFalse(backend.isActive());
     }
@@ -43,6 +43,7 @@ import static org.mockito.Mockito.when;
 import static org.mockito.Matchers.eq;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
@@ -104,7 +105,7 @@ public class AgentSocketOnMessageCallbackTest {
             
         };
         when(reg.getReceiver(eq(actionName))).thenReturn(receiver);
-        AgentSocketOnMessageCallback cb = new AgentSocketOnMessageCallback(reg);
+        AgentSocketOnMessageCallback cb = new AgentSocketOnMessageCallback(reg, new RequestHandlerPool(1, 1, 1, Collections.<String, Integer>emptyMap()));
         Session session = mock(Session.class);
         when(session.getRemote()).thenReturn(mock(RemoteEndpoint.class)); // Prevent spurious NPEs
         SortedMap<String, String> params = new TreeMap<>();
@@ -143,7 +144,7 @@ public class AgentSocketOnMessageCallbackTest {
         AgentRequest agentRequest = new AgentRequest(344L, actionName, "system_id", "jvm_id", params);
         
         CmdChannelRequestHandler handler = new CmdChannelRequestHandler(session, agentRequest, reg, gson, sentLatch);
-        handler.start(); // start asynchronously
+        new Thread(handler).start(); // start asynchronously
         
         receiverHandled.await(); // wait for receiver to handle request
         sentLatch.await(); // wait for sending to actually happen
@@ -171,7 +172,7 @@ public class AgentSocketOnMessageCallbackTest {
         AgentRequest agentRequest = new AgentRequest(888L, "not-exist", "system_id", "jvm_id", emptyParams);
         
         CmdChannelRequestHandler handler = new CmdChannelRequestHandler(session, agentRequest, mock(ReceiverRegistry.class), gson, sentLatch);
-        handler.start(); // start asynchronously
+        new Thread(handler).start(); // start asynchronously
         
         sentLatch.await(); // wait for sending to actually happen
         verify(mockEndpoint).sendString(jsonCaptor.capture());
@@ -187,7 +188,7 @@ public class AgentSocketOnMessageCallbackTest {
     @Test(expected = InvalidConfigurationException.class)
     public void handlesAuthFailResponsesProperly() {
         WebSocketResponse response = new WebSocketResponse(WebSocketResponse.UNKNOWN_SEQUENCE, ResponseType.AUTH_FAIL);
-        AgentSocketOnMessageCallback cb = new AgentSocketOnMessageCallback(mock(ReceiverRegistry.class));
+        AgentSocketOnMessageCallback cb = new AgentSocketOnMessageCallback(mock(ReceiverRegistry.class), mock(RequestHandlerPool.class));
         cb.run(null, response, gson); // throws exception
     }
     
@@ -198,7 +199,7 @@ public class AgentSocketOnMessageCallbackTest {
     @Test(expected = IllegalStateException.class)
     public void unexpectedMessageTypesThrowException() {
         ClientRequest request = new ClientRequest(212);
-        AgentSocketOnMessageCallback cb = new AgentSocketOnMessageCallback(mock(ReceiverRegistry.class));
+        AgentSocketOnMessageCallback cb = new AgentSocketOnMessageCallback(mock(ReceiverRegistry.class), mock(RequestHandlerPool.class));
         cb.run(null, request, gson); // throws exception
     }
 }
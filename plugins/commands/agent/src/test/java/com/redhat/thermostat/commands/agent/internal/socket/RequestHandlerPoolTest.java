@@ -0,0 +1,212 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.commands.agent.internal.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.redhat.thermostat.commands.agent.internal.socket.AgentSocketOnMessageCallback.CmdChannelRequestHandler;
+
+public class RequestHandlerPoolTest {
+
+    private ExecutorService executor;
+    private List<Runnable> queued;
+
+    @Before
+    public void setup() {
+        executor = mock(ExecutorService.class);
+        queued = new ArrayList<>();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                queued.add((Runnable) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(executor).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void testSubmittedRequestIsHandled() {
+        RequestHandlerPool pool = new RequestHandlerPool(executor, 2, Collections.<String, Integer>emptyMap());
+        CmdChannelRequestHandler handler = createHandler("ping");
+
+        assertTrue(pool.submit(handler));
+        verify(handler, never()).run();
+        assertEquals(1, queued.size());
+
+        queued.get(0).run();
+        verify(handler).run();
+        verify(handler, never()).sendBusy();
+        assertEquals(1, pool.getQueueWaitLatencies().get("ping").getCount());
+        assertEquals(1, pool.getExecutionLatencies().get("ping").getCount());
+    }
+
+    @Test
+    public void testRequestsOverActionLimitAreBusy() {
+        Map<String, Integer> limits = new HashMap<>();
+        limits.put("dump-heap", 1);
+        RequestHandlerPool pool = new RequestHandlerPool(executor, 2, limits);
+
+        assertTrue(pool.submit(createHandler("dump-heap")));
+        CmdChannelRequestHandler rejected = createHandler("dump-heap");
+        assertFalse(pool.submit(rejected));
+        verify(rejected).sendBusy();
+        verify(rejected, never()).run();
+        assertEquals(1, pool.getBusyResponseCount());
+
+        // Other receivers use the default limit
+        assertTrue(pool.submit(createHandler("ping")));
+        assertTrue(pool.submit(createHandler("ping")));
+        assertFalse(pool.submit(createHandler("ping")));
+
+        // Finishing a request frees its slot
+        queued.get(0).run();
+        assertTrue(pool.submit(createHandler("dump-heap")));
+    }
+
+    @Test
+    public void testRequestsOverQueueCapacityAreBusy() {
+        doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+        RequestHandlerPool pool = new RequestHandlerPool(executor, 1, Collections.<String, Integer>emptyMap());
+
+        CmdChannelRequestHandler handler = createHandler("ping");
+        assertFalse(pool.submit(handler));
+        verify(handler).sendBusy();
+
+        // The rejected request does not count towards the receiver's limit
+        CmdChannelRequestHandler next = createHandler("ping");
+        assertFalse(pool.submit(next));
+        verify(next).sendBusy();
+        assertEquals(2, pool.getBusyResponseCount());
+    }
+
+    @Test
+    public void testHandlerExceptionFreesSlot() {
+        RequestHandlerPool pool = new RequestHandlerPool(executor, 1, Collections.<String, Integer>emptyMap());
+        CmdChannelRequestHandler handler = createHandler("ping");
+        doThrow(new IllegalStateException()).when(handler).run();
+        pool.submit(handler);
+        try {
+            queued.get(0).run();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertTrue(pool.submit(createHandler("ping")));
+    }
+
+    @Test
+    public void testPoolFromConfigurationRunsRequests() throws InterruptedException {
+        Map<String, String> config = new HashMap<>();
+        config.put("workerThreads", "2");
+        config.put("queueCapacity", "not-a-number");
+        config.put("maxConcurrentRequests.ping", "4");
+        RequestHandlerPool pool = RequestHandlerPool.fromConfiguration(config);
+        try {
+            final CountDownLatch handled = new CountDownLatch(4);
+            for (int i = 0; i < 4; i++) {
+                CmdChannelRequestHandler handler = createHandler("ping");
+                doAnswer(new Answer<Void>() {
+                    @Override
+                    public Void answer(InvocationOnMock invocation) throws Throwable {
+                        handled.countDown();
+                        return null;
+                    }
+                }).when(handler).run();
+                assertTrue(pool.submit(handler));
+            }
+            assertTrue(handled.await(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testRequestsWithoutReceiverShareOneLimit() {
+        RequestHandlerPool pool = new RequestHandlerPool(executor, 2, Collections.<String, Integer>emptyMap());
+
+        assertTrue(pool.submit(createHandler("no-such-receiver-1", false)));
+        assertTrue(pool.submit(createHandler("no-such-receiver-2", false)));
+        CmdChannelRequestHandler rejected = createHandler("no-such-receiver-3", false);
+        assertFalse(pool.submit(rejected));
+        verify(rejected).sendBusy();
+
+        // Known receivers are not affected
+        assertTrue(pool.submit(createHandler("ping")));
+
+        for (Runnable r : queued) {
+            r.run();
+        }
+        assertEquals(2, pool.getExecutionLatencies().size());
+        assertEquals(2, pool.getExecutionLatencies().get(RequestHandlerPool.UNKNOWN_ACTION).getCount());
+        assertEquals(1, pool.getExecutionLatencies().get("ping").getCount());
+    }
+
+    private static CmdChannelRequestHandler createHandler(String action) {
+        return createHandler(action, true);
+    }
+
+    private static CmdChannelRequestHandler createHandler(String action, boolean hasReceiver) {
+        CmdChannelRequestHandler handler = mock(CmdChannelRequestHandler.class);
+        when(handler.getAction()).thenReturn(action);
+        when(handler.hasReceiver()).thenReturn(hasReceiver);
+        return handler;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.commands.agent.internal.socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.redhat.thermostat.agent.http.TelemetryChannel.FailureListener;
+
+public class TelemetryChannelImplTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private CmdChannelAgentSocket socket;
+    private FailureListener listener;
+
+    @Before
+    public void setup() {
+        socket = mock(CmdChannelAgentSocket.class);
+        listener = mock(FailureListener.class);
+        when(socket.isConnected()).thenReturn(true);
+    }
+
+    @Test
+    public void testEncodeFrame() {
+        ByteBuffer payload = ByteBuffer.wrap("[{\"a\":1}]".getBytes(UTF_8));
+        ByteBuffer frame = TelemetryChannelImpl.encodeFrame("vm-gc", "/jvm-gc/0.0.3/systems/s/jvms/j", payload);
+
+        assertEquals(TelemetryChannelImpl.FRAME_VERSION, frame.get());
+        assertEquals("vm-gc", readString(frame, frame.getShort()));
+        assertEquals("/jvm-gc/0.0.3/systems/s/jvms/j", readString(frame, frame.getShort()));
+        assertEquals("[{\"a\":1}]", readString(frame, frame.getInt()));
+        assertEquals(0, frame.remaining());
+        // The caller's buffer is left as it was
+        assertEquals(0, payload.position());
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    @Test
+    public void testPublishSendsFrame() throws IOException {
+        TelemetryChannelImpl channel = new TelemetryChannelImpl(socket);
+        channel.publish("foo", "/foo/bar", ByteBuffer.wrap("[1]".getBytes(UTF_8)), listener);
+
+        ArgumentCaptor<ByteBuffer> frameCaptor = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(socket).sendBinary(frameCaptor.capture(), any(WriteCallback.class));
+        assertEquals(TelemetryChannelImpl.encodeFrame("foo", "/foo/bar", ByteBuffer.wrap("[1]".getBytes(UTF_8))),
+                frameCaptor.getValue());
+    }
+
+    @Test
+    public void testPublishWhenDisconnected() {
+        when(socket.isConnected()).thenReturn(false);
+        TelemetryChannelImpl channel = new TelemetryChannelImpl(socket);
+        try {
+            channel.publish("foo", "/foo", ByteBuffer.wrap("[1]".getBytes(UTF_8)), listener);
+            fail("expected IOException");
+        } catch (IOException e) {
+            // pass
+        }
+        verify(socket, never()).sendBinary(any(ByteBuffer.class), any(WriteCallback.class));
+    }
+
+    @Test
+    public void testPublishWaitsForPendingFrames() throws IOException {
+        TelemetryChannelImpl channel = new TelemetryChannelImpl(socket, 1, 10);
+        ByteBuffer payload = ByteBuffer.wrap("[1]".getBytes(UTF_8));
+        channel.publish("foo", "/foo", payload, listener);
+        ArgumentCaptor<WriteCallback> callbackCaptor = ArgumentCaptor.forClass(WriteCallback.class);
+        verify(socket).sendBinary(any(ByteBuffer.class), callbackCaptor.capture());
+
+        // The first frame has not been written yet
+        try {
+            channel.publish("foo", "/foo", payload, listener);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("full"));
+        }
+        verify(socket, times(1)).sendBinary(any(ByteBuffer.class), any(WriteCallback.class));
+
+        callbackCaptor.getValue().writeSuccess();
+        channel.publish("foo", "/foo", payload, listener);
+        verify(socket, times(2)).sendBinary(any(ByteBuffer.class), any(WriteCallback.class));
+    }
+
+    @Test
+    public void testFailedWriteFreesSendQueue() throws IOException {
+        TelemetryChannelImpl channel = new TelemetryChannelImpl(socket, 1, 10);
+        ByteBuffer payload = ByteBuffer.wrap("[1]".getBytes(UTF_8));
+        channel.publish("foo", "/foo", payload, listener);
+        ArgumentCaptor<WriteCallback> callbackCaptor = ArgumentCaptor.forClass(WriteCallback.class);
+        verify(socket).sendBinary(any(ByteBuffer.class), callbackCaptor.capture());
+
+        callbackCaptor.getValue().writeFailed(new IOException("closed"));
+        channel.publish("foo", "/foo", payload, listener);
+        verify(socket, times(2)).sendBinary(any(ByteBuffer.class), any(WriteCallback.class));
+    }
+
+    @Test
+    public void testFailedWriteHandsPayloadBack() throws IOException {
+        TelemetryChannelImpl channel = new TelemetryChannelImpl(socket);
+        ByteBuffer payload = ByteBuffer.wrap("[{\"a\":1}]".getBytes(UTF_8));
+        channel.publish("foo", "/foo", payload, listener);
+        ArgumentCaptor<ByteBuffer> frameCaptor = ArgumentCaptor.forClass(ByteBuffer.class);
+        ArgumentCaptor<WriteCallback> callbackCaptor = ArgumentCaptor.forClass(WriteCallback.class);
+        verify(socket).sendBinary(frameCaptor.capture(), callbackCaptor.capture());
+        // The payload buffer is reused by then, and the frame partly written
+        payload.put(0, (byte) ' ');
+        frameCaptor.getValue().position(frameCaptor.getValue().limit());
+
+        IOException cause = new IOException("closed");
+        callbackCaptor.getValue().writeFailed(cause);
+
+        ArgumentCaptor<ByteBuffer> failedCaptor = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(listener).publishFailed(failedCaptor.capture(), eq(cause));
+        assertEquals("[{\"a\":1}]", UTF_8.decode(failedCaptor.getValue()).toString());
+    }
+
+}
@@ -47,6 +47,7 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 
+import com.google.gson.TypeAdapter;
 import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
@@ -109,6 +110,11 @@ public class CpuStatDAOImpl extends PluginDAOBase<CpuStat> implements CpuStatDAO
         return jsonHelper.toJson(Arrays.asList(obj));
     }
 
+    @Override
+    protected TypeAdapter<List<CpuStat>> getTypeAdapter() {
+        return jsonHelper.getTypeAdapter();
+    }
+
     @Override
     protected PluginConfiguration getConfig() {
         return config;
@@ -148,6 +154,10 @@ public class CpuStatDAOImpl extends PluginDAOBase<CpuStat> implements CpuStatDAO
         String toJson(List<CpuStat> infos) throws IOException {
             return typeAdapter.toJson(infos);
         }
+
+        TypeAdapter<List<CpuStat>> getTypeAdapter() {
+            return typeAdapter;
+        }
     }
     // For Testing purposes
     static class ConfigurationCreator {
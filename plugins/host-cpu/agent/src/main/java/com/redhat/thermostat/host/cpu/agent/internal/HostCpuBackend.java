@@ -36,11 +36,12 @@
 
 package com.redhat.thermostat.host.cpu.agent.internal;
 
+import java.util.Arrays;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
 import com.redhat.thermostat.backend.Backend;
-import com.redhat.thermostat.backend.HostPollingAction;
+import com.redhat.thermostat.backend.AdaptiveHostPollingAction;
 import com.redhat.thermostat.backend.HostPollingBackend;
 import com.redhat.thermostat.common.Version;
 import com.redhat.thermostat.host.cpu.model.CpuStat;
@@ -63,6 +64,8 @@ public class HostCpuBackend extends HostPollingBackend {
     @Reference
     private WriterID writerID;
 
+    private CpuProcBackendAction action;
+
     public HostCpuBackend() {
         this(Executors.newSingleThreadScheduledExecutor());
     }
@@ -79,7 +82,8 @@ public class HostCpuBackend extends HostPollingBackend {
     protected void componentActivated(BundleContext context) {
         Version version = new Version(context.getBundle());
         setVersion(version.getVersionNumber());
-        registerAction(new CpuProcBackendAction(writerID, cpuStatDAO));
+        action = new CpuProcBackendAction(writerID, cpuStatDAO);
+        registerAction(action);
     }
 
     @Deactivate
@@ -89,10 +93,12 @@ public class HostCpuBackend extends HostPollingBackend {
         }
     }
 
-    private static class CpuProcBackendAction implements HostPollingAction {
+    private static class CpuProcBackendAction implements AdaptiveHostPollingAction {
 
-        private final CpuStatBuilder builder;
+        private CpuStatBuilder builder;
         private final CpuStatDAO dao;
+        private double[] lastUsage;
+        private boolean changed = true;
 
         CpuProcBackendAction(final WriterID id, final CpuStatDAO dao) {
             this.builder = new CpuStatBuilderFactory().build(id);
@@ -105,9 +111,17 @@ public class HostCpuBackend extends HostPollingBackend {
                 builder.initialize();
             } else {
                 final CpuStat info = builder.build();
+                double[] usage = info.getPerProcessorUsage();
+                changed = !Arrays.equals(lastUsage, usage);
+                lastUsage = usage;
                 dao.put(info);
             }
         }
+
+        @Override
+        public boolean hasChanged() {
+            return changed;
+        }
     }
 
     void bindCpuStatDAO(CpuStatDAO dao) {
@@ -118,5 +132,12 @@ public class HostCpuBackend extends HostPollingBackend {
         this.writerID = id;
     }
 
+    /*
+     * For testing purposes only.
+     */
+    void setCpuStatBuilder(CpuStatBuilder builder) {
+        action.builder = builder;
+    }
+
 }
 
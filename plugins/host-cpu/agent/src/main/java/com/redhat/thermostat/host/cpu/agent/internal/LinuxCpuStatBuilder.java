@@ -36,11 +36,12 @@
 
 package com.redhat.thermostat.host.cpu.agent.internal;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.redhat.thermostat.common.portability.linux.ProcBuffer;
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
 import com.redhat.thermostat.common.Clock;
 import com.redhat.thermostat.common.utils.LoggingUtils;
@@ -51,10 +52,13 @@ public class LinuxCpuStatBuilder implements CpuStatBuilder {
 
     private static final Logger logger = LoggingUtils.getLogger(LinuxCpuStatBuilder.class);
 
+    private static final byte[] CPU_PREFIX = ProcBuffer.ascii("cpu");
+
     private final ProcDataSource dataSource;
     private final Clock clock;
     private final long ticksPerSecond;
     private final WriterID writerId;
+    private final ProcBuffer buffer = new ProcBuffer();
 
     private boolean initialized = false;
 
@@ -106,26 +110,23 @@ public class LinuxCpuStatBuilder implements CpuStatBuilder {
     private long[] getCurrentCpuTicks() {
         int maxIndex = 0;
         long[] values = new long[1];
-        try (BufferedReader reader = new BufferedReader(dataSource.getStatReader())) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.startsWith("cpu")) {
-                    continue;
-                }
-                String[] parts = line.split("\\s");
-                if (!parts[0].matches("cpu\\d+")) {
+        try (ReadableByteChannel channel = dataSource.getStatChannel()) {
+            buffer.fill(channel);
+            for (; buffer.hasRemaining(); buffer.nextLine()) {
+                // only per-cpu lines: "cpuN user nice system ..."
+                if (!buffer.skipIfStartsWith(CPU_PREFIX) || !buffer.isAtDigit()) {
                     continue;
                 }
 
-                int cpuIndex = Integer.valueOf(parts[0].substring("cpu".length()));
+                int cpuIndex = (int) buffer.nextLong();
                 if (cpuIndex > maxIndex) {
                     long[] newValues = new long[cpuIndex+1];
-                    System.arraycopy(values, 0, newValues, 0, cpuIndex);
+                    System.arraycopy(values, 0, newValues, 0, values.length);
                     values = newValues;
                     maxIndex = cpuIndex;
                 }
                 // add the user, user-nice and system times to get the CPU busy time
-                values[cpuIndex] = Long.valueOf(parts[1]) + Long.valueOf(parts[2]) + Long.valueOf(parts[3]);
+                values[cpuIndex] = buffer.nextLong() + buffer.nextLong() + buffer.nextLong();
             }
         } catch (IOException e) {
             logger.log(Level.WARNING, "error reading stat file", e);
@@ -36,7 +36,6 @@
 
 package com.redhat.thermostat.host.cpu.agent.internal;
 
-import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -55,15 +54,17 @@ import com.redhat.thermostat.common.plugin.PluginConfiguration;
 import com.redhat.thermostat.common.plugin.SystemID;
 import com.redhat.thermostat.host.cpu.agent.internal.CpuStatDAOImpl.ConfigurationCreator;
 import com.redhat.thermostat.host.cpu.model.CpuStat;
+import com.redhat.thermostat.host.cpu.model.CpuStatTypeAdapter;
 
 public class CpuStatDAOTest {
 
     private static final URI GATEWAY_URI = URI.create("http://localhost:26000/api/system-cpu/0.0.1/");
-    private static final String SOME_JSON = "{\"some\" : \"json\"}";
+    private static final String PLUGIN_ID = "host-cpu";
     private static final double times[] = { 33., 44, };
     private static final String HOST_NAME = "somehostname";
 
     private CpuStat info;
+    private CpuStatTypeAdapter typeAdapter;
     private CpuStatDAOImpl.JsonHelper jsonHelper;
     private ConfigurationInfoSource cfiSource;
     private CpuStatDAOImpl.ConfigurationCreator configCreator;
@@ -76,13 +77,15 @@ public class CpuStatDAOTest {
         Clock clock = new SystemClock();
         info = new CpuStat("foo-agent", clock.getRealTimeMillis(), times);
 
+        typeAdapter = new CpuStatTypeAdapter();
         jsonHelper = mock(CpuStatDAOImpl.JsonHelper.class);
-        when(jsonHelper.toJson(anyListOf(CpuStat.class))).thenReturn(SOME_JSON);
+        when(jsonHelper.getTypeAdapter()).thenReturn(typeAdapter);
 
         cfiSource = mock(ConfigurationInfoSource.class);
         configCreator = mock(ConfigurationCreator.class);
         PluginConfiguration pluginConfig = mock(PluginConfiguration.class);
         when(pluginConfig.getGatewayURL()).thenReturn(GATEWAY_URI);
+        when(pluginConfig.getPluginId()).thenReturn(PLUGIN_ID);
         when(configCreator.create(cfiSource)).thenReturn(pluginConfig);
 
         httpRequestService = mock(HttpRequestService.class);
@@ -100,7 +103,7 @@ public class CpuStatDAOTest {
         dao.activate();
         dao.put(info);
 
-        verify(httpRequestService, times(1)).sendHttpRequest(SOME_JSON, GATEWAY_URI.resolve("systems/" + HOST_NAME), HttpRequestService.Method.POST);
+        verify(httpRequestService, times(1)).queueHttpPost(PLUGIN_ID, typeAdapter, info, GATEWAY_URI.resolve("systems/" + HOST_NAME));
     }
 
 }
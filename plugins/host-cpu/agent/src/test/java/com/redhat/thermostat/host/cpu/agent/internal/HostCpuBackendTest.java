@@ -41,6 +41,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -102,6 +103,56 @@ public class HostCpuBackendTest {
         verify(cpuStatDAO).put(any(CpuStat.class));
     }
 
+    @Test
+    public void testUnchangedCpuUsageIsSampledLessOften() {
+        CpuStat stat = mock(CpuStat.class);
+        when(stat.getPerProcessorUsage()).thenReturn(new double[] { 0.5, 0.5 });
+        CpuStatBuilder builder = mock(CpuStatBuilder.class);
+        when(builder.isInitialized()).thenReturn(true);
+        when(builder.build()).thenReturn(stat);
+
+        Runnable runnable = activateAdaptive(builder);
+        // runs on ticks 0, 1, 3 and 7
+        for (int i = 0; i < 8; i++) {
+            runnable.run();
+        }
+
+        verify(builder, times(4)).build();
+    }
+
+    @Test
+    public void testChangedCpuUsageIsSampledEveryTime() {
+        CpuStat stat1 = mock(CpuStat.class);
+        when(stat1.getPerProcessorUsage()).thenReturn(new double[] { 0.5, 0.5 });
+        CpuStat stat2 = mock(CpuStat.class);
+        when(stat2.getPerProcessorUsage()).thenReturn(new double[] { 0.5, 0.7 });
+        CpuStatBuilder builder = mock(CpuStatBuilder.class);
+        when(builder.isInitialized()).thenReturn(true);
+        when(builder.build()).thenReturn(stat1, stat2, stat1, stat2, stat1, stat2, stat1, stat2);
+
+        Runnable runnable = activateAdaptive(builder);
+        for (int i = 0; i < 8; i++) {
+            runnable.run();
+        }
+
+        verify(builder, times(8)).build();
+    }
+
+    private Runnable activateAdaptive(CpuStatBuilder builder) {
+        org.osgi.framework.Version osgiVersion = mock(org.osgi.framework.Version.class);
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getVersion()).thenReturn(osgiVersion);
+        BundleContext ctx = mock(BundleContext.class);
+        when(ctx.getBundle()).thenReturn(bundle);
+        backend.componentActivated(ctx);
+        backend.setCpuStatBuilder(builder);
+        backend.setMaxAdaptivePollingInterval(4 * backend.getPollingInterval());
+        backend.activate();
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).scheduleAtFixedRate(captor.capture(), any(Long.class), any(Long.class), any(TimeUnit.class));
+        return captor.getValue();
+    }
+
     @Test
     public void testDeactivate() {
         backend.activate();
@@ -43,9 +43,11 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 
 import com.redhat.thermostat.shared.config.OS;
 import org.junit.Assume;
@@ -88,13 +90,13 @@ public class LinuxCpuStatBuilderTest {
             "cpu 100 0 0 1000 1000\n" +
             "cpu0 100 0 0 1000 1000\n" +
             "cpu1 10 80 10 1000 1000\n";
-        BufferedReader reader1 = new BufferedReader(new StringReader(firstReadContents));
+        ReadableByteChannel channel1 = toChannel(firstReadContents);
 
         String secondReadContents =
             "cpu 400 0 0 1000 1000\n" +
             "cpu0 200 0 0 1000 1000\n" +
             "cpu1 30 50 120 1000 1000\n";
-        BufferedReader reader2 = new BufferedReader(new StringReader(secondReadContents));
+        ReadableByteChannel channel2 = toChannel(secondReadContents);
 
         long ticksPerSecond = 100;
         Clock clock = mock(Clock.class);
@@ -102,7 +104,7 @@ public class LinuxCpuStatBuilderTest {
         when(clock.getMonotonicTimeNanos()).thenReturn((long)(CLOCK1 * 1E6)).thenReturn((long)(CLOCK2 * 1E6));
 
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getStatReader()).thenReturn(reader1).thenReturn(reader2);
+        when(dataSource.getStatChannel()).thenReturn(channel1).thenReturn(channel2);
         WriterID writerId = mock(WriterID.class);
         LinuxCpuStatBuilder builder = new LinuxCpuStatBuilder(clock, dataSource, ticksPerSecond, writerId);
 
@@ -110,9 +112,36 @@ public class LinuxCpuStatBuilderTest {
 
         CpuStat stat = builder.build();
 
-        verify(dataSource, times(2)).getStatReader();
+        verify(dataSource, times(2)).getStatChannel();
         assertArrayEquals(new double[] {100, 100}, stat.getPerProcessorUsage(), 0.01);
     }
 
+    @Test
+    public void testNonCpuLinesAreIgnored() throws IOException {
+        Assume.assumeTrue(OS.IS_LINUX);
+        String contents =
+            "cpu  100 0 0 1000 1000\n" +
+            "cpu0 100 0 0 1000 1000\n" +
+            "cpuX 1 2 3\n" +
+            "intr 1234 1 2 3\n" +
+            "ctxt 5678\n" +
+            "cpu2 10 20 30 1000 1000\n";
+
+        Clock clock = mock(Clock.class);
+        when(clock.getMonotonicTimeNanos()).thenReturn(0l).thenReturn((long) 1E9);
+        ProcDataSource dataSource = mock(ProcDataSource.class);
+        when(dataSource.getStatChannel()).thenReturn(toChannel(contents)).thenReturn(toChannel(contents));
+        LinuxCpuStatBuilder builder = new LinuxCpuStatBuilder(clock, dataSource, 100, mock(WriterID.class));
+
+        builder.initialize();
+        CpuStat stat = builder.build();
+
+        assertArrayEquals(new double[] {0, 0, 0}, stat.getPerProcessorUsage(), 0.01);
+    }
+
+    private static ReadableByteChannel toChannel(String contents) {
+        return Channels.newChannel(new ByteArrayInputStream(contents.getBytes(StandardCharsets.US_ASCII)));
+    }
+
 }
 
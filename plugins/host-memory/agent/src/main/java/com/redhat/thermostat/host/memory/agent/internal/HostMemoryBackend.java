@@ -42,9 +42,10 @@ import java.util.concurrent.ScheduledExecutorService;
 import com.redhat.thermostat.backend.Backend;
 import com.redhat.thermostat.common.portability.HostName;
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
-import com.redhat.thermostat.backend.HostPollingAction;
+import com.redhat.thermostat.backend.AdaptiveHostPollingAction;
 import com.redhat.thermostat.backend.HostPollingBackend;
 import com.redhat.thermostat.common.Version;
+import com.redhat.thermostat.host.memory.model.MemoryStat;
 import com.redhat.thermostat.storage.core.WriterID;
 
 import org.apache.felix.scr.annotations.Activate;
@@ -64,6 +65,8 @@ public class HostMemoryBackend extends HostPollingBackend {
     @Reference
     private WriterID writerID;
 
+    private MemoryProcBackendAction action;
+
     public HostMemoryBackend() {
         this(Executors.newSingleThreadScheduledExecutor());
     }
@@ -80,7 +83,8 @@ public class HostMemoryBackend extends HostPollingBackend {
     protected void componentActivated(BundleContext context) {
         Version version = new Version(context.getBundle());
         setVersion(version.getVersionNumber());
-        registerAction(new MemoryProcBackendAction(writerID, memoryStatDAO));
+        action = new MemoryProcBackendAction(writerID, memoryStatDAO);
+        registerAction(action);
     }
 
     @Deactivate
@@ -90,10 +94,12 @@ public class HostMemoryBackend extends HostPollingBackend {
         }
     }
 
-    private static class MemoryProcBackendAction implements HostPollingAction {
+    private static class MemoryProcBackendAction implements AdaptiveHostPollingAction {
 
         private MemoryStatBuilder builder;
         private MemoryStatDAO dao;
+        private MemoryStat last;
+        private boolean changed;
 
         MemoryProcBackendAction(final WriterID id, MemoryStatDAO dao) {
             ProcDataSource source = new ProcDataSource();
@@ -103,7 +109,25 @@ public class HostMemoryBackend extends HostPollingBackend {
 
         @Override
         public void run() {
-            dao.put(builder.build());
+            MemoryStat stat = builder.build();
+            changed = last == null || !sameValues(last, stat);
+            last = stat;
+            dao.put(stat);
+        }
+
+        @Override
+        public boolean hasChanged() {
+            return changed;
+        }
+
+        private static boolean sameValues(MemoryStat a, MemoryStat b) {
+            return a.getTotal() == b.getTotal()
+                    && a.getFree() == b.getFree()
+                    && a.getBuffers() == b.getBuffers()
+                    && a.getCached() == b.getCached()
+                    && a.getSwapTotal() == b.getSwapTotal()
+                    && a.getSwapFree() == b.getSwapFree()
+                    && a.getCommitLimit() == b.getCommitLimit();
         }
 
     }
@@ -116,5 +140,12 @@ public class HostMemoryBackend extends HostPollingBackend {
         this.writerID = id;
     }
 
+    /*
+     * For testing purposes only.
+     */
+    void setMemoryStatBuilder(MemoryStatBuilder builder) {
+        action.builder = builder;
+    }
+
 }
 
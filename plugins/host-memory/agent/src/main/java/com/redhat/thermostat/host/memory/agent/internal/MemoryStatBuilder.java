@@ -36,12 +36,13 @@
 
 package com.redhat.thermostat.host.memory.agent.internal;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.redhat.thermostat.common.portability.PortableMemoryStatFactory;
+import com.redhat.thermostat.common.portability.linux.ProcBuffer;
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
 import com.redhat.thermostat.common.NotImplementedException;
 import com.redhat.thermostat.common.Size;
@@ -60,18 +61,31 @@ public class MemoryStatBuilder {
 
     private static final boolean IS_LINUX = OS.IS_LINUX;
 
-    private static final String KEY_MEMORY_TOTAL = "MemTotal";
-    private static final String KEY_MEMORY_FREE = "MemFree";
-    private static final String KEY_BUFFERS = "Buffers";
-    private static final String KEY_CACHED = "Cached";
-    private static final String KEY_SWAP_TOTAL = "SwapTotal";
-    private static final String KEY_SWAP_FREE = "SwapFree";
-    private static final String KEY_COMMIT_LIMIT = "CommitLimit";
+    private static final int KEY_MEMORY_TOTAL = 0;
+    private static final int KEY_MEMORY_FREE = 1;
+    private static final int KEY_BUFFERS = 2;
+    private static final int KEY_CACHED = 3;
+    private static final int KEY_SWAP_TOTAL = 4;
+    private static final int KEY_SWAP_FREE = 5;
+    private static final int KEY_COMMIT_LIMIT = 6;
+    // indexed by the constants above
+    private static final byte[][] KEYS = {
+        ProcBuffer.ascii("MemTotal"),
+        ProcBuffer.ascii("MemFree"),
+        ProcBuffer.ascii("Buffers"),
+        ProcBuffer.ascii("Cached"),
+        ProcBuffer.ascii("SwapTotal"),
+        ProcBuffer.ascii("SwapFree"),
+        ProcBuffer.ascii("CommitLimit"),
+    };
+    private static final byte[] UNIT_KB = ProcBuffer.ascii("kB");
+    private static final byte[] UNIT_KB_UPPER = ProcBuffer.ascii("KB");
 
     private static final Logger logger = LoggingUtils.getLogger(MemoryStatBuilder.class);
 
     private final ProcDataSource dataSource;
     private final WriterID writerId;
+    private final ProcBuffer buffer = new ProcBuffer();
 
     public MemoryStatBuilder(ProcDataSource dataSource, WriterID writerId) {
         this.dataSource = dataSource;
@@ -93,28 +107,36 @@ public class MemoryStatBuilder {
         long cached = UNAVAILABLE;
         long commitLimit = UNAVAILABLE;
 
-        try (BufferedReader reader = new BufferedReader(dataSource.getMemInfoReader())) {
-            String line = null;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(":");
-                if (parts.length == 2) {
-                    String key = parts[0].trim();
-                    long value = getValue(parts[1].trim());
-                    if (key.equals(KEY_MEMORY_TOTAL)) {
+        try (ReadableByteChannel channel = dataSource.getMemInfoChannel()) {
+            buffer.fill(channel);
+            for (; buffer.hasRemaining(); buffer.nextLine()) {
+                int key = buffer.nextKey(KEYS, ':');
+                if (key < 0) {
+                    continue;
+                }
+                long value = getValue();
+                switch (key) {
+                    case KEY_MEMORY_TOTAL:
                         total = value;
-                    } else if (key.equals(KEY_MEMORY_FREE)) {
+                        break;
+                    case KEY_MEMORY_FREE:
                         free = value;
-                    } else if (key.equals(KEY_SWAP_TOTAL)) {
+                        break;
+                    case KEY_SWAP_TOTAL:
                         swapTotal = value;
-                    } else if (key.equals(KEY_SWAP_FREE)) {
+                        break;
+                    case KEY_SWAP_FREE:
                         swapFree = value;
-                    } else if (key.equals(KEY_BUFFERS)) {
+                        break;
+                    case KEY_BUFFERS:
                         buffers = value;
-                    } else if (key.equals(KEY_CACHED)) {
+                        break;
+                    case KEY_CACHED:
                         cached = value;
-                    } else if (key.equals(KEY_COMMIT_LIMIT)) {
+                        break;
+                    case KEY_COMMIT_LIMIT:
                         commitLimit = value;
-                    }
+                        break;
                 }
             }
         } catch (IOException ioe) {
@@ -134,24 +156,16 @@ public class MemoryStatBuilder {
         return new MemoryStat(wId, timestamp, memstat.getTotal(), memstat.getFree(), memstat.getBuffers(), memstat.getCached(), memstat.getSwapTotal(), memstat.getSwapFree(), memstat.getCommitLimit());
     }
 
-    private long getValue(String rawValue) {
-        String[] parts = rawValue.split(" +");
-        String value = rawValue;
-        String units = null;
-        if (parts.length > 1) {
-            value = parts[0];
-            units = parts[1];
-        }
-
+    private long getValue() {
         long result = UNAVAILABLE;
         try {
-            result = Long.parseLong(value);
-            if (units != null) {
+            result = buffer.nextLong();
+            if (!buffer.isAtEndOfLine()) {
                 // /proc/meminfo uses kB instead of KiB, incorrectly
-                if (units.equals("kB") || units.equals("KB")) {
+                if (buffer.skipIfStartsWith(UNIT_KB) || buffer.skipIfStartsWith(UNIT_KB_UPPER)) {
                     result = (long) new Size(result, Size.Unit.KiB).convertTo(Size.Unit.B).getValue();
                 } else {
-                    throw new NotImplementedException("unit conversion from " + units + " not implemented");
+                    throw new NotImplementedException("unit conversion from " + buffer.nextToken() + " not implemented");
                 }
             }
         } catch (NumberFormatException nfe) {
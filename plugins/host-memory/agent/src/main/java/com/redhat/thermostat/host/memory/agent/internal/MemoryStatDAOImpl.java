@@ -47,6 +47,7 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 
+import com.google.gson.TypeAdapter;
 import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
@@ -114,6 +115,11 @@ public class MemoryStatDAOImpl extends PluginDAOBase<MemoryStat> implements Memo
         return jsonHelper.toJson(Arrays.asList(obj));
     }
 
+    @Override
+    protected TypeAdapter<List<MemoryStat>> getTypeAdapter() {
+        return jsonHelper.getTypeAdapter();
+    }
+
     @Override
     protected URI getPostURI(URI basepath, MemoryStat obj) {
         return basepath.resolve("systems/" + systemID.getSystemID());
@@ -148,6 +154,10 @@ public class MemoryStatDAOImpl extends PluginDAOBase<MemoryStat> implements Memo
         String toJson(List<MemoryStat> infos) throws IOException {
             return typeAdapter.toJson(infos);
         }
+
+        TypeAdapter<List<MemoryStat>> getTypeAdapter() {
+            return typeAdapter;
+        }
     }
 
     // For Testing purposes
@@ -40,6 +40,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -99,6 +100,53 @@ public class HostMemoryBackendTest {
         verify(memoryStatDAO).put(any(MemoryStat.class));
     }
 
+    @Test
+    public void testUnchangedMemoryIsSampledLessOften() {
+        MemoryStatBuilder builder = mock(MemoryStatBuilder.class);
+        MemoryStat stat = mock(MemoryStat.class);
+        when(builder.build()).thenReturn(stat);
+
+        Runnable runnable = activateAdaptive(builder);
+        // runs on ticks 0, 1, 3 and 7
+        for (int i = 0; i < 8; i++) {
+            runnable.run();
+        }
+
+        verify(builder, times(4)).build();
+    }
+
+    @Test
+    public void testChangedMemoryIsSampledEveryTime() {
+        MemoryStatBuilder builder = mock(MemoryStatBuilder.class);
+        MemoryStat stat1 = mock(MemoryStat.class);
+        when(stat1.getFree()).thenReturn(1L);
+        MemoryStat stat2 = mock(MemoryStat.class);
+        when(stat2.getFree()).thenReturn(2L);
+        when(builder.build()).thenReturn(stat1, stat2, stat1, stat2, stat1, stat2, stat1, stat2);
+
+        Runnable runnable = activateAdaptive(builder);
+        for (int i = 0; i < 8; i++) {
+            runnable.run();
+        }
+
+        verify(builder, times(8)).build();
+    }
+
+    private Runnable activateAdaptive(MemoryStatBuilder builder) {
+        org.osgi.framework.Version osgiVersion = mock(org.osgi.framework.Version.class);
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getVersion()).thenReturn(osgiVersion);
+        BundleContext ctx = mock(BundleContext.class);
+        when(ctx.getBundle()).thenReturn(bundle);
+        backend.componentActivated(ctx);
+        backend.setMemoryStatBuilder(builder);
+        backend.setMaxAdaptivePollingInterval(4 * backend.getPollingInterval());
+        backend.activate();
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).scheduleAtFixedRate(captor.capture(), any(Long.class), any(Long.class), any(TimeUnit.class));
+        return captor.getValue();
+    }
+
     @Test
     public void testDeactivate() {
         backend.activate();
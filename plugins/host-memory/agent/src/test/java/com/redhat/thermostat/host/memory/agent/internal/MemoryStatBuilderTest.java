@@ -43,8 +43,11 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 
 import com.redhat.thermostat.shared.config.OS;
 import org.junit.Assume;
@@ -78,13 +81,13 @@ public class MemoryStatBuilderTest {
     public void testEmptyBuild() throws IOException {
         Assume.assumeTrue(OS.IS_LINUX);
         String memory = "";
-        StringReader memoryReader = new StringReader(memory);
+        ReadableByteChannel memoryChannel = toChannel(memory);
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getMemInfoReader()).thenReturn(memoryReader);
+        when(dataSource.getMemInfoChannel()).thenReturn(memoryChannel);
 
         MemoryStat stat = new MemoryStatBuilder(dataSource, writerId).build();
         assertNotNull(stat);
-        verify(dataSource).getMemInfoReader();
+        verify(dataSource).getMemInfoChannel();
     }
 
     @Test
@@ -108,9 +111,9 @@ public class MemoryStatBuilderTest {
                 "SwapTotal: " + SWAP_TOTAL + " kB\n" +
                 "SwapFree: " + SWAP_FREE + " kB\n";
 
-        StringReader memoryReader = new StringReader(memory);
+        ReadableByteChannel memoryChannel = toChannel(memory);
         ProcDataSource dataSource = mock(ProcDataSource.class);
-        when(dataSource.getMemInfoReader()).thenReturn(memoryReader);
+        when(dataSource.getMemInfoChannel()).thenReturn(memoryChannel);
 
         MemoryStat stat = new MemoryStatBuilder(dataSource, writerId).build();
 
@@ -123,7 +126,31 @@ public class MemoryStatBuilderTest {
         assertEquals(TOTAL * KILOBYTES_TO_BYTES, stat.getTotal());
         assertTrue(stat.getTimeStamp() != 0 && stat.getTimeStamp() != Long.MIN_VALUE);
         assertTrue(stat.getTimeStamp() <= System.currentTimeMillis());
-        verify(dataSource).getMemInfoReader();
+        verify(dataSource).getMemInfoChannel();
     }
-}
 
+    @Test
+    public void testUnknownAndMalformedLines() throws IOException {
+        Assume.assumeTrue(OS.IS_LINUX);
+        String memory = "" +
+                "MemTotal:       16314700 kB\n" +
+                "MemAvailable:   10000000 kB\n" +
+                "HugePages_Total:       0\n" +
+                "garbage\n" +
+                "MemFree:        lots kB\n" +
+                "SwapTotal:             7\n";
+        ProcDataSource dataSource = mock(ProcDataSource.class);
+        when(dataSource.getMemInfoChannel()).thenReturn(toChannel(memory));
+
+        MemoryStat stat = new MemoryStatBuilder(dataSource, writerId).build();
+
+        assertEquals(16314700L * KILOBYTES_TO_BYTES, stat.getTotal());
+        assertEquals(-1, stat.getFree());
+        assertEquals(7, stat.getSwapTotal());
+        assertEquals(-1, stat.getCached());
+    }
+
+    private static ReadableByteChannel toChannel(String contents) {
+        return Channels.newChannel(new ByteArrayInputStream(contents.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -36,7 +36,6 @@
 
 package com.redhat.thermostat.host.memory.agent.internal;
 
-import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -55,14 +54,16 @@ import com.redhat.thermostat.common.plugin.PluginConfiguration;
 import com.redhat.thermostat.common.plugin.SystemID;
 import com.redhat.thermostat.host.memory.agent.internal.MemoryStatDAOImpl.ConfigurationCreator;
 import com.redhat.thermostat.host.memory.model.MemoryStat;
+import com.redhat.thermostat.host.memory.model.MemoryStatTypeAdapter;
 
 public class MemoryStatDAOTest {
 
     private static final URI GATEWAY_URI = URI.create("http://localhost:26000/api/system-memory/0.0.1/");
-    private static final String SOME_JSON = "{\"some\" : \"json\"}";
+    private static final String PLUGIN_ID = "host-memory";
     private static final String HOST_NAME = "somehostname";
 
     private MemoryStat info;
+    private MemoryStatTypeAdapter typeAdapter;
     private MemoryStatDAOImpl.JsonHelper jsonHelper;
     private ConfigurationInfoSource cfiSource;
     private MemoryStatDAOImpl.ConfigurationCreator configCreator;
@@ -74,13 +75,15 @@ public class MemoryStatDAOTest {
         Clock clock = new SystemClock();
         this.info = new MemoryStat("foo-agent", clock.getRealTimeMillis(), 0, 0, 0, 0, 0, 0, 0);
 
-        this.jsonHelper = mock(MemoryStatDAOImpl.JsonHelper.class);
-        when(jsonHelper.toJson(anyListOf(MemoryStat.class))).thenReturn(SOME_JSON);
+        typeAdapter = new MemoryStatTypeAdapter();
+jsonHelper = mock(MemoryStatDAOImpl.JsonHelper.class);
+        when(jsonHelper.getTypeAdapter()).thenReturn(typeAdapter);
 
         cfiSource = mock(ConfigurationInfoSource.class);
         configCreator = mock(ConfigurationCreator.class);
         PluginConfiguration pluginConfig = mock(PluginConfiguration.class);
         when(pluginConfig.getGatewayURL()).thenReturn(GATEWAY_URI);
+        when(pluginConfig.getPluginId()).thenReturn(PLUGIN_ID);
         when(configCreator.create(cfiSource)).thenReturn(pluginConfig);
 
         httpRequestService = mock(HttpRequestService.class);
@@ -97,7 +100,7 @@ public class MemoryStatDAOTest {
         dao.activate();
         dao.put(info);
 
-        verify(httpRequestService, times(1)).sendHttpRequest(SOME_JSON, GATEWAY_URI.resolve("systems/" + HOST_NAME), HttpRequestService.Method.POST);
+        verify(httpRequestService, times(1)).queueHttpPost(PLUGIN_ID, typeAdapter, info, GATEWAY_URI.resolve("systems/" + HOST_NAME));
     }
 }
 
@@ -41,7 +41,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
 import com.redhat.thermostat.backend.Backend;
-import com.redhat.thermostat.backend.HostPollingAction;
+import com.redhat.thermostat.backend.AdaptiveHostPollingAction;
 import com.redhat.thermostat.backend.HostPollingBackend;
 import com.redhat.thermostat.common.Version;
 import com.redhat.thermostat.common.Clock;
@@ -70,6 +70,8 @@ public class HostNetworkBackend extends HostPollingBackend {
     @Reference
     private WriterID writerID;
 
+    private BackendAction action;
+
     public HostNetworkBackend() {
         this(Executors.newSingleThreadScheduledExecutor());
     }
@@ -89,7 +91,8 @@ public class HostNetworkBackend extends HostPollingBackend {
     public void componentActivated(BundleContext context) {
         Version version = new Version(context.getBundle());
         setVersion(version.getVersionNumber());
-        registerAction(new BackendAction(writerID, clock, networkInterfaceInfoDAO));
+        action = new BackendAction(writerID, clock, networkInterfaceInfoDAO);
+        registerAction(action);
     }
 
     @Deactivate
@@ -99,13 +102,14 @@ public class HostNetworkBackend extends HostPollingBackend {
         }
     }
 
-    private static class BackendAction implements HostPollingAction {
+    private static class BackendAction implements AdaptiveHostPollingAction {
 
-        private final NetworkInfoBuilder builder;
+        private NetworkInfoBuilder builder;
         private final NetworkInfoListDAO dao;
         private WriterID writerID;
         private Clock clock;
         private int oldHash = 0;
+        private boolean changed;
 
         BackendAction(WriterID writerID, Clock clock, NetworkInfoListDAO dao) {
             builder = new NetworkInfoBuilder();
@@ -118,13 +122,33 @@ public class HostNetworkBackend extends HostPollingBackend {
         public void run() {
             final List<NetworkInterfaceInfo> ifaceList = builder.build();
             int hash = ifaceList.hashCode();
-            if (hash != oldHash) {
+            changed = hash != oldHash;
+            if (changed) {
                 NetworkInfoList obj = new NetworkInfoList(writerID.getWriterID(), clock.getRealTimeMillis(), ifaceList);
                 dao.put(obj);
                 oldHash = hash;
             }
         }
 
+        @Override
+        public boolean hasChanged() {
+            return changed;
+        }
+
     }
-}
 
+    void bindNetworkInterfaceInfoDAO(NetworkInfoListDAO dao) {
+        this.networkInterfaceInfoDAO = dao;
+    }
+
+    void bindWriterID(WriterID id) {
+        this.writerID = id;
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    void setNetworkInfoBuilder(NetworkInfoBuilder builder) {
+        action.builder = builder;
+    }
+}
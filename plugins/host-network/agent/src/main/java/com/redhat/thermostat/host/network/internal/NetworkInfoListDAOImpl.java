@@ -47,6 +47,7 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 
+import com.google.gson.TypeAdapter;
 import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
@@ -97,6 +98,11 @@ public class NetworkInfoListDAOImpl extends PluginDAOBase<NetworkInfoList> imple
         return jsonHelper.toJson(Arrays.asList(obj));
     }
 
+    @Override
+    protected TypeAdapter<List<NetworkInfoList>> getTypeAdapter() {
+        return jsonHelper.getTypeAdapter();
+    }
+
     @Override
     protected HttpRequestService getHttpRequestService() {
         return httpRequestService;
@@ -142,6 +148,10 @@ public class NetworkInfoListDAOImpl extends PluginDAOBase<NetworkInfoList> imple
         String toJson(List<NetworkInfoList> infos) throws IOException {
             return typeAdapter.toJson(infos);
         }
+
+        TypeAdapter<List<NetworkInfoList>> getTypeAdapter() {
+            return typeAdapter;
+        }
     }
 
     // For Testing purposes
@@ -39,28 +39,45 @@ package com.redhat.thermostat.host.network.internal;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
 
 import com.redhat.thermostat.common.Version;
+import com.redhat.thermostat.host.network.model.NetworkInfoList;
+import com.redhat.thermostat.host.network.model.NetworkInterfaceInfo;
+import com.redhat.thermostat.storage.core.WriterID;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class HostNetworkBackendTest {
 
     private static final String VERSION = "0.0.0";
     private HostNetworkBackend b;
+    private ScheduledExecutorService executor;
+    private NetworkInfoListDAO dao;
 
     @Before
     public void setUp() {
-        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        executor = mock(ScheduledExecutorService.class);
         Version version = mock(Version.class);
         when(version.getVersionNumber()).thenReturn(VERSION);
+        dao = mock(NetworkInfoListDAO.class);
         b = new HostNetworkBackend("backend", "test backend", "redhat", version, executor);
+        b.bindNetworkInterfaceInfoDAO(dao);
+        b.bindWriterID(mock(WriterID.class));
     }
 
     @Test
@@ -91,5 +108,52 @@ public class HostNetworkBackendTest {
         assertEquals(VERSION, b.getVersion());
     }
 
+    @Test
+    public void testUnchangedInterfacesAreSampledLessOften() {
+        List<NetworkInterfaceInfo> ifaces = Arrays.asList(new NetworkInterfaceInfo("lo"));
+        NetworkInfoBuilder builder = mock(NetworkInfoBuilder.class);
+        when(builder.build()).thenReturn(ifaces);
+
+        Runnable runnable = activateAdaptive(builder);
+        // runs on ticks 0, 1, 3 and 7
+        for (int i = 0; i < 8; i++) {
+            runnable.run();
+        }
+
+        verify(builder, times(4)).build();
+        verify(dao).put(any(NetworkInfoList.class));
+    }
+
+    @Test
+    public void testChangedInterfacesAreSampledEveryTime() {
+        List<NetworkInterfaceInfo> ifaces1 = Arrays.asList(new NetworkInterfaceInfo("lo"));
+        List<NetworkInterfaceInfo> ifaces2 = Arrays.asList(new NetworkInterfaceInfo("eth0"));
+        NetworkInfoBuilder builder = mock(NetworkInfoBuilder.class);
+        when(builder.build()).thenReturn(ifaces1, ifaces2, ifaces1, ifaces2, ifaces1, ifaces2, ifaces1, ifaces2);
+
+        Runnable runnable = activateAdaptive(builder);
+        for (int i = 0; i < 8; i++) {
+            runnable.run();
+        }
+
+        verify(builder, times(8)).build();
+        verify(dao, times(8)).put(any(NetworkInfoList.class));
+    }
+
+    private Runnable activateAdaptive(NetworkInfoBuilder builder) {
+        org.osgi.framework.Version osgiVersion = mock(org.osgi.framework.Version.class);
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getVersion()).thenReturn(osgiVersion);
+        BundleContext ctx = mock(BundleContext.class);
+        when(ctx.getBundle()).thenReturn(bundle);
+        b.componentActivated(ctx);
+        b.setNetworkInfoBuilder(builder);
+        b.setMaxAdaptivePollingInterval(4 * b.getPollingInterval());
+        b.activate();
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).scheduleAtFixedRate(captor.capture(), any(Long.class), any(Long.class), any(TimeUnit.class));
+        return captor.getValue();
+    }
+
 }
 
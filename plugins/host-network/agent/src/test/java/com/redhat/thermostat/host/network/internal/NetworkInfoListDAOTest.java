@@ -36,7 +36,6 @@
 
 package com.redhat.thermostat.host.network.internal;
 
-import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -44,7 +43,6 @@ import static org.mockito.Mockito.when;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -56,19 +54,21 @@ import com.redhat.thermostat.common.plugin.SystemID;
 import com.redhat.thermostat.host.network.internal.NetworkInfoListDAOImpl.ConfigurationCreator;
 import com.redhat.thermostat.host.network.internal.NetworkInfoListDAOImpl.JsonHelper;
 import com.redhat.thermostat.host.network.model.NetworkInfoList;
+import com.redhat.thermostat.host.network.model.NetworkInfoListTypeAdapter;
 import com.redhat.thermostat.host.network.model.NetworkInterfaceInfo;
 
 public class NetworkInfoListDAOTest {
 
     private static final URI GATEWAY_URI = URI.create("http://localhost:26000/api/v100/network-info/");
+    private static final String PLUGIN_ID = "host-network";
     private static final String INTERFACE_NAME = "some interface. maybe eth0";
     private static final long TIMESTAMP = 333;
     private static final String IPV4_ADDR = "256.256.256.256";
     private static final String IPV6_ADDR = "100:100:100::::1";
-    private static final String SOME_JSON = "{\"some\" : \"json\"}";
     private static final String HOST_NAME = "somehostname";
     private static final String AGENT_ID = "xxx some agent";
 
+    private NetworkInfoListTypeAdapter typeAdapter;
     private JsonHelper jsonHelper;
 
     private ConfigurationInfoSource cfiSource;
@@ -83,13 +83,15 @@ public class NetworkInfoListDAOTest {
         info.setIp4Addr(IPV4_ADDR);
         info.setIp6Addr(IPV6_ADDR);
         
+        typeAdapter = new NetworkInfoListTypeAdapter();
         jsonHelper = mock(JsonHelper.class);
-        when(jsonHelper.toJson(any(List.class))).thenReturn(SOME_JSON);
+        when(jsonHelper.getTypeAdapter()).thenReturn(typeAdapter);
 
         cfiSource = mock(ConfigurationInfoSource.class);
         configCreator = mock(ConfigurationCreator.class);
         PluginConfiguration pluginConfig = mock(PluginConfiguration.class);
         when(pluginConfig.getGatewayURL()).thenReturn(GATEWAY_URI);
+        when(pluginConfig.getPluginId()).thenReturn(PLUGIN_ID);
         when(configCreator.create(cfiSource)).thenReturn(pluginConfig);
         
         httpRequestService = mock(HttpRequestService.class);
@@ -109,7 +111,7 @@ public class NetworkInfoListDAOTest {
         NetworkInfoList obj = new NetworkInfoList(AGENT_ID, TIMESTAMP, new ArrayList<NetworkInterfaceInfo>());
         dao.put(obj);
 
-        verify(httpRequestService, times(1)).sendHttpRequest(SOME_JSON, GATEWAY_URI.resolve("systems/" + HOST_NAME), HttpRequestService.Method.POST);
+        verify(httpRequestService, times(1)).queueHttpPost(PLUGIN_ID, typeAdapter, obj, GATEWAY_URI.resolve("systems/" + HOST_NAME));
     }
 }
 
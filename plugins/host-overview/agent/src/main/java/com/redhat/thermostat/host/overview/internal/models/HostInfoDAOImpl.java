@@ -47,6 +47,7 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 
+import com.google.gson.TypeAdapter;
 import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
@@ -114,6 +115,11 @@ public class HostInfoDAOImpl extends PluginDAOBase<HostInfo> implements HostInfo
     protected String toJsonString(HostInfo obj) throws IOException {
         return jsonHelper.toJson(Arrays.asList(obj));
     }
+
+    @Override
+    protected TypeAdapter<List<HostInfo>> getTypeAdapter() {
+        return jsonHelper.getTypeAdapter();
+    }
     
     @Override
     protected PluginConfiguration getConfig() {
@@ -148,6 +154,10 @@ public class HostInfoDAOImpl extends PluginDAOBase<HostInfo> implements HostInfo
         String toJson(List<HostInfo> infos) throws IOException {
             return typeAdapter.toJson(infos);
         }
+
+        TypeAdapter<List<HostInfo>> getTypeAdapter() {
+            return typeAdapter;
+        }
     }
     
     // For Testing purposes
@@ -36,7 +36,6 @@
 
 package com.redhat.thermostat.host.overview.internal.models;
 
-import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -53,13 +52,14 @@ import com.redhat.thermostat.common.plugin.PluginConfiguration;
 import com.redhat.thermostat.common.plugin.SystemID;
 import com.redhat.thermostat.host.overview.internal.models.HostInfoDAOImpl.ConfigurationCreator;
 import com.redhat.thermostat.host.overview.model.HostInfo;
+import com.redhat.thermostat.host.overview.model.HostInfoTypeAdapter;
 
 public class HostInfoDAOImplTest {
 
     private static final URI GATEWAY_URI = URI.create("http://localhost:26000/api/systems/v0.0.3/");
+    private static final String PLUGIN_ID = "host-overview";
     private static final URI PUT_URI = GATEWAY_URI.resolve("systems/aHostName");
     private static final String HOST_NAME = "aHostName";
-    private static final String SOME_JSON = "{\"some\" : \"json\"}";
     private static final long TIMESTAMP = 77L;
     private static final String OS_NAME = "some os";
     private static final String OS_KERNEL = "some kernel";
@@ -68,6 +68,7 @@ public class HostInfoDAOImplTest {
     private static final long MEMORY_TOTAL = 0xCAFEBABEl;
 
     private HostInfo info;
+    private HostInfoTypeAdapter typeAdapter;
     private HostInfoDAOImpl.JsonHelper jsonHelper;
     private ConfigurationInfoSource cfiSource;
     private ConfigurationCreator configCreator;
@@ -79,13 +80,15 @@ public class HostInfoDAOImplTest {
         info = new HostInfo("foo-agent", TIMESTAMP, HOST_NAME, OS_NAME, OS_KERNEL, CPU_MODEL, CPU_NUM, MEMORY_TOTAL);
 
         httpRequestService = mock(HttpRequestService.class);
+        typeAdapter = new HostInfoTypeAdapter();
         jsonHelper = mock(HostInfoDAOImpl.JsonHelper.class);
-        when(jsonHelper.toJson(anyListOf(HostInfo.class))).thenReturn(SOME_JSON);
+        when(jsonHelper.getTypeAdapter()).thenReturn(typeAdapter);
 
         cfiSource = mock(ConfigurationInfoSource.class);
         configCreator = mock(ConfigurationCreator.class);
         PluginConfiguration pluginConfig = mock(PluginConfiguration.class);
         when(pluginConfig.getGatewayURL()).thenReturn(GATEWAY_URI);
+        when(pluginConfig.getPluginId()).thenReturn(PLUGIN_ID);
         when(configCreator.create(cfiSource)).thenReturn(pluginConfig);
 
         idservice = mock(SystemID.class);
@@ -102,7 +105,7 @@ public class HostInfoDAOImplTest {
         dao.activate();
         
         dao.put(info);
-        verify(httpRequestService, times(1)).sendHttpRequest(SOME_JSON, PUT_URI, HttpRequestService.Method.POST);
+        verify(httpRequestService, times(1)).queueHttpPost(PLUGIN_ID, typeAdapter, info, PUT_URI);
     }
 
 }
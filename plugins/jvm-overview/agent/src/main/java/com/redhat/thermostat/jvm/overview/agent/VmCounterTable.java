@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent;
+
+/**
+ * Handles for a family of performance counters whose names differ only by up
+ * to two indices, such as {@code sun.gc.generation.<i>.space.<j>.used}. Each
+ * counter is looked up the first time it is asked for and its handle reused
+ * afterwards, so reading the counters on every update needs neither string
+ * building nor name lookups.
+ * <p>
+ * Counters that do not exist are remembered as missing as well, but looked
+ * up again every {@value #MISSING_RETRY_LOOKUPS} times they are asked for,
+ * since the JVM may create counters after it has started. Like the
+ * {@link VmUpdate} it reads from, an instance is meant to be used from the
+ * thread delivering updates.
+ */
+public final class VmCounterTable {
+
+    // Larger indices are looked up every time rather than cached
+    static final int MAX_CACHED_INDEX = 64;
+    // How often a missing counter is asked for before it is looked up again
+    static final int MISSING_RETRY_LOOKUPS = 16;
+
+    private final VmUpdate update;
+    private final String[] nameParts;
+    private VmCounter[][] counters = new VmCounter[0][];
+
+    /**
+     * @param update the updates of the JVM to read counters from
+     * @param nameParts the constant parts of the counter names, around the
+     *        indices: one part for a single counter, two parts for a family
+     *        with one index and three parts for a family with two indices
+     */
+    public VmCounterTable(VmUpdate update, String... nameParts) {
+        if (nameParts.length < 1 || nameParts.length > 3) {
+            throw new IllegalArgumentException("expected 1 to 3 name parts, got " + nameParts.length);
+        }
+        this.update = update;
+        this.nameParts = nameParts.clone();
+    }
+
+    /**
+     * @return the counter of a table created with a single name part, or
+     *         null if no such counter exists
+     */
+    public VmCounter get() throws VmUpdateException {
+        checkIndices(0);
+        return get(0, 0, -1, -1);
+    }
+
+    /**
+     * @return the counter with the given index, or null if no such counter
+     *         exists
+     */
+    public VmCounter get(long index) throws VmUpdateException {
+        checkIndices(1);
+        return get(index, 0, index, -1);
+    }
+
+    /**
+     * @return the counter with the given indices, or null if no such counter
+     *         exists
+     */
+    public VmCounter get(long first, long second) throws VmUpdateException {
+        checkIndices(2);
+        return get(first, second, first, second);
+    }
+
+    private VmCounter get(long row, long column, long first, long second) throws VmUpdateException {
+        if (row < 0 || row >= MAX_CACHED_INDEX || column < 0 || column >= MAX_CACHED_INDEX) {
+            return update.getPerformanceCounter(buildName(first, second));
+        }
+        int i = (int) row;
+        int j = (int) column;
+        if (i >= counters.length) {
+            VmCounter[][] grown = new VmCounter[i + 1][];
+            System.arraycopy(counters, 0, grown, 0, counters.length);
+            counters = grown;
+        }
+        if (counters[i] == null || j >= counters[i].length) {
+            VmCounter[] grown = new VmCounter[j + 1];
+            if (counters[i] != null) {
+                System.arraycopy(counters[i], 0, grown, 0, counters[i].length);
+            }
+            counters[i] = grown;
+        }
+        VmCounter counter = counters[i][j];
+        if (counter instanceof MissingCounter) {
+            MissingCounter missing = (MissingCounter) counter;
+            if (--missing.lookupsUntilRetry > 0) {
+                return null;
+            }
+            counter = null;
+        }
+        if (counter == null) {
+            counter = update.getPerformanceCounter(buildName(first, second));
+            counters[i][j] = counter == null ? new MissingCounter() : counter;
+        }
+        return counter;
+    }
+
+    private String buildName(long first, long second) {
+        StringBuilder name = new StringBuilder(nameParts[0]);
+        if (nameParts.length > 1) {
+            name.append(first).append(nameParts[1]);
+        }
+        if (nameParts.length > 2) {
+            name.append(second).append(nameParts[2]);
+        }
+        return name.toString();
+    }
+
+    /** Marks a counter that did not exist when last looked up */
+    private static final class MissingCounter implements VmCounter {
+
+        private int lookupsUntilRetry = MISSING_RETRY_LOOKUPS;
+
+        @Override
+        public String getName() {
+            return null;
+        }
+
+        @Override
+        public long longValue() {
+            throw new IllegalStateException("missing counter");
+        }
+
+        @Override
+        public String stringValue() {
+            throw new IllegalStateException("missing counter");
+        }
+    }
+
+    private void checkIndices(int indices) {
+        if (nameParts.length != indices + 1) {
+            throw new IllegalArgumentException("counter names have " + (nameParts.length - 1)
+                    + " indices, not " + indices);
+        }
+    }
+
+}
@@ -36,13 +36,23 @@
 
 package com.redhat.thermostat.jvm.overview.agent;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.redhat.thermostat.backend.BackendException;
+import com.redhat.thermostat.jvm.overview.agent.internal.HsPerfDataFile;
+import com.redhat.thermostat.jvm.overview.agent.internal.HsPerfDataLocator;
+import com.redhat.thermostat.jvm.overview.agent.internal.HsPerfDataMappings;
+import com.redhat.thermostat.jvm.overview.agent.internal.HsPerfDataUpdateTask;
 import com.redhat.thermostat.jvm.overview.agent.internal.VmListenerWrapper;
 import sun.jvmstat.monitor.HostIdentifier;
 import sun.jvmstat.monitor.MonitorException;
@@ -54,13 +64,31 @@ import com.redhat.thermostat.common.portability.ProcessChecker;
 import com.redhat.thermostat.common.Pair;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 
+/**
+ * Delivers counter updates of local JVMs to {@link VmUpdateListener}s.
+ * <p>
+ * Counters are read straight from the memory-mapped hsperfdata file of a
+ * JVM where possible, which avoids the per-update overhead of jvmstat.
+ * JVMs whose file can not be read this way are monitored through jvmstat.
+ * Setting the system property {@value #DIRECT_PERF_DATA_PROPERTY} to
+ * {@code false} monitors all JVMs through jvmstat.
+ */
 public class VmMonitor {
+
+    public static final String DIRECT_PERF_DATA_PROPERTY = "thermostat.jvm.overview.directPerfData";
+    // Same as the default jvmstat polling interval
+    static final long PERF_DATA_UPDATE_INTERVAL_MILLIS = 1000;
     
     private final Logger logger = LoggingUtils.getLogger(VmMonitor.class);
 
     private final ProcessChecker processChecker;
     private MonitoredHost host;
     private Map<Integer, Pair<MonitoredVm, VmListenerWrapper>> pidToData = new HashMap<>();
+    private Map<Integer, HsPerfDataUpdateTask> pidToPerfDataTask = new HashMap<>();
+    private HsPerfDataLocator perfDataLocator;
+    private HsPerfDataMappings perfDataMappings = HsPerfDataMappings.getInstance();
+    // Created when first needed, shut down by removeVmListeners()
+    private ScheduledExecutorService perfDataExecutor;
     
     public VmMonitor() throws BackendException {
         this(new ProcessChecker());
@@ -68,6 +96,9 @@ public class VmMonitor {
 
     public VmMonitor(ProcessChecker processChecker) throws BackendException {
         this.processChecker = processChecker;
+        if (Boolean.parseBoolean(System.getProperty(DIRECT_PERF_DATA_PROPERTY, "true"))) {
+            this.perfDataLocator = new HsPerfDataLocator();
+        }
         try {
             HostIdentifier hostId = new HostIdentifier((String) null);
             host = MonitoredHost.getMonitoredHost(hostId);
@@ -79,6 +110,9 @@ public class VmMonitor {
     }
     
     public void handleNewVm(VmUpdateListener listener, int pid) {
+        if (perfDataLocator != null && attachPerfData(listener, pid)) {
+            return;
+        }
         try {
             MonitoredVm vm = host.getMonitoredVm(host.getHostIdentifier().resolve(new VmIdentifier(String.valueOf(pid))));
             VmListenerWrapper wrapper = new VmListenerWrapper(listener, vm);
@@ -93,6 +127,47 @@ public class VmMonitor {
         }
     }
 
+    private boolean attachPerfData(VmUpdateListener listener, int pid) {
+        File file = perfDataLocator.find(pid);
+        if (file == null) {
+            return false;
+        }
+        HsPerfDataFile perfData;
+        try {
+            perfData = perfDataMappings.acquire(pid, file);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "unable to map hsperfdata of vm " + pid + ", using jvmstat", e);
+            return false;
+        }
+        HsPerfDataUpdateTask task = new HsPerfDataUpdateTask(listener, perfData);
+        task.setFuture(getPerfDataExecutor().scheduleAtFixedRate(task,
+                PERF_DATA_UPDATE_INTERVAL_MILLIS, PERF_DATA_UPDATE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS));
+        pidToPerfDataTask.put(pid, task);
+        logger.finer("Attached " + listener.getClass().getName() + " to hsperfdata of VM: " + pid);
+        return true;
+    }
+
+    private ScheduledExecutorService getPerfDataExecutor() {
+        if (perfDataExecutor == null) {
+            // One thread delivers the hsperfdata updates of all JVMs, like the
+            // single jvmstat polling thread of a MonitoredHost
+            perfDataExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "hsperfdata-updater");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return perfDataExecutor;
+    }
+
+    private void stopPerfDataUpdates(int pid, HsPerfDataUpdateTask task) {
+        task.cancel();
+        perfDataMappings.release(pid, task.getPerfDataFile());
+    }
+
     private void logMsg(int pid, MonitorException e) {
         Throwable cause = e.getCause();
         if (cause != null && cause instanceof IllegalArgumentException && !processChecker.exists(pid)) {
@@ -103,6 +178,11 @@ public class VmMonitor {
     }
 
     public void handleStoppedVm(int pid) {
+        HsPerfDataUpdateTask task = pidToPerfDataTask.remove(pid);
+        if (task != null) {
+            stopPerfDataUpdates(pid, task);
+            return;
+        }
         Pair<MonitoredVm, VmListenerWrapper> data = pidToData.remove(pid);
         // we were not monitoring pid at all, so nothing to do
         if (data == null) {
@@ -130,6 +210,14 @@ public class VmMonitor {
             }
         }
         pidToData.clear();
+        for (Map.Entry<Integer, HsPerfDataUpdateTask> entry : pidToPerfDataTask.entrySet()) {
+            stopPerfDataUpdates(entry.getKey(), entry.getValue());
+        }
+        pidToPerfDataTask.clear();
+        if (perfDataExecutor != null) {
+            perfDataExecutor.shutdownNow();
+            perfDataExecutor = null;
+        }
     }
     
     /*
@@ -146,5 +234,33 @@ public class VmMonitor {
         return pidToData;
     }
 
+    /*
+     * For testing purposes only.
+     */
+    Map<Integer, HsPerfDataUpdateTask> getPidToPerfDataTaskMap() {
+        return pidToPerfDataTask;
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    void setPerfDataLocator(HsPerfDataLocator perfDataLocator) {
+        this.perfDataLocator = perfDataLocator;
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    void setPerfDataExecutor(ScheduledExecutorService perfDataExecutor) {
+        this.perfDataExecutor = perfDataExecutor;
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    void setPerfDataMappings(HsPerfDataMappings perfDataMappings) {
+        this.perfDataMappings = perfDataMappings;
+    }
+
 }
 
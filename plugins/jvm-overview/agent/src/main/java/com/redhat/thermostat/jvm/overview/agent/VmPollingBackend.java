@@ -36,16 +36,27 @@
 
 package com.redhat.thermostat.jvm.overview.agent;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.redhat.thermostat.backend.AdaptivePollingSchedule;
+import com.redhat.thermostat.backend.LatencyHistogram;
 import com.redhat.thermostat.backend.PollingBackend;
 import com.redhat.thermostat.common.Pair;
 import com.redhat.thermostat.common.Version;
@@ -56,6 +67,13 @@ import com.redhat.thermostat.common.utils.LoggingUtils;
  * action for each monitored JVM process on a regular interval.  Simply
  * extend this class, implement any missing methods, and register one or
  * more {@link VmPollingAction} implementations during instantiation.
+ * <p>
+ * If polling worker threads are configured, the JVMs are polled in
+ * parallel and each polling interval is a deadline: a JVM whose previous
+ * poll is still running, or which no worker can take, is skipped, as are
+ * actions that would start after the deadline. Such skips are counted as
+ * overruns. Actions must then be safe to run concurrently for different
+ * JVMs; they never run concurrently for the same JVM.
  */
 public abstract class VmPollingBackend extends PollingBackend implements VmStatusListener {
 
@@ -63,8 +81,15 @@ public abstract class VmPollingBackend extends PollingBackend implements VmStatu
     private final Map<String, Pair<Integer, VmPollingAction>> badActions;
     private final Map<Integer, String> pidsToMonitor = new ConcurrentHashMap<>();
     private final VmStatusListenerRegistrar registrar;
+    private volatile AdaptivePollingSchedule<Integer> adaptiveSchedule;
+    private volatile ExecutorService workers;
+    private final Set<Integer> pidsInFlight = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final ConcurrentHashMap<VmPollingAction, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong overruns = new AtomicLong();
     private static final Logger logger = LoggingUtils.getLogger(VmPollingBackend.class);
     private static final int EXCEPTIONS_THRESHOLD = 10;
+    // Polls waiting for a worker, per worker thread
+    private static final int QUEUED_POLLS_PER_WORKER = 64;
 
     public VmPollingBackend(String name, String description,
             String vendor, Version version, ScheduledExecutorService executor,
@@ -77,29 +102,149 @@ public abstract class VmPollingBackend extends PollingBackend implements VmStatu
 
     @Override
     final public void preActivate() {
+        adaptiveSchedule = createAdaptivePollingSchedule();
+        int threads = getPollingWorkerThreads();
+        if (threads > 0 && workers == null) {
+            workers = createWorkerPool(getName(), threads);
+        }
         registrar.register(this);
     }
 
     @Override
     final public void postDeactivate() {
         registrar.unregister(this);
+        ExecutorService pool = workers;
+        if (pool != null) {
+            pool.shutdownNow();
+            workers = null;
+        }
+    }
+
+    private static ExecutorService createWorkerPool(final String backendName, int threads) {
+        ThreadFactory factory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, backendName + " poller " + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        // Rejects polls once the queue is full, instead of letting them pile up
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUED_POLLS_PER_WORKER), factory);
+    }
+
+    // Test hook.
+    final void setWorkerPool(ExecutorService pool) {
+        this.workers = pool;
     }
 
     @Override
     final public void doScheduledActions() {
+        AdaptivePollingSchedule<Integer> schedule = adaptiveSchedule;
+        ExecutorService pool = workers;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getPollingInterval());
         for (Entry<Integer, String> entry : pidsToMonitor.entrySet()) {
             int pid = entry.getKey();
             String vmId = entry.getValue();
-            for (VmPollingAction action : actions) {
-                try {
-                    action.run(vmId, pid);
-                } catch (Throwable t) {
-                    handleActionException(action, vmId);
+            if (schedule != null && !schedule.isDue(pid)) {
+                continue;
+            }
+            if (pool == null) {
+                pollVm(vmId, pid, schedule);
+            } else {
+                submitPoll(pool, vmId, pid, schedule, deadline);
+            }
+        }
+    }
+
+    private void submitPoll(ExecutorService pool, final String vmId, final int pid,
+            final AdaptivePollingSchedule<Integer> schedule, final long deadline) {
+        if (!pidsInFlight.add(pid)) {
+            // The previous poll of this VM has not finished yet
+            overruns.incrementAndGet();
+            return;
+        }
+        try {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        pollVm(vmId, pid, schedule, deadline);
+                    } finally {
+                        pidsInFlight.remove(pid);
+                    }
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            pidsInFlight.remove(pid);
+            overruns.incrementAndGet();
+        }
+    }
+
+    private void pollVm(String vmId, int pid, AdaptivePollingSchedule<Integer> schedule) {
+        boolean changed = false;
+        for (VmPollingAction action : actions) {
+            changed |= runAction(action, vmId, pid);
+        }
+        if (schedule != null) {
+            schedule.sampled(pid, changed);
+        }
+    }
+
+    private void pollVm(String vmId, int pid, AdaptivePollingSchedule<Integer> schedule, long deadline) {
+        boolean changed = false;
+        for (VmPollingAction action : actions) {
+            if (System.nanoTime() - deadline > 0) {
+                overruns.incrementAndGet();
+                // Did not see every action, so do not back off
+                changed = true;
+                break;
             }
+            changed |= runAction(action, vmId, pid);
+        }
+        if (schedule != null) {
+            schedule.sampled(pid, changed);
         }
     }
 
+    /**
+     * @return whether the action saw a change
+     */
+    private boolean runAction(VmPollingAction action, String vmId, int pid) {
+        long start = System.nanoTime();
+        try {
+            action.run(vmId, pid);
+            return hasChanged(action, vmId, pid);
+        } catch (Throwable t) {
+            handleActionException(action, vmId);
+            return true;
+        } finally {
+            getLatencyHistogram(action).record(System.nanoTime() - start);
+        }
+    }
+
+    private LatencyHistogram getLatencyHistogram(VmPollingAction action) {
+        LatencyHistogram histogram = latencies.get(action);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = latencies.putIfAbsent(action, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    private boolean hasChanged(VmPollingAction action, String vmId, int pid) {
+        if (action instanceof AdaptiveVmPollingAction) {
+            return ((AdaptiveVmPollingAction) action).hasChanged(vmId, pid);
+        }
+        return true;
+    }
+
     private synchronized void handleActionException(VmPollingAction action, String vmId) {
         final String actionName = action.getClass().getName();
         final String actionKey = actionName + vmId;
@@ -136,6 +281,27 @@ public abstract class VmPollingBackend extends PollingBackend implements VmStatu
      */
     protected final void unregisterAction(VmPollingAction action) {
         actions.remove(action);
+        latencies.remove(action);
+    }
+
+    /**
+     * @return the latencies of each registered action, keyed by the class
+     *         name of the action
+     */
+    public final Map<String, LatencyHistogram> getActionLatencies() {
+        Map<String, LatencyHistogram> result = new HashMap<>();
+        for (Entry<VmPollingAction, LatencyHistogram> entry : latencies.entrySet()) {
+            result.put(entry.getKey().getClass().getName(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of JVM polls and actions skipped because they
+     *         could not run within their polling interval
+     */
+    public final long getOverrunCount() {
+        return overruns.get();
     }
 
     @Override
@@ -152,6 +318,10 @@ public abstract class VmPollingBackend extends PollingBackend implements VmStatu
             break;
         case VM_STOPPED:
             pidsToMonitor.remove(pid);
+            AdaptivePollingSchedule<Integer> schedule = adaptiveSchedule;
+            if (schedule != null) {
+                schedule.forget(pid);
+            }
             break;
         }
     }
@@ -38,7 +38,9 @@ package com.redhat.thermostat.jvm.overview.agent;
 
 /**
  * This interface can be used to query the performance counters
- * of a monitored JVM when they are updated.
+ * of a monitored JVM when they are updated. A listener is passed the same
+ * instance on every update, so counter handles obtained from it stay valid
+ * for the life of the listener.
  * @see package com.redhat.thermostat.jvm.overview.agent.VmUpdateListener#countersUpdated(VmUpdate)
  */
 public interface VmUpdate {
@@ -53,6 +55,17 @@ public interface VmUpdate {
      * @throws ClassCastException if the value of the counter is not a Long
      */
     Long getPerformanceCounterLong(String name) throws VmUpdateException;
+
+    /**
+     * Looks up the specified JVM performance counter, returning a handle
+     * that reads its current value without looking it up again.
+     * @param name - The name of the performance counter
+     * @return A handle to the counter, or null if no such counter exists
+     * @throws VmUpdateException if there is a problem communicating with
+     * the JVM
+     * @see VmCounterTable
+     */
+    VmCounter getPerformanceCounter(String name) throws VmUpdateException;
     
     /**
      * Queries the specified JVM performance counter with a String data type.
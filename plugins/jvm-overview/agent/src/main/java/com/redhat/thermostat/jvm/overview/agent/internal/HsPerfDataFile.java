@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.redhat.thermostat.jvm.overview.agent.VmCounter;
+
+/**
+ * The performance counters of a HotSpot JVM, read straight from its
+ * memory-mapped {@code hsperfdata} file instead of through jvmstat.
+ * <p>
+ * The file starts with a prologue followed by one entry per counter. The
+ * entries are indexed once, by name, and the counters handed out read their
+ * values from the mapping directly, so reading a counter neither copies nor
+ * allocates (except for building string values). Entries the JVM adds later
+ * are indexed when a counter that is not known yet is asked for.
+ * <p>
+ * Only version 2 of the format, used by every JVM since 1.5, is understood.
+ * Instances are thread-safe, so that monitors can share a mapping.
+ */
+public class HsPerfDataFile {
+
+    static final int MAGIC = 0xcafec0c0;
+    static final int SUPPORTED_MAJOR_VERSION = 2;
+
+    // prologue layout
+    static final int BYTE_ORDER_OFFSET = 4;
+    static final int MAJOR_VERSION_OFFSET = 5;
+    static final int ACCESSIBLE_OFFSET = 7;
+    static final int ENTRY_OFFSET_OFFSET = 24;
+    static final int NUM_ENTRIES_OFFSET = 28;
+    static final int PROLOGUE_SIZE = 32;
+
+    // entry layout, relative to the start of the entry
+    static final int ENTRY_LENGTH_OFFSET = 0;
+    static final int NAME_OFFSET_OFFSET = 4;
+    static final int VECTOR_LENGTH_OFFSET = 8;
+    static final int DATA_TYPE_OFFSET = 12;
+    static final int DATA_OFFSET_OFFSET = 16;
+
+    static final byte TYPE_LONG = 'J';
+    static final byte TYPE_BYTE = 'B';
+
+    private final ByteBuffer buffer;
+    private final Map<String, VmCounter> counters = new HashMap<>();
+    private int indexedEntries;
+    private int nextEntryOffset;
+
+    /**
+     * @param buffer the contents of an hsperfdata file
+     * @throws IOException if the contents are not a supported, accessible
+     *         hsperfdata file
+     */
+    HsPerfDataFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.duplicate();
+        // the magic number is always big endian
+        this.buffer.order(ByteOrder.BIG_ENDIAN);
+        if (this.buffer.limit() < PROLOGUE_SIZE || this.buffer.getInt(0) != MAGIC) {
+            throw new IOException("not an hsperfdata file");
+        }
+        this.buffer.order(this.buffer.get(BYTE_ORDER_OFFSET) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int majorVersion = this.buffer.get(MAJOR_VERSION_OFFSET);
+        if (majorVersion != SUPPORTED_MAJOR_VERSION) {
+            throw new IOException("unsupported hsperfdata version " + majorVersion);
+        }
+        if (this.buffer.get(ACCESSIBLE_OFFSET) == 0) {
+            throw new IOException("hsperfdata is not accessible yet");
+        }
+        nextEntryOffset = this.buffer.getInt(ENTRY_OFFSET_OFFSET);
+        indexNewEntries();
+    }
+
+    /**
+     * Maps the hsperfdata file of a JVM.
+     */
+    public static HsPerfDataFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new HsPerfDataFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * @return the counter with the given name, or null if the JVM has no
+     *         such counter
+     * @throws IOException if the file is corrupt
+     */
+    public synchronized VmCounter getCounter(String name) throws IOException {
+        VmCounter counter = counters.get(name);
+        if (counter == null && indexNewEntries()) {
+            counter = counters.get(name);
+        }
+        return counter;
+    }
+
+    /**
+     * @return whether any entries were added to the index
+     */
+    private boolean indexNewEntries() throws IOException {
+        int numEntries = buffer.getInt(NUM_ENTRIES_OFFSET);
+        if (numEntries <= indexedEntries) {
+            return false;
+        }
+        try {
+            for (; indexedEntries < numEntries; indexedEntries++) {
+                int entry = nextEntryOffset;
+                int entryLength = buffer.getInt(entry + ENTRY_LENGTH_OFFSET);
+                if (entryLength <= 0) {
+                    throw new IOException("corrupt hsperfdata entry at " + entry);
+                }
+                String name = readString(entry + buffer.getInt(entry + NAME_OFFSET_OFFSET), entryLength);
+                Counter counter = new Counter(buffer, name,
+                        buffer.get(entry + DATA_TYPE_OFFSET),
+                        buffer.getInt(entry + VECTOR_LENGTH_OFFSET),
+                        entry + buffer.getInt(entry + DATA_OFFSET_OFFSET));
+                counters.put(name, counter);
+                nextEntryOffset = entry + entryLength;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("corrupt hsperfdata entry at " + nextEntryOffset, e);
+        }
+        return true;
+    }
+
+    private String readString(int offset, int maxLength) {
+        int end = offset;
+        int limit = Math.min(buffer.limit(), offset + maxLength);
+        while (end < limit && buffer.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - offset];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Counter implements VmCounter {
+
+        private final ByteBuffer buffer;
+        private final String name;
+        private final byte type;
+        private final int vectorLength;
+        private final int dataOffset;
+
+        Counter(ByteBuffer buffer, String name, byte type, int vectorLength, int dataOffset) {
+            this.buffer = buffer;
+            this.name = name;
+            this.type = type;
+            this.vectorLength = vectorLength;
+            this.dataOffset = dataOffset;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public long longValue() {
+            if (type != TYPE_LONG || vectorLength != 0) {
+                throw new ClassCastException(name + " is not a long counter");
+            }
+            return buffer.getLong(dataOffset);
+        }
+
+        @Override
+        public String stringValue() {
+            if (type != TYPE_BYTE || vectorLength == 0) {
+                throw new ClassCastException(name + " is not a string counter");
+            }
+            int end = dataOffset;
+            int limit = dataOffset + vectorLength;
+            while (end < limit && buffer.get(end) != 0) {
+                end++;
+            }
+            byte[] bytes = new byte[end - dataOffset];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(dataOffset + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+}
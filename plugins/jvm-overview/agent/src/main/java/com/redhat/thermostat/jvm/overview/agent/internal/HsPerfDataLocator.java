@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.thermostat.common.portability.SysConf;
+import com.redhat.thermostat.common.portability.linux.ProcDataSource;
+import com.redhat.thermostat.shared.config.OS;
+
+/**
+ * Finds the hsperfdata file of a local JVM. HotSpot writes it to
+ * {@code <tmpdir>/hsperfdata_<user>/<pid>}, where the user is the one the
+ * JVM runs as.
+ * <p>
+ * Where the owner of the process is known, only that user's directories
+ * are searched. Files last written before the process started are left
+ * behind by an earlier process with the same pid and are ignored.
+ */
+public class HsPerfDataLocator {
+
+    private static final String DIR_PREFIX = "hsperfdata_";
+    private static final FileFilter PERF_DATA_DIRS = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.getName().startsWith(DIR_PREFIX) && file.isDirectory();
+        }
+    };
+    // /proc/stat has the boot time in seconds only
+    private static final long START_TIME_SLACK_MILLIS = 2000;
+    // Field 22 of /proc/<pid>/stat, counted from the first field after the command
+    private static final int START_TIME_FIELD = 19;
+
+    private final List<File> tmpDirs;
+    private final ProcDataSource procDataSource;
+    private long clockTicksPerSecond;
+
+    public HsPerfDataLocator() {
+        this(defaultTmpDirs(), OS.IS_LINUX ? new ProcDataSource() : null);
+    }
+
+    // For testing purposes
+    HsPerfDataLocator(List<File> tmpDirs, ProcDataSource procDataSource) {
+        this.tmpDirs = tmpDirs;
+        this.procDataSource = procDataSource;
+    }
+
+    private static List<File> defaultTmpDirs() {
+        List<File> dirs = new ArrayList<>();
+        File javaTmpDir = new File(System.getProperty("java.io.tmpdir"));
+        File tmp = new File("/tmp");
+        dirs.add(javaTmpDir);
+        if (!tmp.getAbsoluteFile().equals(javaTmpDir.getAbsoluteFile())) {
+            dirs.add(tmp);
+        }
+        return dirs;
+    }
+
+    /**
+     * @return the hsperfdata file of the JVM with the given pid, or null if
+     *         it has none that can be read
+     */
+    public File find(int pid) {
+        String owner = getProcessOwner(pid);
+        long startTime = getProcessStartTimeMillis(pid);
+        String fileName = String.valueOf(pid);
+        for (File tmpDir : tmpDirs) {
+            File[] userDirs;
+            if (owner != null) {
+                userDirs = new File[] { new File(tmpDir, DIR_PREFIX + owner) };
+            } else {
+                userDirs = tmpDir.listFiles(PERF_DATA_DIRS);
+                if (userDirs == null) {
+                    continue;
+                }
+            }
+            for (File userDir : userDirs) {
+                File file = new File(userDir, fileName);
+                if (file.isFile() && file.canRead() && isCurrent(file, startTime)) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCurrent(File file, long startTime) {
+        return startTime < 0 || file.lastModified() + START_TIME_SLACK_MILLIS >= startTime;
+    }
+
+    /**
+     * @return the name of the user the process runs as, or null if unknown
+     */
+    String getProcessOwner(int pid) {
+        if (procDataSource == null) {
+            return null;
+        }
+        try {
+            return Files.getOwner(Paths.get("/proc", String.valueOf(pid))).getName();
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the time the process started, in milliseconds since the
+     *         epoch, or -1 if unknown
+     */
+    long getProcessStartTimeMillis(int pid) {
+        if (procDataSource == null) {
+            return -1;
+        }
+        try {
+            long bootTimeSeconds = readBootTimeSeconds();
+            long startTicks = readStartTimeTicks(pid);
+            long ticksPerSecond = getClockTicksPerSecond();
+            if (bootTimeSeconds < 0 || startTicks < 0 || ticksPerSecond <= 0) {
+                return -1;
+            }
+            return bootTimeSeconds * 1000 + startTicks * 1000 / ticksPerSecond;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private long readBootTimeSeconds() throws IOException {
+        try (BufferedReader reader = new BufferedReader(procDataSource.getStatReader())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("btime ")) {
+                    return Long.parseLong(line.substring("btime ".length()).trim());
+                }
+            }
+        }
+        return -1;
+    }
+
+    private long readStartTimeTicks(int pid) throws IOException {
+        String stat;
+        try (Reader reader = procDataSource.getStatReader(pid)) {
+            stat = new BufferedReader(reader).readLine();
+        }
+        if (stat == null) {
+            return -1;
+        }
+        // The command may contain spaces and parentheses, but ends at the last ')'
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 1).trim().split(" ");
+        return fields.length > START_TIME_FIELD ? Long.parseLong(fields[START_TIME_FIELD]) : -1;
+    }
+
+    private synchronized long getClockTicksPerSecond() {
+        if (clockTicksPerSecond == 0) {
+            clockTicksPerSecond = SysConf.getClockTicksPerSecond();
+        }
+        return clockTicksPerSecond;
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The hsperfdata files mapped by the VM monitors of this agent. Every
+ * backend listening to a JVM monitors it separately, so this shares one
+ * mapping of its file between them, for as long as any of them uses it.
+ */
+public class HsPerfDataMappings {
+
+    private static final HsPerfDataMappings INSTANCE = new HsPerfDataMappings();
+
+    private final Map<Integer, Mapping> mappings = new HashMap<>();
+
+    public static HsPerfDataMappings getInstance() {
+        return INSTANCE;
+    }
+
+    // For testing purposes
+    HsPerfDataMappings() {
+    }
+
+    /**
+     * Maps the hsperfdata file of a JVM, or returns the mapping already
+     * shared for it. Every call must be paired with
+     * {@link #release(int, HsPerfDataFile)}.
+     */
+    public synchronized HsPerfDataFile acquire(int pid, File file) throws IOException {
+        Mapping mapping = mappings.get(pid);
+        if (mapping != null && mapping.file.equals(file)) {
+            mapping.references++;
+            return mapping.perfData;
+        }
+        HsPerfDataFile perfData = HsPerfDataFile.open(file);
+        if (mapping == null) {
+            mappings.put(pid, new Mapping(file, perfData));
+        }
+        // else the pid was reused while the old file is still in use; do not share
+        return perfData;
+    }
+
+    /**
+     * Drops a reference handed out by {@link #acquire(int, File)}. The
+     * mapping is released for garbage collection once none are left.
+     */
+    public synchronized void release(int pid, HsPerfDataFile perfData) {
+        Mapping mapping = mappings.get(pid);
+        if (mapping != null && mapping.perfData == perfData && --mapping.references == 0) {
+            mappings.remove(pid);
+        }
+    }
+
+    // For testing purposes
+    synchronized int size() {
+        return mappings.size();
+    }
+
+    private static class Mapping {
+
+        private final File file;
+        private final HsPerfDataFile perfData;
+        private int references = 1;
+
+        Mapping(File file, HsPerfDataFile perfData) {
+            this.file = file;
+            this.perfData = perfData;
+        }
+    }
+
+}
+
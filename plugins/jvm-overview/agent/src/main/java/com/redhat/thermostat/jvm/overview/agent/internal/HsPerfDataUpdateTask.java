@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
+
+/**
+ * Periodically passes the counters of a JVM read from its hsperfdata file
+ * to a listener. This is the counterpart of {@link VmListenerWrapper} for
+ * JVMs that are not monitored through jvmstat.
+ */
+public class HsPerfDataUpdateTask implements Runnable {
+
+    private static final Logger logger = LoggingUtils.getLogger(HsPerfDataUpdateTask.class);
+    // Threshold until this listener gets cancelled in case of it throwing
+    // exceptions on countersUpdated()
+    private static final int EXCEPTION_THRESHOLD = 10;
+    private final VmUpdateListener listener;
+    private final HsPerfDataFile perfData;
+    private final VmUpdate update;
+    private volatile Future<?> future;
+    private int exceptionCount;
+
+    public HsPerfDataUpdateTask(VmUpdateListener listener, HsPerfDataFile file) {
+        this.listener = listener;
+        this.perfData = file;
+        this.update = new HsPerfDataVmUpdate(file);
+    }
+
+    public HsPerfDataFile getPerfDataFile() {
+        return perfData;
+    }
+
+    /**
+     * @param future the scheduled execution of this task, cancelled if the
+     *        listener keeps throwing exceptions
+     */
+    public void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    @Override
+    public void run() {
+        try {
+            listener.countersUpdated(update);
+        } catch (Throwable t) {
+            handleListenerException(t);
+        }
+    }
+
+    private void handleListenerException(Throwable t) {
+        final String listenerName = listener.getClass().getName();
+        if (exceptionCount < EXCEPTION_THRESHOLD) {
+            logger.log(Level.INFO, "VM listener " + listenerName + " threw an exception", t);
+            exceptionCount++;
+        } else {
+            logger.fine("Removing bad listener " + listenerName + " due to too many repeated exceptions.");
+            cancel();
+        }
+    }
+
+    public void cancel() {
+        Future<?> current = future;
+        if (current != null) {
+            current.cancel(false);
+        }
+    }
+
+    /*
+     * For testing purposes only.
+     */
+    public VmUpdateListener getVmUpdateListener() {
+        return listener;
+    }
+
+}
@@ -36,6 +36,10 @@
 
 package com.redhat.thermostat.jvm.overview.agent.internal;
 
+import java.util.HashMap;
+import java.util.Map;
+
+import com.redhat.thermostat.jvm.overview.agent.VmCounter;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import sun.jvmstat.monitor.Monitor;
@@ -43,6 +47,8 @@ import sun.jvmstat.monitor.Monitor;
 public class VmUpdateImpl implements VmUpdate {
     
     private VmListenerWrapper wrapper;
+    // Counters found so far. Only used from the thread delivering updates.
+    private final Map<String, VmCounter> counters = new HashMap<>();
 
     public VmUpdateImpl(VmListenerWrapper wrapper) {
         this.wrapper = wrapper;
@@ -50,22 +56,29 @@ public class VmUpdateImpl implements VmUpdate {
     
     @Override
     public Long getPerformanceCounterLong(String name) throws VmUpdateException {
-        return (Long) getPerformanceCounter(name);
+        VmCounter counter = getPerformanceCounter(name);
+        return counter == null ? null : counter.longValue();
     }
 
     @Override
     public String getPerformanceCounterString(String name)
             throws VmUpdateException {
-        return (String) getPerformanceCounter(name);
+        VmCounter counter = getPerformanceCounter(name);
+        return counter == null ? null : counter.stringValue();
     }
 
-    private Object getPerformanceCounter(String name) throws VmUpdateException {
-        Object result = null;
-        Monitor monitor = wrapper.getMonitor(name);
-        if (monitor != null) {
-            result = monitor.getValue();
+    @Override
+    public VmCounter getPerformanceCounter(String name) throws VmUpdateException {
+        VmCounter counter = counters.get(name);
+        if (counter == null) {
+            // Not cached if missing: the JVM may still create it
+            Monitor monitor = wrapper.getMonitor(name);
+            if (monitor != null) {
+                counter = new VmCounterImpl(monitor);
+                counters.put(name, counter);
+            }
         }
-        return result;
+        return counter;
     }
 
     /*
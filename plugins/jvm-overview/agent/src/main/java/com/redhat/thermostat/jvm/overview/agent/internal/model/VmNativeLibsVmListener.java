@@ -40,6 +40,10 @@ import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateListener;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,16 +51,30 @@ public class VmNativeLibsVmListener implements VmUpdateListener {
 
     private static final Logger logger = LoggingUtils.getLogger(VmNativeLibsVmListener.class);
 
+    /*
+     * Libraries can also be loaded by classes that were loaded earlier, which
+     * the class counters do not show, so rescan every so often regardless.
+     */
+    static final int UPDATES_BETWEEN_FORCED_SCANS = 60;
+
     private final VmInfoDAO vmInfoDAO;
     private final String vmId;
-    private final int pid;
     private final VmNativeLibsExtractor libExtractor;
 
+    // Only touched by the thread delivering counter updates for this VM
+    private Long lastLoadedClassesCount;
+    private Long lastUnloadedClassesCount;
+    private int updatesSinceScan;
+    private Set<String> lastNativeLibs;
+
     public VmNativeLibsVmListener(VmInfoDAO vmInfoDAO, String vmId, int pid) {
+        this(vmInfoDAO, vmId, VmNativeLibsExtractorFactory.getInstance(pid));
+    }
+
+    VmNativeLibsVmListener(VmInfoDAO vmInfoDAO, String vmId, VmNativeLibsExtractor libExtractor) {
         this.vmInfoDAO = vmInfoDAO;
         this.vmId = vmId;
-        this.pid = pid;
-        this.libExtractor = VmNativeLibsExtractorFactory.getInstance(pid);
+        this.libExtractor = libExtractor;
     }
 
     @Override
@@ -70,14 +88,31 @@ public class VmNativeLibsVmListener implements VmUpdateListener {
      * classes counter changed or this counter did not change but N different 
      * classes were loaded instead of N unloaded ones before next VmEvent was 
      * issued, therefore leaving the amount of loaded classes the same but with
-     * different set of classes.
+     * different set of classes. The libraries are only sent to storage if they
+     * differ from the ones sent last.
      */
     void recordNativeLibs(VmClassloaderInfoExtractor extractor) {
         try {
             Long loadedClassesCount = extractor.getLoadedClassesCount();
             Long unloadedClassesCount = extractor.getUnloadedClassesCount();
-            if (loadedClassesCount != null || unloadedClassesCount != null) {
-                vmInfoDAO.updateVmNativeLibs(vmId, libExtractor.getNativeLibs());
+            if (loadedClassesCount == null && unloadedClassesCount == null) {
+                return;
+            }
+            updatesSinceScan++;
+            boolean classesChanged = !Objects.equals(loadedClassesCount, lastLoadedClassesCount)
+                    || !Objects.equals(unloadedClassesCount, lastUnloadedClassesCount);
+            if (!classesChanged && lastNativeLibs != null && updatesSinceScan < UPDATES_BETWEEN_FORCED_SCANS) {
+                return;
+            }
+            lastLoadedClassesCount = loadedClassesCount;
+            lastUnloadedClassesCount = unloadedClassesCount;
+            updatesSinceScan = 0;
+
+            String[] nativeLibs = libExtractor.getNativeLibs();
+            Set<String> nativeLibSet = new HashSet<>(Arrays.asList(nativeLibs));
+            if (!nativeLibSet.equals(lastNativeLibs)) {
+                vmInfoDAO.updateVmNativeLibs(vmId, nativeLibs);
+                lastNativeLibs = nativeLibSet;
             }
         } catch (VmUpdateException ex) {
             logger.log(Level.WARNING, "Error gathering native libs for VM " + vmId, ex);
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class VmCounterTableTest {
+
+    private VmUpdate update;
+
+    @Before
+    public void setUp() {
+        update = mock(VmUpdate.class);
+    }
+
+    @Test
+    public void testSingleCounter() throws VmUpdateException {
+        VmCounter counter = mock(VmCounter.class);
+        when(update.getPerformanceCounter("sun.os.hrt.frequency")).thenReturn(counter);
+        VmCounterTable table = new VmCounterTable(update, "sun.os.hrt.frequency");
+
+        assertSame(counter, table.get());
+        assertSame(counter, table.get());
+        verify(update, times(1)).getPerformanceCounter("sun.os.hrt.frequency");
+    }
+
+    @Test
+    public void testIndexedCounters() throws VmUpdateException {
+        VmCounter first = mock(VmCounter.class);
+        VmCounter third = mock(VmCounter.class);
+        when(update.getPerformanceCounter("sun.gc.collector.0.time")).thenReturn(first);
+        when(update.getPerformanceCounter("sun.gc.collector.2.time")).thenReturn(third);
+        VmCounterTable table = new VmCounterTable(update, "sun.gc.collector.", ".time");
+
+        assertSame(third, table.get(2));
+        assertSame(first, table.get(0));
+        assertNull(table.get(1));
+        assertSame(third, table.get(2));
+        assertNull(table.get(1));
+        verify(update, times(1)).getPerformanceCounter("sun.gc.collector.0.time");
+        verify(update, times(1)).getPerformanceCounter("sun.gc.collector.1.time");
+        verify(update, times(1)).getPerformanceCounter("sun.gc.collector.2.time");
+    }
+
+    @Test
+    public void testDoublyIndexedCounters() throws VmUpdateException {
+        VmCounter counter = mock(VmCounter.class);
+        when(update.getPerformanceCounter("sun.gc.generation.1.space.3.used")).thenReturn(counter);
+        VmCounterTable table = new VmCounterTable(update, "sun.gc.generation.", ".space.", ".used");
+
+        assertNull(table.get(1, 0));
+        assertSame(counter, table.get(1, 3));
+        assertSame(counter, table.get(1, 3));
+        verify(update, times(1)).getPerformanceCounter("sun.gc.generation.1.space.3.used");
+    }
+
+    @Test
+    public void testMissingCountersAreLookedUpAgain() throws VmUpdateException {
+        VmCounter counter = mock(VmCounter.class);
+        VmCounterTable table = new VmCounterTable(update, "sun.gc.collector.", ".time");
+
+        for (int i = 0; i < VmCounterTable.MISSING_RETRY_LOOKUPS; i++) {
+            assertNull(table.get(1));
+        }
+        verify(update, times(1)).getPerformanceCounter("sun.gc.collector.1.time");
+
+        // Created by the JVM later on
+        when(update.getPerformanceCounter("sun.gc.collector.1.time")).thenReturn(counter);
+        assertSame(counter, table.get(1));
+        assertSame(counter, table.get(1));
+        verify(update, times(2)).getPerformanceCounter("sun.gc.collector.1.time");
+    }
+
+    @Test
+    public void testLargeIndicesAreNotCached() throws VmUpdateException {
+        long index = VmCounterTable.MAX_CACHED_INDEX;
+        VmCounterTable table = new VmCounterTable(update, "sun.gc.collector.", ".time");
+
+        table.get(index);
+        table.get(index);
+        verify(update, times(2)).getPerformanceCounter("sun.gc.collector." + index + ".time");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongNumberOfIndices() throws VmUpdateException {
+        new VmCounterTable(update, "sun.gc.collector.", ".time").get();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyNameParts() {
+        new VmCounterTable(update, "a", "b", "c", "d");
+    }
+}
@@ -38,19 +38,33 @@ package com.redhat.thermostat.jvm.overview.agent;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.net.URISyntaxException;
+import java.nio.ByteOrder;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.redhat.thermostat.jvm.overview.agent.internal.HsPerfDataBuilder;
+import com.redhat.thermostat.jvm.overview.agent.internal.HsPerfDataLocator;
+import com.redhat.thermostat.jvm.overview.agent.internal.HsPerfDataUpdateTask;
 import com.redhat.thermostat.jvm.overview.agent.internal.TestLogHandler;
 import com.redhat.thermostat.jvm.overview.agent.internal.VmListenerWrapper;
 import org.junit.After;
@@ -78,6 +92,7 @@ public class VmMonitorTest {
     private MonitoredHost host;
     private MonitoredVm monitoredVm;
     private ProcessChecker checker;
+    private HsPerfDataLocator perfDataLocator;
     private TestLogHandler handler;
     private Logger logger;
     private Level savedLoggingLevel;
@@ -110,8 +125,11 @@ public class VmMonitorTest {
 
         monitoredVm = mock(MonitoredVm.class);
 
+        perfDataLocator = mock(HsPerfDataLocator.class);
+
         monitor = new VmMonitor(checker);
         monitor.setHost(host);
+        monitor.setPerfDataLocator(perfDataLocator);
     }
     
     private Level setupTestLoggerAndReturnOriginalLevel() {
@@ -282,5 +300,127 @@ public class VmMonitorTest {
         assertEquals(0, monitor.getPidToDataMap().size());
     }
 
-}
+    @Test
+    public void testNewVMUsesPerfData() throws Exception {
+        final int VM_PID = 1;
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.nativeOrder());
+        builder.addLong("java.cls.loadedClasses", 42);
+        File perfData = File.createTempFile("hsperfdata", null);
+        try {
+            builder.writeTo(perfData);
+            when(perfDataLocator.find(VM_PID)).thenReturn(perfData);
+            ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+            ScheduledFuture<?> future = mock(ScheduledFuture.class);
+            doReturnFuture(executor, future);
+            monitor.setPerfDataExecutor(executor);
+
+            VmUpdateListener listener = mock(VmUpdateListener.class);
+            monitor.handleNewVm(listener, VM_PID);
+
+            verify(host, never()).getMonitoredVm(any(VmIdentifier.class));
+            ArgumentCaptor<HsPerfDataUpdateTask> captor = ArgumentCaptor.forClass(HsPerfDataUpdateTask.class);
+            verify(executor).scheduleAtFixedRate(captor.capture(),
+                    eq(VmMonitor.PERF_DATA_UPDATE_INTERVAL_MILLIS), eq(VmMonitor.PERF_DATA_UPDATE_INTERVAL_MILLIS),
+                    eq(TimeUnit.MILLISECONDS));
+            HsPerfDataUpdateTask task = captor.getValue();
+            assertEquals(listener, task.getVmUpdateListener());
+            assertEquals(task, monitor.getPidToPerfDataTaskMap().get(VM_PID));
+
+            // Listeners see the counters of the file
+            task.run();
+            ArgumentCaptor<VmUpdate> updateCaptor = ArgumentCaptor.forClass(VmUpdate.class);
+            verify(listener).countersUpdated(updateCaptor.capture());
+            assertEquals(42L, (long) updateCaptor.getValue().getPerformanceCounterLong("java.cls.loadedClasses"));
+
+            monitor.handleStoppedVm(VM_PID);
+            verify(future).cancel(false);
+            assertFalse(monitor.getPidToPerfDataTaskMap().containsKey(VM_PID));
+        } finally {
+            perfData.delete();
+        }
+    }
 
+    @Test
+    public void testNewVMFallsBackToJvmstatForUnreadablePerfData() throws Exception {
+        final int VM_PID = 1;
+        File perfData = File.createTempFile("hsperfdata", null);
+        try {
+            // empty, like the file of a JVM that is still starting
+            when(perfDataLocator.find(VM_PID)).thenReturn(perfData);
+            when(host.getMonitoredVm(new VmIdentifier(String.valueOf(VM_PID)))).thenReturn(monitoredVm);
+
+            VmUpdateListener listener = mock(VmUpdateListener.class);
+            monitor.handleNewVm(listener, VM_PID);
+
+            verify(monitoredVm).addVmListener(isA(VmListenerWrapper.class));
+            assertTrue(monitor.getPidToDataMap().containsKey(VM_PID));
+            assertFalse(monitor.getPidToPerfDataTaskMap().containsKey(VM_PID));
+        } finally {
+            perfData.delete();
+        }
+    }
+
+    @Test
+    public void testRemoveAllListenersCancelsPerfDataUpdates() throws Exception {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.nativeOrder());
+        File perfData = File.createTempFile("hsperfdata", null);
+        try {
+            builder.writeTo(perfData);
+            when(perfDataLocator.find(anyInt())).thenReturn(perfData);
+            ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+            ScheduledFuture<?> future = mock(ScheduledFuture.class);
+            doReturnFuture(executor, future);
+            monitor.setPerfDataExecutor(executor);
+
+            monitor.handleNewVm(mock(VmUpdateListener.class), 1);
+            monitor.removeVmListeners();
+
+            verify(future).cancel(false);
+            verify(executor).shutdownNow();
+            assertEquals(0, monitor.getPidToPerfDataTaskMap().size());
+        } finally {
+            perfData.delete();
+        }
+    }
+
+    @Test
+    public void testMonitorsShareOnePerfDataMapping() throws Exception {
+        final int VM_PID = 1;
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.nativeOrder());
+        File perfData = File.createTempFile("hsperfdata", null);
+        try {
+            builder.writeTo(perfData);
+            when(perfDataLocator.find(VM_PID)).thenReturn(perfData);
+            ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+            doReturnFuture(executor, mock(ScheduledFuture.class));
+            monitor.setPerfDataExecutor(executor);
+            VmMonitor otherMonitor = new VmMonitor(checker);
+            otherMonitor.setHost(host);
+            otherMonitor.setPerfDataLocator(perfDataLocator);
+            otherMonitor.setPerfDataExecutor(executor);
+
+            monitor.handleNewVm(mock(VmUpdateListener.class), VM_PID);
+            otherMonitor.handleNewVm(mock(VmUpdateListener.class), VM_PID);
+
+            HsPerfDataUpdateTask task = monitor.getPidToPerfDataTaskMap().get(VM_PID);
+            HsPerfDataUpdateTask otherTask = otherMonitor.getPidToPerfDataTaskMap().get(VM_PID);
+            assertSame(task.getPerfDataFile(), otherTask.getPerfDataFile());
+
+            // Released once neither monitors the VM
+            monitor.handleStoppedVm(VM_PID);
+            otherMonitor.handleStoppedVm(VM_PID);
+            monitor.handleNewVm(mock(VmUpdateListener.class), VM_PID);
+            assertNotSame(task.getPerfDataFile(), monitor.getPidToPerfDataTaskMap().get(VM_PID).getPerfDataFile());
+            monitor.handleStoppedVm(VM_PID);
+        } finally {
+            perfData.delete();
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void doReturnFuture(ScheduledExecutorService executor, ScheduledFuture future) {
+        when(executor.scheduleAtFixedRate(any(Runnable.class), anyLong(), anyLong(), any(TimeUnit.class)))
+                .thenReturn(future);
+    }
+
+}
@@ -38,17 +38,26 @@ package com.redhat.thermostat.jvm.overview.agent;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 
 import com.redhat.thermostat.jvm.overview.agent.VmStatusListener.Status;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import com.redhat.thermostat.backend.LatencyHistogram;
 import com.redhat.thermostat.common.Version;
 import com.redhat.thermostat.common.internal.test.Bug;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -113,6 +122,121 @@ public class VmPollingBackendTest {
                 9, minCallCount);
     }
 
+    @Test
+    public void verifyIdleVmIsPolledLessOften() {
+        backend.setMaxAdaptivePollingInterval(4 * backend.getPollingInterval());
+        backend.preActivate();
+        String idleVm = "idle-vm", busyVm = "busy-vm";
+        int idlePid = 123, busyPid = 456;
+        backend.vmStatusChanged(Status.VM_ACTIVE, idleVm, idlePid);
+        backend.vmStatusChanged(Status.VM_ACTIVE, busyVm, busyPid);
+        AdaptiveVmPollingAction action = mock(AdaptiveVmPollingAction.class);
+        when(action.hasChanged(idleVm, idlePid)).thenReturn(false);
+        when(action.hasChanged(busyVm, busyPid)).thenReturn(true);
+        backend.registerAction(action);
+
+        // the idle vm is polled on ticks 0, 2 and 6
+        for (int i = 0; i < 8; i++) {
+            backend.doScheduledActions();
+        }
+
+        verify(action, times(3)).run(idleVm, idlePid);
+        verify(action, times(8)).run(busyVm, busyPid);
+    }
+
+    @Test
+    public void verifyVmWithNonAdaptiveActionIsAlwaysPolled() {
+        backend.setMaxAdaptivePollingInterval(4 * backend.getPollingInterval());
+        backend.preActivate();
+        backend.vmStatusChanged(Status.VM_ACTIVE, "vm", 123);
+        AdaptiveVmPollingAction adaptive = mock(AdaptiveVmPollingAction.class);
+        when(adaptive.hasChanged("vm", 123)).thenReturn(false);
+        VmPollingAction plain = mock(VmPollingAction.class);
+        backend.registerAction(adaptive);
+        backend.registerAction(plain);
+
+        for (int i = 0; i < 4; i++) {
+            backend.doScheduledActions();
+        }
+
+        verify(adaptive, times(4)).run("vm", 123);
+        verify(plain, times(4)).run("vm", 123);
+    }
+
+    @Test
+    public void verifyActionsRunOnWorkerPool() {
+        ExecutorService pool = mock(ExecutorService.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(pool).execute(any(Runnable.class));
+        backend.setWorkerPool(pool);
+        backend.vmStatusChanged(Status.VM_ACTIVE, "vm1", 123);
+        backend.vmStatusChanged(Status.VM_ACTIVE, "vm2", 456);
+        VmPollingAction action = mock(VmPollingAction.class);
+        backend.registerAction(action);
+
+        backend.doScheduledActions();
+        backend.doScheduledActions();
+
+        verify(pool, times(4)).execute(any(Runnable.class));
+        verify(action, times(2)).run("vm1", 123);
+        verify(action, times(2)).run("vm2", 456);
+        assertEquals(0, backend.getOverrunCount());
+    }
+
+    @Test
+    public void verifyVmStillBeingPolledIsSkipped() {
+        // never runs the polls, so they stay in flight
+        ExecutorService pool = mock(ExecutorService.class);
+        backend.setWorkerPool(pool);
+        backend.vmStatusChanged(Status.VM_ACTIVE, "vm", 123);
+        backend.registerAction(mock(VmPollingAction.class));
+
+        backend.doScheduledActions();
+        backend.doScheduledActions();
+        backend.doScheduledActions();
+
+        verify(pool, times(1)).execute(any(Runnable.class));
+        assertEquals(2, backend.getOverrunCount());
+    }
+
+    @Test
+    public void verifyRejectedPollIsCountedAndRetried() {
+        ExecutorService pool = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException()).when(pool).execute(any(Runnable.class));
+        backend.setWorkerPool(pool);
+        backend.vmStatusChanged(Status.VM_ACTIVE, "vm", 123);
+        backend.registerAction(mock(VmPollingAction.class));
+
+        backend.doScheduledActions();
+        backend.doScheduledActions();
+
+        verify(pool, times(2)).execute(any(Runnable.class));
+        assertEquals(2, backend.getOverrunCount());
+    }
+
+    @Test
+    public void verifyActionLatenciesAreRecorded() {
+        backend.vmStatusChanged(Status.VM_ACTIVE, "vm1", 123);
+        backend.vmStatusChanged(Status.VM_ACTIVE, "vm2", 456);
+        BadVmPollingAction action = new BadVmPollingAction();
+        backend.registerAction(action);
+
+        backend.doScheduledActions();
+
+        Map<String, LatencyHistogram> latencies = backend.getActionLatencies();
+        assertEquals(1, latencies.size());
+        assertTrue(latencies.containsKey(BadVmPollingAction.class.getName()));
+        assertEquals(2, latencies.get(BadVmPollingAction.class.getName()).getCount());
+
+        backend.unregisterAction(action);
+        assertTrue(backend.getActionLatencies().isEmpty());
+    }
+
     @Test
     public void verifyCustomActivateRegistersListener() {
         backend.preActivate();
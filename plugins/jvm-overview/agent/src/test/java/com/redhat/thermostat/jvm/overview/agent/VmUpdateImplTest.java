@@ -44,6 +44,7 @@ import com.redhat.thermostat.jvm.overview.agent.internal.VmUpdateImpl;
 import org.junit.Before;
 import org.junit.Test;
 
+import sun.jvmstat.monitor.LongMonitor;
 import sun.jvmstat.monitor.Monitor;
 
 public class VmUpdateImplTest {
@@ -121,5 +122,39 @@ public class VmUpdateImplTest {
         assertNull(result);
     }
 
-}
+    @Test
+    public void testPerformanceCounterHandleIsCached() throws VmUpdateException {
+        final String counter = "myCounter";
+        Monitor monitor = mock(Monitor.class);
+        when(monitor.getValue()).thenReturn(1L).thenReturn(2L);
+        when(wrapper.getMonitor(counter)).thenReturn(monitor);
+
+        VmCounter handle = update.getPerformanceCounter(counter);
+        assertEquals(1L, handle.longValue());
+        assertSame(handle, update.getPerformanceCounter(counter));
+        assertEquals((Long) 2L, update.getPerformanceCounterLong(counter));
+        verify(wrapper, times(1)).getMonitor(counter);
+    }
+
+    @Test
+    public void testMissingPerformanceCounterIsLookedUpAgain() throws VmUpdateException {
+        final String counter = "myCounter";
+        when(wrapper.getMonitor(counter)).thenReturn(null);
+
+        assertNull(update.getPerformanceCounter(counter));
+        assertNull(update.getPerformanceCounter(counter));
+        verify(wrapper, times(2)).getMonitor(counter);
+    }
+
+    @Test
+    public void testLongMonitorIsReadWithoutBoxing() throws VmUpdateException {
+        final String counter = "myCounter";
+        LongMonitor monitor = mock(LongMonitor.class);
+        when(monitor.longValue()).thenReturn(42L);
+        when(wrapper.getMonitor(counter)).thenReturn(monitor);
 
+        assertEquals(42L, update.getPerformanceCounter(counter).longValue());
+        verify(monitor, never()).getValue();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds the contents of an hsperfdata file, laid out the way HotSpot does.
+ */
+public class HsPerfDataBuilder {
+
+    private static final int ENTRY_HEADER_SIZE = 20;
+
+    private final ByteBuffer buffer;
+    private int numEntries;
+
+    public HsPerfDataBuilder(ByteOrder order) {
+        buffer = ByteBuffer.allocate(4096);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(0, HsPerfDataFile.MAGIC);
+        buffer.order(order);
+        buffer.put(HsPerfDataFile.BYTE_ORDER_OFFSET, (byte) (order == ByteOrder.BIG_ENDIAN ? 0 : 1));
+        buffer.put(HsPerfDataFile.MAJOR_VERSION_OFFSET, (byte) HsPerfDataFile.SUPPORTED_MAJOR_VERSION);
+        buffer.put(HsPerfDataFile.ACCESSIBLE_OFFSET, (byte) 1);
+        buffer.putInt(HsPerfDataFile.ENTRY_OFFSET_OFFSET, HsPerfDataFile.PROLOGUE_SIZE);
+        buffer.position(HsPerfDataFile.PROLOGUE_SIZE);
+    }
+
+    /**
+     * @return the offset of the value of the counter
+     */
+    public int addLong(String name, long value) {
+        byte[] nameBytes = nameBytes(name);
+        int start = buffer.position();
+        int dataOffset = align(ENTRY_HEADER_SIZE + nameBytes.length, 8);
+        int length = dataOffset + 8;
+        putEntryHeader(start, length, nameBytes, 0, HsPerfDataFile.TYPE_LONG, dataOffset);
+        buffer.putLong(start + dataOffset, value);
+        buffer.position(start + length);
+        return start + dataOffset;
+    }
+
+    /**
+     * @return the offset of the value of the counter
+     */
+    public int addString(String name, String value, int vectorLength) {
+        byte[] nameBytes = nameBytes(name);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int start = buffer.position();
+        int dataOffset = ENTRY_HEADER_SIZE + nameBytes.length;
+        int length = align(dataOffset + vectorLength, 8);
+        putEntryHeader(start, length, nameBytes, vectorLength, HsPerfDataFile.TYPE_BYTE, dataOffset);
+        for (int i = 0; i < valueBytes.length; i++) {
+            buffer.put(start + dataOffset + i, valueBytes[i]);
+        }
+        buffer.position(start + length);
+        return start + dataOffset;
+    }
+
+    private void putEntryHeader(int start, int length, byte[] nameBytes, int vectorLength, byte type, int dataOffset) {
+        buffer.putInt(start + HsPerfDataFile.ENTRY_LENGTH_OFFSET, length);
+        buffer.putInt(start + HsPerfDataFile.NAME_OFFSET_OFFSET, ENTRY_HEADER_SIZE);
+        buffer.putInt(start + HsPerfDataFile.VECTOR_LENGTH_OFFSET, vectorLength);
+        buffer.put(start + HsPerfDataFile.DATA_TYPE_OFFSET, type);
+        buffer.putInt(start + HsPerfDataFile.DATA_OFFSET_OFFSET, dataOffset);
+        for (int i = 0; i < nameBytes.length; i++) {
+            buffer.put(start + ENTRY_HEADER_SIZE + i, nameBytes[i]);
+        }
+        numEntries++;
+        buffer.putInt(HsPerfDataFile.NUM_ENTRIES_OFFSET, numEntries);
+    }
+
+    private static byte[] nameBytes(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        // NUL terminated
+        byte[] result = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, result, 0, bytes.length);
+        return result;
+    }
+
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    /**
+     * @return the buffer the counters are written to, shared with the builder
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public void writeTo(File file) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buffer.array(), 0, buffer.capacity());
+        }
+    }
+
+}
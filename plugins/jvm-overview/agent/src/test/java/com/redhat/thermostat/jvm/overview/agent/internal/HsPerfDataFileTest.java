@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.redhat.thermostat.jvm.overview.agent.VmCounter;
+
+public class HsPerfDataFileTest {
+
+    @Test
+    public void testReadLittleEndian() throws IOException {
+        verifyReadsCounters(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void testReadBigEndian() throws IOException {
+        verifyReadsCounters(ByteOrder.BIG_ENDIAN);
+    }
+
+    private void verifyReadsCounters(ByteOrder order) throws IOException {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(order);
+        builder.addLong("sun.gc.collector.0.invocations", 42);
+        builder.addString("sun.gc.collector.0.name", "PSScavenge", 64);
+        builder.addLong("sun.gc.collector.0.time", 123456789012L);
+
+        HsPerfDataFile file = new HsPerfDataFile(builder.getBuffer());
+
+        assertEquals(42, file.getCounter("sun.gc.collector.0.invocations").longValue());
+        assertEquals("PSScavenge", file.getCounter("sun.gc.collector.0.name").stringValue());
+        assertEquals(123456789012L, file.getCounter("sun.gc.collector.0.time").longValue());
+        assertNull(file.getCounter("sun.gc.collector.1.name"));
+    }
+
+    @Test
+    public void testCountersReadCurrentValue() throws IOException {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.LITTLE_ENDIAN);
+        int offset = builder.addLong("java.cls.loadedClasses", 1);
+
+        HsPerfDataFile file = new HsPerfDataFile(builder.getBuffer());
+        VmCounter counter = file.getCounter("java.cls.loadedClasses");
+        assertEquals(1, counter.longValue());
+
+        builder.getBuffer().putLong(offset, 2);
+        assertEquals(2, counter.longValue());
+        assertSame(counter, file.getCounter("java.cls.loadedClasses"));
+    }
+
+    @Test
+    public void testFindsCountersAddedLater() throws IOException {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.LITTLE_ENDIAN);
+        builder.addLong("sun.gc.generation.0.spaces", 3);
+
+        HsPerfDataFile file = new HsPerfDataFile(builder.getBuffer());
+        assertNull(file.getCounter("sun.gc.generation.1.spaces"));
+
+        builder.addLong("sun.gc.generation.1.spaces", 1);
+        assertEquals(1, file.getCounter("sun.gc.generation.1.spaces").longValue());
+        assertEquals(3, file.getCounter("sun.gc.generation.0.spaces").longValue());
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testLongValueOfStringCounter() throws IOException {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.LITTLE_ENDIAN);
+        builder.addString("java.property.java.vm.name", "OpenJDK", 16);
+
+        new HsPerfDataFile(builder.getBuffer()).getCounter("java.property.java.vm.name").longValue();
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void testStringValueOfLongCounter() throws IOException {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.LITTLE_ENDIAN);
+        builder.addLong("java.cls.loadedClasses", 1);
+
+        new HsPerfDataFile(builder.getBuffer()).getCounter("java.cls.loadedClasses").stringValue();
+    }
+
+    @Test
+    public void testRejectsBadMagic() {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.LITTLE_ENDIAN);
+        builder.getBuffer().putInt(0, 0xcafebabe);
+        verifyRejected(builder.getBuffer());
+    }
+
+    @Test
+    public void testRejectsUnsupportedVersion() {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.LITTLE_ENDIAN);
+        builder.getBuffer().put(HsPerfDataFile.MAJOR_VERSION_OFFSET, (byte) 1);
+        verifyRejected(builder.getBuffer());
+    }
+
+    @Test
+    public void testRejectsInaccessible() {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.LITTLE_ENDIAN);
+        builder.getBuffer().put(HsPerfDataFile.ACCESSIBLE_OFFSET, (byte) 0);
+        verifyRejected(builder.getBuffer());
+    }
+
+    @Test
+    public void testRejectsCorruptEntry() {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.LITTLE_ENDIAN);
+        builder.addLong("java.cls.loadedClasses", 1);
+        builder.getBuffer().putInt(HsPerfDataFile.NUM_ENTRIES_OFFSET, 2);
+        verifyRejected(builder.getBuffer());
+    }
+
+    private void verifyRejected(ByteBuffer buffer) {
+        try {
+            new HsPerfDataFile(buffer);
+            fail("expected IOException");
+        } catch (IOException e) {
+            // pass
+        }
+    }
+
+    @Test
+    public void testOpenFile() throws IOException {
+        HsPerfDataBuilder builder = new HsPerfDataBuilder(ByteOrder.nativeOrder());
+        builder.addLong("java.threads.live", 7);
+        File tmp = File.createTempFile("hsperfdata", null);
+        try {
+            builder.writeTo(tmp);
+            HsPerfDataFile file = HsPerfDataFile.open(tmp);
+            assertEquals(7, file.getCounter("java.threads.live").longValue());
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /*
+     * Reads the counters of the JVM running this test, if it has an
+     * hsperfdata file.
+     */
+    @Test
+    public void testReadOwnCounters() throws IOException {
+        String jvmName = ManagementFactory.getRuntimeMXBean().getName();
+        int pid = Integer.parseInt(jvmName.substring(0, jvmName.indexOf('@')));
+        File perfData = new HsPerfDataLocator().find(pid);
+        Assume.assumeNotNull(perfData);
+
+        HsPerfDataFile file = HsPerfDataFile.open(perfData);
+        VmCounter loadedClasses = file.getCounter("java.cls.loadedClasses");
+        assertNotNull(loadedClasses);
+        assertTrue(loadedClasses.longValue() > 0);
+        assertTrue(file.getCounter("java.property.java.vm.name").stringValue().length() > 0);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HsPerfDataLocatorTest {
+
+    private static final int PID = 4242;
+
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+
+    private File aliceFile;
+    private File bobFile;
+
+    @Before
+    public void setUp() throws IOException {
+        aliceFile = createPerfDataFile("alice");
+        bobFile = createPerfDataFile("bob");
+    }
+
+    private File createPerfDataFile(String user) throws IOException {
+        File dir = tmpDir.newFolder("hsperfdata_" + user);
+        File file = new File(dir, String.valueOf(PID));
+        file.createNewFile();
+        return file;
+    }
+
+    @Test
+    public void testFindsFileOfProcessOwner() {
+        assertEquals(bobFile, new TestLocator("bob", -1).find(PID));
+        assertEquals(aliceFile, new TestLocator("alice", -1).find(PID));
+    }
+
+    @Test
+    public void testIgnoresOtherUsersWhenOwnerHasNoFile() {
+        assertNull(new TestLocator("carol", -1).find(PID));
+    }
+
+    @Test
+    public void testFindsAnyFileWhenOwnerIsUnknown() {
+        File file = new TestLocator(null, -1).find(PID);
+        assertEquals(String.valueOf(PID), file.getName());
+    }
+
+    @Test
+    public void testIgnoresFileOlderThanProcess() {
+        long startTime = bobFile.lastModified() + 60000;
+        assertNull(new TestLocator("bob", startTime).find(PID));
+    }
+
+    @Test
+    public void testFindsFileWrittenAfterProcessStarted() {
+        long startTime = bobFile.lastModified() - 60000;
+        assertEquals(bobFile, new TestLocator("bob", startTime).find(PID));
+    }
+
+    private class TestLocator extends HsPerfDataLocator {
+
+        private final String owner;
+        private final long startTime;
+
+        TestLocator(String owner, long startTime) {
+            super(Arrays.asList(tmpDir.getRoot()), null);
+            this.owner = owner;
+            this.startTime = startTime;
+        }
+
+        @Override
+        String getProcessOwner(int pid) {
+            return owner;
+        }
+
+        @Override
+        long getProcessStartTimeMillis(int pid) {
+            return startTime;
+        }
+    }
+
+}
+
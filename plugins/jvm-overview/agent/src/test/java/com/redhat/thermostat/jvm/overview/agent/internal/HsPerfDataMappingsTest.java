@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HsPerfDataMappingsTest {
+
+    private HsPerfDataMappings mappings;
+    private File perfData;
+
+    @Before
+    public void setUp() throws IOException {
+        mappings = new HsPerfDataMappings();
+        perfData = File.createTempFile("hsperfdata", null);
+        new HsPerfDataBuilder(ByteOrder.nativeOrder()).writeTo(perfData);
+    }
+
+    @After
+    public void tearDown() {
+        perfData.delete();
+    }
+
+    @Test
+    public void testSharesMappingOfSameVm() throws IOException {
+        HsPerfDataFile first = mappings.acquire(1, perfData);
+        HsPerfDataFile second = mappings.acquire(1, perfData);
+        assertSame(first, second);
+        assertEquals(1, mappings.size());
+    }
+
+    @Test
+    public void testReleasesMappingWhenUnused() throws IOException {
+        HsPerfDataFile first = mappings.acquire(1, perfData);
+        mappings.acquire(1, perfData);
+
+        mappings.release(1, first);
+        assertEquals(1, mappings.size());
+        mappings.release(1, first);
+        assertEquals(0, mappings.size());
+
+        assertNotSame(first, mappings.acquire(1, perfData));
+    }
+
+    @Test
+    public void testDoesNotShareFileOfReusedPid() throws IOException {
+        File otherPerfData = File.createTempFile("hsperfdata", null);
+        try {
+            new HsPerfDataBuilder(ByteOrder.nativeOrder()).writeTo(otherPerfData);
+            HsPerfDataFile first = mappings.acquire(1, perfData);
+            HsPerfDataFile other = mappings.acquire(1, otherPerfData);
+            assertNotSame(first, other);
+
+            // Releasing the unshared mapping leaves the shared one alone
+            mappings.release(1, other);
+            assertSame(first, mappings.acquire(1, perfData));
+        } finally {
+            otherPerfData.delete();
+        }
+    }
+
+}
+
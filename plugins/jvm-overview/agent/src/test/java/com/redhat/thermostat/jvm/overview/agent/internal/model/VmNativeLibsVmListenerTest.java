@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.jvm.overview.agent.internal.model;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
+
+public class VmNativeLibsVmListenerTest {
+
+    private static final String VM_ID = "vmId";
+
+    private VmInfoDAO dao;
+    private VmNativeLibsExtractor libExtractor;
+    private VmClassloaderInfoExtractor classInfo;
+    private VmNativeLibsVmListener listener;
+
+    @Before
+    public void setUp() {
+        dao = mock(VmInfoDAO.class);
+        libExtractor = mock(VmNativeLibsExtractor.class);
+        classInfo = mock(VmClassloaderInfoExtractor.class);
+        listener = new VmNativeLibsVmListener(dao, VM_ID, libExtractor);
+    }
+
+    @Test
+    public void testNoCountersNoScan() throws VmUpdateException {
+        when(classInfo.getLoadedClassesCount()).thenReturn(null);
+        when(classInfo.getUnloadedClassesCount()).thenReturn(null);
+
+        listener.recordNativeLibs(classInfo);
+
+        verify(libExtractor, never()).getNativeLibs();
+        verify(dao, never()).updateVmNativeLibs(anyString(), any(String[].class));
+    }
+
+    @Test
+    public void testFirstUpdateScansAndRecords() throws VmUpdateException {
+        String[] libs = { "/lib/libc.so.6" };
+        when(classInfo.getLoadedClassesCount()).thenReturn(10l);
+        when(classInfo.getUnloadedClassesCount()).thenReturn(0l);
+        when(libExtractor.getNativeLibs()).thenReturn(libs);
+
+        listener.recordNativeLibs(classInfo);
+
+        verify(dao).updateVmNativeLibs(VM_ID, libs);
+    }
+
+    @Test
+    public void testUnchangedCountersDoNotRescan() throws VmUpdateException {
+        when(classInfo.getLoadedClassesCount()).thenReturn(10l);
+        when(classInfo.getUnloadedClassesCount()).thenReturn(0l);
+        when(libExtractor.getNativeLibs()).thenReturn(new String[] { "/lib/libc.so.6" });
+
+        for (int i = 0; i < 5; i++) {
+            listener.recordNativeLibs(classInfo);
+        }
+
+        verify(libExtractor, times(1)).getNativeLibs();
+        verify(dao, times(1)).updateVmNativeLibs(anyString(), any(String[].class));
+    }
+
+    @Test
+    public void testChangedCountersRescanButSameLibsAreNotSent() throws VmUpdateException {
+        when(classInfo.getLoadedClassesCount()).thenReturn(10l).thenReturn(11l).thenReturn(11l);
+        when(classInfo.getUnloadedClassesCount()).thenReturn(0l).thenReturn(0l).thenReturn(1l);
+        when(libExtractor.getNativeLibs())
+                .thenReturn(new String[] { "/lib/a.so", "/lib/b.so" })
+                .thenReturn(new String[] { "/lib/b.so", "/lib/a.so" })
+                .thenReturn(new String[] { "/lib/b.so", "/lib/a.so", "/lib/c.so" });
+
+        listener.recordNativeLibs(classInfo);
+        listener.recordNativeLibs(classInfo);
+        listener.recordNativeLibs(classInfo);
+
+        verify(libExtractor, times(3)).getNativeLibs();
+        verify(dao).updateVmNativeLibs(VM_ID, new String[] { "/lib/a.so", "/lib/b.so" });
+        verify(dao).updateVmNativeLibs(VM_ID, new String[] { "/lib/b.so", "/lib/a.so", "/lib/c.so" });
+        verify(dao, times(2)).updateVmNativeLibs(anyString(), any(String[].class));
+    }
+
+    @Test
+    public void testForcedRescanAfterManyUnchangedUpdates() throws VmUpdateException {
+        when(classInfo.getLoadedClassesCount()).thenReturn(10l);
+        when(classInfo.getUnloadedClassesCount()).thenReturn(0l);
+        when(libExtractor.getNativeLibs()).thenReturn(new String[] { "/lib/a.so" });
+
+        for (int i = 0; i <= VmNativeLibsVmListener.UPDATES_BETWEEN_FORCED_SCANS; i++) {
+            listener.recordNativeLibs(classInfo);
+        }
+
+        verify(libExtractor, times(2)).getNativeLibs();
+        verify(dao, times(1)).updateVmNativeLibs(anyString(), any(String[].class));
+    }
+
+    @Test
+    public void testExceptionIsHandled() throws VmUpdateException {
+        when(classInfo.getLoadedClassesCount()).thenThrow(new VmUpdateException());
+
+        listener.recordNativeLibs(classInfo);
+
+        verify(dao, never()).updateVmNativeLibs(anyString(), any(String[].class));
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.byteman.agent.internal;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.redhat.thermostat.vm.byteman.agent.BytemanMetric;
+
+/**
+ * Decodes metrics sent by the byteman helper in its binary format. See
+ * {@code BinaryMetricsEncoder} in the byteman helper for the layout, which
+ * this class must be kept in sync with.
+ */
+class BinaryMetricsDecoder {
+
+    static final byte[] HELLO_MAGIC = { 'T', 'B', 'M', 'H' };
+    static final byte[] BATCH_MAGIC = { 'T', 'B', 'M', 'B' };
+    static final byte JSON_VERSION = 0;
+    static final byte VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final short NULL_STRING = -1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Gson gson;
+
+    BinaryMetricsDecoder(Gson gson) {
+        this.gson = gson;
+    }
+
+    static boolean isHello(ByteBuffer buf) {
+        return hasMagic(buf, HELLO_MAGIC);
+    }
+
+    static boolean isBatch(ByteBuffer buf) {
+        return hasMagic(buf, BATCH_MAGIC);
+    }
+
+    /**
+     * @return the reply to a hello message, accepting the binary format if
+     *         the helper supports this version of it
+     */
+    static ByteBuffer createHelloReply(ByteBuffer hello) {
+        byte accepted = JSON_VERSION;
+        if (hello.remaining() == HELLO_MAGIC.length + 1) {
+            byte offered = hello.get(hello.position() + HELLO_MAGIC.length);
+            if (offered >= VERSION) {
+                accepted = VERSION;
+            }
+        }
+        ByteBuffer reply = ByteBuffer.allocate(HELLO_MAGIC.length + 1);
+        reply.put(HELLO_MAGIC);
+        reply.put(accepted);
+        reply.flip();
+        return reply;
+    }
+
+    /**
+     * Decodes a batch message. The metrics' payloads are converted to JSON,
+     * the agent and VM ids are left unset.
+     *
+     * @throws IllegalArgumentException if the batch is malformed
+     */
+    List<BytemanMetric> decode(ByteBuffer buf) {
+        try {
+            buf.position(buf.position() + BATCH_MAGIC.length);
+            byte version = buf.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported metrics format version: " + version);
+            }
+            int count = buf.getInt();
+            if (count < 0) {
+                throw new IllegalArgumentException("Invalid record count: " + count);
+            }
+            List<String> dictionary = new ArrayList<>();
+            List<BytemanMetric> metrics = new ArrayList<>(Math.min(count, buf.remaining()));
+            for (int i = 0; i < count; i++) {
+                int length = buf.getInt();
+                int end = buf.position() + length;
+                if (length < 0 || end > buf.limit()) {
+                    throw new IllegalArgumentException("Invalid record length: " + length);
+                }
+                metrics.add(readRecord(buf, dictionary));
+                if (buf.position() != end) {
+                    throw new IllegalArgumentException("Record does not match its length: " + length);
+                }
+            }
+            return metrics;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated metrics batch", e);
+        }
+    }
+
+    private BytemanMetric readRecord(ByteBuffer buf, List<String> dictionary) {
+        BytemanMetric metric = new BytemanMetric();
+        metric.setMarker(readString(buf, dictionary));
+        metric.setTimeStamp(buf.getLong());
+        short fieldCount = buf.getShort();
+        if (fieldCount < 0) {
+            metric.setData(gson.toJson(null));
+            return metric;
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (int i = 0; i < fieldCount; i++) {
+            String key = readString(buf, dictionary);
+            data.put(key, readValue(buf));
+        }
+        metric.setData(gson.toJson(data));
+        return metric;
+    }
+
+    private Object readValue(ByteBuffer buf) {
+        byte type = buf.get();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+        case TYPE_STRING:
+            int length = buf.getInt();
+            if (length < 0 || length > buf.remaining()) {
+                throw new IllegalArgumentException("Invalid string length: " + length);
+            }
+            return readUtf8(buf, length);
+        case TYPE_BOOLEAN:
+            return buf.get() != 0;
+        case TYPE_INT:
+            return buf.getInt();
+        case TYPE_LONG:
+            return buf.getLong();
+        case TYPE_DOUBLE:
+            return buf.getDouble();
+        default:
+            throw new IllegalArgumentException("Unknown value type: " + type);
+        }
+    }
+
+    private String readString(ByteBuffer buf, List<String> dictionary) {
+        short index = buf.getShort();
+        if (index == NULL_STRING) {
+            return null;
+        }
+        if (index >= 0 && index < dictionary.size()) {
+            return dictionary.get(index);
+        }
+        if (index != dictionary.size()) {
+            throw new IllegalArgumentException("Invalid dictionary index: " + index);
+        }
+        short length = buf.getShort();
+        if (length < 0 || length > buf.remaining()) {
+            throw new IllegalArgumentException("Invalid string length: " + length);
+        }
+        String value = readUtf8(buf, length);
+        dictionary.add(value);
+        return value;
+    }
+
+    private static String readUtf8(ByteBuffer buf, int length) {
+        if (buf.hasArray()) {
+            String value = new String(buf.array(), buf.arrayOffset() + buf.position(), length, UTF_8);
+            buf.position(buf.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static boolean hasMagic(ByteBuffer buf, byte[] magic) {
+        if (buf.remaining() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (buf.get(buf.position() + i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -36,11 +36,13 @@
 
 package com.redhat.thermostat.vm.byteman.agent.internal;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
@@ -58,6 +60,7 @@ class BytemanMetricsReceiver implements ThermostatIPCCallbacks {
     private final VmBytemanDAO dao;
     private final VmSocketIdentifier socketId;
     private final Gson gson;
+    private final BinaryMetricsDecoder decoder;
     
     BytemanMetricsReceiver(VmBytemanDAO dao, VmSocketIdentifier socketId) {
         this.dao = dao;
@@ -67,11 +70,48 @@ class BytemanMetricsReceiver implements ThermostatIPCCallbacks {
                 .serializeNulls()
                 .disableHtmlEscaping()
                 .create();
+        this.decoder = new BinaryMetricsDecoder(gson);
     }
 
     @Override
     public void messageReceived(IPCMessage message) {
         ByteBuffer buf = message.get();
+        if (BinaryMetricsDecoder.isHello(buf)) {
+            replyToHello(message, buf);
+        } else if (BinaryMetricsDecoder.isBatch(buf)) {
+            receiveBinary(buf);
+        } else {
+            receiveJson(buf);
+        }
+    }
+
+    private void replyToHello(IPCMessage message, ByteBuffer hello) {
+        try {
+            message.reply(BinaryMetricsDecoder.createHelloReply(hello));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to reply to byteman helper for socketId: " + socketId.getName(), e);
+        }
+    }
+
+    private void receiveBinary(ByteBuffer buf) {
+        List<BytemanMetric> metrics;
+        try {
+            metrics = decoder.decode(buf);
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.WARNING, "Discarding malformed metrics from byteman for socketId: " + socketId.getName(), e);
+            return;
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Received " + metrics.size() + " binary metrics from byteman for socketId: " + socketId.getName());
+        }
+        for (BytemanMetric metric: metrics) {
+            metric.setAgentId(socketId.getAgentId());
+            metric.setJvmId(socketId.getVmId());
+            dao.addMetric(metric);
+        }
+    }
+
+    private void receiveJson(ByteBuffer buf) {
         CharBuffer charBuf = Charset.forName("UTF-8").decode(buf);
         String jsonMetric = charBuf.toString();
         logger.fine("Received metrics from byteman for socketId: " + socketId.getName() + ". Metric was: " + jsonMetric);
@@ -43,6 +43,8 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
 import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
 import com.redhat.thermostat.common.plugin.PluginDAOBase;
@@ -58,6 +60,7 @@ class VmBytemanMetricsStore extends PluginDAOBase<BytemanMetric> {
     private final PluginConfiguration pluginConfig;
     private final SystemID systemId;
     private final Gson gson;
+    private final TypeAdapter<List<BytemanMetric>> listAdapter;
 
     VmBytemanMetricsStore(HttpRequestService httpRequestService,
                           PluginConfiguration pluginConfig,
@@ -67,6 +70,7 @@ class VmBytemanMetricsStore extends PluginDAOBase<BytemanMetric> {
         this.pluginConfig = pluginConfig;
         this.systemId = systemId;
         this.gson = gson;
+        this.listAdapter = gson.getAdapter(new TypeToken<List<BytemanMetric>>() {});
     }
 
     @Override
@@ -75,6 +79,14 @@ class VmBytemanMetricsStore extends PluginDAOBase<BytemanMetric> {
         return gson.toJson(bytemanMetrics);
     }
 
+    /*
+     * Metrics are posted in batches, serialized when their batch is sent.
+     */
+    @Override
+    protected TypeAdapter<List<BytemanMetric>> getTypeAdapter() {
+        return listAdapter;
+    }
+
     @Override
     protected HttpRequestService getHttpRequestService() {
         return httpRequestService;
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.byteman.agent.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.GsonBuilder;
+import com.redhat.thermostat.vm.byteman.agent.BytemanMetric;
+
+public class BinaryMetricsDecoderTest {
+
+    private BinaryMetricsDecoder decoder;
+
+    @Before
+    public void setup() {
+        decoder = new BinaryMetricsDecoder(new GsonBuilder().serializeNulls().disableHtmlEscaping().create());
+    }
+
+    @Test
+    public void decodesRecordsWithInternedStrings() {
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        buf.put(BinaryMetricsDecoder.BATCH_MAGIC).put((byte) 1).putInt(2);
+        int lengthPos = beginRecord(buf);
+        putNewString(buf, 0, "marker");
+        buf.putLong(30).putShort((short) 3);
+        putNewString(buf, 1, "key");
+        buf.put((byte) 1);
+        byte[] value = "value = foo".getBytes(Charset.forName("UTF-8"));
+        buf.putInt(value.length).put(value);
+        putNewString(buf, 2, "count");
+        buf.put((byte) 4).putLong(7L);
+        putNewString(buf, 3, "flag");
+        buf.put((byte) 2).put((byte) 1);
+        endRecord(buf, lengthPos);
+        lengthPos = beginRecord(buf);
+        buf.putShort((short) 0); // marker
+        buf.putLong(31).putShort((short) 2);
+        buf.putShort((short) 2); // count
+        buf.put((byte) 3).putInt(-5);
+        buf.putShort((short) -1); // null key
+        buf.put((byte) 0);
+        endRecord(buf, lengthPos);
+        buf.flip();
+
+        assertTrue(BinaryMetricsDecoder.isBatch(buf));
+        List<BytemanMetric> metrics = decoder.decode(buf);
+
+        assertEquals(2, metrics.size());
+        BytemanMetric first = metrics.get(0);
+        assertEquals("marker", first.getMarker());
+        assertEquals(30, first.getTimeStamp());
+        assertEquals("{\"key\":\"value = foo\",\"count\":7,\"flag\":true}", first.getData());
+        BytemanMetric second = metrics.get(1);
+        assertEquals("marker", second.getMarker());
+        assertEquals(31, second.getTimeStamp());
+        Map<String, Object> data = second.getDataAsMap();
+        assertEquals(-5.0, (Double) data.get("count"), 0);
+        assertTrue(data.containsKey("null"));
+        assertNull(data.get("null"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownVersion() {
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        buf.put(BinaryMetricsDecoder.BATCH_MAGIC).put((byte) 9).putInt(0);
+        buf.flip();
+        decoder.decode(buf);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedBatch() {
+        ByteBuffer buf = ByteBuffer.allocate(16);
+        buf.put(BinaryMetricsDecoder.BATCH_MAGIC).put((byte) 1).putInt(1).putInt(2);
+        buf.flip();
+        decoder.decode(buf);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUndefinedDictionaryIndex() {
+        ByteBuffer buf = ByteBuffer.allocate(32);
+        buf.put(BinaryMetricsDecoder.BATCH_MAGIC).put((byte) 1).putInt(1);
+        int lengthPos = beginRecord(buf);
+        buf.putShort((short) 5);
+        endRecord(buf, lengthPos);
+        buf.flip();
+        decoder.decode(buf);
+    }
+
+    @Test
+    public void repliesToHello() {
+        ByteBuffer hello = ByteBuffer.wrap(new byte[] { 'T', 'B', 'M', 'H', 1 });
+        assertTrue(BinaryMetricsDecoder.isHello(hello));
+        assertFalse(BinaryMetricsDecoder.isBatch(hello));
+        ByteBuffer reply = BinaryMetricsDecoder.createHelloReply(hello);
+        assertEquals(5, reply.remaining());
+        assertEquals(BinaryMetricsDecoder.VERSION, reply.get(4));
+
+        ByteBuffer malformed = ByteBuffer.wrap(new byte[] { 'T', 'B', 'M', 'H' });
+        assertEquals(BinaryMetricsDecoder.JSON_VERSION, BinaryMetricsDecoder.createHelloReply(malformed).get(4));
+    }
+
+    private static int beginRecord(ByteBuffer buf) {
+        int pos = buf.position();
+        buf.putInt(0);
+        return pos;
+    }
+
+    private static void endRecord(ByteBuffer buf, int lengthPos) {
+        buf.putInt(lengthPos, buf.position() - lengthPos - 4);
+    }
+
+    private static void putNewString(ByteBuffer buf, int index, String value) {
+        byte[] bytes = value.getBytes(Charset.forName("UTF-8"));
+        buf.putShort((short) index).putShort((short) bytes.length).put(bytes);
+    }
+}
@@ -42,8 +42,10 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.List;
@@ -120,5 +122,48 @@ public class BytemanMetricsReceiverTest {
         Map<String, Object> dataVals = metric.getDataAsMap();
         assertEquals("value = foo", dataVals.get("key"));
     }
-    
+
+    @Test
+    public void repliesToHelloAndAcceptsBinaryBatches() throws IOException {
+        VmBytemanDAO dao = mock(VmBytemanDAO.class);
+        VmSocketIdentifier sockId = new VmSocketIdentifier("vm-id", SOME_PID, "agent-id");
+        BytemanMetricsReceiver receiver = new BytemanMetricsReceiver(dao, sockId);
+
+        IPCMessage hello = mock(IPCMessage.class);
+        when(hello.get()).thenReturn(ByteBuffer.wrap(new byte[] { 'T', 'B', 'M', 'H', 1 }));
+        receiver.messageReceived(hello);
+        ArgumentCaptor<ByteBuffer> replyCaptor = ArgumentCaptor.forClass(ByteBuffer.class);
+        verify(hello).reply(replyCaptor.capture());
+        assertEquals(1, replyCaptor.getValue().get(4));
+
+        ByteBuffer batch = ByteBuffer.allocate(64);
+        batch.put(new byte[] { 'T', 'B', 'M', 'B', 1 }).putInt(1);
+        batch.putInt(2 + 2 + 1 + 8 + 2);
+        batch.putShort((short) 0).putShort((short) 1).put((byte) 'm');
+        batch.putLong(12).putShort((short) 0);
+        batch.flip();
+        IPCMessage message = mock(IPCMessage.class);
+        when(message.get()).thenReturn(batch);
+        receiver.messageReceived(message);
+
+        ArgumentCaptor<BytemanMetric> metricsCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
+        verify(dao).addMetric(metricsCaptor.capture());
+        BytemanMetric metric = metricsCaptor.getValue();
+        assertEquals("m", metric.getMarker());
+        assertEquals(12, metric.getTimeStamp());
+        assertEquals("{}", metric.getData());
+        assertEquals("vm-id", metric.getJvmId());
+        assertEquals("agent-id", metric.getAgentId());
+    }
+
+    @Test
+    public void discardsMalformedBinaryBatches() {
+        VmBytemanDAO dao = mock(VmBytemanDAO.class);
+        BytemanMetricsReceiver receiver = new BytemanMetricsReceiver(dao, mock(VmSocketIdentifier.class));
+        IPCMessage message = mock(IPCMessage.class);
+        when(message.get()).thenReturn(ByteBuffer.wrap(new byte[] { 'T', 'B', 'M', 'B', 1, 0, 0 }));
+        receiver.messageReceived(message);
+        verifyZeroInteractions(dao);
+    }
+
 }
@@ -57,9 +57,21 @@ public class BytemanMetric {
      * @param data arbitrary data
      */
     public BytemanMetric(String marker, LinkedHashMap<String, Object> data) {
+        this(marker, data, System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param marker marker value
+     * @param data arbitrary data
+     * @param timestamp time the data was collected, in milliseconds since
+     *                  the epoch
+     */
+    public BytemanMetric(String marker, LinkedHashMap<String, Object> data, long timestamp) {
         this.marker = marker;
         this.data = data;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
     }
 
     /**
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package org.jboss.byteman.thermostat.helper;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded ring of pre-allocated event records, written by any number of
+ * threads and read by a single drain thread. Writers claim a slot with a
+ * single compare-and-set and never wait: if the ring is full the event is
+ * dropped and counted instead.
+ * <p>
+ * Each slot carries a sequence number. A slot at position {@code p} may be
+ * written when its sequence is {@code p} and read when it is {@code p + 1};
+ * once read, it is released for position {@code p + capacity}.
+ */
+class EventRing {
+
+    /**
+     * Fields an event record holds inline. Events with more fields are
+     * converted to a {@link BytemanMetric} by the sending thread.
+     */
+    static final int MAX_INLINE_FIELDS = 4;
+
+    static final byte KIND_OBJECT = 0;
+    static final byte KIND_LONG = 1;
+    static final byte KIND_INT = 2;
+
+    private final Event[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // Only accessed by the drain thread
+    private long head;
+
+    /**
+     * @param capacity a power of two, or zero to drop all events
+     */
+    EventRing(int capacity) {
+        if (capacity != 0 && Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        events = new Event[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new Event();
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Claims the next free record. The caller must fill it and then call
+     * {@link #publish(Event)}, without throwing in between.
+     *
+     * @return the record, or {@code null} if the ring is full
+     */
+    Event claim() {
+        if (events.length == 0) {
+            drop();
+            return null;
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Event event = events[index];
+                    event.position = position;
+                    event.fieldCount = 0;
+                    event.metric = null;
+                    return event;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                drop();
+                return null;
+            } else {
+                // Another writer claimed this position
+                position = tail.get();
+            }
+        }
+    }
+
+    void publish(Event event) {
+        // Release the record's contents to the drain thread
+        sequences.lazySet((int) event.position & mask, event.position + 1);
+    }
+
+    /**
+     * Converts all published records to metrics, in the order they were
+     * claimed, stopping at the first record still being written.
+     *
+     * @return the number of records drained
+     */
+    int drainTo(List<BytemanMetric> metrics) {
+        int count = 0;
+        while (events.length > 0) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Event event = events[index];
+            metrics.add(event.toMetric());
+            event.clear();
+            sequences.lazySet(index, head + events.length);
+            head++;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Counts an event that was not written to the ring.
+     */
+    void drop() {
+        dropped.incrementAndGet();
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * A pre-allocated event record. Primitive values are stored unboxed.
+     */
+    static final class Event {
+
+        private long position;
+        String marker;
+        long timestamp;
+        int fieldCount;
+        final String[] keys = new String[MAX_INLINE_FIELDS];
+        final byte[] kinds = new byte[MAX_INLINE_FIELDS];
+        final long[] longs = new long[MAX_INLINE_FIELDS];
+        final Object[] objects = new Object[MAX_INLINE_FIELDS];
+        // Set for events with more fields than fit inline
+        BytemanMetric metric;
+
+        void putObject(String key, Object value) {
+            keys[fieldCount] = key;
+            kinds[fieldCount] = KIND_OBJECT;
+            objects[fieldCount] = value;
+            fieldCount++;
+        }
+
+        void putLong(String key, long value) {
+            keys[fieldCount] = key;
+            kinds[fieldCount] = KIND_LONG;
+            longs[fieldCount] = value;
+            fieldCount++;
+        }
+
+        void putInt(String key, int value) {
+            keys[fieldCount] = key;
+            kinds[fieldCount] = KIND_INT;
+            longs[fieldCount] = value;
+            fieldCount++;
+        }
+
+        BytemanMetric toMetric() {
+            if (metric != null) {
+                return metric;
+            }
+            LinkedHashMap<String, Object> data = new LinkedHashMap<String, Object>();
+            for (int i = 0; i < fieldCount; i++) {
+                Object value;
+                switch (kinds[i]) {
+                case KIND_LONG:
+                    value = Long.valueOf(longs[i]);
+                    break;
+                case KIND_INT:
+                    value = Integer.valueOf((int) longs[i]);
+                    break;
+                default:
+                    value = objects[i];
+                }
+                data.put(keys[i] == null ? "" : keys[i], value);
+            }
+            return new BytemanMetric(marker, data, timestamp);
+        }
+
+        private void clear() {
+            // Do not keep objects of the monitored application alive
+            for (int i = 0; i < fieldCount; i++) {
+                keys[i] = null;
+                objects[i] = null;
+            }
+            marker = null;
+            metric = null;
+        }
+    }
+}
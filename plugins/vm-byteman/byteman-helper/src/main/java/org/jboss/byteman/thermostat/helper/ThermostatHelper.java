@@ -36,23 +36,22 @@
 
 package org.jboss.byteman.thermostat.helper;
 
-import static org.jboss.byteman.thermostat.helper.Utils.toMap;
-
-import java.util.LinkedHashMap;
-
 import org.jboss.byteman.rule.Rule;
 import org.jboss.byteman.rule.helper.Helper;
 
 /**
  * Byteman helper that provides various {@code send()} methods for sending
  * metrics to a peer.
- * 
+ * <p>
+ * The {@code send()} methods are called from instrumented application
+ * threads. They do not lock and hand values over to the {@link Transport}
+ * without boxing them into a map where possible.
  */
 public class ThermostatHelper extends Helper {
     
     // Lock to synchronize initialization of transport between instances
     private static final Object transportLock = new Object();
-    private static Transport transport = null;
+    private static volatile Transport transport = null;
 
     /**
      * Constructor
@@ -80,39 +79,59 @@ public class ThermostatHelper extends Helper {
     }
     
     public void send(String marker, String key, String value) {
-        send(marker, new Object[]{key, value});
+        Transport t = transport;
+        if (t != null) {
+            t.send(marker, key, value);
+        }
     }
     
     public void send(String marker, String key, int value) {
-        send(marker, new Object[]{key, value});
+        Transport t = transport;
+        if (t != null) {
+            t.send(marker, key, value);
+        }
     }
     
     public void send(String marker, String key, long value) {
-        send(marker, new Object[]{key, value});
+        Transport t = transport;
+        if (t != null) {
+            t.send(marker, key, value);
+        }
     }
     
     public void send(String marker, String key, Number value) {
-        send(marker, new Object[]{key, value});
+        Transport t = transport;
+        if (t != null) {
+            t.send(marker, key, value);
+        }
     }
     
     public void send(String marker, String key, Boolean value) {
-        send(marker, new Object[]{key, value});
+        Transport t = transport;
+        if (t != null) {
+            t.send(marker, key, value);
+        }
     }
 
     public void send(String marker, String key1, String value1, String key2, String value2) {
-        send(marker, new Object[]{key1, value1, key2, value2});
+        Transport t = transport;
+        if (t != null) {
+            t.send(marker, key1, value1, key2, value2);
+        }
     }
 
     public void send(String marker, String key1, String value1, String key2, String value2,
                                   String key3, String value3) {
-        send(marker, new Object[]{key1, value1, key2, value2, key3, value3});
+        Transport t = transport;
+        if (t != null) {
+            t.send(marker, key1, value1, key2, value2, key3, value3);
+        }
     }
 
     public void send(String marker, Object... dataArray) {
-        LinkedHashMap<String, Object> data = toMap(dataArray);
-        BytemanMetric rec = new BytemanMetric(marker, data);
-        synchronized (transportLock) {
-            transport.send(rec);
+        Transport t = transport;
+        if (t != null) {
+            t.send(marker, dataArray);
         }
     }
     
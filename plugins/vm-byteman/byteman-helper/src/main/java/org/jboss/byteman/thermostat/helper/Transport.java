@@ -38,43 +38,65 @@ package org.jboss.byteman.thermostat.helper;
 
 import java.io.Closeable;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Arrays;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.jboss.byteman.thermostat.Properties;
+import org.jboss.byteman.thermostat.helper.EventRing.Event;
 
 /**
+ * Buffers metrics sent from instrumented application threads and hands them
+ * over to a single background thread, which transfers them to the peer.
+ * <p>
+ * Sending never blocks and never takes a lock: each sending thread writes
+ * into one of a few striped, pre-allocated rings. If the ring is full the
+ * metric is dropped and counted in {@link #getLostCount()}.
+ *
  * @author akashche
  */
 public abstract class Transport implements Closeable {
     
     public static final String SEND_THRESHOLD_PROPERTY = Properties.PREFIX + "sendThreshold";
     public static final String LOSE_THRESHOLD_PROPERTY = Properties.PREFIX + "loseThreshold";
+    private static final int MAX_STRIPES = 8;
+    private static final int MAX_STRIPE_CAPACITY = 1024;
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
     // settings
     private final int sendThreshold;
-    private final int loseThreshold;
     // state
-    private AtomicBoolean sending = new AtomicBoolean(false);
-    // cache
-    private ArrayList<BytemanMetric> cache = new ArrayList<BytemanMetric>();
-    private final Object cacheLock = new Object();
-    private long lostCount = 0;
-    // executor
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThermostatThreadFactory("thermostat"));
+    private final EventRing[] stripes;
+    private final int stripeMask;
+    private final Object drainLock = new Object();
+    private volatile boolean started = false;
+    private volatile boolean closed = false;
+    private volatile Thread drainThread;
+    private final ThreadFactory threadFactory = new ThermostatThreadFactory("thermostat");
 
     /**
      * Constructor for inheritors
      *
      * @param sendThreshold min number of records to cache before sending
-     * @param loseThreshold max number of packages to cache
+     * @param loseThreshold max number of records to cache per sending
+     *                      stripe; rounded up to a power of two and capped
      */
     protected Transport(int sendThreshold, int loseThreshold) {
+        this(sendThreshold, loseThreshold, Runtime.getRuntime().availableProcessors());
+    }
+
+    // For testing purposes
+    Transport(int sendThreshold, int loseThreshold, int parallelism) {
         this.sendThreshold = sendThreshold;
-        this.loseThreshold = loseThreshold;
+        int stripeCount = ceilingPowerOfTwo(Math.max(1, Math.min(MAX_STRIPES, parallelism)));
+        int capacity = loseThreshold <= 0 ? 0 : ceilingPowerOfTwo(Math.min(MAX_STRIPE_CAPACITY, loseThreshold));
+        this.stripes = new EventRing[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new EventRing(capacity);
+        }
+        this.stripeMask = stripeCount - 1;
     }
 
     /**
@@ -87,20 +109,101 @@ public abstract class Transport implements Closeable {
     protected abstract void transferToPeer(ArrayList<BytemanMetric> records);
 
     public void send(BytemanMetric rec) {
-        synchronized (cacheLock) {
-            if (null != rec) {
-                if (cache.size() < loseThreshold) {
-                    cache.add(rec);
-                    if (cache.size() >= sendThreshold && !sending.get()) {
-                        ArrayList<BytemanMetric> records = cache;
-                        cache = new ArrayList<BytemanMetric>();
-                        TransferTask task = new TransferTask(records);
-                        executor.execute(task);
-                    }
-                } else {
-                    lostCount += 1;
-                }
+        if (null != rec) {
+            Event event = claim();
+            if (event != null) {
+                event.metric = rec;
+                publish(event);
+            }
+        }
+    }
+
+    public void send(String marker, String key, long value) {
+        Event event = claim();
+        if (event != null) {
+            event.marker = marker;
+            event.putLong(key, value);
+            publish(event);
+        }
+    }
+
+    public void send(String marker, String key, int value) {
+        Event event = claim();
+        if (event != null) {
+            event.marker = marker;
+            event.putInt(key, value);
+            publish(event);
+        }
+    }
+
+    public void send(String marker, String key, Object value) {
+        checkValue(value);
+        Event event = claim();
+        if (event != null) {
+            event.marker = marker;
+            putValue(event, key, value);
+            publish(event);
+        }
+    }
+
+    public void send(String marker, String key1, Object value1, String key2, Object value2) {
+        checkValue(value1);
+        checkValue(value2);
+        Event event = claim();
+        if (event != null) {
+            event.marker = marker;
+            putValue(event, key1, value1);
+            putValue(event, key2, value2);
+            publish(event);
+        }
+    }
+
+    public void send(String marker, String key1, Object value1, String key2, Object value2,
+                     String key3, Object value3) {
+        checkValue(value1);
+        checkValue(value2);
+        checkValue(value3);
+        Event event = claim();
+        if (event != null) {
+            event.marker = marker;
+            putValue(event, key1, value1);
+            putValue(event, key2, value2);
+            putValue(event, key3, value3);
+            publish(event);
+        }
+    }
+
+    /**
+     * Sends "key1, value1, key2, value2" pairs. Small arrays are copied into
+     * the pre-allocated record, larger ones are converted to a map on the
+     * calling thread.
+     *
+     * @param marker marker value
+     * @param dataArray input array with even number of elements
+     */
+    public void send(String marker, Object[] dataArray) {
+        int fields = dataArray.length / 2;
+        if (fields > EventRing.MAX_INLINE_FIELDS) {
+            send(new BytemanMetric(marker, Utils.toMap(dataArray)));
+            return;
+        }
+        if (0 != dataArray.length % 2) {
+            throw new IllegalArgumentException("Invalid odd elements count in array: [" + Arrays.toString(dataArray) + "]");
+        }
+        for (int i = 0; i < dataArray.length; i += 2) {
+            Object key = dataArray[i];
+            if (key != null && !(key instanceof String)) {
+                throw new IllegalArgumentException("Unsupported type for key. Expected String but was " + key.getClass());
+            }
+            checkValue(dataArray[i + 1]);
+        }
+        Event event = claim();
+        if (event != null) {
+            event.marker = marker;
+            for (int i = 0; i < dataArray.length; i += 2) {
+                putValue(event, (String) dataArray[i], dataArray[i + 1]);
             }
+            publish(event);
         }
     }
 
@@ -109,16 +212,19 @@ public abstract class Transport implements Closeable {
      */
     @Override
     public void close() {
-        synchronized (cacheLock) {
-            if (!sending.get() && cache.size() > 0) {
-                TransferTask task = new TransferTask(cache);
-                task.run();
-            }
+        closed = true;
+        Thread thread;
+        synchronized (drainLock) {
+            // Either the drain thread has been started or it never will be
+            started = true;
+            thread = drainThread;
         }
-        // Shut down executor and wait (with a timeout) for it to finish
-        executor.shutdown();
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
         try {
-            executor.awaitTermination(5000, TimeUnit.MILLISECONDS);
+            thread.join(CLOSE_TIMEOUT_MILLIS);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
@@ -130,26 +236,105 @@ public abstract class Transport implements Closeable {
      * @return number of lost records
      */
     public long getLostCount() {
-        return lostCount;
+        long lost = 0;
+        for (EventRing stripe : stripes) {
+            lost += stripe.getDroppedCount();
+        }
+        return lost;
+    }
+
+    private Event claim() {
+        EventRing stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        if (closed) {
+            stripe.drop();
+            return null;
+        }
+        if (!started) {
+            startDrainThread();
+        }
+        Event event = stripe.claim();
+        if (event != null) {
+            event.timestamp = System.currentTimeMillis();
+        }
+        return event;
+    }
+
+    private void publish(Event event) {
+        stripes[(int) Thread.currentThread().getId() & stripeMask].publish(event);
+    }
+
+    private void startDrainThread() {
+        synchronized (drainLock) {
+            if (started) {
+                return;
+            }
+            Thread thread = threadFactory.newThread(new DrainTask());
+            drainThread = thread;
+            started = true;
+            thread.start();
+        }
     }
 
-    private class TransferTask implements Runnable {
-        private final ArrayList<BytemanMetric> records;
+    private static void putValue(Event event, String key, Object value) {
+        if (value instanceof Long) {
+            event.putLong(key, (Long) value);
+        } else if (value instanceof Integer) {
+            event.putInt(key, (Integer) value);
+        } else {
+            event.putObject(key, value);
+        }
+    }
 
-        private TransferTask(ArrayList<BytemanMetric> records) {
-            this.records = records;
+    private static void checkValue(Object value) {
+        if (!(value == null || value instanceof String || value instanceof Number || value instanceof Boolean)) {
+            throw new IllegalArgumentException("Unsupported type for value. Expected String or Number but was: " + value.getClass());
         }
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+
+    private class DrainTask implements Runnable {
+
+        private ArrayList<BytemanMetric> pending = new ArrayList<BytemanMetric>();
 
         @Override
         public void run() {
-            sending.set(true);
+            while (true) {
+                // Read the flag before draining so nothing published
+                // before close() is left behind
+                boolean last = closed;
+                drain();
+                if (last) {
+                    if (pending.size() > 0) {
+                        transfer();
+                    }
+                    return;
+                }
+                if (pending.size() > 0 && pending.size() >= sendThreshold) {
+                    transfer();
+                } else {
+                    LockSupport.parkNanos(this, DRAIN_INTERVAL_NANOS);
+                }
+            }
+        }
+
+        private void drain() {
+            for (EventRing stripe : stripes) {
+                stripe.drainTo(pending);
+            }
+        }
+
+        private void transfer() {
+            ArrayList<BytemanMetric> records = pending;
+            pending = new ArrayList<BytemanMetric>();
             try {
                 transferToPeer(records);
             } catch (Exception e) {
                 System.err.println("ERROR: Thermostat helper transfer data error:");
                 e.printStackTrace();
-            } finally {
-                sending.set(false);
             }
         }
     }
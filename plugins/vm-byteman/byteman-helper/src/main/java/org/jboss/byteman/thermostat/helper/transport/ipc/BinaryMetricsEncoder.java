@@ -0,0 +1,223 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package org.jboss.byteman.thermostat.helper.transport.ipc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.byteman.thermostat.helper.BytemanMetric;
+
+/**
+ * Encodes batches of metrics in the binary format understood by the
+ * Thermostat agent. The agent's decoder lives in the vm-byteman agent
+ * plugin and must be kept in sync with this class.
+ * <p>
+ * Before sending any batch, the helper writes a hello message,
+ * {@code 'T' 'B' 'M' 'H' <max version>}, and the agent replies with the
+ * same magic followed by the version it accepts. Version {@code 0} means
+ * the agent only understands JSON batches.
+ * <p>
+ * A version 1 batch is laid out as follows, all numbers big-endian:
+ * <pre>
+ * 'T' 'B' 'M' 'B' | byte version | int record count | records...
+ * record: int length | string marker | long timestamp | short field count
+ *         (-1 if data is null) | fields...
+ * field:  string key | byte type | value
+ * string: short index into the batch dictionary, where -1 is null and
+ *         the next unused index defines a new entry followed by
+ *         short length | UTF-8 bytes
+ * </pre>
+ * Values are null, strings (int length | UTF-8 bytes), booleans (byte),
+ * ints, longs and doubles. Other numbers are sent as doubles.
+ */
+class BinaryMetricsEncoder {
+
+    static final byte[] HELLO_MAGIC = { 'T', 'B', 'M', 'H' };
+    static final byte[] BATCH_MAGIC = { 'T', 'B', 'M', 'B' };
+    static final byte JSON_VERSION = 0;
+    static final byte VERSION = 1;
+
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_STRING = 1;
+    static final byte TYPE_BOOLEAN = 2;
+    static final byte TYPE_INT = 3;
+    static final byte TYPE_LONG = 4;
+    static final byte TYPE_DOUBLE = 5;
+
+    private static final short NULL_STRING = -1;
+    private static final int MAX_DICTIONARY_SIZE = Short.MAX_VALUE;
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<String, Short> dictionary = new HashMap<String, Short>();
+    // Reused between batches, only grows
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    static ByteBuffer createHello() {
+        ByteBuffer hello = ByteBuffer.allocate(HELLO_MAGIC.length + 1);
+        hello.put(HELLO_MAGIC);
+        hello.put(VERSION);
+        hello.flip();
+        return hello;
+    }
+
+    /**
+     * @param reply the agent's reply to the hello message, may be
+     *              {@code null}
+     * @return the version accepted by the agent, or {@link #JSON_VERSION}
+     *         if the reply is not understood
+     */
+    static byte parseHelloReply(ByteBuffer reply) {
+        if (reply == null || reply.remaining() != HELLO_MAGIC.length + 1) {
+            return JSON_VERSION;
+        }
+        for (byte b : HELLO_MAGIC) {
+            if (reply.get() != b) {
+                return JSON_VERSION;
+            }
+        }
+        byte version = reply.get();
+        return version == VERSION ? VERSION : JSON_VERSION;
+    }
+
+    /**
+     * Encodes the given metrics. The returned buffer is only valid until
+     * the next call to this method.
+     */
+    ByteBuffer encode(List<BytemanMetric> records) {
+        dictionary.clear();
+        buffer.clear();
+        ensureCapacity(BATCH_MAGIC.length + 5);
+        buffer.put(BATCH_MAGIC);
+        buffer.put(VERSION);
+        buffer.putInt(records.size());
+        for (BytemanMetric record : records) {
+            ensureCapacity(4);
+            int lengthPosition = buffer.position();
+            buffer.putInt(0);
+            writeRecord(record);
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writeRecord(BytemanMetric record) {
+        writeString(record.getMarker());
+        ensureCapacity(8 + 2);
+        buffer.putLong(record.getTimestamp());
+        Map<String, Object> data = record.getData();
+        if (data == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        if (data.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many fields in record: " + data.size());
+        }
+        buffer.putShort((short) data.size());
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            writeString(entry.getKey());
+            writeValue(entry.getValue());
+        }
+    }
+
+    private void writeValue(Object value) {
+        ensureCapacity(1 + 8);
+        if (value == null) {
+            buffer.put(TYPE_NULL);
+        } else if (value instanceof String) {
+            byte[] bytes = ((String) value).getBytes(UTF_8);
+            buffer.put(TYPE_STRING);
+            ensureCapacity(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        } else if (value instanceof Boolean) {
+            buffer.put(TYPE_BOOLEAN);
+            buffer.put((byte) (((Boolean) value) ? 1 : 0));
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            buffer.put(TYPE_INT);
+            buffer.putInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            buffer.put(TYPE_LONG);
+            buffer.putLong((Long) value);
+        } else if (value instanceof Number) {
+            buffer.put(TYPE_DOUBLE);
+            buffer.putDouble(((Number) value).doubleValue());
+        } else {
+            throw new IllegalArgumentException("Unsupported type for value: " + value.getClass());
+        }
+    }
+
+    private void writeString(String value) {
+        ensureCapacity(2);
+        if (value == null) {
+            buffer.putShort(NULL_STRING);
+            return;
+        }
+        Short index = dictionary.get(value);
+        if (index != null) {
+            buffer.putShort(index);
+            return;
+        }
+        if (dictionary.size() >= MAX_DICTIONARY_SIZE) {
+            throw new IllegalArgumentException("Too many distinct strings in batch");
+        }
+        short newIndex = (short) dictionary.size();
+        dictionary.put(value, newIndex);
+        byte[] bytes = value.getBytes(UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Marker or key too long: " + bytes.length + " bytes");
+        }
+        ensureCapacity(2 + 2 + bytes.length);
+        buffer.putShort(newIndex);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer larger = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+}
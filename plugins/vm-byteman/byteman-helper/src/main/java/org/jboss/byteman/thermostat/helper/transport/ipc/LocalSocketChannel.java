@@ -44,4 +44,11 @@ public interface LocalSocketChannel {
     void close() throws IOException;
 
     void write(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Reads a reply from the agent, blocking until it has been received.
+     *
+     * @return the reply, or {@code null} if this channel cannot read
+     */
+    ByteBuffer read() throws IOException;
 }
@@ -59,4 +59,9 @@ public class LocalSocketChannelImpl implements LocalSocketChannel {
         channel.writeMessage(buffer);
     }
 
+    @Override
+    public ByteBuffer read() throws IOException {
+        return channel.readMessage();
+    }
+
 }
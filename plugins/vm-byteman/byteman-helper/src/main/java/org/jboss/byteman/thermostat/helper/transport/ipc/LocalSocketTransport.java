@@ -42,6 +42,11 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.jboss.byteman.thermostat.helper.BytemanMetric;
 import org.jboss.byteman.thermostat.helper.Transport;
@@ -54,11 +59,18 @@ import org.jboss.byteman.thermostat.helper.Utils;
  * @author akashche
  */
 class LocalSocketTransport extends Transport {
+    // How long to wait for the agent to answer the hello before sending JSON
+    static final long NEGOTIATION_TIMEOUT_MILLIS = 5000;
     private final int batchSize;
     private final int attempts;
     private final long breakIntervalMillis;
+    private final long negotiationTimeoutMillis;
     private final LocalSocketChannel channel;
     private final String socketName;
+    private final BinaryMetricsEncoder encoder = new BinaryMetricsEncoder();
+    // Only accessed by the transfer thread
+    private boolean negotiated = false;
+    private boolean binaryFormat = false;
 
     /**
      * Constructor
@@ -73,10 +85,17 @@ class LocalSocketTransport extends Transport {
      * @param channelFactory A channel factory suitable for creating a new IPC channel
      */
     LocalSocketTransport(int sendThreshold, int loseThreshold, File ipcConfig, String socketName, int batchSize, int attempts, long breakIntervalMillis, LocalSocketChannelFactory channelFactory) {
+        this(sendThreshold, loseThreshold, ipcConfig, socketName, batchSize, attempts, breakIntervalMillis,
+                NEGOTIATION_TIMEOUT_MILLIS, channelFactory);
+    }
+
+    // package-private for testing
+    LocalSocketTransport(int sendThreshold, int loseThreshold, File ipcConfig, String socketName, int batchSize, int attempts, long breakIntervalMillis, long negotiationTimeoutMillis, LocalSocketChannelFactory channelFactory) {
         super(sendThreshold, loseThreshold);
         this.batchSize = batchSize;
         this.attempts = attempts;
         this.breakIntervalMillis = breakIntervalMillis;
+        this.negotiationTimeoutMillis = negotiationTimeoutMillis;
         this.socketName = socketName;
         LocalSocketChannel ch;
         try {
@@ -133,6 +152,9 @@ class LocalSocketTransport extends Transport {
     }
 
     private void tryToWrite(ArrayList<BytemanMetric> records) throws IOException {
+        if (!negotiated) {
+            negotiateFormat();
+        }
         ArrayList<BytemanMetric> batch = new ArrayList<BytemanMetric>(batchSize);
         for (BytemanMetric re : records) {
             batch.add(re);
@@ -146,7 +168,61 @@ class LocalSocketTransport extends Transport {
         }
     }
 
+    /*
+     * Asks the agent whether it accepts binary batches. Agents which do not
+     * reply as expected, or not in time, are sent JSON.
+     */
+    private void negotiateFormat() throws IOException {
+        ByteBuffer reply;
+        synchronized (channel) {
+            channel.write(BinaryMetricsEncoder.createHello());
+            reply = readReply();
+        }
+        binaryFormat = BinaryMetricsEncoder.parseHelloReply(reply) == BinaryMetricsEncoder.VERSION;
+        negotiated = true;
+    }
+
+    /*
+     * The channel has no read timeout, so the read runs on its own daemon
+     * thread. If the agent never replies that thread stays blocked until
+     * the channel is closed.
+     */
+    private ByteBuffer readReply() throws IOException {
+        FutureTask<ByteBuffer> read = new FutureTask<ByteBuffer>(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws IOException {
+                return channel.read();
+            }
+        });
+        Thread reader = new Thread(read, "Thermostat-Byteman-Negotiation");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            return read.get(negotiationTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("WARNING: No reply from Thermostat socket: [" + socketName + "] within "
+                    + negotiationTimeoutMillis + "ms, sending JSON");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     private void writeBatch(ArrayList<BytemanMetric> records) throws IOException {
+        if (binaryFormat) {
+            ByteBuffer envelope = encoder.encode(records);
+            synchronized (channel) {
+                channel.write(envelope);
+            }
+            return;
+        }
         StringBuilder sb = new StringBuilder();
         sb.append("[");
         boolean first = true;
@@ -170,6 +246,11 @@ class LocalSocketTransport extends Transport {
         return socketName;
     }
     
+    // package-private for testing
+    boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
     // package-private for testing
     LocalSocketChannel getChannel() {
         return channel;
@@ -62,4 +62,9 @@ public class NoopLocalSocketChannel implements LocalSocketChannel {
         }
     }
 
+    @Override
+    public ByteBuffer read() throws IOException {
+        return null;
+    }
+
 }
@@ -42,13 +42,15 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 
 import org.jboss.byteman.rule.Rule;
@@ -56,32 +58,30 @@ import org.jboss.byteman.thermostat.helper.transport.stdout.TestStdOutTransport;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.ArgumentCaptor;
 
 public class ThermostatHelperTest {
 
     private static final double DELTA = 0.001;
     private ThermostatHelper helper;
-    private Transport mockTransport;
+    private CapturingTransport capturingTransport;
     
     @Before
     public void setup() {
-        mockTransport = mock(Transport.class);
-        ThermostatHelper.setTransport(mockTransport);
+        capturingTransport = new CapturingTransport();
+        ThermostatHelper.setTransport(capturingTransport);
         helper = new ThermostatHelper(mock(Rule.class));
     }
     
     @After
     public void teardown() {
         ThermostatHelper.setTransport(null);
+        capturingTransport.close();
     }
     
     @Test
     public void canSendSimpleValue() {
         helper.send("my-marker", "key1", "value1");
-        ArgumentCaptor<BytemanMetric> metricCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
-        verify(mockTransport).send(metricCaptor.capture());
-        BytemanMetric metric = metricCaptor.getValue();
+        BytemanMetric metric = getSentMetrics(1).get(0);
         assertNotNull(metric);
         assertEquals("my-marker", metric.getMarker());
         LinkedHashMap<String, Object> data = metric.getData();
@@ -92,9 +92,7 @@ public class ThermostatHelperTest {
     @Test
     public void canSendSimpleValueMultiple2() {
         helper.send("my-marker", "key1", "value1", "key2", 3000);
-        ArgumentCaptor<BytemanMetric> metricCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
-        verify(mockTransport).send(metricCaptor.capture());
-        BytemanMetric metric = metricCaptor.getValue();
+        BytemanMetric metric = getSentMetrics(1).get(0);
         assertNotNull(metric);
         assertEquals("my-marker", metric.getMarker());
         LinkedHashMap<String, Object> data = metric.getData();
@@ -107,9 +105,7 @@ public class ThermostatHelperTest {
     @Test
     public void canSendSimpleValueMultiple3() {
         helper.send("my-marker", "key1", "value1", "key2", 3000, "key3", Math.PI);
-        ArgumentCaptor<BytemanMetric> metricCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
-        verify(mockTransport).send(metricCaptor.capture());
-        BytemanMetric metric = metricCaptor.getValue();
+        BytemanMetric metric = getSentMetrics(1).get(0);
         assertNotNull(metric);
         assertEquals("my-marker", metric.getMarker());
         LinkedHashMap<String, Object> data = metric.getData();
@@ -134,9 +130,7 @@ public class ThermostatHelperTest {
             }
         }
         helper.send("test-marker", keyValuePairs);
-        ArgumentCaptor<BytemanMetric> metricCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
-        verify(mockTransport).send(metricCaptor.capture());
-        BytemanMetric metric = metricCaptor.getValue();
+        BytemanMetric metric = getSentMetrics(1).get(0);
         assertNotNull(metric);
         assertEquals("test-marker", metric.getMarker());
         LinkedHashMap<String, Object> data = metric.getData();
@@ -150,16 +144,36 @@ public class ThermostatHelperTest {
         helper.send(marker1, "key1", "value2");
         String marker2 = "spicy";
         helper.send(marker2, "testKey", 5000);
-        ArgumentCaptor<BytemanMetric> metricCaptor = ArgumentCaptor.forClass(BytemanMetric.class);
-        verify(mockTransport, times(2)).send(metricCaptor.capture());
-        BytemanMetric first = metricCaptor.getAllValues().get(0);
-        BytemanMetric second = metricCaptor.getAllValues().get(1);
+        List<BytemanMetric> metrics = getSentMetrics(2);
+        BytemanMetric first = metrics.get(0);
+        BytemanMetric second = metrics.get(1);
         assertEquals(marker2, second.getMarker());
         assertEquals(marker1, first.getMarker());
         assertEquals("value2", first.getData().get("key1"));
         assertEquals(5000, second.getData().get("testKey"));
     }
     
+    @Test
+    public void sendWithoutTransportIsIgnored() {
+        ThermostatHelper.setTransport(null);
+        helper.send("my-marker", "key1", 1L);
+        assertEquals(0, getSentMetrics(0).size());
+    }
+
+    @Test
+    public void canSendPrimitiveValues() {
+        helper.send("my-marker", "int", 3);
+        helper.send("my-marker", "long", 3L);
+        List<BytemanMetric> metrics = getSentMetrics(2);
+        assertEquals(3, metrics.get(0).getData().get("int"));
+        assertEquals(3L, metrics.get(1).getData().get("long"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sendRejectsUnsupportedValue() {
+        helper.send("my-marker", "key1", new Object());
+    }
+    
     @Test
     public void testBasicWithStdoutTransport() throws InterruptedException {
         final PrintStream oldOut = System.out;
@@ -209,6 +223,16 @@ public class ThermostatHelperTest {
         assertNull(ThermostatHelper.getTransport());
     }
 
+    /*
+     * Closes the transport, which transfers everything sent so far.
+     */
+    private List<BytemanMetric> getSentMetrics(int expectedCount) {
+        capturingTransport.close();
+        assertEquals(expectedCount, capturingTransport.records.size());
+        assertEquals(0, capturingTransport.getLostCount());
+        return capturingTransport.records;
+    }
+
     private Object getValue(boolean stringValue, int i) {
         if (stringValue) {
             return "value" + i;
@@ -216,4 +240,18 @@ public class ThermostatHelperTest {
             return -i;
         }
     }
-}
\ No newline at end of file
+
+    private static class CapturingTransport extends Transport {
+
+        private final List<BytemanMetric> records = new CopyOnWriteArrayList<>();
+
+        CapturingTransport() {
+            super(0, Integer.MAX_VALUE);
+        }
+
+        @Override
+        protected void transferToPeer(ArrayList<BytemanMetric> records) {
+            this.records.addAll(records);
+        }
+    }
+}
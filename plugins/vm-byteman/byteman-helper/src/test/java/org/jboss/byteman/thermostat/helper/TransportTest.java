@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package org.jboss.byteman.thermostat.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TransportTest {
+
+    @Test
+    public void sendsInlineAndLargeEvents() {
+        Object[] large = new Object[20];
+        for (int i = 0; i < large.length; i += 2) {
+            large[i] = "key" + i;
+            large[i + 1] = i;
+        }
+        CapturingTransport transport = new CapturingTransport(0, 16, 1);
+        transport.send("inline", new Object[] { null, "value", "key", 2L });
+        transport.send("large", large);
+        transport.send("three", "a", "x", "b", 1, "c", true);
+        transport.close();
+
+        assertEquals(3, transport.records.size());
+        BytemanMetric inline = transport.records.get(0);
+        assertEquals("inline", inline.getMarker());
+        assertEquals("value", inline.getData().get(""));
+        assertEquals(2L, inline.getData().get("key"));
+        assertEquals(10, transport.records.get(1).getData().size());
+        assertEquals(18, transport.records.get(1).getData().get("key18"));
+        BytemanMetric three = transport.records.get(2);
+        assertEquals("x", three.getData().get("a"));
+        assertEquals(1, three.getData().get("b"));
+        assertEquals(true, three.getData().get("c"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOddArrayBeforeClaimingSlot() {
+        CapturingTransport transport = new CapturingTransport(0, 16, 1);
+        try {
+            transport.send("marker", new Object[] { "key" });
+        } finally {
+            transport.close();
+            assertEquals(0, transport.records.size());
+        }
+    }
+
+    @Test
+    public void dropsAndCountsEventsWhenFull() throws InterruptedException {
+        final CountDownLatch transferring = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        CapturingTransport transport = new CapturingTransport(0, 4, 1) {
+            @Override
+            protected void transferToPeer(ArrayList<BytemanMetric> records) {
+                transferring.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.transferToPeer(records);
+            }
+        };
+        transport.send("first", "key", 1L);
+        assertTrue(transferring.await(5, TimeUnit.SECONDS));
+        // The drain thread is blocked, so only the ring capacity is kept
+        for (int i = 0; i < 10; i++) {
+            transport.send("blocked", "key", i);
+        }
+        assertEquals(6, transport.getLostCount());
+        release.countDown();
+        transport.close();
+        assertEquals(5, transport.records.size());
+    }
+
+    @Test
+    public void keepsEventsFromManyThreads() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 10000;
+        final CapturingTransport transport = new CapturingTransport(0, 1024, threads);
+        Thread[] senders = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            senders[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        transport.send("marker", "key", j);
+                    }
+                }
+            });
+            senders[i].start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        transport.close();
+        assertEquals(threads * perThread, transport.records.size() + transport.getLostCount());
+    }
+
+    @Test
+    public void zeroLoseThresholdDropsEverything() {
+        CapturingTransport transport = new CapturingTransport(0, 0, 1);
+        transport.send("marker", "key", 1L);
+        transport.close();
+        assertEquals(1, transport.getLostCount());
+        assertEquals(0, transport.records.size());
+    }
+
+    @Test
+    public void sendAfterCloseIsLost() {
+        CapturingTransport transport = new CapturingTransport(0, 16, 1);
+        transport.close();
+        transport.send("marker", "key", 1L);
+        assertEquals(1, transport.getLostCount());
+    }
+
+    private static class CapturingTransport extends Transport {
+
+        final List<BytemanMetric> records = new CopyOnWriteArrayList<>();
+
+        CapturingTransport(int sendThreshold, int loseThreshold, int parallelism) {
+            super(sendThreshold, loseThreshold, parallelism);
+        }
+
+        @Override
+        protected void transferToPeer(ArrayList<BytemanMetric> records) {
+            this.records.addAll(records);
+        }
+    }
+}
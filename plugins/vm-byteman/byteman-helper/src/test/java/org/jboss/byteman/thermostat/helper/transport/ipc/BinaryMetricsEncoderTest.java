@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package org.jboss.byteman.thermostat.helper.transport.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+import org.jboss.byteman.thermostat.helper.BytemanMetric;
+import org.jboss.byteman.thermostat.helper.Utils;
+import org.junit.Test;
+
+public class BinaryMetricsEncoderTest {
+
+    @Test
+    public void encodesBatchWithInternedStrings() {
+        BinaryMetricsEncoder encoder = new BinaryMetricsEncoder();
+        BytemanMetric first = new BytemanMetric("m", Utils.toMap(new Object[] { "k", "v" }), 1);
+        BytemanMetric second = new BytemanMetric("m", Utils.toMap(new Object[] { "k", 7L }), 2);
+        ByteBuffer buf = encoder.encode(Arrays.asList(first, second));
+
+        assertMagic(buf, BinaryMetricsEncoder.BATCH_MAGIC);
+        assertEquals(BinaryMetricsEncoder.VERSION, buf.get());
+        assertEquals(2, buf.getInt());
+
+        int length = buf.getInt();
+        int start = buf.position();
+        assertEquals(0, buf.getShort()); // new marker
+        assertEquals("m", readUtf8(buf, buf.getShort()));
+        assertEquals(1, buf.getLong());
+        assertEquals(1, buf.getShort());
+        assertEquals(1, buf.getShort()); // new key
+        assertEquals("k", readUtf8(buf, buf.getShort()));
+        assertEquals(BinaryMetricsEncoder.TYPE_STRING, buf.get());
+        assertEquals("v", readUtf8(buf, buf.getInt()));
+        assertEquals(length, buf.position() - start);
+
+        buf.getInt();
+        assertEquals(0, buf.getShort()); // interned marker
+        assertEquals(2, buf.getLong());
+        assertEquals(1, buf.getShort());
+        assertEquals(1, buf.getShort()); // interned key
+        assertEquals(BinaryMetricsEncoder.TYPE_LONG, buf.get());
+        assertEquals(7L, buf.getLong());
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void encodesAllValueTypes() {
+        LinkedHashMap<String, Object> data = Utils.toMap(new Object[] {
+                "null", null, "bool", true, "int", 3, "short", (short) 4, "double", 1.5, "float", 2.5f });
+        ByteBuffer buf = new BinaryMetricsEncoder().encode(Arrays.asList(new BytemanMetric(null, data, 0)));
+        buf.position(BinaryMetricsEncoder.BATCH_MAGIC.length + 1 + 4 + 4);
+        assertEquals(-1, buf.getShort()); // null marker
+        buf.getLong();
+        assertEquals(6, buf.getShort());
+        skipNewString(buf);
+        assertEquals(BinaryMetricsEncoder.TYPE_NULL, buf.get());
+        skipNewString(buf);
+        assertEquals(BinaryMetricsEncoder.TYPE_BOOLEAN, buf.get());
+        assertEquals(1, buf.get());
+        skipNewString(buf);
+        assertEquals(BinaryMetricsEncoder.TYPE_INT, buf.get());
+        assertEquals(3, buf.getInt());
+        skipNewString(buf);
+        assertEquals(BinaryMetricsEncoder.TYPE_INT, buf.get());
+        assertEquals(4, buf.getInt());
+        skipNewString(buf);
+        assertEquals(BinaryMetricsEncoder.TYPE_DOUBLE, buf.get());
+        assertEquals(1.5, buf.getDouble(), 0);
+        skipNewString(buf);
+        assertEquals(BinaryMetricsEncoder.TYPE_DOUBLE, buf.get());
+        assertEquals(2.5, buf.getDouble(), 0);
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void growsBufferForLargeValues() {
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'x');
+        String large = new String(chars);
+        BinaryMetricsEncoder encoder = new BinaryMetricsEncoder();
+        ByteBuffer buf = encoder.encode(Arrays.asList(new BytemanMetric("m", Utils.toMap(new Object[] { "k", large }), 0)));
+        assertEquals(BinaryMetricsEncoder.BATCH_MAGIC.length + 1 + 4 + 4
+                + 2 + 2 + 1 + 8 + 2 + 2 + 2 + 1 + 1 + 4 + large.length(), buf.remaining());
+        // Buffer is reused for the next batch
+        buf = encoder.encode(Arrays.<BytemanMetric>asList());
+        assertEquals(BinaryMetricsEncoder.BATCH_MAGIC.length + 1 + 4, buf.remaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRecordWithTooManyFields() {
+        LinkedHashMap<String, Object> data = new LinkedHashMap<String, Object>();
+        for (int i = 0; i <= Short.MAX_VALUE; i++) {
+            data.put("k" + i, i);
+        }
+        new BinaryMetricsEncoder().encode(Arrays.asList(new BytemanMetric("m", data, 0)));
+    }
+
+    @Test
+    public void parsesHelloReply() {
+        assertEquals(BinaryMetricsEncoder.VERSION,
+                BinaryMetricsEncoder.parseHelloReply(ByteBuffer.wrap(new byte[] { 'T', 'B', 'M', 'H', 1 })));
+        assertEquals(BinaryMetricsEncoder.JSON_VERSION,
+                BinaryMetricsEncoder.parseHelloReply(ByteBuffer.wrap(new byte[] { 'T', 'B', 'M', 'H', 0 })));
+        assertEquals(BinaryMetricsEncoder.JSON_VERSION,
+                BinaryMetricsEncoder.parseHelloReply(ByteBuffer.wrap(new byte[] { 'x', 'B', 'M', 'H', 1 })));
+        assertEquals(BinaryMetricsEncoder.JSON_VERSION, BinaryMetricsEncoder.parseHelloReply(null));
+    }
+
+    private static void assertMagic(ByteBuffer buf, byte[] magic) {
+        for (byte b : magic) {
+            assertEquals(b, buf.get());
+        }
+    }
+
+    private static void skipNewString(ByteBuffer buf) {
+        buf.getShort();
+        short length = buf.getShort();
+        buf.position(buf.position() + length);
+    }
+
+    private static String readUtf8(ByteBuffer buf, int length) {
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, Charset.forName("UTF-8"));
+    }
+}
@@ -37,10 +37,12 @@
 package org.jboss.byteman.thermostat.helper.transport.ipc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -50,6 +52,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.jboss.byteman.thermostat.helper.BytemanMetric;
 import org.jboss.byteman.thermostat.helper.Transport;
@@ -60,6 +63,8 @@ import org.jboss.byteman.thermostat.helper.transport.ipc.LocalSocketTransport;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class LocalSocketTransportTest {
     
@@ -111,8 +116,10 @@ public class LocalSocketTransportTest {
             transport.send(m2);
             transport.send(m3);
             latch.await(); // wait for async transfer
-            verify(socketChannel).write(byteBuffer.capture());
+            // hello message, then the batch as JSON since the agent did not reply
+            verify(socketChannel, times(2)).write(byteBuffer.capture());
             assertEquals("expected transferToPeer() to be called once", 1, transport.callCount);
+            assertFalse(transport.isBinaryFormat());
         } catch (InterruptedException e) {
             if (transport != null) {
                 transport.close();
@@ -125,7 +132,9 @@ public class LocalSocketTransportTest {
             throw e;
         }
         transport.close();
-        String actualJson = getFromByteBuffer(byteBuffer.getValue());
+        ByteBuffer hello = byteBuffer.getAllValues().get(0);
+        assertEquals("TBMH", new String(hello.array(), 0, 4, Charset.forName("UTF-8")));
+        String actualJson = getFromByteBuffer(byteBuffer.getAllValues().get(1));
         String expectedJson = "[" +
                                     "{" +
                                         "\"marker\":\"marker1\"," +
@@ -152,6 +161,56 @@ public class LocalSocketTransportTest {
         assertEquals(expectedJson, actualJson);
     }
     
+    @Test
+    public void sendWritesBinaryBatchesIfAgentAccepts() throws InterruptedException, IOException {
+        ByteBuffer reply = ByteBuffer.wrap(new byte[] { 'T', 'B', 'M', 'H', 1 });
+        when(socketChannel.read()).thenReturn(reply);
+        ArgumentCaptor<ByteBuffer> byteBuffer = ArgumentCaptor.forClass(ByteBuffer.class);
+        CountDownLatch latch = new CountDownLatch(1);
+        SynchronizableLocalSocketTransport transport = new SynchronizableLocalSocketTransport(2, Integer.MAX_VALUE, "foo-name", 10, 1, 100, factory, latch);
+        try {
+            transport.send(new BytemanMetric("marker", Utils.toMap(new Object[] { "key", 1 }), 42));
+            transport.send(new BytemanMetric("marker", Utils.toMap(new Object[] { "key", 2 }), 43));
+            latch.await();
+            verify(socketChannel, times(2)).write(byteBuffer.capture());
+            assertTrue(transport.isBinaryFormat());
+        } finally {
+            transport.close();
+        }
+        ByteBuffer batch = byteBuffer.getAllValues().get(1);
+        assertEquals('T', batch.get());
+        assertEquals('B', batch.get());
+        assertEquals('M', batch.get());
+        assertEquals('B', batch.get());
+        assertEquals(1, batch.get());
+        assertEquals(2, batch.getInt());
+    }
+
+    @Test
+    public void sendFallsBackToJsonIfAgentNeverReplies() throws InterruptedException, IOException {
+        final CountDownLatch neverReplies = new CountDownLatch(1);
+        when(socketChannel.read()).then(new Answer<ByteBuffer>() {
+            @Override
+            public ByteBuffer answer(InvocationOnMock invocation) throws Throwable {
+                neverReplies.await();
+                return null;
+            }
+        });
+        ArgumentCaptor<ByteBuffer> byteBuffer = ArgumentCaptor.forClass(ByteBuffer.class);
+        CountDownLatch latch = new CountDownLatch(1);
+        SynchronizableLocalSocketTransport transport = new SynchronizableLocalSocketTransport(1, Integer.MAX_VALUE, "foo-name", 10, 1, 100, 100, factory, latch);
+        try {
+            transport.send(new BytemanMetric("marker", Utils.toMap(new Object[] { "key", 1 }), 42));
+            assertTrue("expected transfer despite the missing reply", latch.await(10, TimeUnit.SECONDS));
+            verify(socketChannel, times(2)).write(byteBuffer.capture());
+            assertFalse(transport.isBinaryFormat());
+        } finally {
+            neverReplies.countDown();
+            transport.close();
+        }
+        assertEquals('[', byteBuffer.getAllValues().get(1).get(0));
+    }
+
     private String getFromByteBuffer(ByteBuffer byteBuffer) {
         byte[] bytes = new byte[byteBuffer.remaining()];
         byteBuffer.get(bytes);
@@ -177,8 +236,21 @@ public class LocalSocketTransportTest {
                                           long breakIntervalMillis,
                                           LocalSocketChannelFactory channelFactory,
                                           CountDownLatch sentLatch) {
+            this(sendThreshold, loseThreshold, socketName, batchSize, attempts, breakIntervalMillis,
+                    LocalSocketTransport.NEGOTIATION_TIMEOUT_MILLIS, channelFactory, sentLatch);
+        }
+
+        SynchronizableLocalSocketTransport(int sendThreshold,
+                                          int loseThreshold,
+                                          String socketName,
+                                          int batchSize,
+                                          int attempts,
+                                          long breakIntervalMillis,
+                                          long negotiationTimeoutMillis,
+                                          LocalSocketChannelFactory channelFactory,
+                                          CountDownLatch sentLatch) {
             super(sendThreshold, loseThreshold, mock(File.class), socketName, batchSize, attempts,
-                    breakIntervalMillis, channelFactory);
+                    breakIntervalMillis, negotiationTimeoutMillis, channelFactory);
             this.sentLatch = sentLatch;
         }
         
@@ -38,20 +38,22 @@ package com.redhat.thermostat.vm.cpu.agent.internal;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.redhat.thermostat.agent.VmStatusListenerRegistrar;
 import com.redhat.thermostat.common.portability.linux.ProcDataSource;
 import com.redhat.thermostat.common.portability.SysConf;
-import com.redhat.thermostat.backend.VmPollingAction;
-import com.redhat.thermostat.backend.VmPollingBackend;
 import com.redhat.thermostat.common.Clock;
 import com.redhat.thermostat.common.SystemClock;
 import com.redhat.thermostat.common.Version;
 import com.redhat.thermostat.common.portability.PortableHostFactory;
 import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.jvm.overview.agent.AdaptiveVmPollingAction;
+import com.redhat.thermostat.jvm.overview.agent.VmPollingBackend;
+import com.redhat.thermostat.jvm.overview.agent.VmStatusListenerRegistrar;
 import com.redhat.thermostat.shared.config.OS;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.vm.cpu.common.Constants;
@@ -75,10 +77,14 @@ public class VmCpuBackend extends VmPollingBackend {
         registerAction(action);
     }
     
-    private static class VmCpuBackendAction implements VmPollingAction {
+    private static class VmCpuBackendAction implements AdaptiveVmPollingAction {
 
         private VmCpuStatBuilder builder;
         private VmCpuStatDAO dao;
+        /** pid -> cpu load of the last sample */
+        private final Map<Integer, Double> lastLoads = new ConcurrentHashMap<Integer, Double>();
+        /** pids whose last sample differs from the one before */
+        private final Map<Integer, Boolean> changed = new ConcurrentHashMap<Integer, Boolean>();
 
         private VmCpuBackendAction(final WriterID id, VmCpuStatDAO dao) {
             Clock clock = new SystemClock();
@@ -92,14 +98,30 @@ public class VmCpuBackend extends VmPollingBackend {
 
         @Override
         public void run(String vmId, int pid) {
+            boolean sampleChanged = true;
             if (builder.knowsAbout(pid)) {
                 VmCpuStat dataBuilt = builder.build(vmId, pid);
                 if (dataBuilt != null) {
+                    Double lastLoad = lastLoads.put(pid, dataBuilt.getCpuLoad());
+                    sampleChanged = lastLoad == null || lastLoad != dataBuilt.getCpuLoad();
                     dao.putVmCpuStat(dataBuilt);
                 }
             } else {
                 builder.learnAbout(pid);
             }
+            changed.put(pid, sampleChanged);
+        }
+
+        @Override
+        public boolean hasChanged(String vmId, int pid) {
+            Boolean sampleChanged = changed.get(pid);
+            return sampleChanged == null || sampleChanged;
+        }
+
+        private void forgetAbout(int pid) {
+            builder.forgetAbout(pid);
+            lastLoads.remove(pid);
+            changed.remove(pid);
         }
 
         private int getCpuCount(ProcDataSource dataSource) {
@@ -132,7 +154,7 @@ public class VmCpuBackend extends VmPollingBackend {
     public void vmStatusChanged(Status newStatus, String vmId, int pid) {
         super.vmStatusChanged(newStatus, vmId, pid);
         if (Status.VM_STOPPED.equals(newStatus)) {
-            action.builder.forgetAbout(pid);
+            action.forgetAbout(pid);
         }
     }
 
@@ -36,8 +36,8 @@
 
 package com.redhat.thermostat.vm.cpu.agent.internal;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,14 +46,16 @@ import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.vm.cpu.common.model.VmCpuStat;
 
+/**
+ * Computes the cpu load of processes from the ticks they used since the
+ * previous sample. Processes may be sampled concurrently: only updating the
+ * previous sample of a single process is synchronized, not reading /proc.
+ */
 public class VmCpuStatBuilder {
 
     private static final Logger logger = LoggingUtils.getLogger(VmCpuStatBuilder.class);
 
-    // pid -> ticks
-    private final Map<Integer, Long> lastProcessTicks = new HashMap<Integer, Long>();
-    // pid -> last time the ticks were updated
-    private final Map<Integer, Long> lastProcessTickTime = new HashMap<Integer, Long>();
+    private final ConcurrentMap<Integer, TickSample> lastSamples = new ConcurrentHashMap<Integer, TickSample>();
 
     private final Clock clock;
     private final int cpuCount;
@@ -76,8 +78,9 @@ public class VmCpuStatBuilder {
      * @return an object representing the cpu usage of the process, or null if
      * the information can not be found.
      */
-    public synchronized VmCpuStat build(String vmId, Integer pid) {
-        if (!lastProcessTicks.containsKey(pid) || !lastProcessTickTime.containsKey(pid)) {
+    public VmCpuStat build(String vmId, Integer pid) {
+        TickSample lastSample = lastSamples.get(pid);
+        if (lastSample == null) {
             throw new IllegalArgumentException("unknown pid");
         }
 
@@ -90,8 +93,14 @@ public class VmCpuStatBuilder {
         long programTicks = (info.getKernelTime() + info.getUserTime());
         double cpuLoad = 0.0;
 
-        double timeDelta = (time - lastProcessTickTime.get(pid)) * 1E-9;
-        long programTicksDelta = programTicks - lastProcessTicks.get(pid);
+        double timeDelta;
+        long programTicksDelta;
+        synchronized (lastSample) {
+            timeDelta = (time - lastSample.time) * 1E-9;
+            programTicksDelta = programTicks - lastSample.ticks;
+            lastSample.time = time;
+            lastSample.ticks = programTicks;
+        }
         // 100 as in 100 percent.
         cpuLoad = programTicksDelta * (100.0 / timeDelta / ticksPerSecond / cpuCount);
 
@@ -105,18 +114,15 @@ public class VmCpuStatBuilder {
             logger.log(Level.WARNING, "  (" + pid + ") cpuCount: " + cpuCount);
         }
 
-        lastProcessTicks.put(pid, programTicks);
-        lastProcessTickTime.put(pid, time);
-        
         String wId = context.getWriterID();
         return new VmCpuStat(wId, miliTime, vmId, cpuLoad);
     }
 
-    public synchronized boolean knowsAbout(int pid) {
-        return (lastProcessTickTime.containsKey(pid) && lastProcessTicks.containsKey(pid));
+    public boolean knowsAbout(int pid) {
+        return lastSamples.containsKey(pid);
     }
 
-    public synchronized void learnAbout(int pid) {
+    public void learnAbout(int pid) {
         long time = clock.getMonotonicTimeNanos();
         ProcessStatusInfo info = statusBuilder.build(pid);
         if (info == null) {
@@ -124,13 +130,22 @@ public class VmCpuStatBuilder {
             return;
         }
 
-        lastProcessTickTime.put(pid, time);
-        lastProcessTicks.put(pid, info.getUserTime()+ info.getKernelTime());
+        lastSamples.put(pid, new TickSample(info.getUserTime()+ info.getKernelTime(), time));
+    }
+
+    public void forgetAbout(int pid) {
+        lastSamples.remove(pid);
     }
 
-    public synchronized void forgetAbout(int pid) {
-        lastProcessTicks.remove(pid);
-        lastProcessTickTime.remove(pid);
+    /** The ticks a process had used at a point in time. Guarded by itself. */
+    private static class TickSample {
+        private long ticks;
+        private long time;
+
+        TickSample(long ticks, long time) {
+            this.ticks = ticks;
+            this.time = time;
+        }
     }
 
 }
@@ -44,6 +44,7 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -57,9 +58,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
-import com.redhat.thermostat.agent.VmStatusListener.Status;
-import com.redhat.thermostat.agent.VmStatusListenerRegistrar;
 import com.redhat.thermostat.common.Version;
+import com.redhat.thermostat.jvm.overview.agent.VmStatusListener.Status;
+import com.redhat.thermostat.jvm.overview.agent.VmStatusListenerRegistrar;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.vm.cpu.common.VmCpuStatDAO;
 import com.redhat.thermostat.vm.cpu.common.model.VmCpuStat;
@@ -171,5 +172,54 @@ public class VmCpuBackendTest {
 
         verifyNoMoreInteractions(vmCpuStatDao);
     }
+
+    @Test
+    public void testUnchangedCpuLoadIsSampledLessOften() {
+        VmCpuStatBuilder builder = mock(VmCpuStatBuilder.class);
+        VmCpuStat stat = mock(VmCpuStat.class);
+        when(stat.getCpuLoad()).thenReturn(0.5);
+        when(builder.knowsAbout(0)).thenReturn(true);
+        when(builder.build("vm1", 0)).thenReturn(stat);
+        backend.setVmCpuStatBuilder(builder);
+        backend.setMaxAdaptivePollingInterval(4 * backend.getPollingInterval());
+
+        backend.activate();
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).scheduleAtFixedRate(captor.capture(), any(Long.class), any(Long.class), any(TimeUnit.class));
+        backend.vmStatusChanged(Status.VM_STARTED, "vm1", 0);
+
+        Runnable runnable = captor.getValue();
+        // runs on ticks 0, 1, 3 and 7
+        for (int i = 0; i < 8; i++) {
+            runnable.run();
+        }
+
+        verify(builder, times(4)).build("vm1", 0);
+    }
+
+    @Test
+    public void testChangedCpuLoadIsSampledEveryTime() {
+        VmCpuStatBuilder builder = mock(VmCpuStatBuilder.class);
+        VmCpuStat stat1 = mock(VmCpuStat.class);
+        when(stat1.getCpuLoad()).thenReturn(0.5);
+        VmCpuStat stat2 = mock(VmCpuStat.class);
+        when(stat2.getCpuLoad()).thenReturn(0.7);
+        when(builder.knowsAbout(0)).thenReturn(true);
+        when(builder.build("vm1", 0)).thenReturn(stat1, stat2, stat1, stat2, stat1, stat2, stat1, stat2);
+        backend.setVmCpuStatBuilder(builder);
+        backend.setMaxAdaptivePollingInterval(4 * backend.getPollingInterval());
+
+        backend.activate();
+        ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).scheduleAtFixedRate(captor.capture(), any(Long.class), any(Long.class), any(TimeUnit.class));
+        backend.vmStatusChanged(Status.VM_STARTED, "vm1", 0);
+
+        Runnable runnable = captor.getValue();
+        for (int i = 0; i < 8; i++) {
+            runnable.run();
+        }
+
+        verify(builder, times(8)).build("vm1", 0);
+    }
 }
 
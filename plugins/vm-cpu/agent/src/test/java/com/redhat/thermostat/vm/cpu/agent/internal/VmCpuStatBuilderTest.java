@@ -44,8 +44,13 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.redhat.thermostat.common.Clock;
 import com.redhat.thermostat.common.internal.test.Bug;
@@ -154,6 +159,53 @@ public class VmCpuStatBuilderTest {
         assertEquals(CPU_LOAD_PERCENT, stat.getCpuLoad(), 0.0001);
     }
 
+    @Test
+    public void testProcessesAreReadConcurrently() throws InterruptedException {
+        Clock clock = mock(Clock.class);
+        when(clock.getMonotonicTimeNanos()).thenReturn(0l).thenReturn(0l).thenReturn(1000000000l);
+        final CountDownLatch learned = new CountDownLatch(2);
+        final CountDownLatch reading = new CountDownLatch(2);
+        ProcessStatusInfoBuilder statusBuilder = mock(ProcessStatusInfoBuilder.class);
+        when(statusBuilder.build(any(Integer.class))).thenAnswer(new Answer<ProcessStatusInfo>() {
+            @Override
+            public ProcessStatusInfo answer(InvocationOnMock invocation) throws Throwable {
+                int pid = (Integer) invocation.getArguments()[0];
+                if (learned.getCount() > 0) {
+                    learned.countDown();
+                    return new ProcessStatusInfo(pid, 0, 0);
+                }
+                // Each read only finishes once both are in progress
+                reading.countDown();
+                if (!reading.await(10, TimeUnit.SECONDS)) {
+                    return null;
+                }
+                return new ProcessStatusInfo(pid, 50, 50);
+            }
+        });
+        final VmCpuStatBuilder builder = new VmCpuStatBuilder(clock, 1, 100, statusBuilder, writerID);
+        builder.learnAbout(1);
+        builder.learnAbout(2);
+
+        final VmCpuStat[] stats = new VmCpuStat[2];
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    stats[index] = builder.build("vm" + index, index + 1);
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNotNull(stats[0]);
+        assertNotNull(stats[1]);
+    }
+
     @Bug(id="1051",
             summary="Avoid exceptions when reading /proc/ for dead processes",
             url="http://icedtea.classpath.org/bugzilla/show_bug.cgi?id=1051")
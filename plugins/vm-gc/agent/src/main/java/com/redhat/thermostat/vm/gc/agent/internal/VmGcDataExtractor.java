@@ -36,6 +36,8 @@
 
 package com.redhat.thermostat.vm.gc.agent.internal;
 
+import com.redhat.thermostat.jvm.overview.agent.VmCounter;
+import com.redhat.thermostat.jvm.overview.agent.VmCounterTable;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 
@@ -48,42 +50,52 @@ import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
  * provides is merely an abstraction over this (possibly always up-to-date)
  * ByteBuffer. So the data this class extracts is as current as possible, and
  * does not correspond to when the jvmstat update events fired.
+ * <p>
+ * The counters are looked up once and read through cached handles after
+ * that, so an instance should be kept for as long as the {@link VmUpdate}.
  */
 public class VmGcDataExtractor {
 
-    /*
-     * Note, there may be a performance issue to consider here. We have a lot of
-     * string constants. When we start adding some of the more heavyweight
-     * features, and running into CPU issues this may need to be reconsidered in
-     * order to avoid the String pool overhead. See also:
-     * http://docs.oracle.com/javase/6/docs/api/java/lang/String.html#intern()
-     */
-
-    private final VmUpdate update;
+    private final VmCounterTable totalCollectors;
+    private final VmCounterTable collectorNames;
+    private final VmCounterTable collectorTimes;
+    private final VmCounterTable collectorInvocations;
+    private final VmCounterTable frequency;
 
     public VmGcDataExtractor(VmUpdate update) {
-        this.update = update;
+        totalCollectors = new VmCounterTable(update, "sun.gc.policy.collectors");
+        collectorNames = new VmCounterTable(update, "sun.gc.collector.", ".name");
+        collectorTimes = new VmCounterTable(update, "sun.gc.collector.", ".time");
+        collectorInvocations = new VmCounterTable(update, "sun.gc.collector.", ".invocations");
+        frequency = new VmCounterTable(update, "sun.os.hrt.frequency");
     }
 
     public Long getTotalCollectors() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.policy.collectors");
+        return longValue(totalCollectors.get());
     }
 
     public String getCollectorName(long collector) throws VmUpdateException {
-        return update.getPerformanceCounterString("sun.gc.collector." + collector + ".name");
+        return stringValue(collectorNames.get(collector));
     }
 
     public Long getCollectorTime(long collector) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.collector." + collector + ".time");
+        return longValue(collectorTimes.get(collector));
     }
 
     public Long getCollectorInvocations(long collector) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.collector." + collector + ".invocations");
+        return longValue(collectorInvocations.get(collector));
     }
 
     public Long getFrequency() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.os.hrt.frequency");
+        return longValue(frequency.get());
     }
 
-}
+    private static Long longValue(VmCounter counter) {
+        return counter == null ? null : counter.longValue();
+    }
 
+    private static String stringValue(VmCounter counter) {
+        return counter == null ? null : counter.stringValue();
+    }
+
+}
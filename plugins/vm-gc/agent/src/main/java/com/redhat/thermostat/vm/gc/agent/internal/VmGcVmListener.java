@@ -55,6 +55,7 @@ public class VmGcVmListener implements VmUpdateListener {
     private final String writerId;
     
     private boolean error;
+    private VmGcDataExtractor extractor;
 
     public VmGcVmListener(String writerId, VmGcStatDAO vmGcStatDao, String vmId) {
         gcDAO = vmGcStatDao;
@@ -64,7 +65,10 @@ public class VmGcVmListener implements VmUpdateListener {
 
     @Override
     public void countersUpdated(VmUpdate update) {
-        VmGcDataExtractor extractor = new VmGcDataExtractor(update);
+        if (extractor == null) {
+            // keeps its counter handles across updates
+            extractor = new VmGcDataExtractor(update);
+        }
         recordGcStat(extractor);
     }
 
@@ -36,13 +36,12 @@
 
 package com.redhat.thermostat.vm.gc.agent.internal.models;
 
-import java.io.IOException;
 import java.net.URI;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.gson.TypeAdapter;
 import com.redhat.thermostat.common.plugin.SystemID;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -50,7 +49,6 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 
 import com.redhat.thermostat.agent.http.HttpRequestService;
-import com.redhat.thermostat.agent.http.RequestFailedException;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
 import com.redhat.thermostat.common.utils.LoggingUtils;
@@ -111,12 +109,7 @@ public class VmGcStatDAOImpl implements VmGcStatDAO {
 
     @Override
     public void putVmGcStat(final VmGcStat stat) {
-        try {
-            String json = jsonHelper.toJson(Arrays.asList(stat));
-            httpRequestService.sendHttpRequest(json, getPostURI(stat.getJvmId()), HttpRequestService.Method.POST);
-        } catch (RequestFailedException | IOException e) {
-            logger.log(Level.WARNING, "Failed to send VmGcStat information to web gateway", e);
-        }
+        httpRequestService.queueHttpPost(PLUGIN_ID, jsonHelper.getTypeAdapter(), stat, getPostURI(stat.getJvmId()));
     }
 
     // For Testing purposes
@@ -128,8 +121,8 @@ public class VmGcStatDAOImpl implements VmGcStatDAO {
             this.adapter = adapter;
         }
 
-        public String toJson(List<VmGcStat> list) throws IOException {
-            return adapter.toJson(list);
+        TypeAdapter<List<VmGcStat>> getTypeAdapter() {
+            return adapter;
         }
 
     }
@@ -37,10 +37,14 @@
 package com.redhat.thermostat.vm.gc.agent.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.redhat.thermostat.jvm.overview.agent.VmCounter;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import org.junit.Before;
@@ -62,7 +66,8 @@ public class VmGcDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.policy.collectors";
         final Long MONITOR_VALUE = 9l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(MONITOR_VALUE);
+        VmCounter counter = longCounter(MONITOR_VALUE);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
         
         Long returned = extractor.getTotalCollectors();
         assertEquals(MONITOR_VALUE, returned);
@@ -73,7 +78,8 @@ public class VmGcDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.collector.0.name";
         final String COLLECTOR_NAME = "SomeMemoryCollector";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(COLLECTOR_NAME);
+        VmCounter counter = stringCounter(COLLECTOR_NAME);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         String returned = extractor.getCollectorName(0);
         assertEquals(COLLECTOR_NAME, returned);
@@ -84,7 +90,8 @@ public class VmGcDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.collector.0.time";
         final Long COLLECTOR_TIME = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(COLLECTOR_TIME);
+        VmCounter counter = longCounter(COLLECTOR_TIME);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         Long returned = extractor.getCollectorTime(0);
         assertEquals(COLLECTOR_TIME, returned);
@@ -95,11 +102,43 @@ public class VmGcDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.collector.0.invocations";
         final Long COLLECTOR_INVOCATIONS = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(COLLECTOR_INVOCATIONS);
+        VmCounter counter = longCounter(COLLECTOR_INVOCATIONS);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         Long returned = extractor.getCollectorInvocations(0);
         assertEquals(COLLECTOR_INVOCATIONS, returned);
     }
 
-}
+    @Test
+    public void testCountersAreLookedUpOnce() throws VmUpdateException {
+        final String MONITOR_NAME = "sun.gc.collector.1.time";
+        VmCounter counter = mock(VmCounter.class);
+        when(counter.longValue()).thenReturn(1l).thenReturn(2l);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
+
+        assertEquals((Long) 1l, extractor.getCollectorTime(1));
+        assertEquals((Long) 2l, extractor.getCollectorTime(1));
+        verify(update, times(1)).getPerformanceCounter(MONITOR_NAME);
+    }
 
+    @Test
+    public void testMissingCountersAreLookedUpOnce() throws VmUpdateException {
+        final String MONITOR_NAME = "sun.gc.collector.2.invocations";
+
+        assertNull(extractor.getCollectorInvocations(2));
+        assertNull(extractor.getCollectorInvocations(2));
+        verify(update, times(1)).getPerformanceCounter(MONITOR_NAME);
+    }
+
+    private static VmCounter longCounter(long value) {
+        VmCounter counter = mock(VmCounter.class);
+        when(counter.longValue()).thenReturn(value);
+        return counter;
+    }
+
+    private static VmCounter stringCounter(String value) {
+        VmCounter counter = mock(VmCounter.class);
+        when(counter.stringValue()).thenReturn(value);
+        return counter;
+    }
+}
@@ -36,14 +36,11 @@
 
 package com.redhat.thermostat.vm.gc.agent.internal.models;
 
-import static org.mockito.Matchers.anyListOf;
-import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
-import java.util.Arrays;
 
 import com.redhat.thermostat.common.plugin.SystemID;
 import org.junit.Before;
@@ -59,10 +56,10 @@ import com.redhat.thermostat.vm.gc.agent.model.VmGcStat;
 public class VmGcStatDAOImplTest {
 
     private static final String AGENT_ID = "some-agent";
-    private static final String JSON = "{\"this\":\"is\",\"also\":\"JSON\"}";
     private static final URI GATEWAY_URI = URI.create("http://example.com/jvm-gc/");
 
     private VmGcStat stat;
+    private VmGcStatTypeAdapter typeAdapter;
     private JsonHelper jsonHelper;
     private VmGcStatDAOImpl dao;
 
@@ -78,8 +75,9 @@ public class VmGcStatDAOImplTest {
         stat.setJvmId("Vm-1");
         stat.setCollectorName("Collector");
 
+        typeAdapter = new VmGcStatTypeAdapter();
         jsonHelper = mock(JsonHelper.class);
-        when(jsonHelper.toJson(anyListOf(VmGcStat.class))).thenReturn(JSON);
+        when(jsonHelper.getTypeAdapter()).thenReturn(typeAdapter);
 
         ConfigurationInfoSource source = mock(ConfigurationInfoSource.class);
         PluginConfiguration config = mock(PluginConfiguration.class);
@@ -100,9 +98,7 @@ public class VmGcStatDAOImplTest {
         dao.activate();
         dao.putVmGcStat(stat);
 
-        verify(jsonHelper).toJson(eq(Arrays.asList(stat)));
-
-        verify(httpRequestService).sendHttpRequest(JSON, GATEWAY_URI.resolve("systems/systemid/jvms/Vm-1"), HttpRequestService.Method.POST);
+        verify(httpRequestService).queueHttpPost("vm-gc", typeAdapter, stat, GATEWAY_URI.resolve("systems/systemid/jvms/Vm-1"));
     }
 
 }
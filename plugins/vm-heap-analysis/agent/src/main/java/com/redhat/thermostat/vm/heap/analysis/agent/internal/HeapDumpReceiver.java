@@ -50,8 +50,8 @@ import com.redhat.thermostat.common.command.Response.ResponseType;
 import com.redhat.thermostat.common.utils.LoggingUtils;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDAO;
+import com.redhat.thermostat.vm.heap.analysis.common.HeapDumpUploadStream;
 import com.redhat.thermostat.vm.heap.analysis.common.HistogramLoader;
-import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
 
 public class HeapDumpReceiver implements RequestReceiver {
@@ -87,8 +87,7 @@ public class HeapDumpReceiver implements RequestReceiver {
         try {
             int vmPid = Integer.parseInt(strPid);
             final File heapDumpFile = dumpHeap(vmPid);
-            ObjectHistogram histogram = loadHistogram(heapDumpFile.getAbsolutePath());
-            saveHeapDumpInfo(vmId, heapDumpFile, histogram, new Runnable() {
+            saveHeapDumpInfo(vmId, heapDumpFile, new Runnable() {
                 @Override
                 public void run() {
                     heapDumpFile.delete();
@@ -129,14 +128,20 @@ public class HeapDumpReceiver implements RequestReceiver {
         jmapHeapDumper.dumpHeap(pid, filename);
     }
 
-    private ObjectHistogram loadHistogram(String heapDumpFilename) throws IOException {
-        return histogramLoader.load(heapDumpFilename);
-    }
-
-    private void saveHeapDumpInfo(String vmId, File heapDumpFile, ObjectHistogram histogram, Runnable whenDone) throws IOException {
+    /*
+     * The heap dump is read once: its histogram is computed from the same
+     * bytes that are uploaded.
+     */
+    private void saveHeapDumpInfo(String vmId, File heapDumpFile, Runnable whenDone) throws IOException {
         String wId = writerId.getWriterID();
         HeapInfo heapInfo = new HeapInfo(wId, vmId, System.currentTimeMillis());
-        heapDao.putHeapInfo(heapInfo, heapDumpFile, histogram, whenDone);
+        HeapDumpUploadStream heapDump = new HeapDumpUploadStream(heapDumpFile, histogramLoader);
+        try {
+            heapDao.putHeapInfo(heapInfo, heapDump, whenDone);
+        } catch (IOException | RuntimeException e) {
+            heapDump.close();
+            throw e;
+        }
     }
 
 }
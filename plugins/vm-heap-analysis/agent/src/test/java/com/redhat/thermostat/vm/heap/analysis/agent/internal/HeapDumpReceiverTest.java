@@ -37,11 +37,14 @@
 package com.redhat.thermostat.vm.heap.analysis.agent.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
-import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -49,17 +52,23 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.redhat.thermostat.common.command.Request;
 import com.redhat.thermostat.common.command.Response;
 import com.redhat.thermostat.common.command.Response.ResponseType;
 import com.redhat.thermostat.storage.core.WriterID;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDAO;
+import com.redhat.thermostat.vm.heap.analysis.common.HeapDumpUploadStream;
 import com.redhat.thermostat.vm.heap.analysis.common.HistogramLoader;
 import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
@@ -74,8 +83,17 @@ public class HeapDumpReceiverTest {
     private HeapDumpReceiver receiver;
     private JMapHeapDumper jmapDumper;
 
+    private static final Answer<Void> WRITE_HEAP_DUMP = new Answer<Void>() {
+        @Override
+        public Void answer(InvocationOnMock invocation) throws Throwable {
+            String filename = (String) invocation.getArguments()[1];
+            Files.write(Paths.get(filename), new byte[] { 1, 2, 3 });
+            return null;
+        }
+    };
+
     @Before
-    public void setUp() {
+    public void setUp() throws HeapDumpException {
         heapDAO = mock(HeapDAO.class);
 
         request = mock(Request.class);
@@ -83,6 +101,8 @@ public class HeapDumpReceiverTest {
         when(request.getParameter("vmPid")).thenReturn("42");
         jmxDumper = mock(JMXHeapDumper.class);
         jmapDumper = mock(JMapHeapDumper.class);
+        doAnswer(WRITE_HEAP_DUMP).when(jmxDumper).dumpHeap(anyInt(), anyString());
+        doAnswer(WRITE_HEAP_DUMP).when(jmapDumper).dumpHeap(anyInt(), anyString());
         histogramLoader = mock(HistogramLoader.class);
         WriterID id = mock(WriterID.class);
         receiver = new HeapDumpReceiver(heapDAO, jmxDumper, jmapDumper, histogramLoader, id);
@@ -101,17 +121,27 @@ public class HeapDumpReceiverTest {
     public void testJMXHeapDump() throws Exception {
 
         ObjectHistogram expectedHistogramData = mock(ObjectHistogram.class);
-        when(histogramLoader.load(anyString())).thenReturn(expectedHistogramData);
+        when(histogramLoader.load(isA(InputStream.class))).thenReturn(expectedHistogramData);
         
         Response response = receiver.receive(request);
 
         assertEquals(ResponseType.OK, response.getType());
         ArgumentCaptor<String> filename = ArgumentCaptor.forClass(String.class);
         verify(jmxDumper).dumpHeap(eq(42), filename.capture());
-        verify(histogramLoader).load(filename.getValue());
         ArgumentCaptor<HeapInfo> heapInfo = ArgumentCaptor.forClass(HeapInfo.class);
-        verify(heapDAO).putHeapInfo(heapInfo.capture(), eq(new File(filename.getValue())), same(expectedHistogramData), isA(Runnable.class));
+        ArgumentCaptor<HeapDumpUploadStream> heapDump = ArgumentCaptor.forClass(HeapDumpUploadStream.class);
+        ArgumentCaptor<Runnable> whenDone = ArgumentCaptor.forClass(Runnable.class);
+        verify(heapDAO).putHeapInfo(heapInfo.capture(), heapDump.capture(), whenDone.capture());
         assertEquals("vmId", heapInfo.getValue().getVmId());
+
+        try (HeapDumpUploadStream in = heapDump.getValue()) {
+            while (in.read() != -1) {
+                // the histogram is computed while the heap dump is read
+            }
+            assertSame(expectedHistogramData, in.getHistogram());
+        }
+        whenDone.getValue().run();
+        assertFalse(new File(filename.getValue()).exists());
     }
 
     @Test
@@ -138,7 +168,7 @@ public class HeapDumpReceiverTest {
 
     @Test
     public void verifyResponseTypeWhenIOFails() throws HeapDumpException, IOException {
-        doThrow(new IOException()).when(histogramLoader).load(anyString());
+        doThrow(new IOException()).when(heapDAO).putHeapInfo(any(HeapInfo.class), any(HeapDumpUploadStream.class), any(Runnable.class));
 
         Response response = receiver.receive(request);
 
@@ -60,6 +60,15 @@ public interface HeapDAO {
 
     void putHeapInfo(HeapInfo heapInfo, File heapDumpFile, ObjectHistogram histogramData, Runnable whenDone) throws IOException;
 
+    /**
+     * Stores a heap dump together with its histogram, which is
+     * stored once {@code heapDump} has been read completely.
+     *
+     * @param whenDone run once the heap dump has been stored or failed to be
+     *        stored. {@code heapDump} has been closed by then.
+     */
+    void putHeapInfo(HeapInfo heapInfo, HeapDumpUploadStream heapDump, Runnable whenDone) throws IOException;
+
     @Deprecated
     Collection<HeapInfo> getAllHeapInfo(VmRef vm);
 
@@ -45,30 +45,13 @@ import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.Enumeration;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.redhat.thermostat.shared.config.OS;
-import org.apache.lucene.analysis.core.SimpleAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.StringField;
-import org.apache.lucene.index.CorruptIndexException;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.WildcardQuery;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.LockObtainFailedException;
-import org.apache.lucene.store.RAMDirectory;
 
 import com.redhat.thermostat.common.utils.LoggingUtils;
+import com.redhat.thermostat.vm.heap.analysis.common.internal.ObjectIndex;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
@@ -79,10 +62,6 @@ import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
  */
 public class HeapDump {
 
-    private static final String INDEX_FIELD_OBJECT_ID = "objectId";
-
-    private static final String INDEX_FIELD_CLASSNAME = "classname";
-
     private static final Logger log = LoggingUtils.getLogger(HeapDump.class);
 
     private static final int MAX_SEARCH_RESULTS = 1000;
@@ -93,13 +72,22 @@ public class HeapDump {
 
     private Snapshot snapshot;
 
-    private Directory luceneIndex;
+    private ObjectIndex objectIndex;
+
+    /* The directory caching heap dumps and their indexes, or null for the per-user default */
+    private final File heapDumpDir;
 
     // package-private for testing
-    HeapDump(HeapInfo heapInfo, HeapDAO heapDAO, Snapshot snapshot) {
+    HeapDump(HeapInfo heapInfo, HeapDAO heapDAO, Snapshot snapshot, File heapDumpDir) {
         this.heapInfo = heapInfo;
         this.heapDAO = heapDAO;
         this.snapshot = snapshot;
+        this.heapDumpDir = heapDumpDir;
+    }
+
+    // package-private for testing
+    HeapDump(HeapInfo heapInfo, HeapDAO heapDAO, Snapshot snapshot) {
+        this(heapInfo, heapDAO, snapshot, null);
     }
     
     public HeapDump(HeapInfo heapInfo, HeapDAO heapDAO) {
@@ -123,37 +111,38 @@ public class HeapDump {
         return heapInfo;
     }
 
-    private synchronized Directory getLuceneIndex() {
-        if (luceneIndex == null) {
+    private synchronized ObjectIndex getObjectIndex() {
+        if (objectIndex == null) {
             try {
-                luceneIndex = createLuceneIndex();
+                objectIndex = loadObjectIndex();
             } catch (IOException ex) {
                 log.log(Level.SEVERE, "Unexpected IO Exception while creating heap dump index", ex);
                 return null;
             }
         }
-        return luceneIndex;
+        return objectIndex;
     }
 
-    // package-private for testing
-    Directory createLuceneIndex() throws IOException,
-            CorruptIndexException, LockObtainFailedException {
+    /*
+     * The index is kept next to the cached heap dump, so that it only needs
+     * to be built the first time the heap dump is searched.
+     */
+    private ObjectIndex loadObjectIndex() throws IOException {
+        File indexFile = new File(getOrCreateHeapDumpDir(), "heapdump-" + heapInfo.getHeapId() + ".index");
+        if (indexFile.exists()) {
+            try {
+                return ObjectIndex.open(indexFile);
+            } catch (IOException ex) {
+                log.log(Level.WARNING, "Rebuilding unreadable heap dump index " + indexFile, ex);
+            }
+        }
+        return createObjectIndex(indexFile);
+    }
 
+    // package-private for testing
+    ObjectIndex createObjectIndex(File indexFile) throws IOException {
         loadHeapDumpIfNecessary();
-
-        Enumeration<JavaHeapObject> thingos = snapshot.getThings();
-        Directory dir = new RAMDirectory();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new SimpleAnalyzer());
-        IndexWriter writer = new IndexWriter(dir, indexWriterConfig);
-        while (thingos.hasMoreElements()) {
-            JavaHeapObject thingo = thingos.nextElement();
-            Document doc = new Document();
-            doc.add(new StringField(INDEX_FIELD_CLASSNAME, thingo.getClazz().getName(), Field.Store.YES));
-            doc.add(new StringField(INDEX_FIELD_OBJECT_ID, thingo.getIdString(), Field.Store.YES));
-            writer.addDocument(doc);
-        }
-        writer.close();
-        return dir;
+        return ObjectIndex.create(indexFile, snapshot);
     }
 
     public Snapshot getSnapshot() {
@@ -181,11 +170,16 @@ public class HeapDump {
             }
             
         }
-        snapshot = Reader.readFile(tmpFile.getAbsolutePath(), true, 0);
-        snapshot.resolve(true);
+        // Heap dumps are analysed on the client, so use all of its cores
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        snapshot = Reader.readFile(tmpFile.getAbsolutePath(), true, 0, parallelism);
+        snapshot.resolve(true, parallelism);
     }
 
     private File getOrCreateHeapDumpDir() throws IOException {
+        if (heapDumpDir != null) {
+            return heapDumpDir;
+        }
         String dirname = "thermostat-" + System.getProperty("user.name");
         File tmpFile = new File(System.getProperty("java.io.tmpdir"), dirname);
         if (! tmpFile.exists()) {
@@ -213,20 +207,13 @@ public class HeapDump {
      * @return a collection of object ids that can be used with {@link #findObject(String)}
      */
     public Collection<String> searchObjects(String wildCardClassNamePattern, int limit) {
-        Directory searchIndex = getLuceneIndex();
-
-        WildcardQuery query = new WildcardQuery(new Term(INDEX_FIELD_CLASSNAME, wildCardClassNamePattern));
+        ObjectIndex searchIndex = getObjectIndex();
         Collection<String> results = new ArrayList<String>();
+        if (searchIndex == null) {
+            return results;
+        }
         try {
-            IndexReader indexReader = DirectoryReader.open(searchIndex);
-            IndexSearcher searcher = new IndexSearcher(indexReader);
-            TopDocs found = searcher.search(query, limit);
-            for (ScoreDoc scoreDoc : found.scoreDocs) {
-                Document doc = searcher.doc(scoreDoc.doc);
-                String objectId = doc.get(INDEX_FIELD_OBJECT_ID);
-                results.add(objectId);
-            }
-            indexReader.close();
+            results.addAll(searchIndex.search(wildCardClassNamePattern, limit));
         } catch (IOException e) {
             log.log(Level.SEVERE, "Unexpected IO Exception while searching heap dump index", e);
         }
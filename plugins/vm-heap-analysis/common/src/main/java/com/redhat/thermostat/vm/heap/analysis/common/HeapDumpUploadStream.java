@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A heap dump file, meant to be handed to storage for upload. The file is
+ * read only once: every chunk that is read for the upload is also passed to
+ * a separate thread that computes the {@link ObjectHistogram} of the heap
+ * dump, so that the histogram is ready as soon as the upload has read the
+ * whole stream. The bytes are uploaded unchanged, so the stored heap dump
+ * stays a plain hprof file for every reader.
+ * <p>
+ * This stream does not compress anything, and it does not split the upload
+ * into resumable parts: how the bytes travel to the gateway, including any
+ * transfer encoding, is up to the {@code Storage} implementation that
+ * receives the stream.
+ * <p>
+ * Memory use is bounded by the chunk size: at most {@link #QUEUED_CHUNKS}
+ * chunks wait for the histogram thread, besides the one being read.
+ * <p>
+ * Instances must be {@link #close() closed}, also when they are not read
+ * completely, so that the histogram thread finishes.
+ */
+public class HeapDumpUploadStream extends InputStream {
+
+    static final int CHUNK_SIZE = 256 * 1024;
+    static final int QUEUED_CHUNKS = 8;
+
+    private static final byte[] END = new byte[0];
+
+    private final InputStream heapDump;
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+    private final FutureTask<ObjectHistogram> histogram;
+    /** the chunk being read; shared read-only with the histogram thread */
+    private byte[] chunk = END;
+    private int position;
+    private boolean eof;
+    private boolean closed;
+
+    public HeapDumpUploadStream(File heapDumpFile, final HistogramLoader histogramLoader) throws IOException {
+        this.heapDump = new FileInputStream(heapDumpFile);
+        this.histogram = new FutureTask<>(new Callable<ObjectHistogram>() {
+            @Override
+            public ObjectHistogram call() throws IOException {
+                ChunkInputStream in = new ChunkInputStream();
+                try {
+                    return histogramLoader.load(in);
+                } finally {
+                    in.drain();
+                }
+            }
+        });
+        Thread histogramThread = new Thread(histogram, "heap-dump-histogram");
+        histogramThread.setDaemon(true);
+        histogramThread.start();
+    }
+
+    /**
+     * Waits until the histogram of the heap dump has been computed. That
+     * happens soon after this stream has been read to its end.
+     */
+    public ObjectHistogram getHistogram() throws IOException {
+        try {
+            return histogram.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (CancellationException e) {
+            throw new IOException("Stream was closed before the whole heap dump was read");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (position == chunk.length) {
+            if (eof) {
+                return -1;
+            }
+            readNextChunk();
+        }
+        int n = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - position;
+    }
+
+    private void readNextChunk() throws IOException {
+        byte[] next = new byte[CHUNK_SIZE];
+        int length = readFully(next);
+        chunk = length == next.length ? next : Arrays.copyOf(next, length);
+        position = 0;
+        if (length > 0) {
+            queue(chunk);
+        }
+        if (length < next.length) {
+            queue(END);
+            eof = true;
+        }
+    }
+
+    private int readFully(byte[] chunk) throws IOException {
+        int length = 0;
+        while (length < chunk.length) {
+            int read = heapDump.read(chunk, length, chunk.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private void queue(byte[] chunk) throws IOException {
+        try {
+            chunks.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!eof) {
+            eof = true;
+            // the histogram thread only consumes, so there is room for END after clearing
+            chunks.clear();
+            chunks.offer(END);
+            histogram.cancel(false);
+        }
+        heapDump.close();
+    }
+
+    /** The heap dump as seen by the histogram thread. */
+    private class ChunkInputStream extends InputStream {
+
+        private byte[] chunk = END;
+        private int position;
+        private boolean end;
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            return chunk[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (position == chunk.length) {
+                if (end) {
+                    return false;
+                }
+                chunk = take();
+                position = 0;
+                end = chunk == END;
+            }
+            return true;
+        }
+
+        /**
+         * Consumes the rest of the heap dump, which the histogram does not
+         * need, so that reading this stream never blocks.
+         */
+        void drain() throws IOException {
+            while (!end) {
+                end = take() == END;
+            }
+        }
+
+        private byte[] take() throws IOException {
+            try {
+                return chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
@@ -38,17 +38,69 @@ package com.redhat.thermostat.vm.heap.analysis.common;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Enumeration;
 
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.HistogramScanner;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
 
 public class HistogramLoader {
 
+    private final boolean useSnapshot;
+
+    public HistogramLoader() {
+        this(false);
+    }
+
+    /**
+     * @param useSnapshot if true, build and resolve a complete {@link Snapshot}
+     * of the heap dump and compute the histogram from it. Otherwise the
+     * histogram is computed while streaming through the file, which needs
+     * far less memory.
+     */
+    public HistogramLoader(boolean useSnapshot) {
+        this.useSnapshot = useSnapshot;
+    }
+
     public ObjectHistogram load(String filename) throws IOException {
+        if (!useSnapshot) {
+            return scanHeapdump(filename);
+        }
         Snapshot snapshot = loadHeapdump(filename);
-        return computeHistogram(snapshot);
+        try {
+            return computeHistogram(snapshot);
+        } finally {
+            closeSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * Computes the histogram of a heap dump read sequentially from a stream.
+     * The histogram is always computed while streaming, as a {@link Snapshot}
+     * needs random access to the heap dump.
+     */
+    public ObjectHistogram load(InputStream in) throws IOException {
+        ObjectHistogram histogram = new ObjectHistogram();
+        new HistogramScanner(in).scan(histogramVisitor(histogram));
+        return histogram;
+    }
+
+    private ObjectHistogram scanHeapdump(String filename) throws IOException {
+        ObjectHistogram histogram = new ObjectHistogram();
+        File heapdump = new File(filename);
+        HistogramScanner.scanFile(heapdump.getAbsolutePath(), histogramVisitor(histogram));
+        return histogram;
+    }
+
+    private HistogramScanner.Visitor histogramVisitor(final ObjectHistogram histogram) {
+        return new HistogramScanner.Visitor() {
+            @Override
+            public void visit(String className, long numberOf, long totalSize) {
+                histogram.addThings(className, numberOf, totalSize);
+            }
+        };
     }
 
     private Snapshot loadHeapdump(String filename) throws IOException {
@@ -58,6 +110,17 @@ public class HistogramLoader {
         return snapshot;
     }
 
+    // Releases the mapped heap dump, so that its disk space is freed once deleted
+    private void closeSnapshot(Snapshot snapshot) throws IOException {
+        try {
+            snapshot.close();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
     private ObjectHistogram computeHistogram(Snapshot snapshot) {
         Enumeration<JavaHeapObject> thingos = snapshot.getThings();
         ObjectHistogram histogram = new ObjectHistogram();
@@ -53,13 +53,17 @@ public class ObjectHistogram implements Serializable {
 
     public void addThing(JavaHeapObject thing) {
         JavaClass clazz = thing.getClazz();
-        HistogramRecord record = histogram.get(clazz.getName());
+        addThings(clazz.getName(), 1, thing.getSize());
+    }
+
+    void addThings(String classname, long numberOf, long totalSize) {
+        HistogramRecord record = histogram.get(classname);
         if (record == null) {
-            record = new HistogramRecord(clazz.getName());
-            histogram.put(clazz.getName(), record);
+            record = new HistogramRecord(classname);
+            histogram.put(classname, record);
         }
-        record.numberOf++;
-        record.totalSize += thing.getSize();
+        record.numberOf += numberOf;
+        record.totalSize += totalSize;
     }
 
     public Collection<HistogramRecord> getHistogram() {
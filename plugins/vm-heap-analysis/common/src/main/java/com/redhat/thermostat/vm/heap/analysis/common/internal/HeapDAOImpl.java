@@ -65,6 +65,7 @@ import com.redhat.thermostat.storage.dao.AbstractDaoStatement;
 import com.redhat.thermostat.storage.model.Pojo;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDAO;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDump;
+import com.redhat.thermostat.vm.heap.analysis.common.HeapDumpUploadStream;
 import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
 
@@ -125,16 +126,64 @@ public class HeapDAOImpl extends AbstractDao implements HeapDAO {
             uploadHeapDump(heapDumpData, heapDumpId, heapDumpCleanup);
         }
         if (histogramData != null) {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try {
-                ObjectOutputStream oos = new ObjectOutputStream(baos);
-                oos.writeObject(histogramData);
-                ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-                storage.saveFile(histogramId, bais, new CloseOnSave(bais));
-            } catch (IOException e) {
-                e.printStackTrace();
-                logger.log(Level.SEVERE, "Unexpected error while writing histogram", e);
+            uploadHistogram(histogramData, histogramId);
+        }
+    }
+
+    @Override
+    public void putHeapInfo(HeapInfo heapInfo, final HeapDumpUploadStream heapDump, final Runnable whenDone) throws IOException {
+        String heapId = heapInfo.getAgentId() + "-" + heapInfo.getVmId() + "-" + heapInfo.getTimeStamp();
+        heapInfo.setHeapId(heapId);
+        String heapDumpId = "heapdump-" + heapId;
+        final String histogramId = "histogram-" + heapId;
+        heapInfo.setHeapDumpId(heapDumpId);
+        heapInfo.setHistogramId(histogramId);
+        addHeapInfo(heapInfo);
+
+        storage.saveFile(heapDumpId, heapDump, new SaveFileListener() {
+
+            @Override
+            public void notify(EventType type, Object additionalArguments) {
+                try {
+                    switch (type) {
+                    case EXCEPTION_OCCURRED:
+                        StorageException cause = (StorageException) additionalArguments;
+                        logger.log(Level.SEVERE, "Error saving heap dump", cause);
+                        break;
+                    case SAVE_COMPLETE:
+                        uploadHistogram(heapDump.getHistogram(), histogramId);
+                        break;
+                    default:
+                        logger.log(Level.WARNING, "Unknown saveFile event: " + type);
+                    }
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Unexpected error while computing histogram", e);
+                } finally {
+                    closeAndRun(heapDump, whenDone);
+                }
             }
+        });
+    }
+
+    private void closeAndRun(InputStream heapDump, Runnable whenDone) {
+        try {
+            heapDump.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Exception when saving file", e);
+        }
+        whenDone.run();
+    }
+
+    private void uploadHistogram(ObjectHistogram histogramData, String histogramId) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(baos);
+            oos.writeObject(histogramData);
+            ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
+            storage.saveFile(histogramId, bais, new CloseOnSave(bais));
+        } catch (IOException e) {
+            e.printStackTrace();
+            logger.log(Level.SEVERE, "Unexpected error while writing histogram", e);
         }
     }
 
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaClass;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.Misc;
+
+/**
+ * An index from class names to the IDs of their instances in a heap dump,
+ * stored in a file so that it is built once per heap dump.
+ * <p>
+ * The file holds a header listing every class name, in sorted order, with
+ * its number of instances, followed by the object IDs of each class in the
+ * same order. Only the header is kept in memory; searches match the class
+ * names and then read the IDs of the matching classes from the file.
+ */
+public class ObjectIndex {
+
+    private static final int MAGIC = 0x54484958;    // "THIX"
+    private static final int VERSION = 1;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final File file;
+    private final String[] classNames;
+    private final long[] counts;
+    // File position of the first object ID of each class
+    private final long[] positions;
+
+    private ObjectIndex(File file, String[] classNames, long[] counts, long[] positions) {
+        this.file = file;
+        this.classNames = classNames;
+        this.counts = counts;
+        this.positions = positions;
+    }
+
+    /**
+     * Reads the header of an index written by {@link #create(File, Snapshot)}.
+     *
+     * @throws IOException if the file can not be read or is not a complete index
+     */
+    public static ObjectIndex open(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a heap dump index: " + file);
+            }
+            int classCount = in.readInt();
+            long headerSize = 12;
+            String[] classNames = new String[classCount];
+            long[] counts = new long[classCount];
+            for (int i = 0; i < classCount; i++) {
+                classNames[i] = in.readUTF();
+                counts[i] = in.readLong();
+                // readUTF() reads a two byte length and the encoded name
+                headerSize += 2 + utfLength(classNames[i]) + 8;
+            }
+            long[] positions = new long[classCount];
+            long position = headerSize;
+            for (int i = 0; i < classCount; i++) {
+                positions[i] = position;
+                position += counts[i] * 8;
+            }
+            if (position != file.length()) {
+                throw new EOFException("Incomplete heap dump index: " + file);
+            }
+            return new ObjectIndex(file, classNames, counts, positions);
+        }
+    }
+
+    /**
+     * Writes the index of a snapshot to a file. The index is written to a
+     * temporary file first, so that an interrupted write never leaves an
+     * incomplete index behind.
+     */
+    public static ObjectIndex create(File file, Snapshot snapshot) throws IOException {
+        Map<String, ClassIds> byName = new TreeMap<>();
+        Map<JavaClass, ClassIds> byClass = new IdentityHashMap<>();
+        Enumeration<JavaHeapObject> things = snapshot.getThings();
+        while (things.hasMoreElements()) {
+            JavaHeapObject thing = things.nextElement();
+            JavaClass clazz = thing.getClazz();
+            ClassIds ids = byClass.get(clazz);
+            if (ids == null) {
+                // Classes of different loaders can share a name
+                ids = byName.get(clazz.getName());
+                if (ids == null) {
+                    ids = new ClassIds();
+                    byName.put(clazz.getName(), ids);
+                }
+                byClass.put(clazz, ids);
+            }
+            ids.add(thing.getId());
+        }
+
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(byName.size());
+            for (Map.Entry<String, ClassIds> entry : byName.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+            }
+            for (ClassIds ids : byName.values()) {
+                for (int i = 0; i < ids.size; i++) {
+                    out.writeLong(ids.ids[i]);
+                }
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return open(file);
+    }
+
+    /**
+     * @param wildcardPattern a case-sensitive pattern of class names, in
+     *        which {@code *} matches any characters, {@code ?} matches one
+     *        character and {@code \} escapes the following character
+     * @param limit the maximum number of object IDs to return
+     * @return the IDs of objects of matching classes, as hex strings
+     */
+    public List<String> search(String wildcardPattern, int limit) throws IOException {
+        Pattern pattern = toRegex(wildcardPattern);
+        List<String> results = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            for (int i = 0; i < classNames.length && results.size() < limit; i++) {
+                if (!pattern.matcher(classNames[i]).matches()) {
+                    continue;
+                }
+                long position = positions[i];
+                long remaining = Math.min(counts[i], limit - results.size());
+                while (remaining > 0) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), remaining * 8));
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            throw new EOFException("Incomplete heap dump index: " + file);
+                        }
+                    }
+                    buffer.flip();
+                    position += buffer.limit();
+                    remaining -= buffer.limit() / 8;
+                    while (buffer.hasRemaining()) {
+                        results.add(Misc.toHex(buffer.getLong()));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // package-private for testing
+    static Pattern toRegex(String wildcardPattern) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < wildcardPattern.length(); i++) {
+            char c = wildcardPattern.charAt(i);
+            if (c == '\\' && i + 1 < wildcardPattern.length()) {
+                literal.append(wildcardPattern.charAt(++i));
+            } else if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    // The length of a string in the modified UTF-8 of DataOutput.writeUTF()
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length += 1;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    private static class ClassIds {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
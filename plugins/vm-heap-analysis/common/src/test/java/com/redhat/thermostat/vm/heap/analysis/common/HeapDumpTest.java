@@ -37,23 +37,27 @@
 package com.redhat.thermostat.vm.heap.analysis.common;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
-import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Vector;
 import java.util.zip.GZIPInputStream;
 
-import org.apache.lucene.store.Directory;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import com.redhat.thermostat.vm.heap.analysis.common.internal.ObjectIndex;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaClass;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
@@ -85,6 +89,9 @@ public class HeapDumpTest {
 
     private static final String HEAP_ID = "TEST_HEAP_ID";
 
+    @Rule
+    public TemporaryFolder heapDumpDir = new TemporaryFolder();
+
     private HeapDump heapDump;
     private HeapInfo heapInfo;
     private HeapDAO heapDAO;
@@ -98,7 +105,7 @@ public class HeapDumpTest {
         when(heapInfo.getHeapId()).thenReturn(HEAP_ID);
         heapDAO = mock(HeapDAO.class);
         when(heapDAO.getHeapDumpData(heapInfo)).thenReturn(gzipIn);
-        heapDump = new HeapDump(heapInfo, heapDAO);
+        heapDump = new HeapDump(heapInfo, heapDAO, null, heapDumpDir.getRoot());
     }
 
     @Test
@@ -115,36 +122,46 @@ public class HeapDumpTest {
         assertTrue(foundObjectIds.contains("0x7d704bfe0"));
     }
     
-    /*
-     * Smoke test for basic lucene compat testing.
-     */
     @Test
-    public void canCreateLuceneIndex() {
+    public void canCreateObjectIndex() throws IOException {
+        File indexFile = Files.createTempFile("thermostat-", ".index").toFile();
         try {
             Snapshot mockSnapShot = mock(Snapshot.class);
             JavaHeapObject obj1 = mock(JavaHeapObject.class);
             JavaClass clazz1 = mock(JavaClass.class);
             when(obj1.getClazz()).thenReturn(clazz1);
             when(clazz1.getName()).thenReturn("fake-class-one");
-            when(obj1.getIdString()).thenReturn("foo");
+            when(obj1.getId()).thenReturn(0xf00L);
             JavaClass clazz2 = mock(JavaClass.class);
             when(clazz2.getName()).thenReturn("fake-class-two");
             JavaHeapObject obj2 = mock(JavaHeapObject.class);
-            when(obj2.getIdString()).thenReturn("bar");
+            when(obj2.getId()).thenReturn(0xba4L);
             when(obj2.getClazz()).thenReturn(clazz2);
             Vector<JavaHeapObject> things = new Vector<>();
             things.add(obj1);
             things.add(obj2);
             when(mockSnapShot.getThings()).thenReturn(things.elements());
             HeapDump bareDump = new HeapDump(null, null, mockSnapShot);
-            Directory dir = bareDump.createLuceneIndex();
-            assertNotNull(dir);
-        } catch (Exception e) {
-            e.printStackTrace();
-            fail("Failed to create lucene index");
+            ObjectIndex index = bareDump.createObjectIndex(indexFile);
+            assertEquals(Arrays.asList("0xf00"), index.search("fake-class-one", 10));
+            assertEquals(Arrays.asList("0xf00", "0xba4"), index.search("fake-class-*", 10));
+        } finally {
+            indexFile.delete();
         }
     }
 
+    @Test
+    public void testSearchReusesIndexOfEarlierLoad() {
+        assertEquals(8, heapDump.searchObjects("java.util.ArrayDeque", 10).size());
+
+        Snapshot snapshot = mock(Snapshot.class);
+        HeapDump reloaded = new HeapDump(heapInfo, mock(HeapDAO.class), snapshot, heapDumpDir.getRoot());
+        Collection<String> foundObjectIds = reloaded.searchObjects("java.util.ArrayDeque", 10);
+        assertEquals(8, foundObjectIds.size());
+        assertTrue(foundObjectIds.contains("0x7d704eb20"));
+        verifyZeroInteractions(snapshot);
+    }
+
     @Test
     public void testSearchObjectsWithLimit() {
         Collection<String> foundObjectIds = heapDump.searchObjects("java.util.ArrayDeque", 2);
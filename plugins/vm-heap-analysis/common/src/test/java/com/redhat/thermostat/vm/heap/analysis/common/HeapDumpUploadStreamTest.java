@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Uses the same heapdump as HeapDumpTest.
+ */
+public class HeapDumpUploadStreamTest {
+
+    private File heapDumpFile;
+
+    @Before
+    public void setUp() throws IOException {
+        heapDumpFile = Files.createTempFile("thermostat-", "-heapdump").toFile();
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, heapDumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        heapDumpFile.delete();
+    }
+
+    @Test
+    public void testUploadsHeapDumpUnchanged() throws IOException {
+        byte[] uploaded;
+        try (HeapDumpUploadStream upload = new HeapDumpUploadStream(heapDumpFile, new HistogramLoader())) {
+            uploaded = readFully(upload);
+        }
+        assertArrayEquals(Files.readAllBytes(heapDumpFile.toPath()), uploaded);
+    }
+
+    @Test
+    public void testComputesHistogramWhileReading() throws IOException {
+        ObjectHistogram expected = new HistogramLoader().load(heapDumpFile.getAbsolutePath());
+        ObjectHistogram actual;
+        try (HeapDumpUploadStream upload = new HeapDumpUploadStream(heapDumpFile, new HistogramLoader())) {
+            readFully(upload);
+            actual = upload.getHistogram();
+        }
+        assertEquals(new HashSet<>(expected.getHistogram()), new HashSet<>(actual.getHistogram()));
+    }
+
+    @Test
+    public void testFailingHistogramDoesNotStopUpload() throws IOException {
+        HistogramLoader loader = mock(HistogramLoader.class);
+        when(loader.load(any(InputStream.class))).thenThrow(new IOException("test"));
+        try (HeapDumpUploadStream upload = new HeapDumpUploadStream(heapDumpFile, loader)) {
+            readFully(upload);
+            try {
+                upload.getHistogram();
+                fail();
+            } catch (IOException e) {
+                assertEquals("test", e.getMessage());
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoHistogramWhenClosedEarly() throws IOException {
+        HeapDumpUploadStream upload = new HeapDumpUploadStream(heapDumpFile, new HistogramLoader());
+        upload.read(new byte[10]);
+        upload.close();
+        upload.getHistogram();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Uses the same heapdump as HeapDumpTest.
+ */
+public class HistogramLoaderTest {
+
+    private File heapDumpFile;
+
+    @Before
+    public void setUp() throws IOException {
+        heapDumpFile = Files.createTempFile("thermostat-", "-heapdump").toFile();
+        try (InputStream in = new GZIPInputStream(getClass().getResourceAsStream("/heapdump.hprof.gz"))) {
+            Files.copy(in, heapDumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        heapDumpFile.delete();
+    }
+
+    @Test
+    public void testLoadStreaming() throws IOException {
+        ObjectHistogram histogram = new HistogramLoader().load(heapDumpFile.getAbsolutePath());
+        Set<HistogramRecord> records = new HashSet<>(histogram.getHistogram());
+        assertTrue(records.contains(new HistogramRecord("java.util.ArrayDeque", 8, 256)));
+        assertTrue(records.contains(new HistogramRecord("[I", 370, 966352)));
+        assertTrue(records.contains(new HistogramRecord("java.lang.Class", 421, 67360)));
+    }
+
+    @Test
+    public void testStreamingMatchesSnapshot() throws IOException {
+        ObjectHistogram streamed = new HistogramLoader().load(heapDumpFile.getAbsolutePath());
+        ObjectHistogram fromSnapshot = new HistogramLoader(true).load(heapDumpFile.getAbsolutePath());
+        Set<HistogramRecord> expected = new HashSet<>(fromSnapshot.getHistogram());
+        Set<HistogramRecord> actual = new HashSet<>(streamed.getHistogram());
+        assertEquals(fromSnapshot.getHistogram().size(), streamed.getHistogram().size());
+        assertEquals(expected, actual);
+    }
+
+}
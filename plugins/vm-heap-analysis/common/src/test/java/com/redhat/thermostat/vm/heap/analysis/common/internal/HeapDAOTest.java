@@ -43,6 +43,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -75,8 +76,10 @@ import com.redhat.thermostat.storage.core.SaveFileListener.EventType;
 import com.redhat.thermostat.storage.core.StatementDescriptor;
 import com.redhat.thermostat.storage.core.StatementExecutionException;
 import com.redhat.thermostat.storage.core.Storage;
+import com.redhat.thermostat.storage.core.StorageException;
 import com.redhat.thermostat.storage.core.VmRef;
 import com.redhat.thermostat.vm.heap.analysis.common.HeapDAO;
+import com.redhat.thermostat.vm.heap.analysis.common.HeapDumpUploadStream;
 import com.redhat.thermostat.vm.heap.analysis.common.HistogramRecord;
 import com.redhat.thermostat.vm.heap.analysis.common.ObjectHistogram;
 import com.redhat.thermostat.vm.heap.analysis.common.model.HeapInfo;
@@ -261,6 +264,60 @@ public class HeapDAOTest {
         } while (expected != -1 && actual != -1);
     }
 
+    @Test
+    public void testPutHeapInfoWithUploadStream() throws IOException,
+            StatementExecutionException, DescriptorParsingException {
+        @SuppressWarnings("unchecked")
+        PreparedStatement<HeapInfo> add = mock(PreparedStatement.class);
+        when(storage.prepareStatement(anyDescriptor())).thenReturn(add);
+        HeapDumpUploadStream heapDump = mock(HeapDumpUploadStream.class);
+        when(heapDump.getHistogram()).thenReturn(histogram);
+        Runnable cleanup = mock(Runnable.class);
+        dao.putHeapInfo(heapInfo, heapDump, cleanup);
+
+        doAddHeapInfoVerifications(storage, add, heapInfo);
+        assertEquals("heapdump-test-vm1-12345", heapInfo.getHeapDumpId());
+        assertEquals("histogram-test-vm1-12345", heapInfo.getHistogramId());
+
+        ArgumentCaptor<SaveFileListener> saveListener = ArgumentCaptor.forClass(SaveFileListener.class);
+        verify(storage).saveFile(eq("heapdump-test-vm1-12345"), same(heapDump), saveListener.capture());
+        // the histogram is only complete once the heap dump has been read
+        verify(storage, never()).saveFile(eq("histogram-test-vm1-12345"), any(InputStream.class), any(SaveFileListener.class));
+
+        saveListener.getValue().notify(EventType.SAVE_COMPLETE, null);
+        verify(heapDump).close();
+        verify(cleanup).run();
+        ArgumentCaptor<InputStream> histoStream = ArgumentCaptor.forClass(InputStream.class);
+        verify(storage).saveFile(eq("histogram-test-vm1-12345"), histoStream.capture(), isA(CloseOnSave.class));
+        InputStream histoActual = histoStream.getValue();
+        int expected;
+        int actual;
+        do {
+            expected = histogramData.read();
+            actual = histoActual.read();
+            assertEquals(expected, actual);
+        } while (expected != -1 && actual != -1);
+    }
+
+    @Test
+    public void testPutHeapInfoWithUploadStreamFailing() throws IOException {
+        @SuppressWarnings("unchecked")
+        PreparedStatement<HeapInfo> add = mock(PreparedStatement.class);
+        when(storage.prepareStatement(anyDescriptor())).thenReturn(add);
+        HeapDumpUploadStream heapDump = mock(HeapDumpUploadStream.class);
+        Runnable cleanup = mock(Runnable.class);
+        dao.putHeapInfo(heapInfo, heapDump, cleanup);
+
+        ArgumentCaptor<SaveFileListener> saveListener = ArgumentCaptor.forClass(SaveFileListener.class);
+        verify(storage).saveFile(eq("heapdump-test-vm1-12345"), same(heapDump), saveListener.capture());
+        saveListener.getValue().notify(EventType.EXCEPTION_OCCURRED, new StorageException("ignore"));
+
+        verify(heapDump).close();
+        verify(cleanup).run();
+        verify(heapDump, never()).getHistogram();
+        verify(storage, never()).saveFile(eq("histogram-test-vm1-12345"), any(InputStream.class), any(SaveFileListener.class));
+    }
+
     @Test
     public void testPutHeapInfoWithoutDump() throws IOException,
             StatementExecutionException, DescriptorParsingException {
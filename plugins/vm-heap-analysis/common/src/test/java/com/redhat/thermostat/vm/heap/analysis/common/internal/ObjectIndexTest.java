@@ -0,0 +1,162 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.common.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Vector;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaClass;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+
+public class ObjectIndexTest {
+
+    private File file;
+    private Snapshot snapshot;
+    private Vector<JavaHeapObject> things;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("thermostat-", ".index").toFile();
+        things = new Vector<>();
+        snapshot = mock(Snapshot.class);
+        JavaClass string = mockClass("java.lang.String");
+        JavaClass list = mockClass("java.util.ArrayList");
+        // A class of the same name from another class loader
+        JavaClass otherList = mockClass("java.util.ArrayList");
+        JavaClass unicode = mockClass("caf\u00e9.\u20acuro");
+        addThing(0x10, string);
+        addThing(0x20, list);
+        addThing(0x30, string);
+        addThing(0x40, otherList);
+        addThing(0x50, unicode);
+        when(snapshot.getThings()).thenReturn(things.elements());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testSearch() throws IOException {
+        ObjectIndex index = ObjectIndex.create(file, snapshot);
+
+        assertEquals(Arrays.asList("0x10", "0x30"), index.search("java.lang.String", 10));
+        assertEquals(Arrays.asList("0x20", "0x40"), index.search("java.util.ArrayList", 10));
+        assertEquals(Arrays.asList("0x10", "0x30", "0x20", "0x40"), index.search("java.*", 10));
+        assertEquals(Arrays.asList("0x50"), index.search("caf?.*", 10));
+        assertEquals(Collections.emptyList(), index.search("java.lang", 10));
+    }
+
+    @Test
+    public void testSearchLimit() throws IOException {
+        ObjectIndex index = ObjectIndex.create(file, snapshot);
+
+        assertEquals(Arrays.asList("0x50", "0x10", "0x30"), index.search("*", 3));
+        assertEquals(Collections.emptyList(), index.search("*", 0));
+    }
+
+    @Test
+    public void testOpenExistingIndex() throws IOException {
+        ObjectIndex.create(file, snapshot);
+        ObjectIndex index = ObjectIndex.open(file);
+
+        assertEquals(Arrays.asList("0x20", "0x40"), index.search("*List", 10));
+        assertEquals(Arrays.asList("0x50"), index.search("*\u20ac*", 10));
+        assertFalse(new File(file.getParentFile(), file.getName() + ".tmp").exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenTruncatedIndex() throws IOException {
+        ObjectIndex.create(file, snapshot);
+        try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+            truncate.setLength(file.length() - 4);
+        }
+        ObjectIndex.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenOtherFile() throws IOException {
+        Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+        ObjectIndex.open(file);
+    }
+
+    @Test
+    public void testWildcards() {
+        Pattern pattern = ObjectIndex.toRegex("java.*.Str?ng");
+        assertTrue(pattern.matcher("java.lang.String").matches());
+        assertTrue(pattern.matcher("java..Strong").matches());
+        assertFalse(pattern.matcher("javaxlang.String").matches());
+
+        Pattern escaped = ObjectIndex.toRegex("a\\*b\\?");
+        assertTrue(escaped.matcher("a*b?").matches());
+        assertFalse(escaped.matcher("axxb?").matches());
+
+        assertTrue(ObjectIndex.toRegex("[I").matcher("[I").matches());
+        assertTrue(ObjectIndex.toRegex("*$Inner").matcher("Outer$Inner").matches());
+    }
+
+    private static JavaClass mockClass(String name) {
+        JavaClass clazz = mock(JavaClass.class);
+        when(clazz.getName()).thenReturn(name);
+        return clazz;
+    }
+
+    private void addThing(long id, JavaClass clazz) {
+        JavaHeapObject thing = mock(JavaHeapObject.class);
+        when(thing.getId()).thenReturn(id);
+        when(thing.getClazz()).thenReturn(clazz);
+        things.add(thing);
+    }
+}
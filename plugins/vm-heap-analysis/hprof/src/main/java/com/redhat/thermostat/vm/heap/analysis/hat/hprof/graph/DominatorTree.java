@@ -0,0 +1,286 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.graph;
+
+import java.util.Arrays;
+
+/**
+ * The dominator tree of a {@link ReferenceGraph} and the retained size of
+ * every node.
+ * <p>
+ * An object dominates another if every chain of references from the root
+ * set to the other object goes through it, so the retained size of an
+ * object is the memory that would be freed if it were collected. The tree
+ * is computed with the Lengauer-Tarjan algorithm (the simple version, with
+ * path compression) in O(E log V) time, using int arrays only.
+ */
+public final class DominatorTree {
+
+    private final ReferenceGraph graph;
+    // Indexed by node, -1 for nodes not reachable from the root set
+    private final int[] immediateDominators;
+    private final long[] retainedSizes;
+
+    private DominatorTree(ReferenceGraph graph, int[] immediateDominators, long[] retainedSizes) {
+        this.graph = graph;
+        this.immediateDominators = immediateDominators;
+        this.retainedSizes = retainedSizes;
+    }
+
+    public static DominatorTree compute(ReferenceGraph graph) {
+        int nodes = graph.getNodeCount();
+
+        // Step 1: number the nodes in depth-first order from the root. The
+        // remaining steps work on these numbers rather than on the nodes.
+        int[] number = new int[nodes];
+        Arrays.fill(number, -1);
+        int[] vertex = new int[nodes];      // node with a given number
+        int[] parent = new int[nodes];      // number of the DFS tree parent
+        int count = depthFirstNumbering(graph, number, vertex, parent);
+
+        int[] semi = new int[count];
+        int[] idom = new int[count];
+        int[] ancestor = new int[count];
+        int[] label = new int[count];
+        int[] bucketHead = new int[count];
+        int[] bucketNext = new int[count];
+        int[] compressStack = new int[count];
+        for (int v = 0; v < count; v++) {
+            semi[v] = v;
+            label[v] = v;
+            ancestor[v] = -1;
+            bucketHead[v] = -1;
+        }
+
+        // Steps 2 and 3: semi-dominators, and immediate dominators where
+        // the semi-dominator is known to be one
+        for (int w = count - 1; w > 0; w--) {
+            int node = vertex[w];
+            for (int i = graph.referersStart(node); i < graph.referersEnd(node); i++) {
+                int v = number[graph.refererAt(i)];
+                if (v < 0) {
+                    continue;   // The referer is not reachable itself
+                }
+                int u = eval(v, ancestor, label, semi, compressStack);
+                if (semi[u] < semi[w]) {
+                    semi[w] = semi[u];
+                }
+            }
+            bucketNext[w] = bucketHead[semi[w]];
+            bucketHead[semi[w]] = w;
+
+            int p = parent[w];
+            ancestor[w] = p;
+            for (int v = bucketHead[p]; v != -1; v = bucketNext[v]) {
+                int u = eval(v, ancestor, label, semi, compressStack);
+                idom[v] = semi[u] < semi[v] ? u : p;
+            }
+            bucketHead[p] = -1;
+        }
+
+        // Step 4: the remaining immediate dominators, in DFS order
+        for (int w = 1; w < count; w++) {
+            if (idom[w] != semi[w]) {
+                idom[w] = idom[idom[w]];
+            }
+        }
+        idom[0] = -1;
+
+        // A dominator comes before the nodes it dominates in DFS order, so
+        // a reverse pass adds up retained sizes bottom up
+        long[] retained = new long[count];
+        for (int w = 0; w < count; w++) {
+            retained[w] = graph.sizeOf(vertex[w]);
+        }
+        for (int w = count - 1; w > 0; w--) {
+            retained[idom[w]] += retained[w];
+        }
+
+        int[] immediateDominators = new int[nodes];
+        long[] retainedSizes = new long[nodes];
+        Arrays.fill(immediateDominators, -1);
+        for (int w = 0; w < count; w++) {
+            immediateDominators[vertex[w]] = w == 0 ? -1 : vertex[idom[w]];
+            retainedSizes[vertex[w]] = retained[w];
+        }
+        return new DominatorTree(graph, immediateDominators, retainedSizes);
+    }
+
+    private static int depthFirstNumbering(ReferenceGraph graph, int[] number, int[] vertex, int[] parent) {
+        // An explicit stack of nodes and of the next reference to follow
+        // from each, as object graphs are far too deep for recursion
+        int[] stackNodes = new int[graph.getNodeCount()];
+        int[] stackNext = new int[graph.getNodeCount()];
+        int top = 0;
+        stackNodes[0] = ReferenceGraph.ROOT;
+        stackNext[0] = graph.referencesStart(ReferenceGraph.ROOT);
+        number[ReferenceGraph.ROOT] = 0;
+        vertex[0] = ReferenceGraph.ROOT;
+        parent[0] = -1;
+        int count = 1;
+        while (top >= 0) {
+            int node = stackNodes[top];
+            if (stackNext[top] == graph.referencesEnd(node)) {
+                top--;
+                continue;
+            }
+            int target = graph.referenceAt(stackNext[top]++);
+            if (number[target] < 0) {
+                number[target] = count;
+                vertex[count] = target;
+                parent[count] = number[node];
+                count++;
+                top++;
+                stackNodes[top] = target;
+                stackNext[top] = graph.referencesStart(target);
+            }
+        }
+        return count;
+    }
+
+    private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] stack) {
+        if (ancestor[v] == -1) {
+            return v;
+        }
+        // Path compression, iteratively: collect the nodes whose ancestor
+        // is not a forest root, then update them from the top down
+        int top = 0;
+        for (int x = v; ancestor[ancestor[x]] != -1; x = ancestor[x]) {
+            stack[top++] = x;
+        }
+        while (top > 0) {
+            int x = stack[--top];
+            int a = ancestor[x];
+            if (semi[label[a]] < semi[label[x]]) {
+                label[x] = label[a];
+            }
+            ancestor[x] = ancestor[a];
+        }
+        return label[v];
+    }
+
+    public ReferenceGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the immediate dominator of a node, {@link ReferenceGraph#ROOT}
+     *         if only the root set as a whole dominates it, or -1 if the node
+     *         is the root or cannot be reached
+     */
+    public int getImmediateDominator(int node) {
+        return immediateDominators[node];
+    }
+
+    /**
+     * @return the total size of the node and of all nodes it dominates; 0
+     *         if the node cannot be reached from the root set
+     */
+    public long getRetainedSize(int node) {
+        return retainedSizes[node];
+    }
+
+    public boolean isReachable(int node) {
+        return node == ReferenceGraph.ROOT || immediateDominators[node] >= 0;
+    }
+
+    /**
+     * @return up to {@code count} reachable objects with the largest retained
+     *         sizes, largest first
+     */
+    public int[] getLargestRetainers(int count) {
+        // A bounded min-heap of node indexes, ordered by retained size
+        int[] heap = new int[Math.max(0, count)];
+        int size = 0;
+        for (int node = 1; node < retainedSizes.length; node++) {
+            if (!isReachable(node)) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = node;
+                siftUp(heap, size++);
+            } else if (size > 0 && retainedSizes[node] > retainedSizes[heap[0]]) {
+                heap[0] = node;
+                siftDown(heap, size);
+            }
+        }
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size);
+        }
+        return result;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (retainedSizes[heap[parent]] <= retainedSizes[heap[i]]) {
+                return;
+            }
+            swap(heap, parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int i = 0;
+        for (;;) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && retainedSizes[heap[left]] < retainedSizes[heap[smallest]]) {
+                smallest = left;
+            }
+            if (right < size && retainedSizes[heap[right]] < retainedSizes[heap[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(heap, smallest, i);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+}
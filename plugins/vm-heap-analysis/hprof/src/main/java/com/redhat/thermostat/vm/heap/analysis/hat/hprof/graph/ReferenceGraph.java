@@ -0,0 +1,286 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Enumeration;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaClass;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaField;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObjectVisitor;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Root;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+
+/**
+ * The references between the objects of a resolved {@link Snapshot}, as a
+ * compact graph over int node indexes.
+ * <p>
+ * Node 0 is a virtual root that refers to every object in the root set.
+ * Objects are numbered from 1 in order of their IDs. References are stored
+ * in both directions as offset and target arrays, so a graph costs a few
+ * ints per object and per reference instead of the objects and referer
+ * lists of the model.
+ */
+public final class ReferenceGraph {
+
+    /** The index of the virtual root that refers to all GC roots. */
+    public static final int ROOT = 0;
+
+    private final long[] ids;           // sorted; ids[i] is node i + 1
+    private final int[] sizes;
+    private final int[] referencesStart;
+    private final int[] references;
+    private final int[] referersStart;
+    private final int[] referers;
+
+    // The breadth-first tree from ROOT, computed on first use
+    private int[] shortestPathParents;
+
+    ReferenceGraph(long[] ids, int[] sizes, int[] referencesStart, int[] references) {
+        this.ids = ids;
+        this.sizes = sizes;
+        this.referencesStart = referencesStart;
+        this.references = references;
+
+        int nodes = referencesStart.length - 1;
+        this.referersStart = new int[nodes + 1];
+        this.referers = new int[references.length];
+        for (int target : references) {
+            referersStart[target + 1]++;
+        }
+        for (int i = 0; i < nodes; i++) {
+            referersStart[i + 1] += referersStart[i];
+        }
+        int[] next = Arrays.copyOf(referersStart, nodes);
+        for (int source = 0; source < nodes; source++) {
+            for (int i = referencesStart[source]; i < referencesStart[source + 1]; i++) {
+                referers[next[references[i]]++] = source;
+            }
+        }
+    }
+
+    /**
+     * Builds the reference graph of a snapshot on which
+     * {@link Snapshot#resolve(boolean)} has been called.
+     *
+     * @param includeWeak if false, the referent of a
+     *        {@code java.lang.ref.Reference} is not counted as a reference
+     */
+    public static ReferenceGraph build(Snapshot snapshot, boolean includeWeak) {
+        long[] ids = new long[1024];
+        int count = 0;
+        Enumeration<JavaHeapObject> things = snapshot.getThings();
+        while (things.hasMoreElements()) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = things.nextElement().getId();
+        }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+
+        int[] sizes = new int[count + 1];
+        int[] referencesStart = new int[count + 2];
+        EdgeCollector edges = new EdgeCollector(ids, snapshot, includeWeak);
+
+        Root[] roots = snapshot.getRootsArray();
+        for (Root root : roots) {
+            edges.add(root.getId());
+        }
+        referencesStart[1] = edges.size;
+        for (int i = 0; i < count; i++) {
+            JavaHeapObject thing = snapshot.findThing(ids[i]);
+            sizes[i + 1] = thing.getSize();
+            thing.visitReferencedObjects(edges);
+            referencesStart[i + 2] = edges.size;
+        }
+        return new ReferenceGraph(ids, sizes, referencesStart, Arrays.copyOf(edges.targets, edges.size));
+    }
+
+    /** @return the number of nodes, including {@link #ROOT} */
+    public int getNodeCount() {
+        return referencesStart.length - 1;
+    }
+
+    public int getReferenceCount() {
+        return references.length;
+    }
+
+    /** @return the node of the object with the given ID, or -1 if there is none */
+    public int indexOf(long id) {
+        int i = Arrays.binarySearch(ids, id);
+        return i < 0 ? -1 : i + 1;
+    }
+
+    /** @return the object ID of a node; {@link #ROOT} has ID 0 */
+    public long idOf(int node) {
+        return node == ROOT ? 0 : ids[node - 1];
+    }
+
+    /** @return the shallow size of a node, as reported by {@link JavaHeapObject#getSize()} */
+    public int sizeOf(int node) {
+        return sizes[node];
+    }
+
+    /** @return the nodes that {@code node} refers to */
+    public int[] getReferences(int node) {
+        return Arrays.copyOfRange(references, referencesStart[node], referencesStart[node + 1]);
+    }
+
+    /** @return the nodes that refer to {@code node} */
+    public int[] getReferers(int node) {
+        return Arrays.copyOfRange(referers, referersStart[node], referersStart[node + 1]);
+    }
+
+    /**
+     * Finds a shortest chain of references from the root set to a node.
+     *
+     * @return the nodes from a GC root to {@code node}, both included,
+     *         or null if the node is not reachable from the root set
+     */
+    public synchronized int[] shortestPathFromRoot(int node) {
+        if (shortestPathParents == null) {
+            shortestPathParents = breadthFirstParents();
+        }
+        if (node != ROOT && shortestPathParents[node] < 0) {
+            return null;
+        }
+        int length = 0;
+        for (int n = node; n != ROOT; n = shortestPathParents[n]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int n = node; n != ROOT; n = shortestPathParents[n]) {
+            path[--length] = n;
+        }
+        return path;
+    }
+
+    // Parent of each node in a breadth-first traversal from ROOT, -1 for
+    // nodes that cannot be reached.
+    private int[] breadthFirstParents() {
+        int nodes = getNodeCount();
+        int[] parents = new int[nodes];
+        Arrays.fill(parents, -1);
+        BitSet visited = new BitSet(nodes);
+        // Every node is queued at most once, so an array is a queue
+        int[] queue = new int[nodes];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = ROOT;
+        visited.set(ROOT);
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = referencesStart[node]; i < referencesStart[node + 1]; i++) {
+                int target = references[i];
+                if (!visited.get(target)) {
+                    visited.set(target);
+                    parents[target] = node;
+                    queue[tail++] = target;
+                }
+            }
+        }
+        return parents;
+    }
+
+    int referencesStart(int node) {
+        return referencesStart[node];
+    }
+
+    int referencesEnd(int node) {
+        return referencesStart[node + 1];
+    }
+
+    int referenceAt(int i) {
+        return references[i];
+    }
+
+    int referersStart(int node) {
+        return referersStart[node];
+    }
+
+    int referersEnd(int node) {
+        return referersStart[node + 1];
+    }
+
+    int refererAt(int i) {
+        return referers[i];
+    }
+
+    private static class EdgeCollector implements JavaHeapObjectVisitor {
+
+        private final long[] ids;
+        private final JavaClass weakReferenceClass;
+        private int[] targets = new int[1024];
+        private int size;
+
+        EdgeCollector(long[] ids, Snapshot snapshot, boolean includeWeak) {
+            this.ids = ids;
+            this.weakReferenceClass = includeWeak ? null : snapshot.getWeakReferenceClass();
+        }
+
+        void add(long id) {
+            int i = Arrays.binarySearch(ids, id);
+            if (i < 0) {
+                return;     // Not in the dump, e.g. a root of a missing object
+            }
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            targets[size++] = i + 1;
+        }
+
+        @Override
+        public void visit(JavaHeapObject other) {
+            if (other != null) {
+                add(other.getId());
+            }
+        }
+
+        @Override
+        public boolean exclude(JavaClass clazz, JavaField f) {
+            return clazz == weakReferenceClass && "referent".equals(f.getName());
+        }
+
+        @Override
+        public boolean mightExclude() {
+            return weakReferenceClass != null;
+        }
+    }
+}
@@ -34,8 +34,12 @@ package com.redhat.thermostat.vm.heap.analysis.hat.hprof.model;
 
 import java.lang.ref.SoftReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.ReadBuffer;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.LongHashMap;
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.Misc;
 
 /**
@@ -57,19 +61,21 @@ public class Snapshot implements AutoCloseable {
     private static final JavaField[] EMPTY_FIELD_ARRAY = new JavaField[0];
     private static final JavaStatic[] EMPTY_STATIC_ARRAY = new JavaStatic[0];
 
-    // all heap objects
-    private Hashtable<Number, JavaHeapObject> heapObjects =
-                 new Hashtable<Number, JavaHeapObject>();
+    // all heap objects, by ID. Not synchronized, objects are only added
+    // while reading and resolving the snapshot.
+    private LongHashMap<JavaHeapObject> heapObjects =
+                 new LongHashMap<JavaHeapObject>();
 
-    private Hashtable<Number, JavaClass> fakeClasses =
-                 new Hashtable<Number, JavaClass>();
+    private LongHashMap<JavaClass> fakeClasses =
+                 new LongHashMap<JavaClass>();
 
     // all Roots in this Snapshot
     private Vector<Root> roots = new Vector<Root>();
 
-    // name-to-class map
+    // name-to-class map. Sorted by name, and safe to read while
+    // objects are resolved in parallel.
     private Map<String, JavaClass> classes =
-                 new TreeMap<String, JavaClass>();
+                 new ConcurrentSkipListMap<String, JavaClass>();
 
     // new objects relative to a baseline - lazily initialized
     private volatile Map<JavaHeapObject, Boolean> newObjects;
@@ -178,30 +184,38 @@ public class Snapshot implements AutoCloseable {
     }
 
     JavaClass addFakeInstanceClass(long classID, int instSize) {
-        // Create a fake class name based on ID.
-        String name = "unknown-class<@" + Misc.toHex(classID) + ">";
+        synchronized (fakeClasses) {
+            // Another thread may have added it while resolving in parallel
+            JavaClass existing = fakeClasses.get(makeId(classID));
+            if (existing != null) {
+                return existing;
+            }
 
-        // Create fake fields convering the given instance size.
-        // Create as many as int type fields and for the left over
-        // size create byte type fields.
-        int numInts = instSize / 4;
-        int numBytes = instSize % 4;
-        JavaField[] fields = new JavaField[numInts + numBytes];
-        int i;
-        for (i = 0; i < numInts; i++) {
-            fields[i] = new JavaField("unknown-field-" + i, "I");
-        }
-        for (i = 0; i < numBytes; i++) {
-            fields[i + numInts] = new JavaField("unknown-field-" +
-                                                i + numInts, "B");
-        }
+            // Create a fake class name based on ID.
+            String name = "unknown-class<@" + Misc.toHex(classID) + ">";
+
+            // Create fake fields convering the given instance size.
+            // Create as many as int type fields and for the left over
+            // size create byte type fields.
+            int numInts = instSize / 4;
+            int numBytes = instSize % 4;
+            JavaField[] fields = new JavaField[numInts + numBytes];
+            int i;
+            for (i = 0; i < numInts; i++) {
+                fields[i] = new JavaField("unknown-field-" + i, "I");
+            }
+            for (i = 0; i < numBytes; i++) {
+                fields[i + numInts] = new JavaField("unknown-field-" +
+                                                    i + numInts, "B");
+            }
 
-        // Create fake instance class
-        JavaClass c = new JavaClass(name, 0, 0, 0, 0, fields,
-                                 EMPTY_STATIC_ARRAY, instSize);
-        // Add the class
-        addFakeClass(makeId(classID), c);
-        return c;
+            // Create fake instance class
+            JavaClass c = new JavaClass(name, 0, 0, 0, 0, fields,
+                                     EMPTY_STATIC_ARRAY, instSize);
+            // Add the class
+            addFakeClass(makeId(classID), c);
+            return c;
+        }
     }
 
 
@@ -225,10 +239,96 @@ public class Snapshot implements AutoCloseable {
         }
     }
 
+    // Visitor for resolving references in parallel. Other threads may add
+    // references to the same object at the same time.
+    private static class SynchronizedVisitor extends AbstractJavaHeapObjectVisitor {
+        private final JavaHeapObject t;
+
+        SynchronizedVisitor(JavaHeapObject t) {
+            this.t = t;
+        }
+
+        public void visit(JavaHeapObject other) {
+            synchronized (other) {
+                other.addReferenceFrom(t);
+            }
+        }
+    }
+
+    // Something to do with each heap object, possibly in parallel
+    private static abstract class HeapObjectAction {
+        abstract void apply(JavaHeapObject t);
+    }
+
+    @SuppressWarnings("serial")
+    private class HeapObjectTask extends RecursiveAction {
+
+        // Number of map slots handled by one task
+        private static final int SLOTS_PER_TASK = 16 * 1024;
+
+        private final HeapObjectAction action;
+        private final int start;
+        private final int end;
+
+        HeapObjectTask(HeapObjectAction action, int start, int end) {
+            this.action = action;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= SLOTS_PER_TASK) {
+                for (int i = start; i < end; i++) {
+                    JavaHeapObject t = heapObjects.valueAt(i);
+                    if (t != null) {
+                        action.apply(t);
+                    }
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new HeapObjectTask(action, start, middle),
+                          new HeapObjectTask(action, middle, end));
+            }
+        }
+    }
+
+    private void forEachHeapObject(ForkJoinPool pool, HeapObjectAction action) {
+        if (pool == null) {
+            for (JavaHeapObject t : heapObjects) {
+                action.apply(t);
+            }
+        } else {
+            pool.invoke(new HeapObjectTask(action, 0, heapObjects.capacity()));
+        }
+    }
+
     /**
      * Called after reading complete, to initialize the structure
      */
     public void resolve(boolean calculateRefs) {
+        resolve(calculateRefs, 1);
+    }
+
+    /**
+     * Called after reading complete, to initialize the structure.
+     *
+     * @param parallelism the number of threads used to resolve objects
+     * and references. The resulting snapshot is the same, except for the
+     * order of instances of a class.
+     */
+    public void resolve(boolean calculateRefs, int parallelism) {
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            resolve(calculateRefs, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private void resolve(boolean calculateRefs, ForkJoinPool pool) {
         // First, resolve the classes.  All classes must be resolved before
         // we try any objects, because the objects use classes in their
         // resolution.
@@ -254,18 +354,21 @@ public class Snapshot implements AutoCloseable {
             addFakeClass(javaLangClassLoader);
         }
 
-        for (JavaHeapObject t : heapObjects.values()) {
+        for (JavaHeapObject t : heapObjects) {
             if (t instanceof JavaClass) {
                 t.resolve(this);
             }
         }
 
         // Now, resolve everything else.
-        for (JavaHeapObject t : heapObjects.values()) {
-            if (!(t instanceof JavaClass)) {
-                t.resolve(this);
+        forEachHeapObject(pool, new HeapObjectAction() {
+            @Override
+            void apply(JavaHeapObject t) {
+                if (!(t instanceof JavaClass)) {
+                    t.resolve(Snapshot.this);
+                }
             }
-        }
+        });
 
         heapObjects.putAll(fakeClasses);
         fakeClasses.clear();
@@ -283,27 +386,35 @@ public class Snapshot implements AutoCloseable {
         }
 
         if (calculateRefs) {
-            calculateReferencesToObjects();
-        }
-        int count = 0;
-        for (JavaHeapObject t : heapObjects.values()) {
-            t.setupReferers();
-            ++count;
+            calculateReferencesToObjects(pool);
         }
+        forEachHeapObject(pool, new HeapObjectAction() {
+            @Override
+            void apply(JavaHeapObject t) {
+                t.setupReferers();
+            }
+        });
 
         // to ensure that Iterator.remove() on getClasses()
         // result will throw exception..
         classes = Collections.unmodifiableMap(classes);
     }
 
-    private void calculateReferencesToObjects() {
-        int count = 0;
-        MyVisitor visitor = new MyVisitor();
-        for (JavaHeapObject t : heapObjects.values()) {
-            visitor.t = t;
-            // call addReferenceFrom(t) on all objects t references:
-            t.visitReferencedObjects(visitor);
-            ++count;
+    private void calculateReferencesToObjects(ForkJoinPool pool) {
+        if (pool == null) {
+            MyVisitor visitor = new MyVisitor();
+            for (JavaHeapObject t : heapObjects) {
+                visitor.t = t;
+                // call addReferenceFrom(t) on all objects t references:
+                t.visitReferencedObjects(visitor);
+            }
+        } else {
+            forEachHeapObject(pool, new HeapObjectAction() {
+                @Override
+                void apply(JavaHeapObject t) {
+                    t.visitReferencedObjects(new SynchronizedVisitor(t));
+                }
+            });
         }
         for (Root r : roots) {
             r.resolve(this);
@@ -316,7 +427,7 @@ public class Snapshot implements AutoCloseable {
 
     public void markNewRelativeTo(Snapshot baseline) {
         hasNewSet = true;
-        for (JavaHeapObject t : heapObjects.values()) {
+        for (JavaHeapObject t : heapObjects) {
             boolean isNew;
             long thingID = t.getId();
             if (thingID == 0L || thingID == -1L) {
@@ -339,9 +450,15 @@ public class Snapshot implements AutoCloseable {
 
 
     public JavaHeapObject findThing(long id) {
-        Number idObj = makeId(id);
-        JavaHeapObject jho = heapObjects.get(idObj);
-        return jho != null? jho : fakeClasses.get(idObj);
+        long idKey = makeId(id);
+        JavaHeapObject jho = heapObjects.get(idKey);
+        if (jho != null) {
+            return jho;
+        }
+        // Fake classes may be added while objects are resolved in parallel
+        synchronized (fakeClasses) {
+            return fakeClasses.get(idKey);
+        }
     }
 
     public JavaHeapObject findThing(String id) {
@@ -360,7 +477,7 @@ public class Snapshot implements AutoCloseable {
      * Return an Iterator of all of the classes in this snapshot.
      **/
     public Iterator<JavaClass> getClasses() {
-        // note that because classes is a TreeMap
+        // note that because classes is a sorted map
         // classes are already sorted by name
         return classes.values().iterator();
     }
@@ -414,40 +531,35 @@ public class Snapshot implements AutoCloseable {
 
     public ReferenceChain[]
     rootsetReferencesTo(JavaHeapObject target, boolean includeWeak) {
-        Vector<ReferenceChain> fifo = new Vector<ReferenceChain>();  // This is slow... A real fifo would help
-            // Must be a fifo to go breadth-first
-        Hashtable<JavaHeapObject, JavaHeapObject> visited = new Hashtable<JavaHeapObject, JavaHeapObject>();
+        // Must be a fifo to go breadth-first
+        ArrayDeque<ReferenceChain> fifo = new ArrayDeque<ReferenceChain>();
+        Set<JavaHeapObject> visited = Collections.newSetFromMap(new IdentityHashMap<JavaHeapObject, Boolean>());
         // Objects are added here right after being added to fifo.
-        Vector<ReferenceChain> result = new Vector<ReferenceChain>();
-        visited.put(target, target);
-        fifo.addElement(new ReferenceChain(target, null));
+        List<ReferenceChain> result = new ArrayList<ReferenceChain>();
+        visited.add(target);
+        fifo.add(new ReferenceChain(target, null));
 
-        while (fifo.size() > 0) {
-            ReferenceChain chain = fifo.elementAt(0);
-            fifo.removeElementAt(0);
+        while (!fifo.isEmpty()) {
+            ReferenceChain chain = fifo.poll();
             JavaHeapObject curr = chain.getObj();
             if (curr.getRoot() != null) {
-                result.addElement(chain);
+                result.add(chain);
                 // Even though curr is in the rootset, we want to explore its
                 // referers, because they might be more interesting.
             }
             Enumeration<JavaThing> referers = curr.getReferers();
             while (referers.hasMoreElements()) {
                 JavaHeapObject t = (JavaHeapObject) referers.nextElement();
-                if (t != null && !visited.containsKey(t)) {
+                if (t != null && !visited.contains(t)) {
                     if (includeWeak || !t.refersOnlyWeaklyTo(this, curr)) {
-                        visited.put(t, t);
-                        fifo.addElement(new ReferenceChain(t, chain));
+                        visited.add(t);
+                        fifo.add(new ReferenceChain(t, chain));
                     }
                 }
             }
         }
 
-        ReferenceChain[] realResult = new ReferenceChain[result.size()];
-        for (int i = 0; i < result.size(); i++) {
-            realResult[i] =  result.elementAt(i);
-        }
-        return realResult;
+        return result.toArray(new ReferenceChain[result.size()]);
     }
 
     public boolean getUnresolvedObjectsOK() {
@@ -555,23 +667,25 @@ public class Snapshot implements AutoCloseable {
     }
 
     // Internals only below this point
-    private Number makeId(long id) {
+    private long makeId(long id) {
         if (identifierSize == 4) {
-            return (int)id;
+            return id & SMALL_ID_MASK;
         } else {
             return id;
         }
     }
 
     private void putInClassesMap(JavaClass c) {
-        String name = c.getName();
-        if (classes.containsKey(name)) {
-            // more than one class can have the same name
-            // if so, create a unique name by appending
-            // - and id string to it.
-            name += "-" + c.getIdString();
+        synchronized (classes) {
+            String name = c.getName();
+            if (classes.containsKey(name)) {
+                // more than one class can have the same name
+                // if so, create a unique name by appending
+                // - and id string to it.
+                name += "-" + c.getIdString();
+            }
+            classes.put(c.getName(), c);
         }
-        classes.put(c.getName(), c);
     }
 
     private void addFakeClass(JavaClass c) {
@@ -579,7 +693,7 @@ public class Snapshot implements AutoCloseable {
         c.resolve(this);
     }
 
-    private void addFakeClass(Number id, JavaClass c) {
+    private void addFakeClass(long id, JavaClass c) {
         fakeClasses.put(id, c);
         addFakeClass(c);
     }
@@ -0,0 +1,571 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.ArrayTypeCodes;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.LongHashMap;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.Misc;
+
+/**
+ * Computes a class histogram (number of instances and their total shallow
+ * size per class) in a single pass over an HPROF file, without building a
+ * {@link Snapshot}.
+ * <p>
+ * Only the class table is kept in memory: objects are counted as their
+ * records are read and their contents are skipped. Class names and sizes are
+ * resolved the same way {@link Snapshot#resolve(boolean)} resolves them, so
+ * the result matches a histogram computed from a resolved snapshot of the
+ * first heap dump in the file.
+ */
+public class HistogramScanner implements ArrayTypeCodes {
+
+    private static final Logger logger = Logger.getLogger(HistogramScanner.class.getName());
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] VERSIONS = {
+            " PROFILE 1.0\0",
+            " PROFILE 1.0.1\0",
+            " PROFILE 1.0.2\0",
+    };
+    // Indices into VERSIONS, see HprofReader
+    private static final int VERSION_JDK12BETA4 = 1;
+    private static final int VERSION_JDK6       = 2;
+
+    private static final int T_CLASS = 2;
+    private static final int NUM_TYPE_CODES = T_LONG + 1;
+
+    /**
+     * Receives the histogram computed by {@link HistogramScanner#scan()}.
+     * A class name may be visited more than once if several classes with
+     * the same name were loaded by different class loaders.
+     */
+    public interface Visitor {
+        void visit(String className, long numberOf, long totalSize);
+    }
+
+    private final DataInputStream in;
+
+    private int version;
+    private int identifierSize;
+
+    // UTF8 records, needed to name classes in HPROF_LOAD_CLASS
+    private final LongHashMap<String> names = new LongHashMap<>();
+    // Class object ID to class info, for classes and for IDs instances refer to
+    private final LongHashMap<ClassInfo> classes = new LongHashMap<>();
+    // Primitive arrays, indexed by type code
+    private final long[] primitiveArrayCounts = new long[NUM_TYPE_CODES];
+    private final long[] primitiveArraySizes = new long[NUM_TYPE_CODES];
+
+    // Consecutive objects are often of the same class
+    private long lastClassId;
+    private ClassInfo lastClassInfo;
+
+    public HistogramScanner(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    /**
+     * Scan the heap dump in the given file and pass its histogram to the
+     * visitor.
+     */
+    public static void scanFile(String heapFile, Visitor visitor) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(heapFile), BUFFER_SIZE)) {
+            new HistogramScanner(in).scan(visitor);
+        }
+    }
+
+    /**
+     * Read the HPROF stream up to the end of its first heap dump and pass
+     * the resulting histogram to the visitor.
+     */
+    public void scan(Visitor visitor) throws IOException {
+        int magic = in.readInt();
+        if (magic != HprofReader.MAGIC_NUMBER) {
+            throw new IOException("Unrecognized magic number: " + magic);
+        }
+        version = readVersionHeader();
+        identifierSize = in.readInt();
+        if (identifierSize != 4 && identifierSize != 8) {
+            throw new IOException("Unsupported identifier size: " + identifierSize);
+        }
+        in.readLong(); // Creation time stamp
+
+        try {
+            readRecords();
+        } catch (EOFException e) {
+            logger.log(Level.WARNING, "Unexpected end of heap dump, histogram will be incomplete", e);
+        }
+        visitHistogram(visitor);
+    }
+
+    private void readRecords() throws IOException {
+        for (;;) {
+            int type = in.read();
+            if (type < 0) {
+                return;
+            }
+            in.readInt(); // Time stamp
+            long length = in.readInt() & 0xffffffffL;
+            switch (type) {
+                case HprofReader.HPROF_UTF8: {
+                    long id = readID();
+                    byte[] chars = new byte[(int) length - identifierSize];
+                    in.readFully(chars);
+                    names.put(id, new String(chars));
+                    break;
+                }
+                case HprofReader.HPROF_LOAD_CLASS: {
+                    in.readInt(); // Serial number
+                    long classId = readID();
+                    in.readInt(); // Stack trace serial number
+                    long nameId = readID();
+                    getClassInfo(classId).name = getName(nameId).replace('/', '.');
+                    break;
+                }
+                case HprofReader.HPROF_HEAP_DUMP: {
+                    readHeapDump(length);
+                    return;
+                }
+                case HprofReader.HPROF_HEAP_DUMP_SEGMENT: {
+                    if (version >= VERSION_JDK6) {
+                        readHeapDump(length);
+                    } else {
+                        skipFully(length);
+                    }
+                    break;
+                }
+                case HprofReader.HPROF_HEAP_DUMP_END: {
+                    if (version >= VERSION_JDK6) {
+                        return;
+                    }
+                    skipFully(length);
+                    break;
+                }
+                default: {
+                    skipFully(length);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void readHeapDump(long length) throws IOException {
+        long bytesLeft = length;
+        while (bytesLeft > 0) {
+            int type = in.readUnsignedByte();
+            bytesLeft--;
+            switch (type) {
+                case HprofReader.HPROF_GC_ROOT_UNKNOWN:
+                case HprofReader.HPROF_GC_ROOT_STICKY_CLASS:
+                case HprofReader.HPROF_GC_ROOT_MONITOR_USED:
+                    bytesLeft -= skipFully(identifierSize);
+                    break;
+                case HprofReader.HPROF_GC_ROOT_JNI_GLOBAL:
+                    bytesLeft -= skipFully(2 * identifierSize);
+                    break;
+                case HprofReader.HPROF_GC_ROOT_NATIVE_STACK:
+                case HprofReader.HPROF_GC_ROOT_THREAD_BLOCK:
+                    bytesLeft -= skipFully(identifierSize + 4);
+                    break;
+                case HprofReader.HPROF_GC_ROOT_THREAD_OBJ:
+                case HprofReader.HPROF_GC_ROOT_JNI_LOCAL:
+                case HprofReader.HPROF_GC_ROOT_JAVA_FRAME:
+                    bytesLeft -= skipFully(identifierSize + 8);
+                    break;
+                case HprofReader.HPROF_GC_CLASS_DUMP:
+                    bytesLeft -= readClass();
+                    break;
+                case HprofReader.HPROF_GC_INSTANCE_DUMP:
+                    bytesLeft -= readInstance();
+                    break;
+                case HprofReader.HPROF_GC_OBJ_ARRAY_DUMP:
+                    bytesLeft -= readArray(false);
+                    break;
+                case HprofReader.HPROF_GC_PRIM_ARRAY_DUMP:
+                    bytesLeft -= readArray(true);
+                    break;
+                default:
+                    throw new IOException("Unrecognized heap dump sub-record type: " + type);
+            }
+        }
+        if (bytesLeft != 0) {
+            logger.warning("Error reading heap dump or heap dump segment: byte count is "
+                    + bytesLeft + " instead of 0");
+            skipFully(bytesLeft);
+        }
+    }
+
+    private long readClass() throws IOException {
+        long id = readID();
+        long bytesRead = identifierSize;
+        // Stack trace serial, super class, class loader, signers,
+        // protection domain and two reserved IDs
+        bytesRead += skipFully(4 + 6 * identifierSize);
+        int instanceSize = in.readInt();
+        bytesRead += 4;
+
+        int numConstPoolEntries = in.readUnsignedShort();
+        bytesRead += 2;
+        for (int i = 0; i < numConstPoolEntries; i++) {
+            bytesRead += skipFully(2); // Index
+            byte type = in.readByte();
+            bytesRead += 1 + skipFully(valueSize(type));
+        }
+        int numStatics = in.readUnsignedShort();
+        bytesRead += 2;
+        for (int i = 0; i < numStatics; i++) {
+            bytesRead += skipFully(identifierSize); // Name
+            byte type = in.readByte();
+            bytesRead += 1 + skipFully(valueSize(type));
+        }
+        int numFields = in.readUnsignedShort();
+        bytesRead += 2;
+        // Name and type of each field
+        bytesRead += skipFully(numFields * (identifierSize + 1L));
+
+        ClassInfo info = getClassInfo(id);
+        info.dumped = true;
+        info.instanceSize = instanceSize;
+        return bytesRead;
+    }
+
+    private long readInstance() throws IOException {
+        readID(); // Object ID
+        in.readInt(); // Stack trace serial number
+        long classId = readID();
+        int bytesFollowing = in.readInt();
+        skipFully(bytesFollowing);
+
+        ClassInfo info = getCachedClassInfo(classId);
+        info.numberOf++;
+        info.totalSize += bytesFollowing + minimumObjectSize();
+        return 2 * identifierSize + 8 + bytesFollowing;
+    }
+
+    private long readArray(boolean isPrimitive) throws IOException {
+        readID(); // Array ID
+        in.readInt(); // Stack trace serial number
+        int num = in.readInt();
+        long bytesRead = identifierSize + 8;
+        long elementClassId;
+        if (isPrimitive) {
+            elementClassId = in.readByte();
+            bytesRead++;
+        } else {
+            elementClassId = readID();
+            bytesRead += identifierSize;
+        }
+
+        // Old heap dumps use type codes for primitive arrays in both records
+        int elementSize = 0;
+        if (isPrimitive || version < VERSION_JDK12BETA4) {
+            elementSize = primitiveSize(elementClassId);
+            if (version >= VERSION_JDK12BETA4 && elementSize == 0) {
+                throw new IOException("Unrecognized typecode: " + elementClassId);
+            }
+        }
+        if (elementSize != 0) {
+            long size = (long) num * elementSize;
+            skipFully(size);
+            int typeCode = (int) elementClassId;
+            primitiveArrayCounts[typeCode]++;
+            primitiveArraySizes[typeCode] += size + minimumObjectSize();
+            return bytesRead + size;
+        } else {
+            long size = (long) num * identifierSize;
+            skipFully(size);
+            ClassInfo info = getCachedClassInfo(elementClassId);
+            info.numberOfArrays++;
+            info.totalArraySize += size + minimumObjectSize();
+            return bytesRead + size;
+        }
+    }
+
+    /**
+     * Resolve class names the way {@link Snapshot#resolve(boolean)} and the
+     * model classes do and pass the totals to the visitor.
+     */
+    private void visitHistogram(Visitor visitor) {
+        Set<String> dumpedClassNames = new HashSet<>();
+        int javaLangClassInstanceSize = 0;
+        long numberOfClasses = 0;
+        for (ClassInfo info : classes) {
+            if (info.dumped) {
+                String name = info.getDumpedName();
+                dumpedClassNames.add(name);
+                if ("java.lang.Class".equals(name)) {
+                    javaLangClassInstanceSize = info.instanceSize;
+                }
+                numberOfClasses++;
+            } else if (info.numberOf > 0) {
+                // The snapshot adds a fake class for instances of unknown classes
+                numberOfClasses++;
+            }
+        }
+
+        for (ClassInfo info : classes) {
+            if (info.numberOf > 0) {
+                String name = info.dumped ? info.getDumpedName() : "unknown-class<@" + Misc.toHex(info.id) + ">";
+                visitor.visit(name, info.numberOf, info.totalSize);
+            }
+            if (info.numberOfArrays > 0) {
+                String name;
+                if (!info.dumped) {
+                    name = "[<other>";
+                } else if (version >= VERSION_JDK12BETA4) {
+                    // Modern heap dumps refer to the array class itself
+                    name = info.getDumpedName();
+                } else {
+                    String elementName = info.getDumpedName();
+                    name = elementName.startsWith("[") ? "[" + elementName : "[L" + elementName + ";";
+                }
+                visitor.visit(name, info.numberOfArrays, info.totalArraySize);
+            }
+        }
+
+        for (int typeCode = 0; typeCode < NUM_TYPE_CODES; typeCode++) {
+            if (primitiveArrayCounts[typeCode] > 0) {
+                String name = primitiveArrayName(typeCode);
+                if (!dumpedClassNames.contains(name)) {
+                    name = "[" + primitiveSignature(typeCode);
+                }
+                visitor.visit(name, primitiveArrayCounts[typeCode], primitiveArraySizes[typeCode]);
+            }
+        }
+
+        if (numberOfClasses > 0) {
+            long classSize = javaLangClassInstanceSize + minimumObjectSize();
+            visitor.visit("java.lang.Class", numberOfClasses, numberOfClasses * classSize);
+        }
+    }
+
+    private ClassInfo getClassInfo(long id) {
+        ClassInfo info = classes.get(id);
+        if (info == null) {
+            info = new ClassInfo(id);
+            classes.put(id, info);
+        }
+        return info;
+    }
+
+    private ClassInfo getCachedClassInfo(long id) {
+        if (lastClassInfo == null || lastClassId != id) {
+            lastClassInfo = getClassInfo(id);
+            lastClassId = id;
+        }
+        return lastClassInfo;
+    }
+
+    private String getName(long id) {
+        if (id == 0L) {
+            return "";
+        }
+        String result = names.get(id);
+        if (result == null) {
+            return "unresolved name " + Misc.toHex(id);
+        }
+        return result;
+    }
+
+    private int minimumObjectSize() {
+        // Same assumption as Snapshot.setIdentifierSize
+        return 2 * identifierSize;
+    }
+
+    private long readID() throws IOException {
+        return (identifierSize == 4) ? (Snapshot.SMALL_ID_MASK & (long) in.readInt()) : in.readLong();
+    }
+
+    private long skipFully(long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes((int) Math.min(remaining, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                // skipBytes may skip fewer bytes without being at the end
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        return length;
+    }
+
+    private int readVersionHeader() throws IOException {
+        int candidatesLeft = VERSIONS.length;
+        boolean[] matched = new boolean[VERSIONS.length];
+        for (int i = 0; i < candidatesLeft; i++) {
+            matched[i] = true;
+        }
+
+        int pos = 0;
+        while (candidatesLeft > 0) {
+            char c = (char) in.readByte();
+            for (int i = 0; i < VERSIONS.length; i++) {
+                if (matched[i]) {
+                    if (c != VERSIONS[i].charAt(pos)) {
+                        matched[i] = false;
+                        --candidatesLeft;
+                    } else if (pos == VERSIONS[i].length() - 1) {
+                        return i;
+                    }
+                }
+            }
+            ++pos;
+        }
+        throw new IOException("Version string not recognized at byte " + (pos + 3));
+    }
+
+    private int valueSize(byte type) throws IOException {
+        if (version >= VERSION_JDK12BETA4) {
+            if (type == T_CLASS) {
+                return identifierSize;
+            }
+            int size = primitiveSize(type);
+            if (size == 0) {
+                throw new IOException("Invalid type id of " + type);
+            }
+            return size;
+        }
+        switch (type) {
+            case '[':
+            case 'L':
+                return identifierSize;
+            case 'Z':
+            case 'B':
+                return 1;
+            case 'S':
+            case 'C':
+                return 2;
+            case 'I':
+            case 'F':
+                return 4;
+            case 'J':
+            case 'D':
+                return 8;
+            default:
+                throw new IOException("Bad value signature: " + type);
+        }
+    }
+
+    private static int primitiveSize(long typeCode) {
+        switch ((int) typeCode) {
+            case T_BOOLEAN:
+            case T_BYTE:
+                return 1;
+            case T_CHAR:
+            case T_SHORT:
+                return 2;
+            case T_FLOAT:
+            case T_INT:
+                return 4;
+            case T_DOUBLE:
+            case T_LONG:
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    private static char primitiveSignature(int typeCode) {
+        switch (typeCode) {
+            case T_BOOLEAN: return 'Z';
+            case T_CHAR:    return 'C';
+            case T_FLOAT:   return 'F';
+            case T_DOUBLE:  return 'D';
+            case T_BYTE:    return 'B';
+            case T_SHORT:   return 'S';
+            case T_INT:     return 'I';
+            case T_LONG:    return 'J';
+            default:
+                throw new IllegalArgumentException("Invalid type code: " + typeCode);
+        }
+    }
+
+    private static String primitiveArrayName(int typeCode) {
+        switch (typeCode) {
+            case T_BOOLEAN: return "boolean[]";
+            case T_CHAR:    return "char[]";
+            case T_FLOAT:   return "float[]";
+            case T_DOUBLE:  return "double[]";
+            case T_BYTE:    return "byte[]";
+            case T_SHORT:   return "short[]";
+            case T_INT:     return "int[]";
+            case T_LONG:    return "long[]";
+            default:
+                throw new IllegalArgumentException("Invalid type code: " + typeCode);
+        }
+    }
+
+    /*
+     * Everything known about one class object ID: its name and instance size
+     * if it was loaded and dumped, and the instances and arrays referring to it.
+     */
+    private static class ClassInfo {
+        final long id;
+        String name;
+        boolean dumped;
+        int instanceSize;
+        long numberOf;
+        long totalSize;
+        long numberOfArrays;
+        long totalArraySize;
+
+        ClassInfo(long id) {
+            this.id = id;
+        }
+
+        String getDumpedName() {
+            return name != null ? name : "unknown-name@" + Misc.toHex(id);
+        }
+    }
+
+}
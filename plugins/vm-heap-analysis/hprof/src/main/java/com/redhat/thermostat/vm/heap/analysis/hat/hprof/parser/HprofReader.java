@@ -33,10 +33,18 @@
 package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.*;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.util.LongHashMap;
 
 /**
  * Object that's used to read a hprof file.
@@ -117,6 +125,8 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
 
     private final static int T_CLASS = 2;
 
+    private final static int SEGMENT_BUFFER_SIZE = 64 * 1024;
+
     private int version;        // The version of .hprof being read
 
     private int debugLevel;
@@ -126,7 +136,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
     private boolean callStack;  // If true, read the call stack of objects
 
     private int identifierSize;         // Size, in bytes, of identifiers.
-    private Hashtable<Long, String> names;
+    private LongHashMap<String> names;
 
     // Hashtable<Integer, ThreadObject>, used to map the thread sequence number
     // (aka "serial number") to the thread object ID for
@@ -134,16 +144,16 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
     // at the end of this file.
     private Hashtable<Integer, ThreadObject> threadObjects;
 
-    // Hashtable<Long, String>, maps class object ID to class name
+    // LongHashMap<String>, maps class object ID to class name
     // (with / converted to .)
-    private Hashtable<Long, String> classNameFromObjectID;
+    private LongHashMap<String> classNameFromObjectID;
 
     // Hashtable<Integer, Integer>, maps class serial # to class object ID
     private Hashtable<Integer, String> classNameFromSerialNo;
 
-    // Hashtable<Long, StackFrame> maps stack frame ID to StackFrame.
+    // LongHashMap<StackFrame> maps stack frame ID to StackFrame.
     // Null if we're not tracking them.
-    private Hashtable<Long, StackFrame> stackFrames;
+    private LongHashMap<StackFrame> stackFrames;
 
     // Hashtable<Integer, StackTrace> maps stack frame ID to StackTrace
     // Null if we're not tracking them.
@@ -151,25 +161,66 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
 
     private Snapshot snapshot;
 
+    private String fileName;
+
+    // If greater than 1, the HPROF_HEAP_DUMP_SEGMENTs of the dump are
+    // skipped on the first pass and parsed on this many threads once all
+    // segments are known, see readSegments().
+    private int parallelism;
+    private List<long[]> segments;      // {start, length} of each segment
+
+    // Non-null for readers parsing a segment on a worker thread.
+    // Heap records are buffered in it instead of added to the snapshot.
+    private HeapDumpSegment segment;
+
     public HprofReader(String fileName, PositionDataInputStream in,
                        int dumpNumber, boolean callStack, int debugLevel)
                        throws IOException {
+        this(fileName, in, dumpNumber, callStack, debugLevel, 1);
+    }
+
+    public HprofReader(String fileName, PositionDataInputStream in,
+                       int dumpNumber, boolean callStack, int debugLevel,
+                       int parallelism)
+                       throws IOException {
         super(in);
+        this.fileName = fileName;
+        this.parallelism = parallelism;
+        this.segments = new ArrayList<long[]>();
         RandomAccessFile file = new RandomAccessFile(fileName, "r");
         this.snapshot = new Snapshot(MappedReadBuffer.create(file));
         this.dumpsToSkip = dumpNumber - 1;
         this.callStack = callStack;
         this.debugLevel = debugLevel;
-        names = new Hashtable<Long, String>();
+        names = new LongHashMap<String>();
         threadObjects = new Hashtable<Integer, ThreadObject>(43);
-        classNameFromObjectID = new Hashtable<Long, String>();
+        classNameFromObjectID = new LongHashMap<String>();
         if (callStack) {
-            stackFrames = new Hashtable<Long, StackFrame>(43);
+            stackFrames = new LongHashMap<StackFrame>(43);
             stackTraces = new Hashtable<Integer, StackTrace>(43);
             classNameFromSerialNo = new Hashtable<Integer, String>();
         }
     }
 
+    // A reader for one heap dump segment, sharing the (by then read-only)
+    // tables of the reader that found the segment.
+    private HprofReader(HprofReader parent, PositionDataInputStream in,
+                        HeapDumpSegment segment) {
+        super(in);
+        this.fileName = parent.fileName;
+        this.version = parent.version;
+        this.identifierSize = parent.identifierSize;
+        this.debugLevel = parent.debugLevel;
+        this.callStack = parent.callStack;
+        this.names = parent.names;
+        this.classNameFromObjectID = parent.classNameFromObjectID;
+        this.classNameFromSerialNo = parent.classNameFromSerialNo;
+        this.stackFrames = parent.stackFrames;
+        this.stackTraces = parent.stackTraces;
+        this.snapshot = parent.snapshot;
+        this.segment = segment;
+    }
+
     public Snapshot read() throws IOException {
         currPos = 4;    // 4 because of the magic number
         version = readVersionHeader();
@@ -254,6 +305,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
                     if (version >= VERSION_JDK6) {
                         if (dumpsToSkip <= 0) {
                             skipBytes(length);  // should be no-op
+                            readSegments();
                             return snapshot;
                         } else {
                             // skip this dump (of the end record for a sequence of dump segments)
@@ -269,7 +321,11 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
 
                 case HPROF_HEAP_DUMP_SEGMENT: {
                     if (version >= VERSION_JDK6) {
-                        if (dumpsToSkip <= 0) {
+                        if (dumpsToSkip <= 0 && parallelism > 1) {
+                            // read the dump segment later, see readSegments()
+                            segments.add(new long[] { in.position(), length });
+                            skipFully(length);
+                        } else if (dumpsToSkip <= 0) {
                             try {
                                 // read the dump segment
                                 readHeapDump(length, currPos);
@@ -350,6 +406,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
             }
         }
 
+        readSegments();
         return snapshot;
     }
 
@@ -357,6 +414,86 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
         in.skipBytes((int)length);
     }
 
+    private void skipFully(long length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes((int) Math.min(length, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            length -= skipped;
+        }
+    }
+
+    //
+    // Parse the heap dump segments found by read() on a pool of threads,
+    // each with its own stream on the file. The results are added to the
+    // snapshot in file order, so that it holds the same objects and roots
+    // as if the segments had been read sequentially.
+    //
+    private void readSegments() throws IOException {
+        if (segments.isEmpty()) {
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Future<HeapDumpSegment>> results = new ArrayList<Future<HeapDumpSegment>>();
+            for (final long[] range : segments) {
+                results.add(pool.submit(new Callable<HeapDumpSegment>() {
+                    @Override
+                    public HeapDumpSegment call() throws IOException {
+                        return readSegment(range[0], range[1]);
+                    }
+                }));
+            }
+            segments.clear();
+            for (Future<HeapDumpSegment> result : results) {
+                getSegment(result).addTo(this);
+            }
+            if (debugLevel > 0) {
+                System.out.println("    Finished processing instances in heap dump segments.");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private HeapDumpSegment readSegment(long start, long length) throws IOException {
+        HeapDumpSegment result = new HeapDumpSegment();
+        try (FileInputStream file = new FileInputStream(fileName)) {
+            file.getChannel().position(start);
+            PositionDataInputStream segmentIn = new PositionDataInputStream(
+                    new PositionInputStream(new BufferedInputStream(file, SEGMENT_BUFFER_SIZE), start));
+            HprofReader reader = new HprofReader(this, segmentIn, result);
+            try {
+                reader.readHeapDump(length, start + length);
+            } catch (EOFException exp) {
+                result.eof = exp;
+            }
+        }
+        return result;
+    }
+
+    private static HeapDumpSegment getSegment(Future<HeapDumpSegment> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading heap dump segments");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     private int readVersionHeader() throws IOException {
         int candidatesLeft = VERSIONS.length;
         boolean[] matched = new boolean[VERSIONS.length];
@@ -396,7 +533,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
                 case HPROF_GC_ROOT_UNKNOWN: {
                     long id = readID();
                     bytesLeft -= identifierSize;
-                    snapshot.addRoot(new Root(id, 0, Root.UNKNOWN, ""));
+                    addRoot(type, id, 0, 0);
                     break;
                 }
                 case HPROF_GC_ROOT_THREAD_OBJ: {
@@ -404,75 +541,38 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
                     int threadSeq = in.readInt();
                     int stackSeq = in.readInt();
                     bytesLeft -= identifierSize + 8;
-                    threadObjects.put(threadSeq,
-                                      new ThreadObject(id, stackSeq));
+                    addThreadObject(id, threadSeq, stackSeq);
                     break;
                 }
                 case HPROF_GC_ROOT_JNI_GLOBAL: {
                     long id = readID();
                     long globalRefId = readID();        // Ignored, for now
                     bytesLeft -= 2*identifierSize;
-                    snapshot.addRoot(new Root(id, 0, Root.NATIVE_STATIC, ""));
-                    break;
-                }
-                case HPROF_GC_ROOT_JNI_LOCAL: {
-                    long id = readID();
-                    int threadSeq = in.readInt();
-                    int depth = in.readInt();
-                    bytesLeft -= identifierSize + 8;
-                    ThreadObject to = getThreadObjectFromSequence(threadSeq);
-                    StackTrace st = getStackTraceFromSerial(to.stackSeq);
-                    if (st != null) {
-                        st = st.traceForDepth(depth+1);
-                    }
-                    snapshot.addRoot(new Root(id, to.threadId,
-                                              Root.NATIVE_LOCAL, "", st));
+                    addRoot(type, id, 0, 0);
                     break;
                 }
+                case HPROF_GC_ROOT_JNI_LOCAL:
                 case HPROF_GC_ROOT_JAVA_FRAME: {
                     long id = readID();
                     int threadSeq = in.readInt();
                     int depth = in.readInt();
                     bytesLeft -= identifierSize + 8;
-                    ThreadObject to = getThreadObjectFromSequence(threadSeq);
-                    StackTrace st = getStackTraceFromSerial(to.stackSeq);
-                    if (st != null) {
-                        st = st.traceForDepth(depth+1);
-                    }
-                    snapshot.addRoot(new Root(id, to.threadId,
-                                              Root.JAVA_LOCAL, "", st));
-                    break;
-                }
-                case HPROF_GC_ROOT_NATIVE_STACK: {
-                    long id = readID();
-                    int threadSeq = in.readInt();
-                    bytesLeft -= identifierSize + 4;
-                    ThreadObject to = getThreadObjectFromSequence(threadSeq);
-                    StackTrace st = getStackTraceFromSerial(to.stackSeq);
-                    snapshot.addRoot(new Root(id, to.threadId,
-                                              Root.NATIVE_STACK, "", st));
-                    break;
-                }
-                case HPROF_GC_ROOT_STICKY_CLASS: {
-                    long id = readID();
-                    bytesLeft -= identifierSize;
-                    snapshot.addRoot(new Root(id, 0, Root.SYSTEM_CLASS, ""));
+                    addRoot(type, id, threadSeq, depth);
                     break;
                 }
+                case HPROF_GC_ROOT_NATIVE_STACK:
                 case HPROF_GC_ROOT_THREAD_BLOCK: {
                     long id = readID();
                     int threadSeq = in.readInt();
                     bytesLeft -= identifierSize + 4;
-                    ThreadObject to = getThreadObjectFromSequence(threadSeq);
-                    StackTrace st = getStackTraceFromSerial(to.stackSeq);
-                    snapshot.addRoot(new Root(id, to.threadId,
-                                     Root.THREAD_BLOCK, "", st));
+                    addRoot(type, id, threadSeq, 0);
                     break;
                 }
+                case HPROF_GC_ROOT_STICKY_CLASS:
                 case HPROF_GC_ROOT_MONITOR_USED: {
                     long id = readID();
                     bytesLeft -= identifierSize;
-                    snapshot.addRoot(new Root(id, 0, Root.BUSY_MONITOR, ""));
+                    addRoot(type, id, 0, 0);
                     break;
                 }
                 case HPROF_GC_CLASS_DUMP: {
@@ -608,6 +708,75 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
         }
     }
 
+    private void addThreadObject(long id, int threadSeq, int stackSeq) {
+        if (segment != null) {
+            segment.addRoot(HPROF_GC_ROOT_THREAD_OBJ, id, threadSeq, stackSeq);
+            return;
+        }
+        threadObjects.put(threadSeq, new ThreadObject(id, stackSeq));
+    }
+
+    private void addRoot(int type, long id, int threadSeq, int depth)
+            throws IOException {
+        if (segment != null) {
+            segment.addRoot(type, id, threadSeq, depth);
+            return;
+        }
+        switch (type) {
+            case HPROF_GC_ROOT_UNKNOWN:
+                snapshot.addRoot(new Root(id, 0, Root.UNKNOWN, ""));
+                break;
+            case HPROF_GC_ROOT_JNI_GLOBAL:
+                snapshot.addRoot(new Root(id, 0, Root.NATIVE_STATIC, ""));
+                break;
+            case HPROF_GC_ROOT_JNI_LOCAL:
+            case HPROF_GC_ROOT_JAVA_FRAME: {
+                ThreadObject to = getThreadObjectFromSequence(threadSeq);
+                StackTrace st = getStackTraceFromSerial(to.stackSeq);
+                if (st != null) {
+                    st = st.traceForDepth(depth+1);
+                }
+                int kind = type == HPROF_GC_ROOT_JNI_LOCAL ? Root.NATIVE_LOCAL : Root.JAVA_LOCAL;
+                snapshot.addRoot(new Root(id, to.threadId, kind, "", st));
+                break;
+            }
+            case HPROF_GC_ROOT_NATIVE_STACK:
+            case HPROF_GC_ROOT_THREAD_BLOCK: {
+                ThreadObject to = getThreadObjectFromSequence(threadSeq);
+                StackTrace st = getStackTraceFromSerial(to.stackSeq);
+                int kind = type == HPROF_GC_ROOT_NATIVE_STACK ? Root.NATIVE_STACK : Root.THREAD_BLOCK;
+                snapshot.addRoot(new Root(id, to.threadId, kind, "", st));
+                break;
+            }
+            case HPROF_GC_ROOT_STICKY_CLASS:
+                snapshot.addRoot(new Root(id, 0, Root.SYSTEM_CLASS, ""));
+                break;
+            case HPROF_GC_ROOT_MONITOR_USED:
+                snapshot.addRoot(new Root(id, 0, Root.BUSY_MONITOR, ""));
+                break;
+            default:
+                throw new IOException("Unrecognized root type:  " + type);
+        }
+    }
+
+    private void addClass(long id, JavaClass c, StackTrace stackTrace) {
+        if (segment != null) {
+            segment.addThing(id, c, stackTrace);
+            return;
+        }
+        snapshot.addClass(id, c);
+        snapshot.setSiteTrace(c, stackTrace);
+    }
+
+    private void addHeapObject(long id, JavaHeapObject obj, StackTrace stackTrace) {
+        if (segment != null) {
+            segment.addThing(id, obj, stackTrace);
+            return;
+        }
+        snapshot.addHeapObject(id, obj);
+        snapshot.setSiteTrace(obj, stackTrace);
+    }
+
     private ThreadObject getThreadObjectFromSequence(int threadSeq)
             throws IOException {
         ThreadObject to = threadObjects.get(threadSeq);
@@ -711,8 +880,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
         JavaClass c = new JavaClass(id, name, superId, classLoaderId, signersId,
                                     protDomainId, fields, statics,
                                     instanceSize);
-        snapshot.addClass(id, c);
-        snapshot.setSiteTrace(c, stackTrace);
+        addClass(id, c, stackTrace);
 
         return bytesRead;
     }
@@ -734,8 +902,7 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
         int bytesRead = (2 * identifierSize) + 8 + bytesFollowing;
         JavaObject jobj = new JavaObject(classID, start);
         skipBytes(bytesFollowing);
-        snapshot.addHeapObject(id, jobj);
-        snapshot.setSiteTrace(jobj, stackTrace);
+        addHeapObject(id, jobj, stackTrace);
         return bytesRead;
     }
 
@@ -814,15 +981,13 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
             bytesRead += size;
             JavaValueArray va = new JavaValueArray(primitiveSignature, start);
             skipBytes(size);
-            snapshot.addHeapObject(id, va);
-            snapshot.setSiteTrace(va, stackTrace);
+            addHeapObject(id, va, stackTrace);
         } else {
             int sz = num * identifierSize;
             bytesRead += sz;
             JavaObjectArray arr = new JavaObjectArray(elementClassID, start);
             skipBytes(sz);
-            snapshot.addHeapObject(id, arr);
-            snapshot.setSiteTrace(arr, stackTrace);
+            addHeapObject(id, arr, stackTrace);
         }
         return bytesRead;
     }
@@ -875,6 +1040,69 @@ public class HprofReader extends Reader /* imports */ implements ArrayTypeCodes
         System.out.println("WARNING: " + msg);
     }
 
+    //
+    // The records of a heap dump segment parsed on a worker thread, in the
+    // order they were read.
+    //
+    private static class HeapDumpSegment {
+
+        private long[] ids = new long[1024];
+        private JavaHeapObject[] things = new JavaHeapObject[1024];
+        private StackTrace[] stackTraces;   // Allocated on first use
+        private int size;
+
+        // {type, id, threadSeq, depth or stackSeq} of each root
+        private List<long[]> roots = new ArrayList<long[]>();
+
+        private EOFException eof;
+
+        void addThing(long id, JavaHeapObject thing, StackTrace stackTrace) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                things = Arrays.copyOf(things, size * 2);
+                if (stackTraces != null) {
+                    stackTraces = Arrays.copyOf(stackTraces, size * 2);
+                }
+            }
+            if (stackTrace != null && stackTraces == null) {
+                stackTraces = new StackTrace[ids.length];
+            }
+            ids[size] = id;
+            things[size] = thing;
+            if (stackTrace != null) {
+                stackTraces[size] = stackTrace;
+            }
+            size++;
+        }
+
+        void addRoot(int type, long id, int threadSeq, int extra) {
+            roots.add(new long[] { type, id, threadSeq, extra });
+        }
+
+        // Roots only refer to thread objects and objects by ID, so adding
+        // them ahead of the objects does not change the snapshot.
+        void addTo(HprofReader reader) throws IOException {
+            for (long[] root : roots) {
+                if (root[0] == HPROF_GC_ROOT_THREAD_OBJ) {
+                    reader.addThreadObject(root[1], (int) root[2], (int) root[3]);
+                } else {
+                    reader.addRoot((int) root[0], root[1], (int) root[2], (int) root[3]);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                StackTrace stackTrace = stackTraces == null ? null : stackTraces[i];
+                if (things[i] instanceof JavaClass) {
+                    reader.addClass(ids[i], (JavaClass) things[i], stackTrace);
+                } else {
+                    reader.addHeapObject(ids[i], things[i], stackTrace);
+                }
+            }
+            if (eof != null) {
+                reader.handleEOF(eof, reader.snapshot);
+            }
+        }
+    }
+
     //
     // A trivial data-holder class for HPROF_GC_ROOT_THREAD_OBJ.
     //
@@ -32,23 +32,66 @@
 
 package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Implementation of ReadBuffer using mapped file buffer
+ * Implementation of ReadBuffer using mapped file buffers.
+ *
+ * The file is mapped in segments of at most 1 GB each, so files larger than
+ * 2 GB can be mapped. Reads use absolute positions in the mapped buffers and
+ * only count themselves in, so that {@link #close()} can wait for them before
+ * unmapping. Segments overlap by a few bytes so that primitive
+ * values never span two segments; only {@link #get(long, byte[])} may need
+ * to read from more than one segment.
  *
  * @author A. Sundararajan
  */
 class MappedReadBuffer implements ReadBuffer {
-    private MappedByteBuffer buf;
-    private RandomAccessFile file;
 
-    MappedReadBuffer(RandomAccessFile file, MappedByteBuffer buf) {
+    private static final Logger logger = Logger.getLogger(MappedReadBuffer.class.getName());
+
+    static final int DEFAULT_SEGMENT_BITS = 30;
+    // Size of the largest primitive value
+    private static final int SEGMENT_OVERLAP = 8;
+
+    private final RandomAccessFile file;
+    private final long size;
+    private final int segmentBits;
+    private final long segmentMask;
+    private final MappedByteBuffer[] segments;
+    private final AtomicInteger activeReads = new AtomicInteger();
+    private volatile boolean closed;
+
+    MappedReadBuffer(RandomAccessFile file, int segmentBits) throws IOException {
         this.file = file;
-        this.buf = buf;
+        this.segmentBits = segmentBits;
+        long segmentSize = 1L << segmentBits;
+        this.segmentMask = segmentSize - 1;
+        FileChannel ch = file.getChannel();
+        this.size = ch.size();
+        int numSegments = (int) ((size + segmentMask) >>> segmentBits);
+        MappedByteBuffer[] bufs = new MappedByteBuffer[numSegments];
+        try {
+            for (int i = 0; i < numSegments; i++) {
+                long start = (long) i << segmentBits;
+                long length = Math.min(segmentSize + SEGMENT_OVERLAP, size - start);
+                bufs[i] = ch.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+        } catch (IOException e) {
+            unmap(bufs);
+            throw e;
+        }
+        this.segments = bufs;
     }
 
     /**
@@ -64,21 +107,16 @@ class MappedReadBuffer implements ReadBuffer {
      * is locked on Windows until test process dies since there is no good way to
      * release this resource.
      *
-     * java.nio.MappedByteBuffer will be used only if 'jhat.enableFileMap' is set to true.
-     * Per default 'jhat.enableFileMap' is not set.
+     * java.nio.MappedByteBuffer is used by default on Linux only, where a mapped
+     * file does not prevent the file from being deleted. Setting 'jhat.enableFileMap'
+     * to 'true' or 'false' overrides the default.
      */
     static ReadBuffer create(RandomAccessFile file) throws IOException {
         if (canUseFileMap()) {
-            MappedByteBuffer buf;
             try {
-                FileChannel ch = file.getChannel();
-                long size = ch.size();
-                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
-                ch.close();
-                return new MappedReadBuffer(file, buf);
+                return new MappedReadBuffer(file, DEFAULT_SEGMENT_BITS);
             } catch (IOException exp) {
-                exp.printStackTrace();
-                System.err.println("File mapping failed, will use direct read");
+                logger.log(Level.WARNING, "File mapping failed, will use direct read", exp);
                 // fall through
             }
         } // else fall through
@@ -86,51 +124,167 @@ class MappedReadBuffer implements ReadBuffer {
     }
 
     /**
-     * Set system property 'jhat.enableFileMap' to 'true' to enable file mapping.
+     * Set system property 'jhat.enableFileMap' to enable or disable file mapping.
      */
     private static boolean canUseFileMap() {
         String prop = System.getProperty("jhat.enableFileMap");
-        return prop != null && prop.equals("true");
+        if (prop != null) {
+            return prop.equals("true");
+        }
+        String os = System.getProperty("os.name");
+        return os != null && os.startsWith("Linux");
+    }
+
+    public void get(long pos, byte[] res) throws IOException {
+        MappedByteBuffer[] bufs = acquire(pos, res.length);
+        try {
+            int offset = 0;
+            while (offset < res.length) {
+                int index = (int) (pos & segmentMask);
+                int length = (int) Math.min(res.length - offset, segmentMask + 1 - index);
+                ByteBuffer buf = bufs[(int) (pos >>> segmentBits)].duplicate();
+                buf.position(index);
+                buf.get(res, offset, length);
+                offset += length;
+                pos += length;
+            }
+        } finally {
+            release();
+        }
+    }
+
+    public char getChar(long pos) throws IOException {
+        MappedByteBuffer buf = segment(pos, 2);
+        try {
+            return buf.getChar(index(pos));
+        } finally {
+            release();
+        }
+    }
+
+    public byte getByte(long pos) throws IOException {
+        MappedByteBuffer buf = segment(pos, 1);
+        try {
+            return buf.get(index(pos));
+        } finally {
+            release();
+        }
     }
 
-    private void seek(long pos) throws IOException {
-        assert pos <= Integer.MAX_VALUE :  "position overflow";
-        buf.position((int)pos);
+    public short getShort(long pos) throws IOException {
+        MappedByteBuffer buf = segment(pos, 2);
+        try {
+            return buf.getShort(index(pos));
+        } finally {
+            release();
+        }
     }
 
-    public synchronized void get(long pos, byte[] res) throws IOException {
-        seek(pos);
-        buf.get(res);
+    public int getInt(long pos) throws IOException {
+        MappedByteBuffer buf = segment(pos, 4);
+        try {
+            return buf.getInt(index(pos));
+        } finally {
+            release();
+        }
     }
 
-    public synchronized char getChar(long pos) throws IOException {
-        seek(pos);
-        return buf.getChar();
+    public long getLong(long pos) throws IOException {
+        MappedByteBuffer buf = segment(pos, 8);
+        try {
+            return buf.getLong(index(pos));
+        } finally {
+            release();
+        }
     }
 
-    public synchronized byte getByte(long pos) throws IOException {
-        seek(pos);
-        return buf.get();
+    // Must be followed by release()
+    private MappedByteBuffer segment(long pos, int length) throws IOException {
+        MappedByteBuffer[] bufs = acquire(pos, length);
+        return bufs[(int) (pos >>> segmentBits)];
     }
 
-    public synchronized short getShort(long pos) throws IOException {
-        seek(pos);
-        return buf.getShort();
+    private int index(long pos) {
+        return (int) (pos & segmentMask);
     }
 
-    public synchronized int getInt(long pos) throws IOException {
-        seek(pos);
-        return buf.getInt();
+    /*
+     * Registers a read so that close() does not unmap the segments while it
+     * is in progress. Every successful call must be paired with release().
+     */
+    private MappedByteBuffer[] acquire(long pos, int length) throws IOException {
+        activeReads.incrementAndGet();
+        if (closed) {
+            release();
+            throw new IOException("Buffer has been closed");
+        }
+        if (pos < 0 || pos > size - length) {
+            release();
+            throw new EOFException("Cannot read " + length + " bytes at position " + pos
+                    + " of file with size " + size);
+        }
+        return segments;
     }
 
-    public synchronized long getLong(long pos) throws IOException {
-        seek(pos);
-        return buf.getLong();
+    private void release() {
+        activeReads.decrementAndGet();
     }
 
+    /**
+     * Unmaps the file once reads in progress have finished. Reads started
+     * after close fail with an IOException.
+     */
     @Override
     public void close() throws Exception {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        // A read either saw closed or is counted here; reads are short, so spin
+        while (activeReads.get() != 0) {
+            Thread.yield();
+        }
+        unmap(segments);
         file.close();
     }
 
+    /*
+     * Releases mapped buffers right away rather than when they are garbage
+     * collected, so that the disk space of a deleted heap dump is freed.
+     * There is no public API for this, so fall back to waiting for GC if the
+     * JDK internals are not accessible.
+     */
+    private static void unmap(MappedByteBuffer[] bufs) {
+        for (MappedByteBuffer buf : bufs) {
+            if (buf == null) {
+                continue;
+            }
+            try {
+                try {
+                    // JDK 9 and later
+                    Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                    Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                    Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                    theUnsafe.setAccessible(true);
+                    invokeCleaner.invoke(theUnsafe.get(null), buf);
+                } catch (NoSuchMethodException e) {
+                    // JDK 8: ((sun.nio.ch.DirectBuffer) buf).cleaner().clean()
+                    Method cleanerMethod = buf.getClass().getMethod("cleaner");
+                    cleanerMethod.setAccessible(true);
+                    Object cleaner = cleanerMethod.invoke(buf);
+                    if (cleaner != null) {
+                        Method clean = cleaner.getClass().getMethod("clean");
+                        clean.setAccessible(true);
+                        clean.invoke(cleaner);
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.log(Level.FINE, "Unable to unmap heap dump, leaving it to the garbage collector", e);
+                return;
+            }
+        }
+    }
+
 }
@@ -48,6 +48,14 @@ public class PositionInputStream extends FilterInputStream {
         super(in);
     }
 
+    /**
+     * @param position the position of {@code in} in the underlying file
+     */
+    public PositionInputStream(InputStream in, long position) {
+        super(in);
+        this.position = position;
+    }
+
     public int read() throws IOException {
         int res = super.read();
         if (res != -1) position++;
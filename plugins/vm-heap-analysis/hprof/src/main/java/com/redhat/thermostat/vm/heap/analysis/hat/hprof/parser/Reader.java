@@ -66,6 +66,21 @@ public abstract class Reader {
     public static Snapshot readFile(String heapFile, boolean callStack,
                                     int debugLevel)
             throws IOException {
+        return readFile(heapFile, callStack, debugLevel, 1);
+    }
+
+    /**
+     * Read a snapshot from a file, parsing heap dump segments on up to
+     * {@code parallelism} threads.
+     *
+     * @param heapFile The name of a file containing a heap dump
+     * @param callStack If true, read the call stack of allocaation sites
+     * @param parallelism The number of threads to parse with; 1 parses
+     *        on the calling thread only
+     */
+    public static Snapshot readFile(String heapFile, boolean callStack,
+                                    int debugLevel, int parallelism)
+            throws IOException {
         int dumpNumber = 1;
         int pos = heapFile.lastIndexOf('#');
         if (pos > -1) {
@@ -88,7 +103,7 @@ public abstract class Reader {
             if (i == HprofReader.MAGIC_NUMBER) {
                 Reader r
                     = new HprofReader(heapFile, in, dumpNumber,
-                                      callStack, debugLevel);
+                                      callStack, debugLevel, parallelism);
                 return r.read();
             } else {
                 throw new IOException("Unrecognized magic number: " + i);
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.HprofReaderTest;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser.Reader;
+
+public class DominatorTreeTest {
+
+    @Test
+    public void testDiamond() {
+        // 0 -> 1 -> {2, 3} -> 4
+        ReferenceGraph graph = graph(new int[] { 0, 1, 2, 4, 8 },
+                new int[][] { { 1 }, { 2, 3 }, { 4 }, { 4 }, {} });
+        DominatorTree tree = DominatorTree.compute(graph);
+
+        assertEquals(-1, tree.getImmediateDominator(ReferenceGraph.ROOT));
+        assertEquals(ReferenceGraph.ROOT, tree.getImmediateDominator(1));
+        assertEquals(1, tree.getImmediateDominator(2));
+        assertEquals(1, tree.getImmediateDominator(3));
+        assertEquals(1, tree.getImmediateDominator(4));
+        assertEquals(15, tree.getRetainedSize(1));
+        assertEquals(2, tree.getRetainedSize(2));
+        assertEquals(8, tree.getRetainedSize(4));
+        assertArrayEquals(new int[] { 1, 2, 4 }, graph.shortestPathFromRoot(4));
+    }
+
+    @Test
+    public void testLengauerTarjanExample() {
+        // The flow graph of figure 1 in Lengauer and Tarjan, "A Fast
+        // Algorithm for Finding Dominators in a Flowgraph", with R as 0
+        // and A to L as 1 to 12.
+        final int R = 0, A = 1, B = 2, C = 3, D = 4, E = 5, F = 6, G = 7, H = 8, I = 9, J = 10, K = 11, L = 12;
+        int[][] references = new int[13][];
+        references[R] = new int[] { A, B, C };
+        references[A] = new int[] { D };
+        references[B] = new int[] { A, D, E };
+        references[C] = new int[] { F, G };
+        references[D] = new int[] { L };
+        references[E] = new int[] { H };
+        references[F] = new int[] { I };
+        references[G] = new int[] { I, J };
+        references[H] = new int[] { E, K };
+        references[I] = new int[] { K };
+        references[J] = new int[] { I };
+        references[K] = new int[] { I, R };
+        references[L] = new int[] { H };
+        DominatorTree tree = DominatorTree.compute(graph(new int[13], references));
+
+        int[] expected = { -1, R, R, R, R, R, C, C, R, R, G, R, D };
+        for (int node = 0; node < expected.length; node++) {
+            assertEquals("idom of " + node, expected[node], tree.getImmediateDominator(node));
+        }
+    }
+
+    @Test
+    public void testUnreachableNode() {
+        // 2 refers to 1 but nothing refers to 2
+        ReferenceGraph graph = graph(new int[] { 0, 1, 2 }, new int[][] { { 1 }, {}, { 1 } });
+        DominatorTree tree = DominatorTree.compute(graph);
+
+        assertFalse(tree.isReachable(2));
+        assertEquals(-1, tree.getImmediateDominator(2));
+        assertEquals(0, tree.getRetainedSize(2));
+        assertEquals(1, tree.getRetainedSize(1));
+        assertNull(graph.shortestPathFromRoot(2));
+    }
+
+    @Test
+    public void testDeepChain() {
+        int length = 200000;
+        int[] sizes = new int[length + 1];
+        int[][] references = new int[length + 1][];
+        for (int node = 0; node < length; node++) {
+            sizes[node + 1] = 1;
+            references[node] = new int[] { node + 1 };
+        }
+        references[length] = new int[0];
+        ReferenceGraph graph = graph(sizes, references);
+        DominatorTree tree = DominatorTree.compute(graph);
+
+        assertEquals(length, tree.getRetainedSize(1));
+        assertEquals(length - 1, tree.getImmediateDominator(length));
+        assertEquals(length, graph.shortestPathFromRoot(length).length);
+    }
+
+    @Test
+    public void testLargestRetainers() {
+        ReferenceGraph graph = graph(new int[] { 0, 1, 2, 4, 8 },
+                new int[][] { { 1, 3 }, { 2 }, {}, { 4 }, {} });
+        DominatorTree tree = DominatorTree.compute(graph);
+
+        assertArrayEquals(new int[] { 3, 4 }, tree.getLargestRetainers(2));
+        assertArrayEquals(new int[] { 3, 4, 1, 2 }, tree.getLargestRetainers(10));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        int nodes = 100;
+        File file = Files.createTempFile("thermostat-", ".hprof").toFile();
+        try {
+            // A linked list of nodes, the last of which is a Java frame root
+            HprofReaderTest.writeSegmentedDump(file, 2, nodes / 2);
+            Snapshot snapshot = Reader.readFile(file.getAbsolutePath(), false, 0);
+            try {
+                snapshot.resolve(true);
+                ReferenceGraph graph = ReferenceGraph.build(snapshot, false);
+                DominatorTree tree = DominatorTree.compute(graph);
+
+                // The nodes have IDs 0x10000, 0x10010 and so on, each
+                // referring to the one before it
+                int first = graph.indexOf(0x10000);
+                int second = graph.indexOf(0x10010);
+                int[] path = graph.shortestPathFromRoot(first);
+                assertEquals(nodes, path.length);
+                int last = path[0];
+                assertEquals(0x10000 + (nodes - 1) * 16, graph.idOf(last));
+                assertEquals(second, tree.getImmediateDominator(first));
+                assertEquals(ReferenceGraph.ROOT, tree.getImmediateDominator(last));
+                assertEquals(nodes * graph.sizeOf(first), tree.getRetainedSize(last));
+            } finally {
+                snapshot.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static ReferenceGraph graph(int[] sizes, int[][] references) {
+        int nodes = sizes.length;
+        long[] ids = new long[nodes - 1];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i + 1;
+        }
+        int[] start = new int[nodes + 1];
+        int count = 0;
+        for (int node = 0; node < nodes; node++) {
+            start[node] = count;
+            count += references[node].length;
+        }
+        start[nodes] = count;
+        int[] targets = new int[count];
+        for (int node = 0; node < nodes; node++) {
+            System.arraycopy(references[node], 0, targets, start[node], references[node].length);
+        }
+        return new ReferenceGraph(ids, sizes, start, targets);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaHeapObject;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.JavaThing;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Root;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+
+public class HprofReaderTest {
+
+    private static final int SEGMENTS = 4;
+    private static final int NODES_PER_SEGMENT = 500;
+
+    // Basic type codes of fields and primitive arrays
+    private static final int T_OBJECT = 2;
+    private static final int T_INT = 10;
+
+    private static final long OBJECT_CLASS = 0x100;
+    private static final long NODE_CLASS = 0x140;
+    private static final long OBJECT_ARRAY_CLASS = 0x150;
+    private static final long THREAD = 0x900;
+    private static final long FIRST_NODE = 0x10000;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("thermostat-", ".hprof").toFile();
+        writeSegmentedDump(file, SEGMENTS, NODES_PER_SEGMENT);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testReadSegmentedDump() throws Exception {
+        Snapshot snapshot = read(1);
+        try {
+            JavaHeapObject first = snapshot.findThing(FIRST_NODE);
+            assertNotNull(first);
+            assertEquals("Node", first.getClazz().getName());
+            assertEquals(12 + 16, first.getSize());
+            assertEquals(1 + SEGMENTS * NODES_PER_SEGMENT, snapshot.findClass("Node").getInstancesCount(false));
+
+            Root[] roots = snapshot.getRootsArray();
+            assertEquals(2, roots.length);
+            assertEquals(Root.SYSTEM_CLASS, roots[0].getType());
+            assertEquals(Root.JAVA_LOCAL, roots[1].getType());
+            assertEquals(THREAD, roots[1].getReferer().getId());
+        } finally {
+            snapshot.close();
+        }
+    }
+
+    @Test
+    public void testParallelReadMatchesSequentialRead() throws Exception {
+        Snapshot sequential = read(1);
+        Snapshot parallel = read(SEGMENTS);
+        try {
+            assertEquals(describeObjects(sequential), describeObjects(parallel));
+            assertEquals(describeRoots(sequential), describeRoots(parallel));
+        } finally {
+            sequential.close();
+            parallel.close();
+        }
+    }
+
+    private Snapshot read(int parallelism) throws IOException {
+        Snapshot snapshot = Reader.readFile(file.getAbsolutePath(), false, 0, parallelism);
+        snapshot.resolve(true, parallelism);
+        return snapshot;
+    }
+
+    private static Map<Long, String> describeObjects(Snapshot snapshot) {
+        Map<Long, String> result = new TreeMap<>();
+        Enumeration<JavaHeapObject> things = snapshot.getThings();
+        while (things.hasMoreElements()) {
+            JavaHeapObject thing = things.nextElement();
+            List<Long> referers = new ArrayList<>();
+            Enumeration<JavaThing> e = thing.getReferers();
+            while (e.hasMoreElements()) {
+                referers.add(((JavaHeapObject) e.nextElement()).getId());
+            }
+            // Referers are found concurrently, so their order varies
+            Collections.sort(referers);
+            result.put(thing.getId(), thing.getClazz().getName() + " " + thing.getSize() + " " + referers);
+        }
+        return result;
+    }
+
+    private static List<String> describeRoots(Snapshot snapshot) {
+        List<String> result = new ArrayList<>();
+        for (Root root : snapshot.getRootsArray()) {
+            result.add(root.getIdString() + " " + root.getTypeName() + " " + root.getReferer());
+        }
+        return result;
+    }
+
+    /*
+     * Writes a version 1.0.2 dump holding a class Node { Object next; int value; }
+     * and a linked list of Nodes spread over several HPROF_HEAP_DUMP_SEGMENTs.
+     * The thread of the Java frame root is declared in the first segment and
+     * used in the last.
+     */
+    public static void writeSegmentedDump(File file, int segments, int nodesPerSegment) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write("JAVA PROFILE 1.0.2\0".getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(8);
+            out.writeLong(System.currentTimeMillis());
+
+            String[] names = { "java/lang/Object", "Node", "[Ljava/lang/Object;", "next", "value" };
+            for (int i = 0; i < names.length; i++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream record = new DataOutputStream(bytes);
+                record.writeLong(i + 1);
+                record.write(names[i].getBytes(StandardCharsets.UTF_8));
+                writeRecord(out, HprofReader.HPROF_UTF8, bytes);
+            }
+            long[] classes = { OBJECT_CLASS, NODE_CLASS, OBJECT_ARRAY_CLASS };
+            for (int i = 0; i < classes.length; i++) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream record = new DataOutputStream(bytes);
+                record.writeInt(i + 1);
+                record.writeLong(classes[i]);
+                record.writeInt(0);
+                record.writeLong(i + 1);
+                writeRecord(out, HprofReader.HPROF_LOAD_CLASS, bytes);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream segment = new DataOutputStream(bytes);
+            writeClass(segment, OBJECT_CLASS, 0, 0);
+            writeClass(segment, NODE_CLASS, OBJECT_CLASS, 2);
+            writeClass(segment, OBJECT_ARRAY_CLASS, OBJECT_CLASS, 0);
+            segment.writeByte(HprofReader.HPROF_GC_ROOT_STICKY_CLASS);
+            segment.writeLong(NODE_CLASS);
+            segment.writeByte(HprofReader.HPROF_GC_ROOT_THREAD_OBJ);
+            segment.writeLong(THREAD);
+            segment.writeInt(1);
+            segment.writeInt(0);
+            writeNode(segment, THREAD, 0, -1);
+            writeRecord(out, HprofReader.HPROF_HEAP_DUMP_SEGMENT, bytes);
+
+            long previous = 0;
+            for (int s = 0; s < segments; s++) {
+                bytes = new ByteArrayOutputStream();
+                segment = new DataOutputStream(bytes);
+                long arrayId = nodeId(segments * nodesPerSegment + 2 * s);
+                segment.writeByte(HprofReader.HPROF_GC_OBJ_ARRAY_DUMP);
+                segment.writeLong(arrayId);
+                segment.writeInt(0);
+                segment.writeInt(nodesPerSegment);
+                segment.writeLong(OBJECT_ARRAY_CLASS);
+                for (int i = 0; i < nodesPerSegment; i++) {
+                    segment.writeLong(nodeId(s * nodesPerSegment + i));
+                }
+                for (int i = 0; i < nodesPerSegment; i++) {
+                    writeNode(segment, nodeId(s * nodesPerSegment + i), previous, i);
+                    previous = nodeId(s * nodesPerSegment + i);
+                }
+                segment.writeByte(HprofReader.HPROF_GC_PRIM_ARRAY_DUMP);
+                segment.writeLong(arrayId + 16);
+                segment.writeInt(0);
+                segment.writeInt(s + 1);
+                segment.writeByte(T_INT);
+                for (int i = 0; i <= s; i++) {
+                    segment.writeInt(i);
+                }
+                if (s == segments - 1) {
+                    segment.writeByte(HprofReader.HPROF_GC_ROOT_JAVA_FRAME);
+                    segment.writeLong(previous);
+                    segment.writeInt(1);
+                    segment.writeInt(0);
+                }
+                writeRecord(out, HprofReader.HPROF_HEAP_DUMP_SEGMENT, bytes);
+            }
+            writeRecord(out, HprofReader.HPROF_HEAP_DUMP_END, new ByteArrayOutputStream());
+        }
+    }
+
+    private static long nodeId(int index) {
+        return FIRST_NODE + index * 16L;
+    }
+
+    private static void writeClass(DataOutputStream out, long id, long superId, int fields)
+            throws IOException {
+        out.writeByte(HprofReader.HPROF_GC_CLASS_DUMP);
+        out.writeLong(id);
+        out.writeInt(0);
+        out.writeLong(superId);
+        for (int i = 0; i < 5; i++) {
+            out.writeLong(0);   // loader, signers, protection domain, reserved
+        }
+        out.writeInt(fields == 0 ? 0 : 12);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(fields);
+        if (fields > 0) {
+            out.writeLong(4);
+            out.writeByte(T_OBJECT);
+            out.writeLong(5);
+            out.writeByte(T_INT);
+        }
+    }
+
+    private static void writeNode(DataOutputStream out, long id, long next, int value)
+            throws IOException {
+        out.writeByte(HprofReader.HPROF_GC_INSTANCE_DUMP);
+        out.writeLong(id);
+        out.writeInt(0);
+        out.writeLong(NODE_CLASS);
+        out.writeInt(12);
+        out.writeLong(next);
+        out.writeInt(value);
+    }
+
+    private static void writeRecord(DataOutputStream out, int type, ByteArrayOutputStream body)
+            throws IOException {
+        out.writeByte(type);
+        out.writeInt(0);
+        out.writeInt(body.size());
+        body.writeTo(out);
+    }
+}
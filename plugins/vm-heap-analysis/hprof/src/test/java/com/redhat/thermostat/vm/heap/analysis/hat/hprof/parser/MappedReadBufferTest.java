@@ -0,0 +1,191 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedReadBufferTest {
+
+    // 16 byte segments, so that most reads are close to a segment boundary
+    private static final int SEGMENT_BITS = 4;
+    private static final int FILE_SIZE = 100;
+
+    private File file;
+    private byte[] contents;
+    private MappedReadBuffer mapped;
+    private FileReadBuffer direct;
+
+    @Before
+    public void setUp() throws IOException {
+        contents = new byte[FILE_SIZE];
+        for (int i = 0; i < FILE_SIZE; i++) {
+            contents[i] = (byte) (i * 7 + 3);
+        }
+        file = Files.createTempFile("thermostat-", ".hprof").toFile();
+        Files.write(file.toPath(), contents);
+        mapped = new MappedReadBuffer(new RandomAccessFile(file, "r"), SEGMENT_BITS);
+        direct = new FileReadBuffer(new RandomAccessFile(file, "r"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mapped.close();
+        direct.close();
+        file.delete();
+    }
+
+    @Test
+    public void testPrimitivesMatchFileReadBuffer() throws IOException {
+        for (int pos = 0; pos <= FILE_SIZE - 8; pos++) {
+            assertEquals(direct.getByte(pos), mapped.getByte(pos));
+            assertEquals(direct.getChar(pos), mapped.getChar(pos));
+            assertEquals(direct.getShort(pos), mapped.getShort(pos));
+            assertEquals(direct.getInt(pos), mapped.getInt(pos));
+            assertEquals(direct.getLong(pos), mapped.getLong(pos));
+        }
+    }
+
+    @Test
+    public void testGetAcrossSegments() throws IOException {
+        for (int length : new int[] { 0, 1, 15, 16, 17, 40 }) {
+            for (int pos = 0; pos <= FILE_SIZE - length; pos++) {
+                byte[] expected = new byte[length];
+                System.arraycopy(contents, pos, expected, 0, length);
+                byte[] actual = new byte[length];
+                mapped.get(pos, actual);
+                assertArrayEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testLastBytes() throws IOException {
+        assertEquals(contents[FILE_SIZE - 1], mapped.getByte(FILE_SIZE - 1));
+        assertEquals(direct.getInt(FILE_SIZE - 4), mapped.getInt(FILE_SIZE - 4));
+    }
+
+    @Test(expected=EOFException.class)
+    public void testReadPastEnd() throws IOException {
+        mapped.getInt(FILE_SIZE - 3);
+    }
+
+    @Test(expected=EOFException.class)
+    public void testGetPastEnd() throws IOException {
+        mapped.get(FILE_SIZE - 10, new byte[11]);
+    }
+
+    @Test
+    public void testReadAfterClose() throws Exception {
+        mapped.close();
+        try {
+            mapped.getInt(0);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCloseWhileReading() throws Exception {
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch reading = new CountDownLatch(4);
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    reading.countDown();
+                    try {
+                        while (true) {
+                            for (int pos = 0; pos <= FILE_SIZE - 8; pos++) {
+                                mapped.getLong(pos);
+                            }
+                        }
+                    } catch (IOException e) {
+                        // Expected once closed
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        reading.await();
+        mapped.close();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testCloseTwice() throws Exception {
+        mapped.close();
+        mapped.close();
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        File empty = Files.createTempFile("thermostat-", ".hprof").toFile();
+        MappedReadBuffer buffer = new MappedReadBuffer(new RandomAccessFile(empty, "r"), SEGMENT_BITS);
+        try {
+            buffer.getByte(0);
+            fail("Expected EOFException");
+        } catch (EOFException e) {
+            // Expected
+        } finally {
+            buffer.close();
+            empty.delete();
+        }
+    }
+
+}
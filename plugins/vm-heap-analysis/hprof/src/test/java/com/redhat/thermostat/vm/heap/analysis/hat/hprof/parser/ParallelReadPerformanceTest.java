@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.PerformanceTest;
+import com.redhat.thermostat.vm.heap.analysis.hat.hprof.model.Snapshot;
+
+/**
+ * Times reading and resolving a segmented heap dump on one thread and on
+ * all available processors. Run with {@code mvn test -Pperf-tests}.
+ */
+@Category(PerformanceTest.class)
+public class ParallelReadPerformanceTest {
+
+    private static final int SEGMENTS = 64;
+    private static final int NODES_PER_SEGMENT = 40000;
+
+    private static File file;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        file = Files.createTempFile("thermostat-", ".hprof").toFile();
+        HprofReaderTest.writeSegmentedDump(file, SEGMENTS, NODES_PER_SEGMENT);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        file.delete();
+    }
+
+    @Test
+    public void compareParallelism() throws Exception {
+        int processors = Runtime.getRuntime().availableProcessors();
+        // Warm up
+        time(1);
+        time(processors);
+
+        long[] sequential = time(1);
+        long[] parallel = time(processors);
+        System.out.println("Read, resolve " + (SEGMENTS * NODES_PER_SEGMENT) + " objects: 1 thread "
+                + sequential[0] + " ms, " + sequential[1] + " ms; " + processors + " threads "
+                + parallel[0] + " ms, " + parallel[1] + " ms");
+        assertEquals(sequential[2], parallel[2]);
+    }
+
+    /**
+     * @return milliseconds to read and to resolve, and the number of objects
+     */
+    private static long[] time(int parallelism) throws Exception {
+        long start = System.nanoTime();
+        Snapshot snapshot = Reader.readFile(file.getAbsolutePath(), false, 0, parallelism);
+        long read = System.nanoTime();
+        snapshot.resolve(true, parallelism);
+        long resolved = System.nanoTime();
+        try {
+            long objects = snapshot.findClass("Node").getInstancesCount(false);
+            return new long[] { (read - start) / 1000000, (resolved - read) / 1000000, objects };
+        } finally {
+            snapshot.close();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.PerformanceTest;
+
+/**
+ * Compares random reads, the access pattern of a resolved Snapshot, from
+ * {@link FileReadBuffer} and {@link MappedReadBuffer}, from one thread and
+ * from several threads at once. Run with {@code mvn test -Pperf-tests}.
+ */
+@Category(PerformanceTest.class)
+public class ReadBufferPerformanceTest {
+
+    private static final int FILE_SIZE = 256 * 1024 * 1024;
+    private static final int READS = 2000000;
+    private static final int THREADS = 4;
+    private static final int FIELDS_SIZE = 24;
+
+    private static File file;
+    private static long[] positions;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        file = Files.createTempFile("thermostat-", ".hprof").toFile();
+        Random random = new Random(42);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            FileChannel ch = out.getChannel();
+            ByteBuffer chunk = ByteBuffer.allocate(1024 * 1024);
+            for (int written = 0; written < FILE_SIZE; written += chunk.capacity()) {
+                random.nextBytes(chunk.array());
+                chunk.clear();
+                while (chunk.hasRemaining()) {
+                    ch.write(chunk);
+                }
+            }
+        }
+        positions = new long[READS];
+        for (int i = 0; i < READS; i++) {
+            positions[i] = random.nextInt(FILE_SIZE - FIELDS_SIZE);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        file.delete();
+    }
+
+    @Test
+    public void compareReadBuffers() throws Exception {
+        try (FileReadBuffer direct = new FileReadBuffer(new RandomAccessFile(file, "r"));
+                MappedReadBuffer mapped = new MappedReadBuffer(new RandomAccessFile(file, "r"),
+                        MappedReadBuffer.DEFAULT_SEGMENT_BITS)) {
+            // Warm up, and check both return the same data
+            assertEquals(readAll(direct, 0, 1), readAll(mapped, 0, 1));
+
+            long directTime = time(direct, 1);
+            long mappedTime = time(mapped, 1);
+            long directThreadsTime = time(direct, THREADS);
+            long mappedThreadsTime = time(mapped, THREADS);
+            System.out.println("Random reads, 1 thread: FileReadBuffer " + nsPerRead(directTime)
+                    + " ns/read, MappedReadBuffer " + nsPerRead(mappedTime) + " ns/read");
+            System.out.println("Random reads, " + THREADS + " threads: FileReadBuffer "
+                    + nsPerRead(directThreadsTime) + " ns/read, MappedReadBuffer "
+                    + nsPerRead(mappedThreadsTime) + " ns/read");
+        }
+    }
+
+    private static long nsPerRead(long nanos) {
+        return nanos / READS;
+    }
+
+    private static long time(final ReadBuffer buffer, final int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        return readAll(buffer, thread, threads);
+                    }
+                }));
+            }
+            for (Future<Long> result : results) {
+                result.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Reads an object's length field followed by its field values, like
+     * JavaObject.readValue(), for every thread'th position.
+     */
+    private static long readAll(ReadBuffer buffer, int thread, int threads) throws IOException {
+        long sum = 0;
+        byte[] fields = new byte[FIELDS_SIZE - 4];
+        for (int i = thread; i < READS; i += threads) {
+            long pos = positions[i];
+            sum += buffer.getInt(pos);
+            buffer.get(pos + 4, fields);
+            sum += fields[0];
+        }
+        return sum;
+    }
+
+}
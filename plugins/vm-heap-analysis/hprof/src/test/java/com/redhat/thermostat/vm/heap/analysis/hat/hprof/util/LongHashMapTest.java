@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.heap.analysis.hat.hprof.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ConcurrentModificationException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LongHashMapTest {
+
+    @Test
+    public void testPutGet() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(0x7d704eb20L, "a"));
+        assertNull(map.put(0L, "zero"));
+        assertNull(map.put(-1L, "minus one"));
+        assertEquals(3, map.size());
+        assertEquals("a", map.get(0x7d704eb20L));
+        assertEquals("zero", map.get(0L));
+        assertEquals("minus one", map.get(-1L));
+        assertNull(map.get(0x7d704eb28L));
+        assertTrue(map.containsKey(0L));
+        assertFalse(map.containsKey(1L));
+    }
+
+    @Test
+    public void testPutReplaces() {
+        LongHashMap<String> map = new LongHashMap<>();
+        map.put(42L, "a");
+        assertEquals("a", map.put(42L, "b"));
+        assertEquals(1, map.size());
+        assertEquals("b", map.get(42L));
+    }
+
+    @Test(expected=NullPointerException.class)
+    public void testNullValue() {
+        new LongHashMap<String>().put(1L, null);
+    }
+
+    @Test
+    public void testGrowMatchesHashMap() {
+        // Aligned addresses, like the object IDs in a heap dump
+        Random random = new Random(42);
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            long key = 0x7d0000000L + (random.nextInt(1 << 24) << 3);
+            map.put(key, i * 2L);
+            expected.put(key, i * 2L);
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Set<Long> values = new HashSet<>();
+        for (Long value : map) {
+            values.add(value);
+        }
+        assertEquals(new HashSet<>(expected.values()), values);
+    }
+
+    @Test
+    public void testPutAllAndClear() {
+        LongHashMap<Integer> map = new LongHashMap<>();
+        LongHashMap<Integer> other = new LongHashMap<>(1000);
+        map.put(1L, 1);
+        other.put(2L, 2);
+        other.put(3L, 3);
+        map.putAll(other);
+        assertEquals(3, map.size());
+        assertEquals(Integer.valueOf(3), map.get(3L));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(1L));
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    public void testElements() {
+        LongHashMap<String> map = new LongHashMap<>();
+        map.put(1L, "a");
+        map.put(2L, "b");
+        Set<String> values = new HashSet<>();
+        for (Enumeration<String> e = map.elements(); e.hasMoreElements();) {
+            values.add(e.nextElement());
+        }
+        assertEquals(2, values.size());
+        assertTrue(values.contains("a"));
+        assertTrue(values.contains("b"));
+    }
+
+    @Test(expected=ConcurrentModificationException.class)
+    public void testConcurrentModification() {
+        LongHashMap<String> map = new LongHashMap<>();
+        map.put(1L, "a");
+        map.put(2L, "b");
+        Iterator<String> iter = map.iterator();
+        iter.next();
+        map.put(3L, "c");
+        iter.next();
+    }
+
+}
@@ -42,6 +42,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
+import com.google.gson.TypeAdapter;
 import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
@@ -112,6 +113,11 @@ public class VmIoStatDAOImpl extends PluginDAOBase<VmIoStat> implements VmIoStat
         return jsonHelper.toJson(Arrays.asList(obj));
     }
 
+    @Override
+    protected TypeAdapter<List<VmIoStat>> getTypeAdapter() {
+        return jsonHelper.getTypeAdapter();
+    }
+
     @Override
     protected URI getPostURI(final URI basepath, final VmIoStat iostat) {
         return basepath.resolve("systems/" + systemID.getSystemID() + "/jvms/" + iostat.getJvmId());
@@ -146,6 +152,10 @@ public class VmIoStatDAOImpl extends PluginDAOBase<VmIoStat> implements VmIoStat
         String toJson(List<VmIoStat> infos) throws IOException {
             return typeAdapter.toJson(infos);
         }
+
+        TypeAdapter<List<VmIoStat>> getTypeAdapter() {
+            return typeAdapter;
+        }
     }
 
     // For Testing purposes
@@ -45,16 +45,14 @@ import com.redhat.thermostat.agent.http.HttpRequestService;
 import com.redhat.thermostat.common.config.experimental.ConfigurationInfoSource;
 import com.redhat.thermostat.common.plugin.PluginConfiguration;
 import com.redhat.thermostat.common.plugin.SystemID;
+import com.redhat.thermostat.vm.io.model.VmIoStatTypeAdapter;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.Arrays;
 
-import static org.mockito.Matchers.anyListOf;
-import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -70,11 +68,12 @@ public class VmIoStatDAOImplTest {
     private static final long SOME_WRITE_SYSCALLS = 67798;
 
     private static final String AGENT_ID = "some-agent";
-    private static final String JSON = "{\"this\":\"is\",\"also\":\"JSON\"}";
 
     private static final URI GATEWAY_URI = URI.create("http://example.com/jvm-io/");
+    private static final String PLUGIN_ID = "vm-io";
 
     private VmIoStat ioStat;
+    private VmIoStatTypeAdapter typeAdapter;
     private JsonHelper jsonHelper;
     private VmIoStatDAOImpl dao;
     private HttpRequestService httpRequestService;
@@ -85,12 +84,14 @@ public class VmIoStatDAOImplTest {
                 SOME_CHARACTERS_READ, SOME_CHARACTERS_WRITTEN,
                 SOME_READ_SYSCALLS, SOME_WRITE_SYSCALLS);
 
+        typeAdapter = new VmIoStatTypeAdapter();
         jsonHelper = mock(JsonHelper.class);
-        when(jsonHelper.toJson(anyListOf(VmIoStat.class))).thenReturn(JSON);
+        when(jsonHelper.getTypeAdapter()).thenReturn(typeAdapter);
 
         ConfigurationInfoSource source = mock(ConfigurationInfoSource.class);
         PluginConfiguration config = mock(PluginConfiguration.class);
         when(config.getGatewayURL()).thenReturn(GATEWAY_URI);
+        when(config.getPluginId()).thenReturn(PLUGIN_ID);
         ConfigurationCreator creator = mock(ConfigurationCreator.class);
         when(creator.create(source)).thenReturn(config);
 
@@ -108,8 +109,7 @@ public class VmIoStatDAOImplTest {
         dao.activate();
         dao.put(ioStat);
 
-        verify(jsonHelper).toJson(eq(Arrays.asList(ioStat)));
-        verify(httpRequestService).sendHttpRequest(JSON, GATEWAY_URI.resolve("systems/" + SOME_SYSTEM_ID + "/jvms/" + SOME_VM_ID), HttpRequestService.Method.POST);
+        verify(httpRequestService).queueHttpPost(PLUGIN_ID, typeAdapter, ioStat, GATEWAY_URI.resolve("systems/" + SOME_SYSTEM_ID + "/jvms/" + SOME_VM_ID));
     }
 
 
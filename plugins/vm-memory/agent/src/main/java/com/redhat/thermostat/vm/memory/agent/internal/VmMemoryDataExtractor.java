@@ -36,6 +36,8 @@
 
 package com.redhat.thermostat.vm.memory.agent.internal;
 
+import com.redhat.thermostat.jvm.overview.agent.VmCounter;
+import com.redhat.thermostat.jvm.overview.agent.VmCounterTable;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import com.redhat.thermostat.vm.memory.agent.model.VmMemoryStat.Generation;
@@ -49,43 +51,100 @@ import com.redhat.thermostat.vm.memory.agent.model.VmMemoryStat.Generation;
  * provides is merely an abstraction over this (possibly always up-to-date)
  * ByteBuffer. So the data this class extracts is as current as possible, and
  * does not correspond to when the jvmstat update events fired.
+ * <p>
+ * The counters are looked up once and read through cached handles after
+ * that, so an instance should be kept for as long as the {@link VmUpdate}.
  */
 public class VmMemoryDataExtractor {
 
-    /*
-     * Note, there may be a performance issue to consider here. We have a lot of
-     * string constants. When we start adding some of the more heavyweight
-     * features, and running into CPU issues this may need to be reconsidered in
-     * order to avoid the String pool overhead. See also:
-     * http://docs.oracle.com/javase/6/docs/api/java/lang/String.html#intern()
-     */
-
     private final VmUpdate update;
 
+    private final VmCounterTable totalGenerations;
+    private final VmCounterTable generationNames;
+    private final VmCounterTable generationCapacities;
+    private final VmCounterTable generationMaxCapacities;
+    private final VmCounterTable collectorNames;
+    private final VmCounterTable totalSpaces;
+    private final VmCounterTable spaceNames;
+    private final VmCounterTable spaceCapacities;
+    private final VmCounterTable spaceMaxCapacities;
+    private final VmCounterTable spaceUsed;
+
+    private final VmCounterTable metaspaceMaxCapacity;
+    private final VmCounterTable metaspaceMinCapacity;
+    private final VmCounterTable metaspaceCapacity;
+    private final VmCounterTable metaspaceUsed;
+
+    private final VmCounterTable tlabAllocThreads;
+    private final VmCounterTable tlabAlloc;
+    private final VmCounterTable tlabFills;
+    private final VmCounterTable tlabMaxFills;
+    private final VmCounterTable tlabSlowAlloc;
+    private final VmCounterTable tlabMaxSlowAlloc;
+    private final VmCounterTable tlabGcWaste;
+    private final VmCounterTable tlabMaxGcWaste;
+    private final VmCounterTable tlabSlowWaste;
+    private final VmCounterTable tlabMaxSlowWaste;
+    private final VmCounterTable tlabFastWaste;
+    private final VmCounterTable tlabMaxFastWaste;
+
     public VmMemoryDataExtractor(VmUpdate update) {
         this.update = update;
+
+        totalGenerations = counter("sun.gc.policy.generations");
+        generationNames = counter("sun.gc.generation.", ".name");
+        generationCapacities = counter("sun.gc.generation.", ".capacity");
+        generationMaxCapacities = counter("sun.gc.generation.", ".maxCapacity");
+        collectorNames = counter("sun.gc.collector.", ".name");
+        totalSpaces = counter("sun.gc.generation.", ".spaces");
+        spaceNames = counter("sun.gc.generation.", ".space.", ".name");
+        spaceCapacities = counter("sun.gc.generation.", ".space.", ".capacity");
+        spaceMaxCapacities = counter("sun.gc.generation.", ".space.", ".maxCapacity");
+        spaceUsed = counter("sun.gc.generation.", ".space.", ".used");
+
+        metaspaceMaxCapacity = counter("sun.gc.metaspace.maxCapacity");
+        metaspaceMinCapacity = counter("sun.gc.metaspace.minCapacity");
+        metaspaceCapacity = counter("sun.gc.metaspace.capacity");
+        metaspaceUsed = counter("sun.gc.metaspace.used");
+
+        tlabAllocThreads = counter("sun.gc.tlab.allocThreads");
+        tlabAlloc = counter("sun.gc.tlab.alloc");
+        tlabFills = counter("sun.gc.tlab.fills");
+        tlabMaxFills = counter("sun.gc.tlab.maxFills");
+        tlabSlowAlloc = counter("sun.gc.tlab.slowAlloc");
+        tlabMaxSlowAlloc = counter("sun.gc.tlab.maxSlowAlloc");
+        tlabGcWaste = counter("sun.gc.tlab.gcWaste");
+        tlabMaxGcWaste = counter("sun.gc.tlab.maxGcWaste");
+        tlabSlowWaste = counter("sun.gc.tlab.slowWaste");
+        tlabMaxSlowWaste = counter("sun.gc.tlab.maxSlowWaste");
+        tlabFastWaste = counter("sun.gc.tlab.fastWaste");
+        tlabMaxFastWaste = counter("sun.gc.tlab.maxFastWaste");
+    }
+
+    private VmCounterTable counter(String... nameParts) {
+        return new VmCounterTable(update, nameParts);
     }
     
     public Long getTotalGcGenerations() throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.policy.generations");
+        return longValue(totalGenerations.get());
     }
 
     public String getGenerationName(long generation) throws VmUpdateException {
-        return update.getPerformanceCounterString("sun.gc.generation." + generation + ".name");
+        return stringValue(generationNames.get(generation));
     }
 
     public Long getGenerationCapacity(long generation) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".capacity");
+        return longValue(generationCapacities.get(generation));
     }
 
     public Long getGenerationMaxCapacity(long generation) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".maxCapacity");
+        return longValue(generationMaxCapacities.get(generation));
     }
 
     public String getGenerationCollector(long generation) throws VmUpdateException {
         // this is just re-implementing getCollectorName()
         // TODO check generation number and collector number are always associated
-        String collector = update.getPerformanceCounterString("sun.gc.collector." + generation + ".name");
+        String collector = stringValue(collectorNames.get(generation));
         if (collector == null) {
             collector = Generation.COLLECTOR_NONE;
         }
@@ -93,103 +152,109 @@ public class VmMemoryDataExtractor {
     }
 
     public Long getTotalSpaces(long generation) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".spaces");
+        return longValue(totalSpaces.get(generation));
     }
 
     public String getSpaceName(long generation, long space) throws VmUpdateException {
-        return update.getPerformanceCounterString("sun.gc.generation." + generation + ".space." + space + ".name");
+        return stringValue(spaceNames.get(generation, space));
     }
 
     public Long getSpaceCapacity(long generation, long space) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".space." + space + ".capacity");
+        return longValue(spaceCapacities.get(generation, space));
     }
 
     public Long getSpaceMaxCapacity(long generation, long space) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".space." + space + ".maxCapacity");
+        return longValue(spaceMaxCapacities.get(generation, space));
     }
 
     public Long getSpaceUsed(long generation, long space) throws VmUpdateException {
-        return update.getPerformanceCounterLong("sun.gc.generation." + generation + ".space." + space + ".used");
+        return longValue(spaceUsed.get(generation, space));
     }
 
     public long getMetaspaceMaxCapacity(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.metaspace.maxCapacity", defaultValue);
+        return getLongValueOrDefault(metaspaceMaxCapacity, defaultValue);
     }
 
     public long getMetaspaceMinCapacity(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.metaspace.minCapacity", defaultValue);
+        return getLongValueOrDefault(metaspaceMinCapacity, defaultValue);
     }
 
     public long getMetaspaceCapacity(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.metaspace.capacity", defaultValue);
+        return getLongValueOrDefault(metaspaceCapacity, defaultValue);
     }
 
     public long getMetaspaceUsed(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.metaspace.used", defaultValue);
+        return getLongValueOrDefault(metaspaceUsed, defaultValue);
     }
 
     // See https://blogs.oracle.com/jonthecollector/entry/the_real_thing
 
     public long getTlabTotalAllocatingThreads(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.allocThreads", defaultValue);
+        return getLongValueOrDefault(tlabAllocThreads, defaultValue);
     }
 
     public long getTlabTotalAllocations(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.alloc", defaultValue);
+        return getLongValueOrDefault(tlabAlloc, defaultValue);
     }
 
     public long getTlabTotalRefills(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.fills", defaultValue);
+        return getLongValueOrDefault(tlabFills, defaultValue);
     }
 
     public long getTlabMaxRefills(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxFills", defaultValue);
+        return getLongValueOrDefault(tlabMaxFills, defaultValue);
     }
 
     public long getTlabTotalSlowAllocs(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.slowAlloc", defaultValue);
+        return getLongValueOrDefault(tlabSlowAlloc, defaultValue);
     }
 
     public long getTlabMaxSlowAllocs(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxSlowAlloc", defaultValue);
+        return getLongValueOrDefault(tlabMaxSlowAlloc, defaultValue);
     }
 
     public long getTlabTotalGcWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.gcWaste", defaultValue);
+        return getLongValueOrDefault(tlabGcWaste, defaultValue);
     }
 
     public long getTlabMaxGcWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxGcWaste", defaultValue);
+        return getLongValueOrDefault(tlabMaxGcWaste, defaultValue);
     }
 
     public long getTlabTotalSlowWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.slowWaste", defaultValue);
+        return getLongValueOrDefault(tlabSlowWaste, defaultValue);
     }
 
     public long getTlabMaxSlowWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxSlowWaste", defaultValue);
+        return getLongValueOrDefault(tlabMaxSlowWaste, defaultValue);
     }
 
     public long getTlabTotalFastWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.fastWaste", defaultValue);
+        return getLongValueOrDefault(tlabFastWaste, defaultValue);
     }
 
     public long getTlabMaxFastWaste(long defaultValue) {
-        return getLongValueOrDefault("sun.gc.tlab.maxFastWaste", defaultValue);
+        return getLongValueOrDefault(tlabMaxFastWaste, defaultValue);
     }
 
-    /** package private for testing */
-    long getLongValueOrDefault(String name, long defaultValue) {
+    private static long getLongValueOrDefault(VmCounterTable table, long defaultValue) {
         try {
-            Long value = update.getPerformanceCounterLong(name);
-            if (value == null) {
+            VmCounter counter = table.get();
+            if (counter == null) {
                 return defaultValue;
             }
-            return value.longValue();
+            return counter.longValue();
         } catch (VmUpdateException e) {
             return defaultValue;
         }
     }
 
-}
+    private static Long longValue(VmCounter counter) {
+        return counter == null ? null : counter.longValue();
+    }
 
+    private static String stringValue(VmCounter counter) {
+        return counter == null ? null : counter.stringValue();
+    }
+
+}
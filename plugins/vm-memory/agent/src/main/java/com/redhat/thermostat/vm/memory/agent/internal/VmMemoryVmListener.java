@@ -65,6 +65,7 @@ public class VmMemoryVmListener implements VmUpdateListener {
     private final Clock clock;
     
     private boolean error;
+    private VmMemoryDataExtractor extractor;
 
     public VmMemoryVmListener(String writerId, VmMemoryStatDAO vmMemoryStatDao, VmTlabStatDAO vmTlabStatDao, String vmId) {
         this(writerId, vmMemoryStatDao, vmTlabStatDao, new SystemClock(), vmId);
@@ -80,7 +81,10 @@ public class VmMemoryVmListener implements VmUpdateListener {
 
     @Override
     public void countersUpdated(VmUpdate update) {
-        VmMemoryDataExtractor extractor = new VmMemoryDataExtractor(update);
+        if (extractor == null) {
+            // keeps its counter handles across updates
+            extractor = new VmMemoryDataExtractor(update);
+        }
         recordMemoryStat(extractor);
         recordTlabStat(extractor);
     }
@@ -41,6 +41,7 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.redhat.thermostat.jvm.overview.agent.VmCounter;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import org.junit.Before;
@@ -64,7 +65,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.policy.generations";
         final Long GC_GENERATIONS = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(GC_GENERATIONS);
+        VmCounter counter = longCounter(GC_GENERATIONS);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
         
         Long returned = extractor.getTotalGcGenerations();
         assertEquals(GC_GENERATIONS, returned);
@@ -75,7 +77,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.name";
         final String GENERATION_NAME = "Youth";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(GENERATION_NAME);
+        VmCounter counter = stringCounter(GENERATION_NAME);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         String returned = extractor.getGenerationName(0);
         assertEquals(GENERATION_NAME, returned);
@@ -86,7 +89,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.capacity";
         final Long GENERATION_CAPACITY = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(GENERATION_CAPACITY);
+        VmCounter counter = longCounter(GENERATION_CAPACITY);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         Long returned = extractor.getGenerationCapacity(0);
         assertEquals(GENERATION_CAPACITY, returned);
@@ -97,7 +101,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.maxCapacity";
         final Long GENERATION_MAX_CAPACITY = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(GENERATION_MAX_CAPACITY);
+        VmCounter counter = longCounter(GENERATION_MAX_CAPACITY);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         Long returned = extractor.getGenerationMaxCapacity(0);
         assertEquals(GENERATION_MAX_CAPACITY, returned);
@@ -108,7 +113,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.collector.0.name";
         final String GENERATION_COLLECTOR = "generation collector";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(GENERATION_COLLECTOR);
+        VmCounter counter = stringCounter(GENERATION_COLLECTOR);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         String returned = extractor.getGenerationCollector(0);
         assertEquals(GENERATION_COLLECTOR, returned);
@@ -118,7 +124,7 @@ public class VmMemoryDataExtractorTest {
     public void testGenerationCollectorNone() throws VmUpdateException {
         final String MONITOR_NAME = "sun.gc.collector.0.name";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(null);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(null);
 
         String returned = extractor.getGenerationCollector(0);
         assertEquals(Generation.COLLECTOR_NONE, returned);
@@ -129,7 +135,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.spaces";
         final Long TOTAL_SPACES = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(TOTAL_SPACES);
+        VmCounter counter = longCounter(TOTAL_SPACES);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         Long returned = extractor.getTotalSpaces(0);
         assertEquals(TOTAL_SPACES, returned);
@@ -141,7 +148,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.space.0.name";
         final String SPACE_NAME = "Hilbert";
 
-        when(update.getPerformanceCounterString(eq(MONITOR_NAME))).thenReturn(SPACE_NAME);
+        VmCounter counter = stringCounter(SPACE_NAME);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         String returned = extractor.getSpaceName(0,0);
         assertEquals(SPACE_NAME, returned);
@@ -152,7 +160,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.space.0.capacity";
         final Long SPACE_CAPACITY = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(SPACE_CAPACITY);
+        VmCounter counter = longCounter(SPACE_CAPACITY);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         Long returned = extractor.getSpaceCapacity(0,0);
         assertEquals(SPACE_CAPACITY, returned);
@@ -163,7 +172,8 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.space.0.maxCapacity";
         final Long SPACE_MAX_CAPACITY = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(SPACE_MAX_CAPACITY);
+        VmCounter counter = longCounter(SPACE_MAX_CAPACITY);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         Long returned = extractor.getSpaceMaxCapacity(0,0);
         assertEquals(SPACE_MAX_CAPACITY, returned);
@@ -174,11 +184,22 @@ public class VmMemoryDataExtractorTest {
         final String MONITOR_NAME = "sun.gc.generation.0.space.0.used";
         final Long SPACE_USED = 99l;
 
-        when(update.getPerformanceCounterLong(eq(MONITOR_NAME))).thenReturn(SPACE_USED);
+        VmCounter counter = longCounter(SPACE_USED);
+        when(update.getPerformanceCounter(eq(MONITOR_NAME))).thenReturn(counter);
 
         Long returned = extractor.getSpaceUsed(0,0);
         assertEquals(SPACE_USED, returned);
     }
 
-}
+    private static VmCounter longCounter(long value) {
+        VmCounter counter = mock(VmCounter.class);
+        when(counter.longValue()).thenReturn(value);
+        return counter;
+    }
 
+    private static VmCounter stringCounter(String value) {
+        VmCounter counter = mock(VmCounter.class);
+        when(counter.stringValue()).thenReturn(value);
+        return counter;
+    }
+}
@@ -46,6 +46,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.redhat.thermostat.jvm.overview.agent.VmCounter;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdate;
 import com.redhat.thermostat.jvm.overview.agent.VmUpdateException;
 import org.junit.Before;
@@ -175,6 +176,9 @@ public class VmMemoryVmListenerTest {
     @Test
     public void testMonitorsUpdated() throws VmUpdateException {
         VmUpdate update = mock(VmUpdate.class);
+        VmCounter generations = mock(VmCounter.class);
+        when(generations.longValue()).thenReturn(0l);
+        when(update.getPerformanceCounter("sun.gc.policy.generations")).thenReturn(generations);
         vmListener.countersUpdated(update);
 
         verify(vmMemoryStatDAO).putVmMemoryStat(isA(VmMemoryStat.class));
@@ -36,14 +36,12 @@
 
 package com.redhat.thermostat.vm.memory.agent.internal.models;
 
-import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import com.redhat.thermostat.common.plugin.SystemID;
@@ -60,9 +58,9 @@ import com.redhat.thermostat.vm.memory.agent.model.VmMemoryStat.Space;
 
 public class VmMemoryStatDAOImplTest {
 
-    private static final String JSON = "{\"this\":\"is\",\"test\":\"JSON\"}";
     private static final URI GATEWAY_URI = URI.create("http://example.com/jvm-memory/0.0.2/");
     
+    private VmMemoryStatTypeAdapter typeAdapter;
     private JsonHelper jsonHelper;
     private PluginConfiguration config;
     VmMemoryStatDAOImpl.ConfigurationCreator creator;
@@ -71,8 +69,9 @@ public class VmMemoryStatDAOImplTest {
 
     @Before
     public void setUp() throws Exception {
+        typeAdapter = new VmMemoryStatTypeAdapter();
         jsonHelper = mock(JsonHelper.class);
-        when(jsonHelper.toJson(anyListOf(VmMemoryStat.class))).thenReturn(JSON);
+        when(jsonHelper.getTypeAdapter()).thenReturn(typeAdapter);
         
         config = mock(PluginConfiguration.class);
         when(config.getGatewayURL()).thenReturn(GATEWAY_URI);
@@ -126,8 +125,7 @@ public class VmMemoryStatDAOImplTest {
         
         dao.putVmMemoryStat(stat);
 
-        verify(jsonHelper).toJson(Arrays.asList(stat));
-        verify(httpRequestService).sendHttpRequest(JSON, GATEWAY_URI.resolve("systems/systemid/jvms/jvmId"), HttpRequestService.Method.POST);
+        verify(httpRequestService).queueHttpPost("vm-memory", typeAdapter, stat, GATEWAY_URI.resolve("systems/systemid/jvms/jvmId"));
     }
     
 }
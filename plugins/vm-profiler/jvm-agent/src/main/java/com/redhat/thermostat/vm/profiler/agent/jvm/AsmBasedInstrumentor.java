@@ -124,16 +124,20 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
      *
      * <pre>
      * public Object foo(int bar) {
-     *     ProfilerData.enterMethod(&quot;description&quot;);
+     *     ProfileRecorder.getInstance().enterMethod(methodId);
      *     try {
      *         // do something
      *         return object
      *     } finally {
-     *         profilerData.exitMethod(&quot;description&quot;);
+     *         ProfileRecorder.getInstance().exitMethod(methodId);
      *     }
      * }
      * </pre>
      *
+     * where {@code methodId} is a constant that
+     * {@link ProfileRecorder#registerMethod(String)} assigned to the method
+     * while it was being instrumented.
+     * <p>
      * Java bytecode has no concept of {@code finally} in a {@code try}-
      * {@code catch}-{@code finally} block. The {@code finally} code needs to be
      * duplicated in a {@code catch} block as well as in the normal-return
@@ -145,8 +149,7 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
 
         private static final String EXIT_METHOD = "exitMethod";
 
-        private String className;
-        private String methodName;
+        private final int methodId;
 
         private Label startFinally = new Label();
         private Label endFinally = new Label();
@@ -154,8 +157,7 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
         protected InstrumentingMethodAdapter(MethodVisitor mv, String className, int access, String methodName, String desc) {
             super(Opcodes.ASM5, mv, access, methodName, desc);
 
-            this.className = className;
-            this.methodName = methodName;
+            this.methodId = ProfileRecorder.getInstance().registerMethod(className + "." + methodName + desc);
         }
 
         @Override
@@ -197,8 +199,8 @@ public class AsmBasedInstrumentor extends ProfilerInstrumentor {
 
         private void callProfilerRecorder(String method) {
             mv.visitMethodInsn(Opcodes.INVOKESTATIC, RECORDER_CLASS_NAME, "getInstance", "()L" + RECORDER_CLASS_NAME + ";", false);
-            mv.visitLdcInsn(className + "." + methodName + methodDesc);
-            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RECORDER_CLASS_NAME, method, "(Ljava/lang/String;)V", false);
+            mv.visitLdcInsn(methodId);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, RECORDER_CLASS_NAME, method, "(I)V", false);
         }
 
         // for debugging: insert opcodes to invoke System.exit()
@@ -53,7 +53,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class InstrumentationControl implements InstrumentationControlMXBean {
 
@@ -61,11 +60,13 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
     private final ProfilerInstrumentor classInstrumentor;
     private final ProfileRecorder recorder;
     private final ResultsFileCreator resultsFileCreator;
+    private final StackSampler sampler;
 
     private boolean profiling = false;
 
     private boolean resultsWrittenToDisk = true;
     private String lastResults = null;
+    private String lastSamples = null;
 
     public InstrumentationControl(Instrumentation instrumentation) {
         this(instrumentation, new AsmBasedInstrumentor(), ProfileRecorder.getInstance(), new ResultsFileCreator());
@@ -75,10 +76,19 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
             ProfilerInstrumentor instrumentor,
             ProfileRecorder recorder,
             ResultsFileCreator resultsFileCreator) {
+        this(instrumentation, instrumentor, recorder, resultsFileCreator, new StackSampler());
+    }
+
+    public InstrumentationControl(Instrumentation instrumentation,
+            ProfilerInstrumentor instrumentor,
+            ProfileRecorder recorder,
+            ResultsFileCreator resultsFileCreator,
+            StackSampler sampler) {
         this.instrumentation = instrumentation;
         this.classInstrumentor = instrumentor;
         this.recorder = recorder;
         this.resultsFileCreator = resultsFileCreator;
+        this.sampler = sampler;
 
         addShutdownHookToSaveData();
     }
@@ -95,6 +105,9 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
     /** package private for testing */
     void onVmShutdown() {
         writeResultsToDiskIfNotWritten();
+        if (sampler.isSampling()) {
+            stopSampling();
+        }
     }
 
     @Override
@@ -175,10 +188,10 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
             BufferedWriter out = null;
             try {
                 out = resultsFile.getWriter();
-                Map<String, AtomicLong> data = recorder.getData();
+                Map<String, Long> data = recorder.getData();
                 Debug.println("AGENT: Writing " + data.size() + " results to: " + path);
-                for (Map.Entry<String, AtomicLong> entry : data.entrySet()) {
-                    out.write(entry.getValue().get() + "\t" + entry.getKey() + "\n");
+                for (Map.Entry<String, Long> entry : data.entrySet()) {
+                    out.write(entry.getValue() + "\t" + entry.getKey() + "\n");
                 }
                 resultsWrittenToDisk = true;
                 lastResults = path;
@@ -201,6 +214,52 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
         recorder.clearData();
     }
 
+    @Override
+    public void startSampling(int intervalMillis) {
+        sampler.start(intervalMillis);
+    }
+
+    @Override
+    public void stopSampling() {
+        sampler.stop();
+        writeSamplesToDisk();
+        sampler.clearData();
+    }
+
+    private void writeSamplesToDisk() {
+        try {
+            ResultsFile resultsFile = resultsFileCreator.get(ResultsFileCreator.SAMPLES_SUFFIX);
+            String path = resultsFile.getPath();
+            BufferedWriter out = null;
+            try {
+                out = resultsFile.getWriter();
+                Debug.println("AGENT: Writing " + sampler.getSampleCount() + " samples to: " + path);
+                sampler.writeFoldedStacks(out);
+                lastSamples = path;
+            } finally {
+                try {
+                    if (out != null) {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    Debug.printStackTrace(e);
+                }
+            }
+        } catch (IOException e) {
+            Debug.printStackTrace(e);
+        }
+    }
+
+    @Override
+    public boolean isSampling() {
+        return sampler.isSampling();
+    }
+
+    @Override
+    public String getSamplingDataFile() {
+        return lastSamples;
+    }
+
     @Override
     public boolean isProfiling() {
         return profiling;
@@ -213,8 +272,16 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
 
     static class ResultsFileCreator {
 
+        static final String PROFILE_SUFFIX = ".perfdata";
+        /** distinct from {@link #PROFILE_SUFFIX}, which the thermostat agent looks for */
+        static final String SAMPLES_SUFFIX = ".folded";
+
         ResultsFile get() throws IOException {
-            Path output = createOutput();
+            return get(PROFILE_SUFFIX);
+        }
+
+        ResultsFile get(String suffix) throws IOException {
+            Path output = createOutput(suffix);
             return new ResultsFile(output);
         }
 
@@ -224,18 +291,18 @@ public class InstrumentationControl implements InstrumentationControlMXBean {
             return IS_UNIX;
         }
 
-        private Path createOutput() throws IOException {
+        private Path createOutput(String suffix) throws IOException {
             if (isPosixSystem()) {
                 Set<PosixFilePermission> perm = PosixFilePermissions.fromString("rw-------");
                 FileAttribute<Set<PosixFilePermission>> attributes = PosixFilePermissions.asFileAttribute(perm);
                 // Include the pid so agent can find it. Surround pid with - to
                 // avoid false prefix-based matches. Otherwise the agent searching
                 // for "-12" may find "-123" as a valid match.
-                return Files.createTempFile("thermostat-" + getProcessId() + "-", ".perfdata", attributes);
+                return Files.createTempFile("thermostat-" + getProcessId() + "-", suffix, attributes);
             }
             else {
                 // should check that this is in a secure location
-                return Files.createTempFile("thermostat-" + getProcessId() + "-", ".perfdata");
+                return Files.createTempFile("thermostat-" + getProcessId() + "-", suffix);
             }
         }
 
@@ -36,7 +36,10 @@
 
 package com.redhat.thermostat.vm.profiler.agent.jvm;
 
-/** Adds and removes instrumentation to generate profiling data */
+/**
+ * Adds and removes instrumentation to generate profiling data, or samples
+ * thread stacks, which is less precise but cheap enough for live services.
+ */
 public interface InstrumentationControlMXBean {
 
     /** Enable profiling. */
@@ -50,4 +53,25 @@ public interface InstrumentationControlMXBean {
 
     /** @return the path to the profiling data file */
     String getProfilingDataFile();
+
+    /**
+     * Start sampling the stacks of all runnable threads, without
+     * instrumenting anything.
+     *
+     * @param intervalMillis the time between two samples
+     */
+    void startSampling(int intervalMillis);
+
+    /** Stop sampling and write the samples to the sampling data file. */
+    void stopSampling();
+
+    /** @return whether sampling is currently active or not */
+    boolean isSampling();
+
+    /**
+     * @return the path to the sampling data file, which holds folded stacks:
+     *         one line per distinct stack, frames separated by {@code ;},
+     *         followed by the number of samples
+     */
+    String getSamplingDataFile();
 }
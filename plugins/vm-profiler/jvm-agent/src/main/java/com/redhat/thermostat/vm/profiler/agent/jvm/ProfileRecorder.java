@@ -36,34 +36,113 @@
 
 package com.redhat.thermostat.vm.profiler.agent.jvm;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+/**
+ * Records the time spent in instrumented methods.
+ * <p>
+ * Methods are identified by integer ids that are handed out by
+ * {@link #registerMethod(String)} when a class is instrumented, so that the
+ * calls made by instrumented code on every method enter and exit neither
+ * hash nor box. Each thread records into its own {@link ThreadData}; the
+ * per-thread times are only summed up when {@link #getData()} is called.
+ * The times of threads that have terminated are folded into a single total
+ * and their data is dropped.
+ */
 public class ProfileRecorder {
 
     private static final ProfileRecorder profileRecorder = new ProfileRecorder(new TimeSource());
 
-    /** shared between threads */
-    private ConcurrentHashMap<String, AtomicLong> profileData = new ConcurrentHashMap<String, AtomicLong>();
+    private static final int INITIAL_STACK_DEPTH = 64;
+    private static final int INITIAL_METHOD_COUNT = 1024;
+
+    /** guards methodIds and methodNames */
+    private final Object methodsLock = new Object();
+    private final Map<String, Integer> methodIds = new HashMap<String, Integer>();
+    private String[] methodNames = new String[INITIAL_METHOD_COUNT];
 
-    // TODO deal with thread id wrap-around
+    /**
+     * The data of all threads that recorded something since the last
+     * {@link #clearData()}. Guarded by itself, as is updating
+     * {@link #generation}.
+     */
+    private final List<ThreadData> threads = new ArrayList<ThreadData>();
+
+    /**
+     * The times recorded by threads that terminated since the last
+     * {@link #clearData()}. Guarded by {@link #threads}.
+     */
+    private long[] terminatedThreadTimes = new long[0];
 
     /**
-     * thread id -> info.
-     * <p>
-     * only the thread with the matching thread id is allowed to mutate 'info'
+     * Incremented by {@link #clearData()}. Threads whose data belongs to an
+     * older generation reset it before recording anything new.
      */
-    private Map<Long, Info> threads = new ConcurrentHashMap<Long, Info>();
+    private volatile int generation;
+
+    private final ThreadLocal<ThreadData> threadData = new ThreadLocal<ThreadData>() {
+        @Override
+        protected ThreadData initialValue() {
+            ThreadData data = new ThreadData(Thread.currentThread());
+            addThread(data);
+            return data;
+        }
+    };
 
     private final TimeSource timeSource;
 
-    final static class Info {
-        public Deque<String> stackFrames = new ArrayDeque<String>();
-        public long timeStamp = Long.MIN_VALUE;
+    /**
+     * Only ever mutated by the thread it belongs to.
+     */
+    final static class ThreadData {
+
+        private static final AtomicReferenceFieldUpdater<ThreadData, long[]> PUBLISHED_TIMES =
+                AtomicReferenceFieldUpdater.newUpdater(ThreadData.class, long[].class, "publishedTimes");
+
+        final Thread thread;
+        int[] stackFrames = new int[INITIAL_STACK_DEPTH];
+        int depth;
+        long timeStamp = Long.MIN_VALUE;
+        /** method id -> nanoseconds spent in that method */
+        long[] times = new long[INITIAL_METHOD_COUNT];
+        int generation;
+        /**
+         * {@link #times}, stored again after every update so that
+         * {@link ProfileRecorder#getData()} sees all times recorded before
+         * the store.
+         */
+        private volatile long[] publishedTimes = times;
+
+        ThreadData(Thread thread) {
+            this.thread = thread;
+        }
+
+        void push(int methodId) {
+            if (depth == stackFrames.length) {
+                stackFrames = Arrays.copyOf(stackFrames, depth * 2);
+            }
+            stackFrames[depth++] = methodId;
+        }
+
+        void addTime(int methodId, long time) {
+            if (methodId >= times.length) {
+                times = Arrays.copyOf(times, Math.max(methodId + 1, times.length * 2));
+            }
+            times[methodId] += time;
+            // an ordered store, much cheaper than a volatile one on this hot path
+            PUBLISHED_TIMES.lazySet(this, times);
+        }
+
+        /** @return this thread's times, as of its last {@link #addTime(int, long)} */
+        long[] readTimes() {
+            return publishedTimes;
+        }
     }
 
     /** for testing */
@@ -82,68 +161,148 @@ public class ProfileRecorder {
         return profileRecorder;
     }
 
+    /**
+     * Called when instrumenting a method. Returns the id that the
+     * instrumented code passes to {@link #enterMethod(int)} and
+     * {@link #exitMethod(int)}. A method keeps its id when it is instrumented
+     * again.
+     */
+    public int registerMethod(String fullyQualifiedName) {
+        synchronized (methodsLock) {
+            Integer id = methodIds.get(fullyQualifiedName);
+            if (id == null) {
+                id = methodIds.size();
+                if (id == methodNames.length) {
+                    methodNames = Arrays.copyOf(methodNames, id * 2);
+                }
+                methodNames[id] = fullyQualifiedName;
+                methodIds.put(fullyQualifiedName, id);
+            }
+            return id;
+        }
+    }
+
     /** called by instrumented code on every method enter */
-    public void enterMethod(String fullyQualifiedName) {
+    public void enterMethod(int methodId) {
         long currentTime = timeSource.nanoTime();
-        long threadId = Thread.currentThread().getId();
+        ThreadData data = currentThreadData();
 
-        Info info = threads.get(threadId);
-
-        if (info == null) {
-            info = new Info();
-            threads.put(threadId, info);
-        }
-
-        if (info.stackFrames.size() != 0) {
+        if (data.depth != 0) {
             // update time for previous method on the stack
-            Long oldTime = info.timeStamp;
-            long diff = currentTime - oldTime;
-            addData(info.stackFrames.peek(), diff);
+            data.addTime(data.stackFrames[data.depth - 1], currentTime - data.timeStamp);
         }
 
-        info.timeStamp = currentTime;
-        info.stackFrames.push(fullyQualifiedName);
+        data.timeStamp = currentTime;
+        data.push(methodId);
     }
 
     /** called by instrumented code on every method exit */
-    public void exitMethod(String fullyQualifiedName) {
+    public void exitMethod(int methodId) {
         long currentTime = timeSource.nanoTime();
-        long threadId = Thread.currentThread().getId();
+        ThreadData data = currentThreadData();
 
-        Info info = threads.get(threadId);
-        Queue<String> stack = info.stackFrames;
+        if (data.depth == 0 || data.stackFrames[data.depth - 1] != methodId) {
+            throw new AssertionError("should not happen:\n"
+                    + "name: '" + getMethodName(methodId) + "'\n"
+                    + "stack top: '" + (data.depth == 0 ? null : getMethodName(data.stackFrames[data.depth - 1])) + "'\n"
+                    + "stack depth: " + data.depth);
+        }
 
-        Long oldTime = info.timeStamp;
-        long diff = currentTime - oldTime;
+        data.depth--;
+        data.addTime(methodId, currentTime - data.timeStamp);
 
-        if (!fullyQualifiedName.equals(stack.peek())) {
-            throw new AssertionError("should not happen:\n"
-                    + "name: '" + fullyQualifiedName + "'\n"
-                    + "stack top: '" + stack.peek() + "'\n"
-                    + "stack: " + stack);
+        data.timeStamp = currentTime;
+    }
+
+    private ThreadData currentThreadData() {
+        ThreadData data = threadData.get();
+        if (data.generation != generation) {
+            // keep the stack: methods entered before clearData() still exit
+            Arrays.fill(data.times, 0);
+            addThread(data);
         }
+        return data;
+    }
 
-        addData(stack.poll(), diff);
+    private void addThread(ThreadData data) {
+        synchronized (threads) {
+            pruneTerminatedThreads();
+            data.generation = generation;
+            threads.add(data);
+        }
+    }
 
-        info.timeStamp = currentTime;
+    /** Must hold the lock on {@link #threads}. */
+    private void pruneTerminatedThreads() {
+        Iterator<ThreadData> iter = threads.iterator();
+        while (iter.hasNext()) {
+            ThreadData data = iter.next();
+            // a thread's final writes happen-before isAlive() returns false
+            if (!data.thread.isAlive()) {
+                terminatedThreadTimes = addTimes(terminatedThreadTimes, data.times);
+                iter.remove();
+            }
+        }
     }
 
-    private void addData(String dataName, long time) {
-        AtomicLong value = profileData.get(dataName);
-        if (value == null) {
-            value = profileData.putIfAbsent(dataName, new AtomicLong(time));
+    private static long[] addTimes(long[] totals, long[] times) {
+        if (times.length > totals.length) {
+            totals = Arrays.copyOf(totals, times.length);
         }
-        if (value != null) {
-            value.addAndGet(time);
+        for (int i = 0; i < times.length; i++) {
+            totals[i] += times[i];
         }
+        return totals;
     }
 
-    public Map<String, AtomicLong> getData() {
+    private String getMethodName(int methodId) {
+        synchronized (methodsLock) {
+            return methodNames[methodId];
+        }
+    }
+
+    /**
+     * Sums up the times recorded by all threads. Threads that are still
+     * running instrumented code may have recorded slightly more by the time
+     * this returns.
+     *
+     * @return fully qualified method name -> nanoseconds spent in the method
+     */
+    public Map<String, Long> getData() {
+        long[] totals;
+        synchronized (threads) {
+            pruneTerminatedThreads();
+            totals = Arrays.copyOf(terminatedThreadTimes, terminatedThreadTimes.length);
+            for (ThreadData data : threads) {
+                totals = addTimes(totals, data.readTimes());
+            }
+        }
+
+        Map<String, Long> profileData = new HashMap<String, Long>();
+        synchronized (methodsLock) {
+            for (int i = 0; i < totals.length; i++) {
+                if (totals[i] != 0) {
+                    profileData.put(methodNames[i], totals[i]);
+                }
+            }
+        }
         return profileData;
     }
 
+    /** for testing */
+    int getThreadCount() {
+        synchronized (threads) {
+            return threads.size();
+        }
+    }
+
     public void clearData() {
-        profileData.clear();
+        synchronized (threads) {
+            // threads re-add themselves the next time they record something
+            threads.clear();
+            terminatedThreadTimes = new long[0];
+            generation++;
+        }
     }
 
 }
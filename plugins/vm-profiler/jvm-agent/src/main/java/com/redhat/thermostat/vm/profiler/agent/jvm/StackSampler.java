@@ -0,0 +1,235 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.profiler.agent.jvm;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples the stacks of all runnable threads at a fixed interval, from a
+ * dedicated thread.
+ * <p>
+ * Unlike {@link ProfileRecorder}, this needs no instrumentation, so the
+ * profiled code runs unmodified. The cost is mostly the safepoint needed to
+ * take the stack traces, paid once per interval rather than on every method
+ * call, which makes it usable on live services.
+ * <p>
+ * Sampled stacks are interned into a tree of frames: every distinct stack
+ * prefix is stored once, as a node pointing to its parent, and a sample only
+ * increments the count of the node for its innermost frame.
+ */
+public class StackSampler {
+
+    private static final String THREAD_NAME = "thermostat-profiler-sampler";
+
+    private static final int ROOT = 0;
+    private static final int INITIAL_NODE_COUNT = 1024;
+
+    private Thread samplerThread;
+    private volatile boolean sampling;
+
+    // all guarded by this
+    private final Map<StackTraceElement, Integer> elementFrames = new HashMap<StackTraceElement, Integer>();
+    private final Map<String, Integer> frameIds = new HashMap<String, Integer>();
+    private final List<String> frameNames = new ArrayList<String>();
+    /** (parent node << 32 | frame id) -> node */
+    private final Map<Long, Integer> nodes = new HashMap<Long, Integer>();
+    private int[] parents = new int[INITIAL_NODE_COUNT];
+    private int[] frames = new int[INITIAL_NODE_COUNT];
+    private long[] counts = new long[INITIAL_NODE_COUNT];
+    private int nodeCount = 1;
+    private long sampleCount;
+
+    /**
+     * Starts sampling on a new daemon thread.
+     *
+     * @param intervalMillis the time to wait between two samples
+     */
+    public synchronized void start(final long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Sampling interval must be positive: " + intervalMillis);
+        }
+        if (sampling) {
+            throw new IllegalStateException("Already sampling");
+        }
+        sampling = true;
+        samplerThread = new Thread(THREAD_NAME) {
+            @Override
+            public void run() {
+                try {
+                    while (sampling) {
+                        sample();
+                        Thread.sleep(intervalMillis);
+                    }
+                } catch (InterruptedException e) {
+                    // stopped
+                }
+            }
+        };
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+    }
+
+    /** Stops sampling and waits for the sampler thread to finish. */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            if (!sampling) {
+                throw new IllegalStateException("Not sampling");
+            }
+            sampling = false;
+            thread = samplerThread;
+            samplerThread = null;
+        }
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isSampling() {
+        return sampling;
+    }
+
+    /** Takes one sample of every runnable thread other than the current one. */
+    void sample() {
+        Map<Thread, StackTraceElement[]> stacks = Thread.getAllStackTraces();
+        Thread current = Thread.currentThread();
+        synchronized (this) {
+            for (Map.Entry<Thread, StackTraceElement[]> entry : stacks.entrySet()) {
+                Thread thread = entry.getKey();
+                StackTraceElement[] stack = entry.getValue();
+                if (thread != current && thread.getState() == Thread.State.RUNNABLE && stack.length > 0) {
+                    addSample(stack);
+                }
+            }
+        }
+    }
+
+    /** @param stack innermost frame first, as returned by {@link Thread#getStackTrace()} */
+    synchronized void addSample(StackTraceElement[] stack) {
+        int node = ROOT;
+        for (int i = stack.length - 1; i >= 0; i--) {
+            node = childNode(node, frameId(stack[i]));
+        }
+        counts[node]++;
+        sampleCount++;
+    }
+
+    private int frameId(StackTraceElement element) {
+        Integer id = elementFrames.get(element);
+        if (id == null) {
+            // elements of the same method differ by line number; share a frame
+            String name = element.getClassName() + "." + element.getMethodName();
+            id = frameIds.get(name);
+            if (id == null) {
+                id = frameNames.size();
+                frameNames.add(name);
+                frameIds.put(name, id);
+            }
+            elementFrames.put(element, id);
+        }
+        return id;
+    }
+
+    private int childNode(int parent, int frame) {
+        Long key = ((long) parent << 32) | frame;
+        Integer child = nodes.get(key);
+        if (child == null) {
+            child = nodeCount++;
+            if (child == parents.length) {
+                parents = Arrays.copyOf(parents, child * 2);
+                frames = Arrays.copyOf(frames, child * 2);
+                counts = Arrays.copyOf(counts, child * 2);
+            }
+            parents[child] = parent;
+            frames[child] = frame;
+            nodes.put(key, child);
+        }
+        return child;
+    }
+
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Writes all sampled stacks in the "folded" format understood by flame
+     * graph tools: one line per distinct stack, outermost frame first, frames
+     * separated by {@code ;}, followed by a space and the number of samples.
+     */
+    public synchronized void writeFoldedStacks(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int[] path = new int[16];
+        for (int node = ROOT + 1; node < nodeCount; node++) {
+            if (counts[node] == 0) {
+                continue;
+            }
+            int depth = 0;
+            for (int n = node; n != ROOT; n = parents[n]) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth++] = frames[n];
+            }
+            line.setLength(0);
+            for (int i = depth - 1; i >= 0; i--) {
+                line.append(frameNames.get(path[i]));
+                line.append(i == 0 ? ' ' : ';');
+            }
+            line.append(counts[node]).append('\n');
+            out.write(line.toString());
+        }
+    }
+
+    public synchronized void clearData() {
+        elementFrames.clear();
+        frameIds.clear();
+        frameNames.clear();
+        nodes.clear();
+        Arrays.fill(counts, 0, nodeCount, 0);
+        nodeCount = 1;
+        sampleCount = 0;
+    }
+}
@@ -39,6 +39,8 @@ package com.redhat.thermostat.vm.profiler.agent.jvm;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -46,13 +48,15 @@ import static org.mockito.Mockito.when;
 
 import java.io.BufferedWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.instrument.Instrumentation;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.redhat.thermostat.vm.profiler.agent.jvm.InstrumentationControl.ResultsFile;
 import com.redhat.thermostat.vm.profiler.agent.jvm.InstrumentationControl.ResultsFileCreator;
@@ -133,8 +137,8 @@ public class InstrumentationControlTest {
     public void stopProfilingSavesProfilingResultsToDisk() throws Exception {
         final String DATA_LOCATION = "foobar";
 
-        Map<String, AtomicLong> profileData = new HashMap<String, AtomicLong>();
-        profileData.put("foo", new AtomicLong(1));
+        Map<String, Long> profileData = new HashMap<String, Long>();
+        profileData.put("foo", 1l);
         when(recorder.getData()).thenReturn(profileData);
 
         when(resultsFile.getPath()).thenReturn(DATA_LOCATION);
@@ -155,12 +159,71 @@ public class InstrumentationControlTest {
         verify(recorder).clearData();
     }
 
+    @Test
+    public void startSamplingStartsSampler() throws Exception {
+        StackSampler sampler = mock(StackSampler.class);
+        control = new InstrumentationControl(instrumentation, instrumentor, recorder, resultsFileCreator, sampler);
+
+        control.startSampling(10);
+
+        verify(sampler).start(10);
+        verify(instrumentation, times(0)).addTransformer(instrumentor, true);
+    }
+
+    @Test
+    public void stopSamplingSavesFoldedStacksToDisk() throws Exception {
+        final String DATA_LOCATION = "foobar.folded";
+        StackSampler sampler = mockSamplerWithSamples();
+        ResultsFile samplesFile = mock(ResultsFile.class);
+        when(samplesFile.getWriter()).thenReturn(new BufferedWriter(dataWriter));
+        when(samplesFile.getPath()).thenReturn(DATA_LOCATION);
+        when(resultsFileCreator.get(ResultsFileCreator.SAMPLES_SUFFIX)).thenReturn(samplesFile);
+        control = new InstrumentationControl(instrumentation, instrumentor, recorder, resultsFileCreator, sampler);
+
+        control.startSampling(10);
+        control.stopSampling();
+
+        verify(sampler).stop();
+        assertEquals("Foo.main;Foo.bar 2\n", dataWriter.toString());
+        assertEquals(DATA_LOCATION, control.getSamplingDataFile());
+        assertEquals(null, control.getProfilingDataFile());
+        verify(sampler).clearData();
+    }
+
+    @Test
+    public void vmShutdownSavesSamplesToDisk() throws Exception {
+        StackSampler sampler = mockSamplerWithSamples();
+        when(sampler.isSampling()).thenReturn(true);
+        when(resultsFileCreator.get(ResultsFileCreator.SAMPLES_SUFFIX)).thenReturn(resultsFile);
+        control = new InstrumentationControl(instrumentation, instrumentor, recorder, resultsFileCreator, sampler);
+
+        control.startSampling(10);
+
+        // simulate vm shutdown:
+        control.onVmShutdown();
+
+        verify(sampler).stop();
+        assertEquals("Foo.main;Foo.bar 2\n", dataWriter.toString());
+    }
+
+    private StackSampler mockSamplerWithSamples() throws Exception {
+        StackSampler sampler = mock(StackSampler.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Writer) invocation.getArguments()[0]).write("Foo.main;Foo.bar 2\n");
+                return null;
+            }
+        }).when(sampler).writeFoldedStacks(isA(Writer.class));
+        return sampler;
+    }
+
     @Test
     public void vmShutdownSaveDataToDisk() throws Exception {
         final String DATA_LOCATION = "foobar";
 
-        Map<String, AtomicLong> profileData = new HashMap<String, AtomicLong>();
-        profileData.put("foo", new AtomicLong(1));
+        Map<String, Long> profileData = new HashMap<String, Long>();
+        profileData.put("foo", 1l);
         when(recorder.getData()).thenReturn(profileData);
 
         when(resultsFile.getPath()).thenReturn(DATA_LOCATION);
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.profiler.agent.jvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.redhat.thermostat.testutils.PerformanceTest;
+
+/**
+ * Measures the overhead instrumented code pays per method call: one
+ * {@code enterMethod} and one {@code exitMethod}, three frames deep. Compares
+ * {@link ProfileRecorder} against the recorder it replaced, which kept
+ * per-thread stacks of method names in maps. Run with
+ * {@code mvn test -Pperf-tests}.
+ */
+@Category(PerformanceTest.class)
+public class ProfileRecorderPerformanceTest {
+
+    private static final int WARMUP_ITERATIONS = 200000;
+    private static final int ITERATIONS = 2000000;
+
+    private static final String[] METHODS = {
+        "com.example.Foo.outer()V",
+        "com.example.Foo.middle(I)I",
+        "com.example.Foo.inner(Ljava/lang/String;)V",
+    };
+
+    @Test
+    public void compareCallOverhead() {
+        final ProfileRecorder recorder = new ProfileRecorder(new ProfileRecorder.TimeSource());
+        final int[] ids = new int[METHODS.length];
+        for (int i = 0; i < METHODS.length; i++) {
+            ids[i] = recorder.registerMethod(METHODS[i]);
+        }
+        final LegacyRecorder legacyRecorder = new LegacyRecorder();
+
+        Calls legacy = new Calls() {
+            @Override
+            public void call() {
+                legacyRecorder.enterMethod(METHODS[0]);
+                legacyRecorder.enterMethod(METHODS[1]);
+                legacyRecorder.enterMethod(METHODS[2]);
+                legacyRecorder.exitMethod(METHODS[2]);
+                legacyRecorder.exitMethod(METHODS[1]);
+                legacyRecorder.exitMethod(METHODS[0]);
+            }
+        };
+        Calls current = new Calls() {
+            @Override
+            public void call() {
+                recorder.enterMethod(ids[0]);
+                recorder.enterMethod(ids[1]);
+                recorder.enterMethod(ids[2]);
+                recorder.exitMethod(ids[2]);
+                recorder.exitMethod(ids[1]);
+                recorder.exitMethod(ids[0]);
+            }
+        };
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            legacy.call();
+            current.call();
+        }
+
+        long[] legacyResult = measure(legacy);
+        long[] currentResult = measure(current);
+
+        System.out.println("enter+exit: legacy " + legacyResult[0] + " ns/call, " + legacyResult[1] + " B/call; "
+                + "ProfileRecorder " + currentResult[0] + " ns/call, " + currentResult[1] + " B/call");
+        assertEquals(METHODS.length, recorder.getData().size());
+        if (legacyResult[1] >= 0) {
+            assertTrue(currentResult[1] < legacyResult[1]);
+        }
+    }
+
+    private interface Calls {
+        /** makes {@code METHODS.length} instrumented calls */
+        void call();
+    }
+
+    /**
+     * @return nanoseconds and bytes allocated per instrumented call; bytes
+     *         are -1 if the JVM cannot measure them
+     */
+    private static long[] measure(Calls calls) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            calls.call();
+        }
+        long time = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        long callCount = (long) ITERATIONS * METHODS.length;
+        return new long[] {
+            time / callCount,
+            allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore) / callCount,
+        };
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /** The recorder as it was before method ids and per-thread data. */
+    private static class LegacyRecorder {
+
+        private final ConcurrentHashMap<String, AtomicLong> profileData = new ConcurrentHashMap<String, AtomicLong>();
+        private final Map<Long, Info> threads = new ConcurrentHashMap<Long, Info>();
+
+        private static class Info {
+            Deque<String> stackFrames = new ArrayDeque<String>();
+            long timeStamp = Long.MIN_VALUE;
+        }
+
+        void enterMethod(String fullyQualifiedName) {
+            long currentTime = System.nanoTime();
+            long threadId = Thread.currentThread().getId();
+            Info info = threads.get(threadId);
+            if (info == null) {
+                info = new Info();
+                threads.put(threadId, info);
+            }
+            if (info.stackFrames.size() != 0) {
+                Long oldTime = info.timeStamp;
+                addData(info.stackFrames.peek(), currentTime - oldTime);
+            }
+            info.timeStamp = currentTime;
+            info.stackFrames.push(fullyQualifiedName);
+        }
+
+        void exitMethod(String fullyQualifiedName) {
+            long currentTime = System.nanoTime();
+            long threadId = Thread.currentThread().getId();
+            Info info = threads.get(threadId);
+            Long oldTime = info.timeStamp;
+            if (!fullyQualifiedName.equals(info.stackFrames.peek())) {
+                throw new AssertionError();
+            }
+            addData(info.stackFrames.poll(), currentTime - oldTime);
+            info.timeStamp = currentTime;
+        }
+
+        private void addData(String dataName, long time) {
+            AtomicLong value = profileData.get(dataName);
+            if (value == null) {
+                value = profileData.putIfAbsent(dataName, new AtomicLong(time));
+            }
+            if (value != null) {
+                value.addAndGet(time);
+            }
+        }
+    }
+}
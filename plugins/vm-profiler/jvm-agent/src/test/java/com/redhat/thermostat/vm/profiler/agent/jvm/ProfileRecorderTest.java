@@ -37,11 +37,13 @@
 package com.redhat.thermostat.vm.profiler.agent.jvm;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
 
@@ -63,17 +65,162 @@ public class ProfileRecorderTest {
                                .thenReturn(EXIT_2);
 
         ProfileRecorder recorder = new ProfileRecorder(source);
+        int methodId = recorder.registerMethod(METHOD_NAME);
 
-        recorder.enterMethod(METHOD_NAME);
-        recorder.exitMethod(METHOD_NAME);
-        recorder.enterMethod(METHOD_NAME);
-        recorder.exitMethod(METHOD_NAME);
+        recorder.enterMethod(methodId);
+        recorder.exitMethod(methodId);
+        recorder.enterMethod(methodId);
+        recorder.exitMethod(methodId);
 
         assertEquals(1, recorder.getData().size());
-        Entry<String, AtomicLong> result = recorder.getData().entrySet().iterator().next();
+        Entry<String, Long> result = recorder.getData().entrySet().iterator().next();
         String methodName = result.getKey();
         assertEquals(METHOD_NAME, methodName);
-        AtomicLong methodTimeInNanos = result.getValue();
-        assertEquals((EXIT_1 - ENTER_1) + (EXIT_2 - ENTER_2), methodTimeInNanos.get());
+        long methodTimeInNanos = result.getValue();
+        assertEquals((EXIT_1 - ENTER_1) + (EXIT_2 - ENTER_2), methodTimeInNanos);
+    }
+
+    @Test
+    public void testRegisteringAgainKeepsId() {
+        ProfileRecorder recorder = new ProfileRecorder(new TimeSource());
+        int foo = recorder.registerMethod("foo");
+        int bar = recorder.registerMethod("bar");
+        assertTrue(foo != bar);
+        assertEquals(foo, recorder.registerMethod("foo"));
+    }
+
+    @Test
+    public void testNestedMethodsOnlyCountOwnTime() {
+        TimeSource source = mock(TimeSource.class);
+        when(source.nanoTime()).thenReturn(100l)
+                               .thenReturn(110l)
+                               .thenReturn(150l)
+                               .thenReturn(160l);
+
+        ProfileRecorder recorder = new ProfileRecorder(source);
+        int outer = recorder.registerMethod("outer");
+        int inner = recorder.registerMethod("inner");
+
+        recorder.enterMethod(outer);
+        recorder.enterMethod(inner);
+        recorder.exitMethod(inner);
+        recorder.exitMethod(outer);
+
+        Map<String, Long> data = recorder.getData();
+        assertEquals(2, data.size());
+        assertEquals(20l, (long) data.get("outer"));
+        assertEquals(40l, (long) data.get("inner"));
+    }
+
+    @Test
+    public void testDeepStacks() {
+        ProfileRecorder recorder = new ProfileRecorder(new TimeSource());
+        int methodId = recorder.registerMethod("recursive");
+        for (int i = 0; i < 1000; i++) {
+            recorder.enterMethod(methodId);
+        }
+        for (int i = 0; i < 1000; i++) {
+            recorder.exitMethod(methodId);
+        }
+        assertTrue(recorder.getData().containsKey("recursive"));
+    }
+
+    @Test
+    public void testExitOfOtherMethodFails() {
+        ProfileRecorder recorder = new ProfileRecorder(new TimeSource());
+        int foo = recorder.registerMethod("foo");
+        int bar = recorder.registerMethod("bar");
+        recorder.enterMethod(foo);
+        try {
+            recorder.exitMethod(bar);
+            fail();
+        } catch (AssertionError expected) {
+            assertTrue(expected.getMessage().contains("'bar'"));
+        }
+    }
+
+    @Test
+    public void testClearDataKeepsStack() {
+        TimeSource source = mock(TimeSource.class);
+        when(source.nanoTime()).thenReturn(100l)
+                               .thenReturn(200l)
+                               .thenReturn(210l)
+                               .thenReturn(220l);
+
+        ProfileRecorder recorder = new ProfileRecorder(source);
+        int methodId = recorder.registerMethod("foo");
+
+        recorder.enterMethod(methodId);
+        recorder.exitMethod(methodId);
+        recorder.enterMethod(methodId);
+        recorder.clearData();
+        assertTrue(recorder.getData().isEmpty());
+
+        // entered before clearing, exits afterwards
+        recorder.exitMethod(methodId);
+        assertEquals(10l, (long) recorder.getData().get("foo"));
+    }
+
+    @Test
+    public void testDataOfAllThreadsIsMerged() throws InterruptedException {
+        final ProfileRecorder recorder = new ProfileRecorder(new TimeSource() {
+            private final ThreadLocal<Long> time = new ThreadLocal<Long>() {
+                @Override
+                protected Long initialValue() {
+                    return 0l;
+                }
+            };
+
+            @Override
+            public long nanoTime() {
+                time.set(time.get() + 1);
+                return time.get();
+            }
+        });
+        final int methodId = recorder.registerMethod("foo");
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        recorder.enterMethod(methodId);
+                        recorder.exitMethod(methodId);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4 * 1000l, (long) recorder.getData().get("foo"));
+    }
+
+    @Test
+    public void testTerminatedThreadsAreDroppedButCounted() throws InterruptedException {
+        final ProfileRecorder recorder = new ProfileRecorder(new TimeSource());
+        final int methodId = recorder.registerMethod("foo");
+
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                recorder.enterMethod(methodId);
+                recorder.exitMethod(methodId);
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals(1, recorder.getThreadCount());
+
+        Map<String, Long> data = recorder.getData();
+        assertEquals(0, recorder.getThreadCount());
+        assertTrue(data.containsKey("foo"));
+        assertEquals(data, recorder.getData());
+
+        recorder.clearData();
+        assertTrue(recorder.getData().isEmpty());
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2017 Red Hat, Inc.
+ *
+ * This file is part of Thermostat.
+ *
+ * Thermostat is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation; either version 2, or (at your
+ * option) any later version.
+ *
+ * Thermostat is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Thermostat; see the file COPYING.  If not see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Linking this code with other modules is making a combined work
+ * based on this code.  Thus, the terms and conditions of the GNU
+ * General Public License cover the whole combination.
+ *
+ * As a special exception, the copyright holders of this code give
+ * you permission to link this code with independent modules to
+ * produce an executable, regardless of the license terms of these
+ * independent modules, and to copy and distribute the resulting
+ * executable under terms of your choice, provided that you also
+ * meet, for each linked independent module, the terms and conditions
+ * of the license of that module.  An independent module is a module
+ * which is not derived from or based on this code.  If you modify
+ * this code, you may extend this exception to your version of the
+ * library, but you are not obligated to do so.  If you do not wish
+ * to do so, delete this exception statement from your version.
+ */
+
+package com.redhat.thermostat.vm.profiler.agent.jvm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StackSamplerTest {
+
+    private StackSampler sampler;
+
+    @Before
+    public void setUp() {
+        sampler = new StackSampler();
+    }
+
+    @Test
+    public void samplesAreFoldedOutermostFrameFirst() throws IOException {
+        sampler.addSample(stack("Foo.baz", "Foo.bar", "Foo.main"));
+        sampler.addSample(stack("Foo.baz", "Foo.bar", "Foo.main"));
+        sampler.addSample(stack("Foo.bar", "Foo.main"));
+        sampler.addSample(stack("Other.run"));
+
+        assertEquals(4, sampler.getSampleCount());
+        assertEquals("Foo.main;Foo.bar 1\n"
+                + "Foo.main;Foo.bar;Foo.baz 2\n"
+                + "Other.run 1\n", folded());
+    }
+
+    @Test
+    public void framesOfSameMethodOnDifferentLinesAreMerged() throws IOException {
+        sampler.addSample(new StackTraceElement[] {
+            new StackTraceElement("Foo", "bar", "Foo.java", 10),
+            new StackTraceElement("Foo", "main", "Foo.java", 3),
+        });
+        sampler.addSample(new StackTraceElement[] {
+            new StackTraceElement("Foo", "bar", "Foo.java", 12),
+            new StackTraceElement("Foo", "main", "Foo.java", 3),
+        });
+
+        assertEquals("Foo.main;Foo.bar 2\n", folded());
+    }
+
+    @Test
+    public void manyDistinctStacks() throws IOException {
+        for (int i = 0; i < 5000; i++) {
+            sampler.addSample(stack("Foo.m" + i, "Foo.main"));
+        }
+        assertEquals(5000, folded().split("\n").length);
+    }
+
+    @Test
+    public void clearDataRemovesSamples() throws IOException {
+        sampler.addSample(stack("Foo.bar", "Foo.main"));
+        sampler.clearData();
+        assertEquals(0, sampler.getSampleCount());
+        assertEquals("", folded());
+
+        sampler.addSample(stack("Foo.main"));
+        assertEquals("Foo.main 1\n", folded());
+    }
+
+    @Test
+    public void samplesRunnableThreadsUntilStopped() throws IOException {
+        sampler.start(1);
+        assertTrue(sampler.isSampling());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sampler.getSampleCount() == 0 && System.nanoTime() < deadline) {
+            // stay runnable, so that this thread is sampled
+        }
+        sampler.stop();
+
+        assertFalse(sampler.isSampling());
+        assertTrue(sampler.getSampleCount() > 0);
+        assertTrue(folded().contains(getClass().getName() + ".samplesRunnableThreadsUntilStopped"));
+    }
+
+    @Test (expected=IllegalArgumentException.class)
+    public void intervalMustBePositive() {
+        sampler.start(0);
+    }
+
+    @Test (expected=IllegalStateException.class)
+    public void startingTwiceThrowsException() {
+        sampler.start(100);
+        try {
+            sampler.start(100);
+        } finally {
+            sampler.stop();
+        }
+    }
+
+    @Test (expected=IllegalStateException.class)
+    public void stoppingWhenNotSamplingThrowsException() {
+        sampler.stop();
+    }
+
+    private String folded() throws IOException {
+        StringWriter out = new StringWriter();
+        sampler.writeFoldedStacks(out);
+        return out.toString();
+    }
+
+    /** @param frames innermost first, as "Class.method" */
+    private static StackTraceElement[] stack(String... frames) {
+        StackTraceElement[] stack = new StackTraceElement[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            int dot = frames[i].lastIndexOf('.');
+            stack[i] = new StackTraceElement(frames[i].substring(0, dot), frames[i].substring(dot + 1), null, -1);
+        }
+        return stack;
+    }
+}